@@ -24,5 +24,30 @@ StackTraceProviderBenchmark() {
     done
 }
 
+HotKeyBenchmark() {
+    local BENCHMARK=HotKeyBenchmark
+    local MAX_THREADS=32
+
+    for THREADS in 1 2 4 8 16 $MAX_THREADS ; do
+        echo "Running $BENCHMARK with $THREADS threads"
+        $JAVA_HOME/bin/java -jar target/benchmarks.jar $BENCHMARK -f 1 -t $THREADS -w 5s -r 5s \
+            -o target/${BENCHMARK}_${THREADS}.txt \
+            -rff target/${BENCHMARK}_${THREADS}.csv 2>&1
+    done
+}
+
+DisposeSchedulerBenchmark() {
+    local BENCHMARK=DisposeSchedulerBenchmark
+
+    for THREADS in 1 2 4 ; do
+        echo "Running $BENCHMARK with $THREADS threads"
+        $JAVA_HOME/bin/java -jar target/benchmarks.jar $BENCHMARK -f 1 -t $THREADS -w 5s -r 5s \
+            -o target/${BENCHMARK}_${THREADS}.txt \
+            -rff target/${BENCHMARK}_${THREADS}.csv 2>&1
+    done
+}
+
 # SharedObjectBenchmark
-StackTraceProviderBenchmark
+# StackTraceProviderBenchmark
+# HotKeyBenchmark
+DisposeSchedulerBenchmark
@@ -0,0 +1,118 @@
+package de.serdioa.common.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for scheduling and immediately cancelling idle disposal tasks, as happens for keys flapping between idle
+ * and active, comparing a {@link ScheduledThreadPoolExecutor} with the remove-on-cancel policy and the
+ * {@link TimingWheel}. A number of tasks remain pending during the benchmark, so that the cost of keeping tasks
+ * ordered is visible.
+ * <p>
+ * The benchmark is in the package of the pool to access the package-private {@link TimingWheel}. Run the benchmark
+ * with an increasing number of threads (option {@code -t}) to see the contention, see the script {@code run-jmh.sh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DisposeSchedulerBenchmark {
+
+    private static final Runnable TASK = () -> {
+    };
+
+    // Delay of scheduled tasks, long enough that no task runs during the benchmark.
+    private static final long DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+
+        /**
+         * The scheduler: either "executor" for a ScheduledThreadPoolExecutor, or "wheel" for a TimingWheel.
+         */
+        @Param({"executor", "wheel"})
+        public String scheduler;
+
+        /**
+         * The number of tasks pending during the benchmark.
+         */
+        @Param({"1000", "100000"})
+        public int pending;
+
+        public ScheduledThreadPoolExecutor executor;
+        public TimingWheel wheel;
+
+        private final List<ScheduledFuture<?>> pendingFutures = new ArrayList<>();
+        private final List<TimingWheel.Timeout> pendingTimeouts = new ArrayList<>();
+
+
+        @Setup
+        public void setup() {
+            this.executor = new ScheduledThreadPoolExecutor(1);
+            this.executor.setRemoveOnCancelPolicy(true);
+            if (this.scheduler.equals("wheel")) {
+                this.wheel = new TimingWheel(100, TimeUnit.MILLISECONDS, this.executor);
+            }
+
+            for (int i = 0; i < this.pending; i++) {
+                long delay = DELAY_MILLIS + i;
+                if (this.wheel != null) {
+                    this.pendingTimeouts.add(this.wheel.schedule(TASK, delay, TimeUnit.MILLISECONDS));
+                } else {
+                    this.pendingFutures.add(this.executor.schedule(TASK, delay, TimeUnit.MILLISECONDS));
+                }
+            }
+        }
+
+
+        @TearDown
+        public void tearDown() {
+            this.pendingFutures.forEach(future -> future.cancel(false));
+            this.pendingTimeouts.forEach(TimingWheel.Timeout::cancel);
+            if (this.wheel != null) {
+                this.wheel.stop();
+            }
+            this.executor.shutdownNow();
+        }
+    }
+
+
+    @Benchmark
+    public boolean testScheduleCancel(BenchmarkState state) {
+        if (state.wheel != null) {
+            TimingWheel.Timeout timeout = state.wheel.schedule(TASK, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            return timeout.cancel();
+        } else {
+            ScheduledFuture<?> future = state.executor.schedule(TASK, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            return future.cancel(false);
+        }
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(DisposeSchedulerBenchmark.class.getSimpleName())
+                .forks(1)
+                .syncIterations(true)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
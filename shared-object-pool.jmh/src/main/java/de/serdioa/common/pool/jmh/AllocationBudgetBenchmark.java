@@ -0,0 +1,161 @@
+package de.serdioa.common.pool.jmh;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import de.serdioa.common.pool.AbandonedTrackingMode;
+import de.serdioa.common.pool.ConcurrentSharedObjectPool;
+import de.serdioa.common.pool.DefaultPooledObjectFactory;
+import de.serdioa.common.pool.NoOpStackTraceProvider;
+import de.serdioa.common.pool.PooledObjectFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark enforcing the allocation budget of a pool hit in {@link ConcurrentSharedObjectPool#get(Object)}.
+ * <p>
+ * A hit allocates the shared object, a dispose handle and a phantom reference tracking the shared object, which
+ * is linked directly into a list of the entry. With compressed references these are 24 + 24 + 56 = 104 bytes.
+ * If abandoned shared objects are not tracked, a hit allocates only the shared object and a dispose handle,
+ * 24 + 24 = 48 bytes. All pooled objects are kept active, so that each call is a hit, and keys
+ * are boxed upfront. The shared object is a {@link CallbackSharedTestObject}, which allocates nothing except for
+ * itself, so the measured allocation is the allocation of the pool. Reflection-based shared objects such as
+ * {@link de.serdioa.common.pool.LockingSharedObject} add their own allocations on top of the budget.
+ * <p>
+ * Running {@link #main(String[])} runs the benchmark with the GC profiler, and fails if the normalized allocation rate
+ * exceeds the budget for the tracking mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AllocationBudgetBenchmark {
+
+    /**
+     * The allocation budget in bytes per a pool hit when all shared objects are tracked, including the shared object
+     * itself, with a small tolerance for the measurement.
+     */
+    public static final double BUDGET_BYTES_PER_OP = 112;
+
+    /**
+     * The allocation budget in bytes per a pool hit when shared objects are not tracked, including the shared object
+     * itself, with a small tolerance for the measurement.
+     */
+    public static final double UNTRACKED_BUDGET_BYTES_PER_OP = 56;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+
+        /**
+         * The number of objects in the pool.
+         */
+        @Param({"1", "1000"})
+        public int pooledObjectsCount;
+
+        /**
+         * The mode of tracking abandoned shared objects.
+         */
+        @Param({"FULL", "OFF"})
+        public AbandonedTrackingMode trackingMode;
+
+        /**
+         * The object pool.
+         */
+        public ConcurrentSharedObjectPool<Integer, SharedTestObject, TestObject> pool;
+
+        /**
+         * Boxed keys, so that the benchmark does not measure boxing of keys.
+         */
+        public Integer[] keys;
+
+        /**
+         * Shared objects which we hold permanently to keep them from disposal.
+         */
+        public SharedTestObject[] keepSharedObjects;
+
+
+        @Setup
+        public void setup() {
+            PooledObjectFactory<Integer, TestObject> pooledObjectFactory =
+                    new DefaultPooledObjectFactory.Builder<Integer, TestObject>()
+                            .setCreator(key -> new PooledTestObject())
+                            .build();
+
+            this.pool = new ConcurrentSharedObjectPool.Builder<Integer, SharedTestObject, TestObject>()
+                    .setPooledObjectFactory(pooledObjectFactory)
+                    .setSharedObjectFactory(CallbackSharedTestObject::new)
+                    .setStackTraceProvider(new NoOpStackTraceProvider())
+                    .setAbandonedTrackingMode(this.trackingMode)
+                    .build();
+
+            this.keys = new Integer[this.pooledObjectsCount];
+            this.keepSharedObjects = new SharedTestObject[this.pooledObjectsCount];
+            for (int i = 0; i < this.pooledObjectsCount; ++i) {
+                this.keys[i] = i;
+                this.keepSharedObjects[i] = this.pool.get(this.keys[i]);
+            }
+        }
+
+
+        @TearDown
+        public void tearDown() {
+            // Dispose of shared objects we are keeping.
+            for (int i = 0; i < this.keepSharedObjects.length; ++i) {
+                this.keepSharedObjects[i].dispose();
+            }
+
+            // Dispose of the pool.
+            this.pool.dispose();
+        }
+    }
+
+
+    @Benchmark
+    public SharedTestObject testGetHit(BenchmarkState state) {
+        Integer key = state.keys[ThreadLocalRandom.current().nextInt(state.pooledObjectsCount)];
+        SharedTestObject shared = state.pool.get(key);
+        shared.dispose();
+
+        return shared;
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(AllocationBudgetBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .build();
+
+        Collection<RunResult> results = new Runner(opt).run();
+        for (RunResult result : results) {
+            Result<?> allocation = result.getSecondaryResults().get("\u00b7gc.alloc.rate.norm");
+            if (allocation == null) {
+                allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            }
+            if (allocation == null) {
+                throw new IllegalStateException("The GC profiler did not report the allocation rate");
+            }
+            double budget = ("OFF".equals(result.getParams().getParam("trackingMode"))
+                    ? UNTRACKED_BUDGET_BYTES_PER_OP : BUDGET_BYTES_PER_OP);
+            if (allocation.getScore() > budget) {
+                throw new IllegalStateException("Allocation per pool hit (" + allocation.getScore()
+                        + " bytes) exceeds the budget (" + budget + " bytes) with parameters " + result.getParams());
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.serdioa.common.pool.jmh;
+
+import java.util.Objects;
+
+
+/**
+ * A hand-crafted implementation of the {@link SharedTestObject} invoking a dispose callback of the pool. Contrary
+ * to reflection-based shared objects, constructing this shared object allocates nothing except for the object itself,
+ * so it allows to measure allocations of the pool alone.
+ */
+public class CallbackSharedTestObject implements SharedTestObject {
+
+    // @GuardedBy(this)
+    private TestObject pooled;
+
+    private final Runnable disposeCallback;
+
+
+    public CallbackSharedTestObject(TestObject pooled, Runnable disposeCallback) {
+        synchronized (this) {
+            this.pooled = Objects.requireNonNull(pooled);
+        }
+        this.disposeCallback = Objects.requireNonNull(disposeCallback);
+    }
+
+
+    @Override
+    public synchronized void run(int tokens) {
+        if (this.pooled == null) {
+            throw new IllegalStateException("Shared object is already disposed of");
+        } else {
+            this.pooled.run(tokens);
+        }
+    }
+
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            if (this.pooled == null) {
+                throw new IllegalStateException("Shared object is already disposed of");
+            } else {
+                this.pooled = null;
+            }
+        }
+
+        // Invoke the pool callback outside of the synchronized block.
+        this.disposeCallback.run();
+    }
+
+
+    @Override
+    public synchronized boolean isDisposed() {
+        return (this.pooled == null);
+    }
+}
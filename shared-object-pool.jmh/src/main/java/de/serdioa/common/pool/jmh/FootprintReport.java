@@ -0,0 +1,157 @@
+package de.serdioa.common.pool.jmh;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Set;
+
+import de.serdioa.common.pool.AbandonedTrackingMode;
+import de.serdioa.common.pool.ConcurrentSharedObjectPool;
+import de.serdioa.common.pool.DefaultPooledObjectFactory;
+import de.serdioa.common.pool.NoOpStackTraceProvider;
+import de.serdioa.common.pool.PooledObjectFactory;
+import org.openjdk.jol.vm.VM;
+import org.openjdk.jol.vm.VirtualMachine;
+
+
+/**
+ * Reports the memory footprint of a {@link ConcurrentSharedObjectPool} measured with JOL: the number of bytes retained
+ * by the pool for each pooled object, and for each shared object provided by the pool. Pooled objects and shared
+ * objects themselves are not included, only the bookkeeping of the pool.
+ * <p>
+ * The footprint is measured by walking the object graph reachable from the entries of the pool, and from the leases
+ * of shared objects if they are tracked with leases, in three states: with
+ * no pooled objects, with {@link #KEYS} pooled objects, and with {@link #SHARED_OBJECTS} shared objects provided for
+ * these pooled objects. The walk does not enter the pool itself, pooled objects, shared objects, the reference queue
+ * and threads. Run {@link #main(String[])}, for example with
+ * {@code java -cp target/benchmarks.jar de.serdioa.common.pool.jmh.FootprintReport}.
+ */
+public class FootprintReport {
+
+    /**
+     * The number of pooled objects.
+     */
+    public static final int KEYS = 10_000;
+
+    /**
+     * The number of shared objects provided for the pooled objects.
+     */
+    public static final int SHARED_OBJECTS = 100_000;
+
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        System.out.println(VM.current().details());
+        System.out.println(String.format(Locale.ROOT, "%-10s %20s %20s", "tracking", "bytes/pooled object",
+                "bytes/shared object"));
+        for (AbandonedTrackingMode trackingMode : AbandonedTrackingMode.values()) {
+            report(trackingMode);
+        }
+    }
+
+
+    private static void report(AbandonedTrackingMode trackingMode) throws ReflectiveOperationException {
+        PooledObjectFactory<Integer, TestObject> pooledObjectFactory =
+                new DefaultPooledObjectFactory.Builder<Integer, TestObject>()
+                        .setCreator(key -> new PooledTestObject())
+                        .build();
+
+        ConcurrentSharedObjectPool<Integer, SharedTestObject, TestObject> pool =
+                new ConcurrentSharedObjectPool.Builder<Integer, SharedTestObject, TestObject>()
+                        .setPooledObjectFactory(pooledObjectFactory)
+                        .setSharedObjectFactory(CallbackSharedTestObject::new)
+                        .setStackTraceProvider(new NoOpStackTraceProvider())
+                        .setAbandonedTrackingMode(trackingMode)
+                        .setDisposeUnused(false)
+                        .build();
+        try {
+            Field entriesField = ConcurrentSharedObjectPool.class.getDeclaredField("entries");
+            Field leasesField = ConcurrentSharedObjectPool.class.getDeclaredField("leases");
+            Object[] roots = {
+                VM.current().getObject(pool, VM.current().fieldOffset(entriesField)),
+                VM.current().getObject(pool, VM.current().fieldOffset(leasesField))
+            };
+
+            Integer[] keys = new Integer[KEYS];
+            for (int i = 0; i < KEYS; ++i) {
+                keys[i] = i;
+            }
+            long empty = footprint(roots, pool);
+
+            for (int i = 0; i < KEYS; ++i) {
+                pool.get(keys[i]).dispose();
+            }
+            long withPooledObjects = footprint(roots, pool);
+
+            SharedTestObject[] sharedObjects = new SharedTestObject[SHARED_OBJECTS];
+            for (int i = 0; i < SHARED_OBJECTS; ++i) {
+                sharedObjects[i] = pool.get(keys[i % KEYS]);
+            }
+            long withSharedObjects = footprint(roots, pool);
+
+            double perPooledObject = (double) (withPooledObjects - empty) / KEYS;
+            double perSharedObject = (double) (withSharedObjects - withPooledObjects) / SHARED_OBJECTS;
+            System.out.println(String.format(Locale.ROOT, "%-10s %20.1f %20.1f", trackingMode, perPooledObject,
+                    perSharedObject));
+
+            for (SharedTestObject sharedObject : sharedObjects) {
+                sharedObject.dispose();
+            }
+        } finally {
+            pool.dispose();
+        }
+    }
+
+
+    // Returns the total size of objects reachable from the root, not entering the boundary objects.
+    private static long footprint(Object root, Object pool) {
+        VirtualMachine vm = VM.current();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        long size = 0;
+        while (!pending.isEmpty()) {
+            Object obj = pending.pop();
+            if (obj == pool || isBoundary(obj) || !visited.add(obj)) {
+                continue;
+            }
+            size += vm.sizeOf(obj);
+
+            Class<?> type = obj.getClass();
+            if (type.isArray()) {
+                if (!type.getComponentType().isPrimitive()) {
+                    for (Object element : (Object[]) obj) {
+                        if (element != null) {
+                            pending.push(element);
+                        }
+                    }
+                }
+                continue;
+            }
+
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    Object value = vm.getObject(obj, vm.fieldOffset(field));
+                    if (value != null) {
+                        pending.push(value);
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+
+    private static boolean isBoundary(Object obj) {
+        return (obj instanceof TestObject || obj instanceof ReferenceQueue || obj instanceof Thread
+                || obj instanceof Class || obj instanceof ClassLoader);
+    }
+}
@@ -0,0 +1,108 @@
+package de.serdioa.common.pool.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import de.serdioa.common.pool.ConcurrentSharedObjectPool;
+import de.serdioa.common.pool.DefaultPooledObjectFactory;
+import de.serdioa.common.pool.LockingSharedObject;
+import de.serdioa.common.pool.NoOpStackTraceProvider;
+import de.serdioa.common.pool.PooledObjectFactory;
+import de.serdioa.common.pool.SharedObjectFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for getting and disposing of shared objects with the same key from many threads in
+ * {@link ConcurrentSharedObjectPool}, comparing a single atomic counter with a striped counter for hot keys.
+ * <p>
+ * Run the benchmark with an increasing number of threads (option {@code -t}) to see the scaling curve, see the script
+ * {@code run-jmh.sh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HotKeyBenchmark {
+
+    private static final Integer KEY = 0;
+
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+
+        /**
+         * Is the key configured as a hot key, that is is the number of shared objects kept in a striped counter?
+         */
+        @Param({"false", "true"})
+        public boolean hotKey;
+
+        /**
+         * The object pool.
+         */
+        public ConcurrentSharedObjectPool<Integer, SharedTestObject, TestObject> pool;
+
+        /**
+         * Shared object which we hold permanently to keep the pooled object from disposal, so that the benchmark
+         * measures only acquiring and releasing shared objects.
+         */
+        public SharedTestObject keepSharedObject;
+
+
+        @Setup
+        public void setup() {
+            PooledObjectFactory<Integer, TestObject> pooledObjectFactory =
+                    new DefaultPooledObjectFactory.Builder<Integer, TestObject>()
+                            .setCreator(key -> new PooledTestObject())
+                            .build();
+            SharedObjectFactory<TestObject, SharedTestObject> sharedObjectFactory =
+                    LockingSharedObject.factory(SharedTestObject.class);
+
+            final boolean hot = this.hotKey;
+            this.pool = new ConcurrentSharedObjectPool.Builder<Integer, SharedTestObject, TestObject>()
+                    .setPooledObjectFactory(pooledObjectFactory)
+                    .setSharedObjectFactory(sharedObjectFactory)
+                    .setStackTraceProvider(new NoOpStackTraceProvider())
+                    .setHotKeys(key -> hot)
+                    .build();
+
+            this.keepSharedObject = this.pool.get(KEY);
+        }
+
+
+        @TearDown
+        public void tearDown() {
+            this.keepSharedObject.dispose();
+            this.pool.dispose();
+        }
+    }
+
+
+    @Benchmark
+    public SharedTestObject testGet(BenchmarkState state) {
+        SharedTestObject shared = state.pool.get(KEY);
+        shared.dispose();
+
+        return shared;
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(HotKeyBenchmark.class.getSimpleName())
+                .forks(1)
+                .syncIterations(true)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -36,6 +36,8 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
  * <li>"reflection-sync": a reflection-based shared object implemented using synchronization.
  * <li>"locking": a hand-crafted shared object implemented using read-write locks.
  * <li>"reflection-locking": a reflection-based shared object implemented using read-write locks.
+ * <li>"generated": a shared object implemented using read-write locks, generated at compile time by the annotation
+ * processor.
  * </ul></p>
  * <p>
  * <strong>Tokens</strong>: the number of CPU tokens consumed by the test object implementation to simulate some work.
@@ -59,7 +61,7 @@ public class SharedObjectBenchmark {
     // Abstract base class for the test state.
     public static abstract class AbstractState {
 
-        @Param({"pooled", "locking", "sync", "reflection-locking", "reflection-sync"})
+        @Param({"pooled", "locking", "sync", "reflection-locking", "reflection-sync", "generated"})
         public String type;
 
         @Param({"true", "false"})
@@ -105,6 +107,10 @@ public class SharedObjectBenchmark {
                     return LockingSharedObject.factory(SharedTestObject.class)
                             .createShared(effectivePooledObject, () -> {
                             });
+                case "generated":
+                    return GeneratedSharedTestObject.<TestObject>factory()
+                            .createShared(effectivePooledObject, () -> {
+                            });
                 default:
                     throw new IllegalArgumentException("Unexpected type of the shared counter: " + this.type);
             }
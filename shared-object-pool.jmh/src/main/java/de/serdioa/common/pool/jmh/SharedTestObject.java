@@ -1,11 +1,13 @@
 package de.serdioa.common.pool.jmh;
 
+import de.serdioa.common.pool.GenerateSharedObject;
 import de.serdioa.common.pool.SharedObject;
 
 
 /**
  * A shared wrapper for a test object provided by an object pool.
  */
+@GenerateSharedObject
 public interface SharedTestObject extends TestObject, SharedObject {
 
 }
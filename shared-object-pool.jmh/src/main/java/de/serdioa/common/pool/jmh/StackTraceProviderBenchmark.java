@@ -6,6 +6,7 @@ import de.serdioa.common.pool.NoOpStackTraceProvider;
 import de.serdioa.common.pool.SecurityManagerStackTraceProvider;
 import de.serdioa.common.pool.StackTrace;
 import de.serdioa.common.pool.StackTraceProvider;
+import de.serdioa.common.pool.StackWalkerStackTraceProvider;
 import de.serdioa.common.pool.ThrowableStackTraceProvider;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -23,16 +24,20 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 /**
  * Benchmark for {@link StackTradeProvider}.
+ * <p>
+ * The benchmark measures only capturing a stack trace. The {@link StackWalkerStackTraceProvider} resolves stack trace
+ * elements lazily, so its cost of providing a stack trace for a warning about an abandoned shared object is measured
+ * separately by {@link #testStackTraceString()}.
  */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.NANOSECONDS)
 @State(Scope.Benchmark)
 public class StackTraceProviderBenchmark {
 
-    @Param({"noop", "sec", "throwable"})
+    @Param({"noop", "sec", "throwable", "walker", "walker-interned"})
     public String type;
 
-    @Param({"0", "1", "10", "20"})
+    @Param({"0", "1", "10", "20", "100"})
     public int level;
 
     private StackTraceProvider provider;
@@ -50,6 +55,13 @@ public class StackTraceProviderBenchmark {
             case "throwable":
                 this.provider = new ThrowableStackTraceProvider();
                 break;
+            case "walker":
+                this.provider = new StackWalkerStackTraceProvider();
+                break;
+            case "walker-interned":
+                this.provider =
+                        new StackWalkerStackTraceProvider(StackWalkerStackTraceProvider.DEFAULT_MAX_FRAMES, true);
+                break;
             default:
                 throw new IllegalArgumentException("Unexpected type of the stack trace provider: " + this.type);
         }
@@ -62,6 +74,12 @@ public class StackTraceProviderBenchmark {
     }
 
 
+    @Benchmark
+    public String testStackTraceString() {
+        return this.deep(this.level).toString();
+    }
+
+
     // A recursive method to create a realistic deep stack trace.
     private StackTrace deep(int level) {
         if (level == 0) {
@@ -0,0 +1,40 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * Modes of tracking shared objects which are abandoned by clients without being disposed of. A tracked shared object
+ * is registered with a phantom reference, so that the pool detects when the shared object is claimed by the GC, logs
+ * a warning with the stack trace of the allocation and releases the shared object. Each live phantom reference adds
+ * to the reference processing time of the GC. Alternatively, shared objects may be tracked with leases, see
+ * {@link #LEASE}.
+ */
+public enum AbandonedTrackingMode {
+    /**
+     * Shared objects are not tracked. Abandoned shared objects are not detected, and pooled objects backing them are
+     * never disposed of.
+     */
+    OFF,
+
+    /**
+     * The first shared object for each key and then one in the configured sample rate of shared objects for the same
+     * key are tracked. Abandoned shared objects are detected statistically, and only tracked abandoned shared objects
+     * are released.
+     */
+    SAMPLED,
+
+    /**
+     * All shared objects are tracked.
+     */
+    FULL,
+
+    /**
+     * All shared objects are tracked with a renewable lease instead of a phantom reference. The lease of a shared
+     * object is renewed when the client calls {@link SharedObject#renewLease()}, and by shared objects created by
+     * {@link LockingSharedObject} and {@link SynchronizedSharedObject} on each method call. A background sweep releases
+     * shared objects whose lease has not been renewed for the lease time, logging a warning with the stack trace
+     * of the allocation. Abandoned shared objects are detected independently of when the GC runs, but shared objects
+     * which are held without being used for longer than the lease time are released as well, so clients which keep
+     * shared objects idle for a long time shall renew their leases periodically.
+     */
+    LEASE
+}
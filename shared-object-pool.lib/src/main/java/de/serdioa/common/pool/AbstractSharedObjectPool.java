@@ -1,14 +1,11 @@
 package de.serdioa.common.pool;
 
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,11 +46,42 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
     // shortly afterwards.
     protected final long idleDisposeTimeMillis;
 
-    // The executor service for running disposals.
+    // The runtime running background threads of this pool.
+    protected final SharedObjectPoolRuntime runtime;
+
+    // Is the runtime owned by this pool, that is has it been created by this pool, and shall be disposed of together
+    // with this pool? A runtime shared with other pools is not disposed of.
+    private final boolean ownsRuntime;
+
+    // The executor service for running disposals, or null if pooled objects are disposed of synchronously.
     private final ScheduledExecutorService disposeExecutor;
 
-    // Statistics listeners.
-    private final List<SharedObjectPoolStatsListener> statsListeners = new CopyOnWriteArrayList<>();
+    // The timing wheel for scheduling disposals of idle pooled objects on the dispose executor, or null if idle pooled
+    // objects are disposed of immediately.
+    private final TimingWheel disposeWheel;
+
+    // Recently seen invalid keys, or null if invalid keys are not remembered.
+    private final InvalidKeyCache<K> invalidKeyCache;
+
+    // Per-key circuit breaker for initializing pooled objects, or null if repeated failures do not open a circuit.
+    private final InitializationCircuitBreaker<K> circuitBreaker;
+
+    // The current phase of shutting down this pool.
+    private volatile ShutdownPhase shutdownPhase = ShutdownPhase.NOT_STARTED;
+
+    // The number of pooled objects abandoned because they could not be disposed of before the shutdown deadline.
+    private final LongAdder abandonedOnShutdownCount = new LongAdder();
+
+    // The estimated number of shared objects abandoned by clients without being disposed of.
+    private final LongAdder abandonedSharedObjectsCount = new LongAdder();
+
+    // Statistics listeners. The array is replaced as a whole when listeners are added or removed, so that notifying
+    // listeners on each access to the pool does not allocate an iterator.
+    // @GuardedBy(statsListenersMonitor) for modifications
+    private volatile SharedObjectPoolStatsListener[] statsListeners = new SharedObjectPoolStatsListener[0];
+
+    // The synchronization lock for modifying statistics listeners.
+    private final Object statsListenersMonitor = new Object();
 
 
     protected AbstractSharedObjectPool(final String name,
@@ -61,7 +89,14 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
             SharedObjectFactory<P, S> sharedObjectFactory,
             boolean disposeUnused,
             long idleDisposeTimeMillis,
-            int disposeThreads) {
+            int disposeThreads,
+            boolean asyncDispose,
+            SharedObjectPoolRuntime runtime,
+            int invalidKeyCacheSize,
+            long invalidKeyCacheTtlMillis,
+            int circuitBreakerFailureThreshold,
+            long circuitBreakerBackoffMillis,
+            long circuitBreakerMaxBackoffMillis) {
 
         this.name = (name != null ? name : this.getClass().getSimpleName() + '-' + NAME_COUNTER.getAndIncrement());
         this.pooledObjectFactory = Objects.requireNonNull(pooledObjectFactory);
@@ -69,25 +104,44 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
 
         this.disposeUnused = disposeUnused;
         this.idleDisposeTimeMillis = idleDisposeTimeMillis;
-        this.disposeExecutor = this.buildDisposeExecutor(disposeThreads);
+        this.ownsRuntime = (runtime == null);
+        this.runtime = (runtime != null ? runtime : this.buildRuntime(disposeThreads, asyncDispose));
+        if (this.idleDisposeTimeMillis > 0 || asyncDispose) {
+            this.disposeExecutor = this.runtime.startDisposeExecutor();
+            this.disposeWheel = (idleDisposeTimeMillis > 0
+                    ? this.runtime.startDisposeWheel(disposeTickMillis(idleDisposeTimeMillis))
+                    : null);
+        } else {
+            // Synchronous disposal is configured, no executor is required.
+            this.disposeExecutor = null;
+            this.disposeWheel = null;
+        }
+        this.invalidKeyCache = (invalidKeyCacheSize > 0
+                ? new InvalidKeyCache<>(invalidKeyCacheSize, invalidKeyCacheTtlMillis, TimeUnit.MILLISECONDS)
+                : null);
+        this.circuitBreaker = (circuitBreakerFailureThreshold > 0
+                ? new InitializationCircuitBreaker<>(circuitBreakerFailureThreshold, circuitBreakerBackoffMillis,
+                        circuitBreakerMaxBackoffMillis, TimeUnit.MILLISECONDS)
+                : null);
     }
 
 
-    private ScheduledExecutorService buildDisposeExecutor(int disposeThreads) {
-        if (this.idleDisposeTimeMillis > 0) {
-            if (disposeThreads <= 0) {
-                throw new IllegalArgumentException("idleDisposeTimeMillis (" + this.idleDisposeTimeMillis + " > 0, "
-                        + "but disposeThreads (" + disposeThreads + ") <= 0");
-            }
-
-            ThreadFactory threadFactory = new DisposeExecutorThreadFactory(this.name);
-            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(disposeThreads, threadFactory);
-            executor.setRemoveOnCancelPolicy(true);
-            return executor;
-        } else {
-            // Synchronous disposal is configured, no executor is required.
-            return null;
+    // Build the own runtime of this pool, if no shared runtime is configured. The runtime is named after this pool,
+    // so that background threads are named after this pool as well.
+    private SharedObjectPoolRuntime buildRuntime(int disposeThreads, boolean asyncDispose) {
+        if ((this.idleDisposeTimeMillis > 0 || asyncDispose) && disposeThreads <= 0) {
+            throw new IllegalArgumentException("idleDisposeTimeMillis (" + this.idleDisposeTimeMillis + ") > 0 "
+                    + "or asyncDispose, but disposeThreads (" + disposeThreads + ") <= 0");
         }
+        return new SharedObjectPoolRuntime(this.name, 1, disposeThreads);
+    }
+
+
+    // The tick of the timing wheel for disposals. Idle pooled objects are disposed of up to one tick late, so the tick
+    // is a small fraction of the idle time, but not shorter than 1 ms to avoid waking up the dispose executor too
+    // often, and not longer than 100 ms.
+    private static long disposeTickMillis(long idleDisposeTimeMillis) {
+        return Math.max(1, Math.min(100, idleDisposeTimeMillis / 64));
     }
 
 
@@ -97,16 +151,92 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
 
 
     public void dispose() {
-        // If a disposal executor exist (that is, if an asynchronous disposal was configured), stop the executor
-        // without waiting for disposal tasks.
-        if (this.disposeExecutor != null) {
-            this.disposeExecutor.shutdownNow();
+        // If this pool owns the runtime, stop background threads without waiting for disposal tasks. A shared runtime
+        // keeps running, disposal tasks of this pool which are still pending skip themselves once this pool
+        // is terminated.
+        if (this.ownsRuntime) {
+            this.runtime.dispose();
         }
+
+        this.enterShutdownPhase(ShutdownPhase.TERMINATED);
+    }
+
+
+    // Pool implementations call this method when shutting down the pool enters the next phase.
+    protected void enterShutdownPhase(ShutdownPhase phase) {
+        this.shutdownPhase = phase;
+        this.fireShutdownPhase(phase, this.getPooledObjectsCount());
+    }
+
+
+    // Pool implementations call this method when a pooled object is abandoned without being disposed of, because
+    // it could not be disposed of before the shutdown deadline.
+    protected void abandonedOnShutdown(K key) {
+        this.abandonedOnShutdownCount.increment();
+        this.firePooledObjectAbandoned(key);
+    }
+
+
+    // Pool implementations call this method when a shared object abandoned by a client has been detected. The weight
+    // is the estimated number of abandoned shared objects represented by the detected one, if shared objects
+    // are sampled.
+    protected void sharedObjectAbandoned(long weight) {
+        this.abandonedSharedObjectsCount.add(weight);
     }
 
 
     protected P createPooledObject(K key) throws InvalidKeyException {
-        return this.pooledObjectFactory.create(key);
+        try {
+            return this.pooledObjectFactory.create(key);
+        } catch (InvalidKeyException ex) {
+            if (this.invalidKeyCache != null) {
+                this.invalidKeyCache.put(key, ex);
+            }
+            throw ex;
+        }
+    }
+
+
+    // Reject the specified key with a cached exception, if the key has been recently found to be invalid. Pool
+    // implementations call this method before creating a new pooled object, so that a recently seen invalid key
+    // requires neither a call to the pooled object factory, nor an insertion into the pool.
+    protected void rejectInvalidKey(K key) throws InvalidKeyException {
+        if (this.invalidKeyCache != null) {
+            InvalidKeyException cachedException = this.invalidKeyCache.get(key);
+            if (cachedException != null) {
+                throw cachedException;
+            }
+        }
+    }
+
+
+    // Reject the specified key if the circuit for the key is open because initializing pooled objects for the key
+    // repeatedly failed. Pool implementations call this method before creating a new pooled object, so that callers
+    // fail fast without hammering an unavailable upstream source.
+    protected void rejectOpenCircuit(K key) throws InitializationException {
+        if (this.circuitBreaker != null) {
+            this.circuitBreaker.checkClosed(key);
+        }
+    }
+
+
+    // Pool implementations call this method after successfully initializing a pooled object, outside of any locks.
+    protected void initializationSucceeded(K key) {
+        if (this.circuitBreaker != null && this.circuitBreaker.onSuccess(key)) {
+            this.fireInitializationCircuitClosed(key);
+        }
+    }
+
+
+    // Pool implementations call this method after failing to initialize a pooled object, outside of any locks.
+    // Cancelled initializations are not failures and shall not be reported.
+    protected void initializationFailed(K key, Throwable ex) {
+        if (this.circuitBreaker != null) {
+            long backoffNanos = this.circuitBreaker.onFailure(key, ex);
+            if (backoffNanos > 0) {
+                this.fireInitializationCircuitOpened(key, backoffNanos);
+            }
+        }
     }
 
 
@@ -125,23 +255,119 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
     }
 
 
-    protected ScheduledFuture<?> scheduleDisposeTask(Runnable command, long delay, TimeUnit unit) {
-        return this.disposeExecutor.schedule(command, delay, unit);
+    // Schedule a disposal of an idle pooled object. Idle pooled objects which are used again before the delay expires
+    // cancel the task, which is frequent for keys flapping between idle and active. The timing wheel makes both
+    // scheduling and cancelling O(1) without any global lock.
+    protected TimingWheel.Timeout scheduleDisposeTask(Runnable command, long delay, TimeUnit unit) {
+        return this.disposeWheel.schedule(this.unlessTerminated(command), delay, unit);
+    }
+
+
+    // Run a disposal on the dispose executor instead of the calling thread. Pool implementations call this method
+    // when the asynchronous disposal is configured, so that releasing the last shared object does not block on
+    // disposing of the pooled object.
+    protected void executeDisposeTask(Runnable command) {
+        this.disposeExecutor.execute(this.unlessTerminated(command));
+    }
+
+
+    // Tasks running on a shared runtime may outlive this pool, so they shall do nothing once this pool is terminated.
+    // Tasks running on the own runtime are dropped when this pool is disposed of.
+    private Runnable unlessTerminated(Runnable command) {
+        if (this.ownsRuntime) {
+            return command;
+        }
+        return () -> {
+            if (this.shutdownPhase != ShutdownPhase.TERMINATED) {
+                command.run();
+            }
+        };
     }
 
 
     public abstract int getSharedObjectsCount(K key);
 
 
+    @Override
+    public long getInvalidKeyCacheHitCount() {
+        return (this.invalidKeyCache != null ? this.invalidKeyCache.getHitCount() : 0);
+    }
+
+
+    @Override
+    public long getInvalidKeyCacheMissCount() {
+        return (this.invalidKeyCache != null ? this.invalidKeyCache.getMissCount() : 0);
+    }
+
+
+    @Override
+    public int getOpenCircuitsCount() {
+        return (this.circuitBreaker != null ? this.circuitBreaker.getOpenCount() : 0);
+    }
+
+
+    @Override
+    public long getOpenCircuitRejectedCount() {
+        return (this.circuitBreaker != null ? this.circuitBreaker.getRejectedCount() : 0);
+    }
+
+
+    @Override
+    public ShutdownPhase getShutdownPhase() {
+        return this.shutdownPhase;
+    }
+
+
+    @Override
+    public long getAbandonedOnShutdownCount() {
+        return this.abandonedOnShutdownCount.sum();
+    }
+
+
+    @Override
+    public long getAbandonedSharedObjectsCount() {
+        return this.abandonedSharedObjectsCount.sum();
+    }
+
+
+    @Override
+    public int getReaperBacklog() {
+        return this.runtime.getReaperBacklog();
+    }
+
+
+    @Override
+    public long getReaperLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.runtime.getReaperLagNanos());
+    }
+
+
     @Override
     public void addSharedObjectPoolStatsListener(SharedObjectPoolStatsListener listener) {
-        this.statsListeners.add(listener);
+        synchronized (this.statsListenersMonitor) {
+            SharedObjectPoolStatsListener[] listeners = Arrays.copyOf(this.statsListeners,
+                    this.statsListeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            this.statsListeners = listeners;
+        }
     }
 
 
     @Override
     public void removeSharedObjectPoolStatsListener(SharedObjectPoolStatsListener listener) {
-        this.statsListeners.remove(listener);
+        synchronized (this.statsListenersMonitor) {
+            SharedObjectPoolStatsListener[] listeners = this.statsListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                if (Objects.equals(listeners[i], listener)) {
+                    SharedObjectPoolStatsListener[] updatedListeners =
+                            new SharedObjectPoolStatsListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, updatedListeners, 0, i);
+                    System.arraycopy(listeners, i + 1, updatedListeners, i, listeners.length - i - 1);
+                    this.statsListeners = updatedListeners;
+                    return;
+                }
+            }
+        }
     }
 
 
@@ -189,22 +415,47 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
     }
 
 
-    private static final class DisposeExecutorThreadFactory implements ThreadFactory {
-
-        private final String name;
-        private final AtomicInteger counter = new AtomicInteger();
+    protected void fireInitializationCircuitOpened(Object key, long backoffNanos) {
+        for (SharedObjectPoolStatsListener listener : this.statsListeners) {
+            try {
+                listener.onInitializationCircuitOpened(key, backoffNanos);
+            } catch (Exception ex) {
+                this.logger.error("Exception when calling listener onInitializationCircuitOpened()", ex);
+            }
+        }
+    }
 
 
-        public DisposeExecutorThreadFactory(String name) {
-            this.name = Objects.requireNonNull(name);
+    protected void fireInitializationCircuitClosed(Object key) {
+        for (SharedObjectPoolStatsListener listener : this.statsListeners) {
+            try {
+                listener.onInitializationCircuitClosed(key);
+            } catch (Exception ex) {
+                this.logger.error("Exception when calling listener onInitializationCircuitClosed()", ex);
+            }
         }
+    }
 
 
-        @Override
-        public Thread newThread(Runnable r) {
-            return new Thread(r, this.name + "-disposer-" + counter.getAndIncrement());
+    protected void fireShutdownPhase(ShutdownPhase phase, int pooledObjectsCount) {
+        for (SharedObjectPoolStatsListener listener : this.statsListeners) {
+            try {
+                listener.onShutdownPhase(phase, pooledObjectsCount);
+            } catch (Exception ex) {
+                this.logger.error("Exception when calling listener onShutdownPhase()", ex);
+            }
         }
+    }
 
+
+    protected void firePooledObjectAbandoned(Object key) {
+        for (SharedObjectPoolStatsListener listener : this.statsListeners) {
+            try {
+                listener.onPooledObjectAbandoned(key);
+            } catch (Exception ex) {
+                this.logger.error("Exception when calling listener onPooledObjectAbandoned()", ex);
+            }
+        }
     }
 
 
@@ -232,9 +483,40 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
         // are configured.
         protected int disposeThreads;
 
+        // The runtime running background threads, which may be shared by multiple pools. If a runtime is set,
+        // the pool uses threads of the runtime, and disposeThreads is ignored.
+        // By default each pool has its own runtime with disposeThreads threads.
+        protected SharedObjectPoolRuntime runtime;
+
         // Provide stack trace for tracking allocation of abandoned shared objects.
         protected StackTraceProvider stackTraceProvider = new NoOpStackTraceProvider();
 
+        // The maximal number of recently seen invalid keys to remember. A key is invalid if creating a pooled object
+        // for it throws an InvalidKeyException. A remembered invalid key is rejected with the same exception without
+        // calling the pooled object factory again. Non-positive number means invalid keys are not remembered.
+        // By default invalid keys are not remembered.
+        protected int invalidKeyCacheSize;
+
+        // Duration in milliseconds to remember an invalid key. If a key may become valid later, for example when
+        // reference data is updated, the duration limits how long the key is still rejected.
+        // By default 60 seconds.
+        protected long invalidKeyCacheTtlMillis = 60_000;
+
+        // The number of consecutive failures to initialize a pooled object for a key which opens the circuit for
+        // the key. While the circuit is open, attempts to get a shared object for the key fail fast with
+        // an InitializationException. Non-positive number means repeated failures do not open a circuit.
+        // By default repeated failures do not open a circuit.
+        protected int circuitBreakerFailureThreshold;
+
+        // Duration in milliseconds to keep the circuit open when it opens first time. Each time a probe let through
+        // after the backoff fails, the duration doubles up to circuitBreakerMaxBackoffMillis.
+        // By default 1 second.
+        protected long circuitBreakerBackoffMillis = 1000;
+
+        // The maximal duration in milliseconds to keep the circuit open.
+        // By default 60 seconds.
+        protected long circuitBreakerMaxBackoffMillis = 60_000;
+
 
         public SELF setName(String name) {
             this.name = name;
@@ -272,12 +554,48 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
         }
 
 
+        public SELF setRuntime(SharedObjectPoolRuntime runtime) {
+            this.runtime = runtime;
+            return self();
+        }
+
+
         public SELF setStackTraceProvider(StackTraceProvider stackTraceProvider) {
             this.stackTraceProvider = stackTraceProvider;
             return self();
         }
 
 
+        public SELF setInvalidKeyCacheSize(int invalidKeyCacheSize) {
+            this.invalidKeyCacheSize = invalidKeyCacheSize;
+            return self();
+        }
+
+
+        public SELF setInvalidKeyCacheTtlMillis(long invalidKeyCacheTtlMillis) {
+            this.invalidKeyCacheTtlMillis = invalidKeyCacheTtlMillis;
+            return self();
+        }
+
+
+        public SELF setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+            this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+            return self();
+        }
+
+
+        public SELF setCircuitBreakerBackoffMillis(long circuitBreakerBackoffMillis) {
+            this.circuitBreakerBackoffMillis = circuitBreakerBackoffMillis;
+            return self();
+        }
+
+
+        public SELF setCircuitBreakerMaxBackoffMillis(long circuitBreakerMaxBackoffMillis) {
+            this.circuitBreakerMaxBackoffMillis = circuitBreakerMaxBackoffMillis;
+            return self();
+        }
+
+
         @SuppressWarnings("unchecked")
         protected SELF self() {
             return (SELF) this;
@@ -309,14 +627,30 @@ public abstract class AbstractSharedObjectPool<K, S extends SharedObject, P>
             }
 
             // If idleDisposeTimeMillis > 0, that is a postponed disposal is requested, the number of dispose threads
-            // must be > 0.
-            if (this.idleDisposeTimeMillis > 0 && this.disposeThreads <= 0) {
+            // must be > 0, unless threads of a shared runtime are used.
+            if (this.idleDisposeTimeMillis > 0 && this.disposeThreads <= 0 && this.runtime == null) {
                 throw new IllegalStateException("idleDisposeTimeMillis (" + this.idleDisposeTimeMillis + ") > 0, "
                         + "but disposeThreads (" + this.disposeThreads + ") <= 0");
             }
             if (this.stackTraceProvider == null) {
                 throw new IllegalStateException("stackTraceProvider is required");
             }
+            if (this.invalidKeyCacheSize > 0 && this.invalidKeyCacheTtlMillis <= 0) {
+                throw new IllegalStateException("invalidKeyCacheSize (" + this.invalidKeyCacheSize + ") > 0, "
+                        + "but invalidKeyCacheTtlMillis (" + this.invalidKeyCacheTtlMillis + ") <= 0");
+            }
+            if (this.circuitBreakerFailureThreshold > 0) {
+                if (this.circuitBreakerBackoffMillis <= 0) {
+                    throw new IllegalStateException("circuitBreakerFailureThreshold ("
+                            + this.circuitBreakerFailureThreshold + ") > 0, but circuitBreakerBackoffMillis ("
+                            + this.circuitBreakerBackoffMillis + ") <= 0");
+                }
+                if (this.circuitBreakerMaxBackoffMillis < this.circuitBreakerBackoffMillis) {
+                    throw new IllegalStateException("circuitBreakerMaxBackoffMillis ("
+                            + this.circuitBreakerMaxBackoffMillis + ") < circuitBreakerBackoffMillis ("
+                            + this.circuitBreakerBackoffMillis + ")");
+                }
+            }
         }
     }
 }
@@ -0,0 +1,232 @@
+package de.serdioa.common.pool;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * An adaptive policy choosing for each key how long to keep an idle pooled object before disposing of it.
+ * <p>
+ * For each key the policy tracks recent reuse gaps, that is durations from the moment a pooled object became idle
+ * until a shared object for the same key has been requested again, and the measured cost to create, to initialize
+ * and to dispose of a pooled object for the key. Keeping an idle pooled object costs a user-supplied keep-alive cost
+ * per second. Disposing of it costs the re-creation, if the key is requested again. The policy chooses the idle time
+ * which minimizes the total cost over the recent reuse gaps: keys which come back shortly are kept long enough to be
+ * reused, while cold keys, or keys which are cheap to re-create, are disposed of early.
+ * <p>
+ * For a key without any reuse gaps yet, the idle time is the break-even time, when the keep-alive cost reaches
+ * the re-creation cost. The idle time never exceeds the configured maximal idle time.
+ * <p>
+ * Statistics of keys whose pooled objects have been disposed of are kept for a limited number of keys, so that
+ * the reuse gap can be measured when the key is requested again. When the limit is reached, statistics of the keys
+ * disposed of first are discarded.
+ *
+ * @param <K> the type of keys.
+ */
+class AdaptiveIdlePolicy<K> {
+
+    // The number of recent reuse gaps remembered for each key.
+    private static final int GAPS = 16;
+
+    // The weight of a new measurement in exponentially weighted moving averages of costs.
+    private static final double ALPHA = 0.25;
+
+    // The cost in nanoseconds of keeping an idle pooled object for one second.
+    private final double keepAliveCostNanosPerSecond;
+
+    // The maximal idle time in milliseconds.
+    private final long maxIdleTimeMillis;
+
+    // The maximal number of keys whose statistics are kept after their pooled objects have been disposed of.
+    private final int maxDisposedKeys;
+
+    // Statistics of keys whose pooled objects have been disposed of.
+    private final ConcurrentMap<K, KeyStats> disposedKeys = new ConcurrentHashMap<>();
+
+    // Keys in the order their pooled objects have been disposed of, to discard the oldest statistics first. A key
+    // which is disposed of again after being requested may be in the queue more than once, which only causes its
+    // statistics to be discarded somewhat earlier.
+    private final Queue<K> disposeOrder = new ConcurrentLinkedQueue<>();
+
+
+    AdaptiveIdlePolicy(long keepAliveCostNanosPerSecond, long maxIdleTimeMillis, int maxDisposedKeys) {
+        if (keepAliveCostNanosPerSecond <= 0) {
+            throw new IllegalArgumentException("keepAliveCostNanosPerSecond (" + keepAliveCostNanosPerSecond
+                    + ") <= 0");
+        }
+        if (maxIdleTimeMillis <= 0) {
+            throw new IllegalArgumentException("maxIdleTimeMillis (" + maxIdleTimeMillis + ") <= 0");
+        }
+
+        this.keepAliveCostNanosPerSecond = keepAliveCostNanosPerSecond;
+        this.maxIdleTimeMillis = maxIdleTimeMillis;
+        this.maxDisposedKeys = maxDisposedKeys;
+    }
+
+
+    /**
+     * Returns statistics for a new pooled object with the specified key. If the key has been seen recently,
+     * the statistics are restored, and the time since the previous pooled object became idle is recorded as a reuse
+     * gap.
+     *
+     * @param key the key of the new pooled object.
+     * @return statistics for the key.
+     */
+    KeyStats attach(K key) {
+        KeyStats stats = this.disposedKeys.remove(key);
+        if (stats == null) {
+            return new KeyStats();
+        }
+
+        stats.recordGap(System.currentTimeMillis() - stats.getLastReturnTime());
+        return stats;
+    }
+
+
+    /**
+     * Keeps statistics of a key whose pooled object has been disposed of.
+     *
+     * @param key the key of the disposed pooled object.
+     * @param stats statistics for the key.
+     * @param lastReturnTime the time when the disposed pooled object became idle.
+     */
+    void detach(K key, KeyStats stats, long lastReturnTime) {
+        if (this.maxDisposedKeys <= 0) {
+            return;
+        }
+
+        stats.setLastReturnTime(lastReturnTime);
+        if (this.disposedKeys.put(key, stats) == null) {
+            this.disposeOrder.offer(key);
+
+            while (this.disposedKeys.size() > this.maxDisposedKeys) {
+                K oldestKey = this.disposeOrder.poll();
+                if (oldestKey == null) {
+                    break;
+                }
+                this.disposedKeys.remove(oldestKey);
+            }
+        }
+    }
+
+
+    /**
+     * Returns how long to keep an idle pooled object with the provided statistics.
+     *
+     * @param stats statistics of the key.
+     * @return the idle time in milliseconds, 0 to dispose of the pooled object immediately.
+     */
+    long idleTimeMillis(KeyStats stats) {
+        return stats.idleTimeMillis(this.keepAliveCostNanosPerSecond, this.maxIdleTimeMillis);
+    }
+
+
+    /**
+     * Statistics of a single key. Statistics are updated when pooled objects are created, initialized, disposed of
+     * and re-used after being idle, which is rare compared with getting shared objects, so all methods are
+     * synchronized.
+     */
+    static final class KeyStats {
+
+        // Recent reuse gaps in milliseconds, in a ring buffer.
+        private final long[] gaps = new long[GAPS];
+        private int gapsCount;
+        private int gapsIndex;
+
+        // Moving averages of durations in nanoseconds to create, to initialize and to dispose of a pooled object.
+        // Negative if not measured yet.
+        private double createNanos = -1;
+        private double initializeNanos = -1;
+        private double disposeNanos = -1;
+
+        // The time when the last pooled object for the key became idle, kept after the pooled object has been
+        // disposed of.
+        private long lastReturnTime;
+
+
+        synchronized void recordGap(long gapMillis) {
+            this.gaps[this.gapsIndex] = Math.max(0, gapMillis);
+            this.gapsIndex = (this.gapsIndex + 1) % GAPS;
+            this.gapsCount = Math.min(this.gapsCount + 1, GAPS);
+        }
+
+
+        synchronized void recordCreate(long durationNanos) {
+            this.createNanos = average(this.createNanos, durationNanos);
+        }
+
+
+        synchronized void recordInitialize(long durationNanos) {
+            this.initializeNanos = average(this.initializeNanos, durationNanos);
+        }
+
+
+        synchronized void recordDispose(long durationNanos) {
+            this.disposeNanos = average(this.disposeNanos, durationNanos);
+        }
+
+
+        private static double average(double average, long value) {
+            return (average < 0 ? value : average + ALPHA * (value - average));
+        }
+
+
+        synchronized long getLastReturnTime() {
+            return this.lastReturnTime;
+        }
+
+
+        synchronized void setLastReturnTime(long lastReturnTime) {
+            this.lastReturnTime = lastReturnTime;
+        }
+
+
+        // The cost in nanoseconds to dispose of a pooled object, and to create and initialize a new one.
+        private double recreateCostNanos() {
+            return Math.max(0, this.createNanos) + Math.max(0, this.initializeNanos) + Math.max(0, this.disposeNanos);
+        }
+
+
+        synchronized long idleTimeMillis(double keepAliveCostNanosPerSecond, long maxIdleTimeMillis) {
+            double recreateCost = this.recreateCostNanos();
+            double keepAliveCostPerMilli = keepAliveCostNanosPerSecond / 1000;
+
+            if (this.gapsCount == 0) {
+                // Without any history, keep the pooled object until the keep-alive cost reaches the re-creation cost.
+                // This is never worse than twice the cost of the optimal choice in hindsight.
+                return Math.min(maxIdleTimeMillis, (long) (recreateCost / keepAliveCostPerMilli));
+            }
+
+            // The optimal idle time is either 0, or just above one of recent reuse gaps: between two gaps the
+            // keep-alive cost grows, while the re-creation cost does not change. Evaluate the total cost over recent
+            // reuse gaps for each candidate.
+            long bestIdleTime = 0;
+            double bestCost = this.gapsCount * recreateCost;
+            for (int i = 0; i < this.gapsCount; i++) {
+                long candidate = this.gaps[i] + 1;
+                if (candidate > maxIdleTimeMillis) {
+                    continue;
+                }
+
+                double cost = 0;
+                for (int j = 0; j < this.gapsCount; j++) {
+                    long gap = this.gaps[j];
+                    if (gap < candidate) {
+                        cost += gap * keepAliveCostPerMilli;
+                    } else {
+                        cost += candidate * keepAliveCostPerMilli + recreateCost;
+                    }
+                }
+
+                if (cost < bestCost || (cost == bestCost && candidate < bestIdleTime)) {
+                    bestIdleTime = candidate;
+                    bestCost = cost;
+                }
+            }
+
+            return bestIdleTime;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.serdioa.common.pool;
+
+import java.util.List;
+
+
+/**
+ * An extension of the {@link PooledObjectFactory} which is able to initialize and to dispose of multiple pooled
+ * objects at once, for example if pooled objects are backed by subscriptions to a remote service which allows
+ * to subscribe or to unsubscribe multiple items in one round trip.
+ * <p>
+ * A shared object pool supporting batches, such as {@link ConcurrentSharedObjectPool} configured with a batch window,
+ * collects pooled objects to initialize or to dispose of arriving within a short time window, and passes them
+ * to this factory in one call.
+ *
+ * @param <K> the type of keys used to create pooled objects.
+ * @param <P> the type of pooled objects created by this factory.
+ */
+public interface BatchPooledObjectFactory<K, P> extends PooledObjectFactory<K, P> {
+
+    /**
+     * Initializes the provided pooled objects created by this factory. The same guarantees apply as for the method
+     * {@link #initialize(Object)} called on each pooled object.
+     * <p>
+     * If this method throws an exception, initialization of all provided pooled objects is considered failed, and the
+     * pool will not call any other method of this factory on them. If the implementation is able to initialize some
+     * pooled objects, but not others, it shall dispose of the successfully initialized pooled objects before throwing
+     * an exception.
+     * <p>
+     * The default implementation calls the method {@link #initialize(Object)} on each pooled object. If initializing
+     * a pooled object fails, it calls the method {@link #dispose(Object)} on all pooled objects initialized before,
+     * and re-throws the exception.
+     *
+     * @param pooledObjects the new non-initialized pooled objects created by this factory.
+     */
+    default void initializeAll(List<P> pooledObjects) {
+        int initialized = 0;
+        try {
+            for (P pooledObject : pooledObjects) {
+                this.initialize(pooledObject);
+                initialized++;
+            }
+        } catch (RuntimeException | Error ex) {
+            for (P pooledObject : pooledObjects.subList(0, initialized)) {
+                try {
+                    this.dispose(pooledObject);
+                } catch (RuntimeException disposeEx) {
+                    ex.addSuppressed(disposeEx);
+                }
+            }
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Disposes of the provided pooled objects created by this factory. The same guarantees apply as for the method
+     * {@link #dispose(Object)} called on each pooled object.
+     * <p>
+     * If this method throws an exception, the pool logs the exception, but otherwise considers all provided pooled
+     * objects as disposed of.
+     * <p>
+     * The default implementation calls the method {@link #dispose(Object)} on each pooled object.
+     *
+     * @param pooledObjects the pooled objects to dispose of.
+     */
+    default void disposeAll(List<P> pooledObjects) {
+        for (P pooledObject : pooledObjects) {
+            this.dispose(pooledObject);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.serdioa.common.pool;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+
+/**
+ * A table of interned stack traces, used by {@link StackTraceProvider}s to deduplicate stack traces captured at the same
+ * call site. Typically shared objects are obtained from a pool at a handful of call sites, so with interning all shared
+ * objects obtained at the same call site refer to a single stack trace, instead of each keeping its own copy.
+ * <p>
+ * Call sites are identified by keys provided by the stack trace provider, which shall implement
+ * {@link Object#equals(Object)} and {@link Object#hashCode()} based on captured frames, and should be cheap to hash.
+ * The table is bounded: when the maximal number of call sites is reached, new call sites are not interned anymore, and
+ * their stack traces are returned as is.
+ *
+ * @param <K> the type of keys identifying call sites.
+ */
+class CallSiteTable<K> {
+
+    /**
+     * The default maximal number of interned call sites.
+     */
+    static final int DEFAULT_MAX_CALL_SITES = 1024;
+
+    // Interned stack traces by their call sites.
+    private final ConcurrentMap<K, StackTrace> callSites = new ConcurrentHashMap<>();
+
+    // The maximal number of interned call sites.
+    private final int maxCallSites;
+
+
+    CallSiteTable() {
+        this(DEFAULT_MAX_CALL_SITES);
+    }
+
+
+    CallSiteTable(int maxCallSites) {
+        if (maxCallSites <= 0) {
+            throw new IllegalArgumentException("maxCallSites (" + maxCallSites + ") <= 0");
+        }
+        this.maxCallSites = maxCallSites;
+    }
+
+
+    /**
+     * Returns the interned stack trace for the specified call site, creating it with the specified factory if the call
+     * site is not interned yet. If the table is full, returns a new stack trace created by the factory without
+     * interning it.
+     *
+     * @param callSite the key identifying the call site.
+     * @param factory the factory creating a stack trace for the call site.
+     * @return the stack trace for the call site.
+     */
+    StackTrace intern(K callSite, Function<? super K, ? extends StackTrace> factory) {
+        StackTrace interned = this.callSites.get(callSite);
+        if (interned != null) {
+            return interned;
+        }
+
+        StackTrace stackTrace = Objects.requireNonNull(factory.apply(callSite));
+        if (this.callSites.size() >= this.maxCallSites) {
+            return stackTrace;
+        }
+
+        interned = this.callSites.putIfAbsent(callSite, stackTrace);
+        return (interned != null ? interned : stackTrace);
+    }
+
+
+    /**
+     * Returns the number of interned call sites.
+     *
+     * @return the number of interned call sites.
+     */
+    int size() {
+        return this.callSites.size();
+    }
+}
@@ -0,0 +1,342 @@
+package de.serdioa.common.pool;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+
+/**
+ * A concurrent map for a bounded universe of keys, where each key has a unique index in the range
+ * {@code [0, capacity)}. Values are kept in an array at the index of their key, so looking up a value does not hash
+ * and does not lock, it is a single volatile array load.
+ * <p>
+ * The key index function must map different keys to different indices. Looking up a key with an index out of range
+ * returns {@code null}, whereas adding such key throws an {@link InvalidKeyException}.
+ * <p>
+ * Looking up and removing a value does not lock. Adding and replacing a value holds only a lock for a stripe
+ * of indices, so that {@link #computeIfAbsent(Object, Function)} calls the mapping function at most once per absent
+ * key, whereas a slow creation of one value delays neither lookups nor removals, and delays creations of other values
+ * only if their keys fall into the same stripe.
+ * <p>
+ * Views returned by {@link #entrySet()} and {@link #values()} are snapshots, they do not reflect later modifications
+ * and do not support removing elements. Null values are not supported.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values.
+ */
+class ConcurrentIndexedMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    // The number of stripes of indices for adding and replacing values, a power of 2.
+    private static final int COMPUTE_STRIPES = 64;
+
+    // Maps keys to indices.
+    private final ToIntFunction<? super K> keyIndex;
+
+    // Keys at their indices. A key is written before the value is published, and since each index has exactly one key,
+    // the key at an index never changes.
+    private final Object[] keys;
+
+    // Values at indices of their keys, or null.
+    private final AtomicReferenceArray<V> values;
+
+    // The number of entries.
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Locks for adding and replacing values, one per stripe of indices. A value is added to an empty slot only while
+    // holding the lock for the stripe of the slot, whereas a value is removed with a compare-and-set without locking.
+    private final ReentrantLock[] computeLocks = newLocks(COMPUTE_STRIPES);
+
+
+    /**
+     * Creates a new map for keys with indices in the range {@code [0, capacity)}.
+     *
+     * @param keyIndex the function mapping keys to indices.
+     * @param capacity the number of indices.
+     */
+    ConcurrentIndexedMap(ToIntFunction<? super K> keyIndex, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity (" + capacity + ") <= 0");
+        }
+
+        this.keyIndex = Objects.requireNonNull(keyIndex);
+        this.keys = new Object[capacity];
+        this.values = new AtomicReferenceArray<>(capacity);
+    }
+
+
+    @Override
+    public V get(Object key) {
+        int index = this.indexOf(key);
+        return (index >= 0 ? this.values.get(index) : null);
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (this.get(key) != null);
+    }
+
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        int index = this.requireIndexOf(key);
+
+        V value = this.values.get(index);
+        if (value != null) {
+            return value;
+        }
+
+        ReentrantLock computeLock = this.computeLock(index);
+        computeLock.lock();
+        try {
+            // Values for indices of this stripe are added only while holding the stripe lock, so the slot remains empty
+            // while the value is being created.
+            value = this.values.get(index);
+            if (value == null) {
+                value = mappingFunction.apply(key);
+                if (value != null) {
+                    this.insert(index, key, value);
+                }
+            }
+            return value;
+        } finally {
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        int index = this.requireIndexOf(key);
+
+        ReentrantLock computeLock = this.computeLock(index);
+        computeLock.lock();
+        try {
+            V previous = this.values.get(index);
+            if (previous == null) {
+                this.insert(index, key, value);
+                return null;
+            }
+
+            // The previous value may be removed concurrently, in which case the value is added to the empty slot.
+            previous = this.values.getAndSet(index, value);
+            if (previous == null) {
+                this.size.incrementAndGet();
+            }
+            return previous;
+        } finally {
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value);
+        int index = this.requireIndexOf(key);
+
+        ReentrantLock computeLock = this.computeLock(index);
+        computeLock.lock();
+        try {
+            V previous = this.values.get(index);
+            if (previous == null) {
+                this.insert(index, key, value);
+            }
+            return previous;
+        } finally {
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public V remove(Object key) {
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V previous = this.values.getAndSet(index, null);
+        if (previous != null) {
+            this.size.decrementAndGet();
+        }
+        return previous;
+    }
+
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int index = this.indexOf(key);
+        if (index < 0 || value == null) {
+            return false;
+        }
+
+        V current;
+        do {
+            current = this.values.get(index);
+            if (!value.equals(current)) {
+                return false;
+            }
+        } while (!this.values.compareAndSet(index, current, null));
+
+        this.size.decrementAndGet();
+        return true;
+    }
+
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+
+        ReentrantLock computeLock = this.computeLock(index);
+        computeLock.lock();
+        try {
+            // The current value may be removed concurrently, so it is replaced with a compare-and-set.
+            V current = this.values.get(index);
+            return (oldValue.equals(current) && this.values.compareAndSet(index, current, newValue));
+        } finally {
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        ReentrantLock computeLock = this.computeLock(index);
+        computeLock.lock();
+        try {
+            // The previous value may be removed concurrently, so it is replaced with a compare-and-set.
+            V previous = this.values.get(index);
+            return (previous != null && this.values.compareAndSet(index, previous, value) ? previous : null);
+        } finally {
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.values.getAndSet(i, null) != null) {
+                this.size.decrementAndGet();
+            }
+        }
+    }
+
+
+    @Override
+    public int size() {
+        return this.size.get();
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return (this.size.get() == 0);
+    }
+
+
+    @Override
+    public Collection<V> values() {
+        List<V> snapshot = new ArrayList<>();
+        for (int i = 0; i < this.keys.length; i++) {
+            V value = this.values.get(i);
+            if (value != null) {
+                snapshot.add(value);
+            }
+        }
+        return snapshot;
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> snapshot = new LinkedHashSet<>();
+        for (int i = 0; i < this.keys.length; i++) {
+            V value = this.values.get(i);
+            if (value != null) {
+                snapshot.add(new SimpleImmutableEntry<>((K) this.keys[i], value));
+            }
+        }
+        return snapshot;
+    }
+
+
+    // Adds the value to the empty slot at the specified index. Requires the lock for the stripe of the index.
+    private void insert(int index, K key, V value) {
+        assert (this.computeLock(index).isHeldByCurrentThread());
+
+        this.keys[index] = key;
+        this.values.set(index, value);
+        this.size.incrementAndGet();
+    }
+
+
+    // Returns the index of the specified key, or -1 if the key is null, has a wrong type or has an index out of range.
+    @SuppressWarnings("unchecked")
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+
+        int index;
+        try {
+            index = this.keyIndex.applyAsInt((K) key);
+        } catch (ClassCastException ex) {
+            return -1;
+        }
+        return (index >= 0 && index < this.keys.length ? index : -1);
+    }
+
+
+    // Returns the index of the specified key, throwing an exception if the key is not in the universe of this map.
+    private int requireIndexOf(K key) {
+        Objects.requireNonNull(key);
+
+        int index = this.keyIndex.applyAsInt(key);
+        if (index < 0 || index >= this.keys.length) {
+            throw new InvalidKeyException(key);
+        }
+        return index;
+    }
+
+
+    // Returns the lock for adding and replacing values for the stripe of the specified index.
+    private ReentrantLock computeLock(int index) {
+        return this.computeLocks[index & (COMPUTE_STRIPES - 1)];
+    }
+
+
+    private static ReentrantLock[] newLocks(int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+}
@@ -0,0 +1,186 @@
+package de.serdioa.common.pool;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+
+/**
+ * A concurrent hash map with primitive {@code int} keys.
+ * <p>
+ * This map is a view of a {@link ConcurrentLongObjectMap} with keys widened to {@code long}, and has the same
+ * properties: looking up a value with {@link #get(int)} does not lock, does not box the key and does not allocate,
+ * and a value created by {@link #computeIfAbsent(int, IntFunction)} is created without holding the lock of the table.
+ * <p>
+ * This map implements {@link ConcurrentMap} with boxed keys, so that it may back a {@link ConcurrentSharedObjectPool}.
+ * Views returned by {@link #entrySet()} and {@link #values()} are snapshots, they do not reflect later modifications
+ * and do not support removing elements. Null values are not supported.
+ *
+ * @param <V> the type of values.
+ */
+class ConcurrentIntObjectMap<V> extends AbstractMap<Integer, V> implements ConcurrentMap<Integer, V> {
+
+    // The backing map with keys widened to long.
+    private final ConcurrentLongObjectMap<V> map = new ConcurrentLongObjectMap<>();
+
+
+    /**
+     * Returns the value for the specified key, or {@code null} if this map does not contain the key. This method does
+     * not lock and does not allocate.
+     *
+     * @param key the key.
+     * @return the value for the specified key, or {@code null} if this map does not contain the key.
+     */
+    public V get(int key) {
+        return this.map.get((long) key);
+    }
+
+
+    /**
+     * Returns {@code true} if this map contains the specified key.
+     *
+     * @param key the key.
+     * @return {@code true} if this map contains the specified key.
+     */
+    public boolean containsKey(int key) {
+        return this.map.containsKey((long) key);
+    }
+
+
+    /**
+     * Returns the value for the specified key, creating it with the specified function if this map does not contain
+     * the key. The function is called at most once per absent key, while holding the lock for the stripe of the key
+     * but not the lock of the table, so it may be slow, but it shall not access this map.
+     *
+     * @param key the key.
+     * @param mappingFunction the function to create a value for the key.
+     * @return the current or the created value for the specified key, or {@code null} if the function returned
+     * {@code null}.
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        return this.map.computeIfAbsent((long) key, k -> mappingFunction.apply(key));
+    }
+
+
+    /**
+     * Removes the value for the specified key.
+     *
+     * @param key the key.
+     * @return the removed value, or {@code null} if this map did not contain the key.
+     */
+    public V remove(int key) {
+        return this.map.remove((long) key);
+    }
+
+
+    /**
+     * Removes the value for the specified key only if it is currently mapped to the specified value.
+     *
+     * @param key the key.
+     * @param value the expected value.
+     * @return {@code true} if the value was removed.
+     */
+    public boolean remove(int key, Object value) {
+        return this.map.remove((long) key, value);
+    }
+
+
+    @Override
+    public V get(Object key) {
+        return (key instanceof Integer ? this.get(((Integer) key).intValue()) : null);
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (this.get(key) != null);
+    }
+
+
+    @Override
+    public V computeIfAbsent(Integer key, Function<? super Integer, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        return this.computeIfAbsent(key.intValue(), k -> mappingFunction.apply(key));
+    }
+
+
+    @Override
+    public V put(Integer key, V value) {
+        return this.map.put(widen(key), value);
+    }
+
+
+    @Override
+    public V putIfAbsent(Integer key, V value) {
+        return this.map.putIfAbsent(widen(key), value);
+    }
+
+
+    @Override
+    public V remove(Object key) {
+        return (key instanceof Integer ? this.remove(((Integer) key).intValue()) : null);
+    }
+
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return (key instanceof Integer && this.remove(((Integer) key).intValue(), value));
+    }
+
+
+    @Override
+    public boolean replace(Integer key, V oldValue, V newValue) {
+        return this.map.replace(widen(key), oldValue, newValue);
+    }
+
+
+    @Override
+    public V replace(Integer key, V value) {
+        return this.map.replace(widen(key), value);
+    }
+
+
+    @Override
+    public void clear() {
+        this.map.clear();
+    }
+
+
+    @Override
+    public int size() {
+        return this.map.size();
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return this.map.isEmpty();
+    }
+
+
+    @Override
+    public Collection<V> values() {
+        return this.map.values();
+    }
+
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        Set<Entry<Integer, V>> entries = new LinkedHashSet<>();
+        for (Entry<Long, V> entry : this.map.entrySet()) {
+            entries.add(new SimpleImmutableEntry<>(entry.getKey().intValue(), entry.getValue()));
+        }
+        return entries;
+    }
+
+
+    private static Long widen(Integer key) {
+        return Long.valueOf(key.longValue());
+    }
+}
@@ -0,0 +1,486 @@
+package de.serdioa.common.pool;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+
+/**
+ * A concurrent hash map with primitive {@code long} keys, using open addressing with linear probing.
+ * <p>
+ * Looking up a value with {@link #get(long)} does not lock, does not box the key and does not allocate. Modifications
+ * of the table are serialized by a single lock, which is acceptable because in a pool modifications happen only when
+ * pooled objects are created or disposed of, whereas lookups happen on each access. The table lock is held only for
+ * a short update of the table: a value created by {@link #computeIfAbsent(long, LongFunction)} is created while
+ * holding only a lock for a stripe of keys, so that a slow creation of one value delays neither lookups nor removals,
+ * and delays creations of other values only if their keys fall into the same stripe.
+ * <p>
+ * Keys of a table never change: a removed value is replaced by a marker, and the slot is not re-used until the table
+ * is rebuilt. A lookup reads the value of a slot before the key, and a value is published after the key, so a lookup
+ * never observes a key without its value. The table is rebuilt when live and removed slots together exceed half
+ * of the capacity, so that each lookup finds an empty slot after a short probe sequence.
+ * <p>
+ * This map implements {@link ConcurrentMap} with boxed keys, so that it may back a {@link ConcurrentSharedObjectPool}.
+ * Views returned by {@link #entrySet()} and {@link #values()} are snapshots, they do not reflect later modifications
+ * and do not support removing elements. Null values are not supported.
+ *
+ * @param <V> the type of values.
+ */
+class ConcurrentLongObjectMap<V> extends AbstractMap<Long, V> implements ConcurrentMap<Long, V> {
+
+    // The initial and minimal capacity of the table.
+    private static final int MIN_CAPACITY = 16;
+
+    // The marker for a slot with a removed value.
+    private static final Object REMOVED = new Object();
+
+    // The number of stripes of keys for creating values, a power of 2.
+    private static final int COMPUTE_STRIPES = 64;
+
+    // The current table. Replaced as a whole when the table is rebuilt.
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    // The number of live entries.
+    private volatile int size;
+
+    // The lock for modifying the table.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Locks for creating and replacing values, one per stripe of keys. A stripe lock is always acquired before the table
+    // lock.
+    private final ReentrantLock[] computeLocks = newLocks(COMPUTE_STRIPES);
+
+
+    /**
+     * Returns the value for the specified key, or {@code null} if this map does not contain the key. This method does
+     * not lock and does not allocate.
+     *
+     * @param key the key.
+     * @return the value for the specified key, or {@code null} if this map does not contain the key.
+     */
+    public V get(long key) {
+        return this.table.get(key);
+    }
+
+
+    /**
+     * Returns {@code true} if this map contains the specified key.
+     *
+     * @param key the key.
+     * @return {@code true} if this map contains the specified key.
+     */
+    public boolean containsKey(long key) {
+        return (this.table.get(key) != null);
+    }
+
+
+    /**
+     * Returns the value for the specified key, creating it with the specified function if this map does not contain
+     * the key. The function is called at most once per absent key, while holding the lock for the stripe of the key
+     * but not the lock of the table, so it may be slow, but it shall not access this map.
+     *
+     * @param key the key.
+     * @param mappingFunction the function to create a value for the key.
+     * @return the current or the created value for the specified key, or {@code null} if the function returned
+     * {@code null}.
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+
+        V value = this.table.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        ReentrantLock computeLock = this.computeLock(key);
+        computeLock.lock();
+        try {
+            // Values for keys of this stripe are inserted only while holding the stripe lock, so the key remains absent
+            // while the value is being created.
+            value = this.table.get(key);
+            if (value == null) {
+                value = mappingFunction.apply(key);
+                if (value != null) {
+                    this.lock.lock();
+                    try {
+                        this.insert(key, value);
+                    } finally {
+                        this.lock.unlock();
+                    }
+                }
+            }
+            return value;
+        } finally {
+            computeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Removes the value for the specified key.
+     *
+     * @param key the key.
+     * @return the removed value, or {@code null} if this map did not contain the key.
+     */
+    public V remove(long key) {
+        this.lock.lock();
+        try {
+            return this.removeIfMatches(key, null);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Removes the value for the specified key only if it is currently mapped to the specified value.
+     *
+     * @param key the key.
+     * @param value the expected value.
+     * @return {@code true} if the value was removed.
+     */
+    public boolean remove(long key, Object value) {
+        if (value == null) {
+            return false;
+        }
+
+        this.lock.lock();
+        try {
+            return (this.removeIfMatches(key, value) != null);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    @Override
+    public V get(Object key) {
+        return (key instanceof Long ? this.get(((Long) key).longValue()) : null);
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (this.get(key) != null);
+    }
+
+
+    @Override
+    public V computeIfAbsent(Long key, Function<? super Long, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        return this.computeIfAbsent(key.longValue(), k -> mappingFunction.apply(key));
+    }
+
+
+    @Override
+    public V put(Long key, V value) {
+        Objects.requireNonNull(value);
+        long k = key.longValue();
+
+        ReentrantLock computeLock = this.computeLock(k);
+        computeLock.lock();
+        this.lock.lock();
+        try {
+            V previous = this.removeIfMatches(k, null);
+            this.insert(k, value);
+            return previous;
+        } finally {
+            this.lock.unlock();
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public V putIfAbsent(Long key, V value) {
+        Objects.requireNonNull(value);
+        long k = key.longValue();
+
+        ReentrantLock computeLock = this.computeLock(k);
+        computeLock.lock();
+        this.lock.lock();
+        try {
+            V previous = this.table.get(k);
+            if (previous == null) {
+                this.insert(k, value);
+            }
+            return previous;
+        } finally {
+            this.lock.unlock();
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public V remove(Object key) {
+        return (key instanceof Long ? this.remove(((Long) key).longValue()) : null);
+    }
+
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return (key instanceof Long && this.remove(((Long) key).longValue(), value));
+    }
+
+
+    @Override
+    public boolean replace(Long key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        long k = key.longValue();
+
+        ReentrantLock computeLock = this.computeLock(k);
+        computeLock.lock();
+        this.lock.lock();
+        try {
+            if (this.removeIfMatches(k, oldValue) == null) {
+                return false;
+            }
+            this.insert(k, newValue);
+            return true;
+        } finally {
+            this.lock.unlock();
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public V replace(Long key, V value) {
+        Objects.requireNonNull(value);
+        long k = key.longValue();
+
+        ReentrantLock computeLock = this.computeLock(k);
+        computeLock.lock();
+        this.lock.lock();
+        try {
+            V previous = this.removeIfMatches(k, null);
+            if (previous != null) {
+                this.insert(k, value);
+            }
+            return previous;
+        } finally {
+            this.lock.unlock();
+            computeLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void clear() {
+        this.lock.lock();
+        try {
+            this.table = new Table(MIN_CAPACITY);
+            this.size = 0;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return (this.size == 0);
+    }
+
+
+    @Override
+    public Collection<V> values() {
+        Table t = this.table;
+        List<V> values = new ArrayList<>();
+        for (int i = 0; i < t.capacity(); i++) {
+            V value = t.valueAt(i);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        Table t = this.table;
+        Set<Entry<Long, V>> entries = new LinkedHashSet<>();
+        for (int i = 0; i < t.capacity(); i++) {
+            V value = t.valueAt(i);
+            if (value != null) {
+                entries.add(new SimpleImmutableEntry<>(t.keys[i], value));
+            }
+        }
+        return entries;
+    }
+
+
+    // Removes the value for the specified key, if the current value is the specified value, or if the specified value
+    // is null. Returns the removed value, or null if nothing has been removed.
+    // @GuardedBy(lock)
+    private V removeIfMatches(long key, Object expectedValue) {
+        Table t = this.table;
+        int index = t.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V value = t.valueAt(index);
+        if (expectedValue != null && !expectedValue.equals(value)) {
+            return null;
+        }
+
+        t.values.set(index, REMOVED);
+        this.size--;
+        return value;
+    }
+
+
+    // Inserts the value for the key which is known to be absent, rebuilding the table if required.
+    // @GuardedBy(lock)
+    private void insert(long key, V value) {
+        Table t = this.table;
+        if (2 * (t.used + 1) > t.capacity()) {
+            t = this.rebuild(t);
+        }
+
+        t.insert(key, value);
+        this.size++;
+    }
+
+
+    // Rebuilds the table without removed slots, so that after adding one more entry live entries occupy at most
+    // a quarter of the new table.
+    // @GuardedBy(lock)
+    private Table rebuild(Table t) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 4 * (this.size + 1)) {
+            capacity <<= 1;
+        }
+
+        Table rebuilt = new Table(capacity);
+        for (int i = 0; i < t.capacity(); i++) {
+            V value = t.valueAt(i);
+            if (value != null) {
+                rebuilt.insert(t.keys[i], value);
+            }
+        }
+
+        // Publish the complete table. Lookups which still use the old table see the state before the rebuild.
+        this.table = rebuilt;
+        return rebuilt;
+    }
+
+
+    // Returns the lock for creating and replacing values for the stripe of the specified key.
+    private ReentrantLock computeLock(long key) {
+        return this.computeLocks[hash(key) & (COMPUTE_STRIPES - 1)];
+    }
+
+
+    private static ReentrantLock[] newLocks(int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+
+    // Spread bits of the key, so that sequential keys do not occupy adjacent slots.
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+
+    private final class Table {
+
+        // Keys of slots. A key is written before the value of the slot is published, and never changes afterwards.
+        private final long[] keys;
+
+        // Values of slots: null for an empty slot, REMOVED for a removed value.
+        private final AtomicReferenceArray<Object> values;
+
+        private final int mask;
+
+        // The number of non-empty slots, including removed ones.
+        // @GuardedBy(lock)
+        private int used;
+
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+
+        int capacity() {
+            return this.keys.length;
+        }
+
+
+        @SuppressWarnings("unchecked")
+        V get(long key) {
+            for (int i = hash(key) & this.mask; ; i = (i + 1) & this.mask) {
+                Object value = this.values.get(i);
+                if (value == null) {
+                    return null;
+                }
+                if (value != REMOVED && this.keys[i] == key) {
+                    return (V) value;
+                }
+            }
+        }
+
+
+        // Returns the index of the live slot with the specified key, or -1 if there is no such slot.
+        int indexOf(long key) {
+            for (int i = hash(key) & this.mask; ; i = (i + 1) & this.mask) {
+                Object value = this.values.get(i);
+                if (value == null) {
+                    return -1;
+                }
+                if (value != REMOVED && this.keys[i] == key) {
+                    return i;
+                }
+            }
+        }
+
+
+        // Returns the live value at the specified index, or null if the slot is empty or removed.
+        @SuppressWarnings("unchecked")
+        V valueAt(int index) {
+            Object value = this.values.get(index);
+            return (value == REMOVED ? null : (V) value);
+        }
+
+
+        // Inserts the value for the key which is known to be absent into the first empty slot.
+        // @GuardedBy(lock)
+        void insert(long key, Object value) {
+            int i = hash(key) & this.mask;
+            while (this.values.get(i) != null) {
+                i = (i + 1) & this.mask;
+            }
+
+            this.keys[i] = key;
+            this.values.set(i, value);
+            this.used++;
+        }
+    }
+}
@@ -1,16 +1,42 @@
 package de.serdioa.common.pool;
 
 import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +45,13 @@ import org.slf4j.LoggerFactory;
 /**
  * An implementation of an {@link SharedObjectPool} using concurrent map. This implementation scales well with a number
  * of threads, and is recommended in most cases.
+ * <p>
+ * Getting a shared object for a pooled object which is already available takes no locks. Besides the shared object
+ * created by the {@link SharedObjectFactory}, it allocates a dispose handle and a phantom reference tracking abandoned
+ * shared objects, about 80 bytes with compressed references. Phantom references are linked directly into a list
+ * of the pooled object, so registering them does not allocate.
+ * If tracking of abandoned shared objects is disabled or sampled (see {@link AbandonedTrackingMode}), untracked shared
+ * objects allocate only the dispose handle.
  *
  * @param <K> the type of keys used to access shared objects provided by this pool.
  * @param <S> the type of shared objects provided by this pool.
@@ -28,19 +61,141 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
 
     private static final Logger logger = LoggerFactory.getLogger(ConcurrentSharedObjectPool.class);
 
+    // The number of idle entries compared by access frequency when selecting an entry to evict.
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    // How often to check if clients have disposed of all shared objects when draining the pool on shutdown.
+    private static final long DRAIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // The maximum number of IDs of abandoned shared objects logged in a single message by the reaper.
+    private static final int MAX_LOGGED_IDS = 10;
+
+    // Updaters of volatile fields of entries, see Entry. An inner class may not declare static fields, so they are
+    // declared here for the raw type of entries.
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConcurrentSharedObjectPool.Entry> SHARED_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrentSharedObjectPool.Entry.class, "sharedCount");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<ConcurrentSharedObjectPool.Entry> SHARED_OBJECT_ID_GEN =
+            AtomicLongFieldUpdater.newUpdater(ConcurrentSharedObjectPool.Entry.class, "sharedObjectIdGen");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentSharedObjectPool.Entry,
+            SharedObjectPhantomReference.RefList[]> REF_LISTS = AtomicReferenceFieldUpdater.newUpdater(
+                    ConcurrentSharedObjectPool.Entry.class, SharedObjectPhantomReference.RefList[].class, "refLists");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConcurrentSharedObjectPool.Entry> DISPOSE_QUEUED =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrentSharedObjectPool.Entry.class, "disposeQueued");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentSharedObjectPool.Entry, CompletableFuture> INIT_FUTURE =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentSharedObjectPool.Entry.class, CompletableFuture.class,
+                    "initFuture");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConcurrentSharedObjectPool.Entry> INIT_WAITERS =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrentSharedObjectPool.Entry.class, "initWaiters");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConcurrentSharedObjectPool.Entry.LeaseHandle> LEASE_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrentSharedObjectPool.Entry.LeaseHandle.class, "state");
+
     // Pooled entries.
-    private final ConcurrentMap<K, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Entry> entries;
+
+    // Pinned keys. Entries for pinned keys are not disposed of even if they do not provide any shared objects.
+    private final Set<K> pinnedKeys = ConcurrentHashMap.newKeySet();
 
     // Provide stack trace for tracking allocation of abandoned shared objects.
     private final StackTraceProvider stackTraceProvider;
 
-    // A queue with phantom references on shared objects. We keep them to be able to find shared objects which were not
-    // properly disposed of.
-    private final ReferenceQueue<S> sharedObjectsRefQueue = new ReferenceQueue<>();
+    // Which shared objects are tracked by phantom references to detect shared objects abandoned by clients.
+    private final AbandonedTrackingMode abandonedTrackingMode;
+
+    // When tracking in the mode SAMPLED, one in this number of shared objects for each key is tracked.
+    private final int abandonedTrackingSampleRate;
+
+    // The estimated number of shared objects represented by one detected abandoned shared object: the sample rate
+    // when tracking in the mode SAMPLED, otherwise 1.
+    private final long trackingWeight;
+
+    // When tracking in the mode LEASE, the time in milliseconds after which a lease which has not been renewed expires.
+    private final long leaseTimeMillis;
+
+    // Leases of shared objects provided by this pool, or null if shared objects are not tracked with leases.
+    private final Set<Entry.LeaseHandle> leases;
+
+    // The periodic sweep of expired leases on the runtime, or null if shared objects are not tracked with leases.
+    private final ScheduledFuture<?> leaseSweep;
+
+    // Keys which are expected to be accessed concurrently by many threads. Entries for hot keys keep the number
+    // of shared objects in a striped counter to reduce contention.
+    private final Predicate<? super K> hotKeys;
+
+    // The number of stripes in counters of entries for hot keys.
+    private final int hotKeyStripes;
+
+    // The executor for initializing pooled objects in parallel when getting multiple shared objects at once, and for
+    // asynchronously initializing pooled objects, if no executor is explicitly specified.
+    private final Executor initializeExecutor;
+
+    // The default maximal number of pooled objects initialized in parallel when getting multiple shared objects
+    // at once.
+    private final int initializeParallelism;
+
+    // Batchers for initializing and for disposing of pooled objects in batches, or null if the pooled object factory
+    // does not support batches, or if batches are not configured.
+    private final PooledObjectBatcher<P> initializeBatcher;
+    private final PooledObjectBatcher<P> disposeBatcher;
+
+    // The maximal total weight of all pooled objects. If the total weight exceeds the maximum, idle pooled objects
+    // are evicted. Non-positive number means the total weight is not limited.
+    private final long maximumWeight;
+
+    // Calculates the weight of pooled objects.
+    private final PooledObjectWeigher<? super K, ? super P> weigher;
+
+    // The total weight of all initialized pooled objects.
+    private final AtomicLong totalWeight = new AtomicLong();
 
-    // The thread processing phantom references on shared objects claimed by the GC.
-    // @GuardedBy(this.lifecycleMonitor)
-    private Thread sharedObjectsReaper;
+    // The number of idle pooled objects evicted because the total weight exceeded the maximum.
+    private final LongAdder evictedCount = new LongAdder();
+
+    // Access frequencies of keys, or null if the total weight is not limited.
+    private final FrequencySketch<K> frequencySketch;
+
+    // Entries which do not provide any shared objects, in the order they became idle, or null if the total weight
+    // is not limited. Eviction candidates are taken from the head, that is from entries which have been idle
+    // for the longest time. The set may contain entries which are active again or already disposed of, they are
+    // skipped and removed when found. Entries for pinned keys are never added.
+    // @GuardedBy(evictionLock)
+    private final LinkedHashSet<Entry> idleEntries;
+
+    // The lock for selecting entries to evict. Never acquired while holding a lock on an entry.
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // The policy choosing the idle time for each key, or null if all keys have the same idle time.
+    private final AdaptiveIdlePolicy<K> idlePolicy;
+
+    // Should entries which do not provide any shared objects anymore be offered for disposal on the dispose executor,
+    // instead of the thread which has released the last shared object?
+    private final boolean asyncDispose;
+
+    // The executor for disposing of pooled objects in parallel when shutting down this pool, or null if the shutdown
+    // uses its own threads.
+    private final Executor shutdownExecutor;
+
+    // The maximal number of pooled objects disposed of in parallel when shutting down this pool.
+    private final int shutdownParallelism;
+
+    // Duration in milliseconds to wait for clients to dispose of shared objects when shutting down this pool, before
+    // disposing of pooled objects. Non-positive number means not waiting.
+    private final long shutdownDrainMillis;
+
+    // The maximal duration in milliseconds of shutting down this pool. Pooled objects which are not disposed of by then
+    // are abandoned. Non-positive number means the shutdown has no deadline.
+    private final long shutdownTimeoutMillis;
+
+    // A queue with phantom references on shared objects. We keep them to be able to find shared objects which were not
+    // properly disposed of. The queue belongs to the runtime, and is processed by reaper threads of the runtime. Null
+    // if abandoned shared objects are not tracked.
+    private final ReferenceQueue<SharedObject> sharedObjectsRefQueue;
 
     // Is this object pool already disposed of?
     private volatile boolean disposed = false;
@@ -49,26 +204,133 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
     private final Object lifecycleMonitor = new Object();
 
 
-    private ConcurrentSharedObjectPool(String name,
+    /**
+     * Creates a new pool configured by the specified builder, keeping pooled entries in the specified map. Allows
+     * subclasses to provide a map which is specialized for their type of keys.
+     *
+     * @param builder the builder with the configuration of the pool. The builder must be already validated.
+     * @param entries the empty map to keep pooled entries in.
+     */
+    ConcurrentSharedObjectPool(Builder<K, S, P> builder, ConcurrentMap<K, Entry> entries) {
+        // No need to explicitly check stackTraceProvider: default value is not null, and the setter protects
+        // against null.
+        this(entries, builder.name, builder.pooledObjectFactory, builder.sharedObjectFactory, builder.disposeUnused,
+                builder.idleDisposeTimeMillis, builder.disposeThreads, builder.asyncDispose, builder.runtime,
+                builder.invalidKeyCacheSize, builder.invalidKeyCacheTtlMillis, builder.circuitBreakerFailureThreshold,
+                builder.circuitBreakerBackoffMillis, builder.circuitBreakerMaxBackoffMillis,
+                builder.stackTraceProvider, builder.abandonedTrackingMode, builder.abandonedTrackingSampleRate,
+                builder.leaseTimeMillis, builder.hotKeys, builder.hotKeyStripes,
+                builder.initializeExecutor, builder.initializeParallelism, builder.batchWindowMillis,
+                builder.maxBatchSize, builder.maximumWeight, builder.weigher, builder.keepAliveCostNanosPerSecond,
+                builder.adaptiveIdleHistorySize, builder.shutdownExecutor, builder.shutdownParallelism,
+                builder.shutdownDrainMillis, builder.shutdownTimeoutMillis);
+    }
+
+
+    private ConcurrentSharedObjectPool(ConcurrentMap<K, Entry> entries,
+            String name,
             PooledObjectFactory<K, P> pooledObjectFactory,
             SharedObjectFactory<P, S> sharedObjectFactory,
             boolean disposeUnused,
             long idleDisposeTimeMillis,
             int disposeThreads,
-            StackTraceProvider stackTraceProvider) {
+            boolean asyncDispose,
+            SharedObjectPoolRuntime runtime,
+            int invalidKeyCacheSize,
+            long invalidKeyCacheTtlMillis,
+            int circuitBreakerFailureThreshold,
+            long circuitBreakerBackoffMillis,
+            long circuitBreakerMaxBackoffMillis,
+            StackTraceProvider stackTraceProvider,
+            AbandonedTrackingMode abandonedTrackingMode,
+            int abandonedTrackingSampleRate,
+            long leaseTimeMillis,
+            Predicate<? super K> hotKeys,
+            int hotKeyStripes,
+            Executor initializeExecutor,
+            int initializeParallelism,
+            long batchWindowMillis,
+            int maxBatchSize,
+            long maximumWeight,
+            PooledObjectWeigher<? super K, ? super P> weigher,
+            long keepAliveCostNanosPerSecond,
+            int adaptiveIdleHistorySize,
+            Executor shutdownExecutor,
+            int shutdownParallelism,
+            long shutdownDrainMillis,
+            long shutdownTimeoutMillis) {
+
+        super(name, pooledObjectFactory, sharedObjectFactory, disposeUnused, idleDisposeTimeMillis, disposeThreads,
+                asyncDispose, runtime, invalidKeyCacheSize, invalidKeyCacheTtlMillis, circuitBreakerFailureThreshold,
+                circuitBreakerBackoffMillis, circuitBreakerMaxBackoffMillis);
+
+        this.entries = Objects.requireNonNull(entries);
+        this.asyncDispose = asyncDispose;
+        this.stackTraceProvider = Objects.requireNonNull(stackTraceProvider);
+        this.abandonedTrackingMode = Objects.requireNonNull(abandonedTrackingMode);
+        this.abandonedTrackingSampleRate = abandonedTrackingSampleRate;
+        this.trackingWeight = (abandonedTrackingMode == AbandonedTrackingMode.SAMPLED
+                ? abandonedTrackingSampleRate : 1);
+        this.hotKeys = Objects.requireNonNull(hotKeys);
+        this.hotKeyStripes = hotKeyStripes;
+        this.initializeExecutor = Objects.requireNonNull(initializeExecutor);
+        this.initializeParallelism = initializeParallelism;
+
+        if (batchWindowMillis > 0 && pooledObjectFactory instanceof BatchPooledObjectFactory) {
+            // Batches are processed on dispose threads of the runtime, which may be shared with other pools.
+            BatchPooledObjectFactory<K, P> batchFactory = (BatchPooledObjectFactory<K, P>) pooledObjectFactory;
+            ScheduledExecutorService batchExecutor = this.runtime.startDisposeExecutor();
+            this.initializeBatcher = new PooledObjectBatcher<>(batchExecutor, batchFactory::initializeAll,
+                    batchWindowMillis, maxBatchSize);
+            this.disposeBatcher = new PooledObjectBatcher<>(batchExecutor, batchFactory::disposeAll,
+                    batchWindowMillis, maxBatchSize);
+        } else {
+            this.initializeBatcher = null;
+            this.disposeBatcher = null;
+        }
 
-        super(name, pooledObjectFactory, sharedObjectFactory, disposeUnused, idleDisposeTimeMillis, disposeThreads);
+        this.maximumWeight = maximumWeight;
+        this.weigher = Objects.requireNonNull(weigher);
+        if (maximumWeight > 0) {
+            this.frequencySketch = new FrequencySketch<>(maximumWeight);
+            this.idleEntries = new LinkedHashSet<>();
+        } else {
+            this.frequencySketch = null;
+            this.idleEntries = null;
+        }
 
-        this.stackTraceProvider = Objects.requireNonNull(stackTraceProvider);
+        this.idlePolicy = (keepAliveCostNanosPerSecond > 0
+                ? new AdaptiveIdlePolicy<>(keepAliveCostNanosPerSecond, idleDisposeTimeMillis, adaptiveIdleHistorySize)
+                : null);
 
-        synchronized (this.lifecycleMonitor) {
-            this.sharedObjectsReaper = new Thread(this::reapSharedObjects, this.name + "-reaper");
-            this.sharedObjectsReaper.setDaemon(true);
-            this.sharedObjectsReaper.start();
+        this.shutdownExecutor = shutdownExecutor;
+        this.shutdownParallelism = shutdownParallelism;
+        this.shutdownDrainMillis = shutdownDrainMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+
+        this.sharedObjectsRefQueue = (abandonedTrackingMode == AbandonedTrackingMode.SAMPLED
+                || abandonedTrackingMode == AbandonedTrackingMode.FULL ? this.runtime.startReapers() : null);
+
+        // Leases expire after at least the lease time without being renewed: each sweep expires leases which have not
+        // been renewed since the previous sweep, that is at most after twice the lease time.
+        this.leaseTimeMillis = leaseTimeMillis;
+        if (abandonedTrackingMode == AbandonedTrackingMode.LEASE) {
+            this.leases = ConcurrentHashMap.newKeySet();
+            this.leaseSweep = this.runtime.scheduleLeaseSweep(this::sweepLeases, leaseTimeMillis);
+        } else {
+            this.leases = null;
+            this.leaseSweep = null;
         }
     }
 
 
+    /**
+     * Shuts down this pool. New shared objects are not provided anymore. If configured, the pool first waits for
+     * clients to dispose of shared objects they still hold, see {@link Builder#setShutdownDrainMillis(long)}. Remaining
+     * pooled objects are then disposed of in parallel, see {@link Builder#setShutdownParallelism(int)}. If the shutdown
+     * has a deadline, see {@link Builder#setShutdownTimeoutMillis(long)}, pooled objects which are not disposed of
+     * by then are abandoned and reported. The progress is reported to statistics listeners.
+     */
     @Override
     public void dispose() {
         synchronized (this.lifecycleMonitor) {
@@ -79,33 +341,196 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
 
             // Mark this pool as disposed to prevent new objects from being pooled.
             this.disposed = true;
+        }
+
+        long startShutdownTimestamp = System.nanoTime();
+        long deadlineTimestamp = startShutdownTimestamp + TimeUnit.MILLISECONDS.toNanos(this.shutdownTimeoutMillis);
+
+        if (this.shutdownDrainMillis > 0) {
+            // Entries released by clients while draining are disposed of as usual. The reaper keeps running, so that
+            // shared objects abandoned by clients do not delay the shutdown until the drain deadline.
+            this.enterShutdownPhase(ShutdownPhase.DRAINING);
+            long drainDeadlineTimestamp =
+                    startShutdownTimestamp + TimeUnit.MILLISECONDS.toNanos(this.shutdownDrainMillis);
+            if (this.shutdownTimeoutMillis > 0 && drainDeadlineTimestamp - deadlineTimestamp > 0) {
+                drainDeadlineTimestamp = deadlineTimestamp;
+            }
+            this.awaitDrained(drainDeadlineTimestamp);
+        }
 
-            if (this.sharedObjectsReaper != null) {
-                this.sharedObjectsReaper.interrupt();
-                this.sharedObjectsReaper = null;
+        // Leases do not expire while disposing of pooled objects. Shared objects which are still leased are marked
+        // as disposed once their entries are disposed of.
+        if (this.leaseSweep != null) {
+            this.leaseSweep.cancel(false);
+        }
+
+        this.enterShutdownPhase(ShutdownPhase.DISPOSING);
+        this.disposeEntriesOnShutdown(deadlineTimestamp);
+
+        if (this.leases != null) {
+            for (Entry.LeaseHandle lease : this.leases) {
+                lease.disposeOnShutdown();
             }
+            this.leases.clear();
         }
 
-        this.disposeEntriesOnShutdown();
+        // Pending batches are processed before the runtime is disposed of.
+        if (this.initializeBatcher != null) {
+            this.initializeBatcher.shutdown();
+        }
+        if (this.disposeBatcher != null) {
+            this.disposeBatcher.shutdown();
+        }
 
         super.dispose();
     }
 
 
-    // Dispose of all still available entries when this pool is disposed of.
-    // The implementation below looks a bit convoluted, but it is required to report performance metrics
-    // when disposing of entries, without calling external methods (metrics listeners) in a synchronized block.
-    private void disposeEntriesOnShutdown() {
-        while (true) {
-            Optional<Entry> entryHolder = this.entries.values().stream().findAny();
-            if (entryHolder.isPresent()) {
-                Entry entry = entryHolder.get();
-                disposeEntryOnShutdown(entry);
-            } else {
-                // There are no entries in this pool anymore. Terminate the "while" loop.
+    @Override
+    protected void initializePooledObject(P pooledObject) {
+        if (this.initializeBatcher != null) {
+            // Initialize the pooled object together with other pooled objects arriving within the batch window.
+            this.initializeBatcher.submitAndWait(pooledObject);
+        } else {
+            super.initializePooledObject(pooledObject);
+        }
+    }
+
+
+    // Wait until clients have disposed of all shared objects, or until the provided deadline.
+    private void awaitDrained(long deadlineTimestamp) {
+        while (this.getSharedObjectsCount() > 0) {
+            long remainingNanos = deadlineTimestamp - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remainingNanos, DRAIN_POLL_NANOS));
+            } catch (InterruptedException ex) {
+                // Stop waiting, but still dispose of pooled objects. Propagate the interruption status to the caller.
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+
+    // Dispose of all still available entries when this pool is disposed of. Entries are disposed of in parallel
+    // by the configured number of workers. If the shutdown has a deadline, entries which are not disposed of
+    // by the provided deadline are abandoned.
+    private void disposeEntriesOnShutdown(long deadlineTimestamp) {
+        if (this.shutdownExecutor != null) {
+            this.disposeEntriesOnShutdown(deadlineTimestamp, this.shutdownExecutor);
+            return;
+        }
+
+        // Without a configured executor, workers run on threads owned by this shutdown, started on demand up to
+        // the shutdown parallelism. Threads of workers which are still disposing of abandoned entries after
+        // the deadline exit once they are finished.
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = new ThreadPoolExecutor(0, this.shutdownParallelism, 1, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(r, this.name + "-shutdown-" + threadCounter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            this.disposeEntriesOnShutdown(deadlineTimestamp, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    private void disposeEntriesOnShutdown(long deadlineTimestamp, Executor executor) {
+        boolean bounded = (this.shutdownTimeoutMillis > 0);
+        boolean interrupted = false;
+
+        // Entries added concurrently are disposed of by the threads which have added them, but a snapshot taken
+        // while such thread is still adding an entry may miss it. Repeat until no entries remain.
+        while (!this.entries.isEmpty()) {
+            Queue<Entry> pendingEntries = new ConcurrentLinkedQueue<>(this.entries.values());
+
+            // Each worker takes entries from the queue until the queue is empty, or until the deadline expired.
+            Runnable worker = () -> {
+                Entry entry;
+                while ((!bounded || deadlineTimestamp - System.nanoTime() > 0)
+                        && (entry = pendingEntries.poll()) != null) {
+                    this.disposeEntryOnShutdown(entry);
+                }
+            };
+
+            // Without a deadline the calling thread is one of workers. With a deadline the calling thread only waits
+            // for workers, so that it is able to give up on a pooled object which takes too long to dispose of.
+            int workers = Math.max(1, Math.min(this.shutdownParallelism, pendingEntries.size()));
+            int helpers = (bounded ? workers : workers - 1);
+            CountDownLatch helpersDone = new CountDownLatch(helpers);
+            int startedHelpers = 0;
+            for (int i = 0; i < helpers; ++i) {
+                try {
+                    executor.execute(() -> {
+                        try {
+                            worker.run();
+                        } finally {
+                            helpersDone.countDown();
+                        }
+                    });
+                    startedHelpers++;
+                } catch (RejectedExecutionException ex) {
+                    // Continue with less parallelism.
+                    helpersDone.countDown();
+                }
+            }
+
+            if (!bounded || startedHelpers == 0) {
+                worker.run();
+            }
+
+            // Wait until all helpers are finished, or until the deadline expired.
+            while (true) {
+                try {
+                    if (bounded) {
+                        helpersDone.await(Math.max(0, deadlineTimestamp - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    } else {
+                        helpersDone.await();
+                    }
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+
+            if (bounded && deadlineTimestamp - System.nanoTime() <= 0) {
+                this.abandonEntriesOnShutdown();
                 break;
             }
         }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    // Abandon all still available entries without disposing of them, because the shutdown deadline expired.
+    // Entries which are still being disposed of by workers are abandoned as well, the workers may finish disposing
+    // of them later.
+    private void abandonEntriesOnShutdown() {
+        List<K> abandonedKeys = new ArrayList<>();
+        for (Entry entry : this.entries.values()) {
+            entry.abandon();
+            if (this.entries.remove(entry.getKey(), entry)) {
+                abandonedKeys.add(entry.getKey());
+                this.abandonedOnShutdown(entry.getKey());
+            }
+        }
+
+        if (!abandonedKeys.isEmpty()) {
+            logger.warn("Shutdown of the pool {} did not finish within {} ms, abandoned {} pooled objects without "
+                    + "disposing of them: {}", this.name, this.shutdownTimeoutMillis, abandonedKeys.size(),
+                    abandonedKeys);
+        }
     }
 
 
@@ -130,25 +555,6 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
     }
 
 
-    private void reapSharedObjects() {
-        try {
-            while (true) {
-                SharedObjectPhantomReference<?, ? extends S> ref =
-                        (SharedObjectPhantomReference<?, ? extends S>) this.sharedObjectsRefQueue.remove();
-
-                try {
-                    ref.disposeIfRequired();
-                } catch (Exception ex) {
-                    logger.error("Exception when disposing of shared object {}", ref.getKey(), ex);
-                }
-            }
-        } catch (InterruptedException ex) {
-            // The reaper thread has been interrupted. Propagate the interruption status to the caller.
-            Thread.currentThread().interrupt();
-        }
-    }
-
-
     @Override
     public S get(K key) throws InvalidKeyException, InitializationException {
         // Duration statistics and whether we hit or miss, that is whether the object was already in the pool.
@@ -167,18 +573,18 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
                 Entry entry = this.getEntry(key);
 
                 // Optimistically assume that the entry is already active, so we do not require an exclusive lock.
-                // If our assumption is wrong, handle more complicated cases afterwards.
-                S sharedObject = optimisticGetSharedObject(entry);
-                if (sharedObject != null) {
+                // Acquiring a shared object from an active entry is a single CAS on the entry state, no locks are
+                // involved. If our assumption is wrong, handle more complicated cases afterwards.
+                if (entry.tryAcquire()) {
                     // We have found the pooled object in the cache, so this method call was a hit.
                     poolHit = true;
-                    return sharedObject;
+                    return entry.createSharedObject();
                 }
 
-                // Handle more complicated cases without additional assumptions, this requires an exclusive lock.
-                // Note that even in this case the method may return null due to asynchronous operations in other threads,
-                // requiring repeated attempts.
-                sharedObject = getSharedObject(entry);
+                // Handle more complicated cases without additional assumptions: the entry may have to be initialized
+                // first, or it may be disposed of concurrently. Note that even in this case the method may return null
+                // due to asynchronous operations in other threads, requiring repeated attempts.
+                S sharedObject = getSharedObject(entry);
                 if (sharedObject != null) {
                     return sharedObject;
                 }
@@ -193,180 +599,830 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
     }
 
 
-    private Entry getEntry(K key) throws InvalidKeyException {
-        // Fast-track if this pool is already disposed of.
-        if (this.disposed) {
-            throw new IllegalStateException("The pool is already disposed of");
+    // Should the shared object with the specified ID, unique within its entry, be tracked by a phantom reference?
+    // Sampling by the ID within the entry tracks the first shared object of each key, and then one in the sample rate.
+    private boolean isTracked(long sharedObjectId) {
+        switch (this.abandonedTrackingMode) {
+            case FULL:
+                return true;
+            case SAMPLED:
+                return (sharedObjectId % this.abandonedTrackingSampleRate == 0);
+            default:
+                return false;
         }
+    }
 
-        // Get an entry from the map or create a new one.
-        Entry entry = this.entries.computeIfAbsent(key, this::createEntry);
 
-        // Possible multi-threaded scenario we have to take into account:
-        //
-        // * This method was called on a pool in the thread A. This method had checked that the pool is not disposed of
-        // yet, but the thread A had been "frozen" directly afterwards, before "computeIfAbsent" above has been
-        // executed.
-        // * The method "dispose()" has been called in the thread B for this pool. The method "dispose()" set the
-        // dispose flag, iterated over all entries in the map, disposed of them and finished.
-        // * The thread A "awakes" and continue to execute this method. It executed "computeIfAbsent" above, and created
-        // a new entry, although this pool is already disposed of by the thread B.
-        //
-        // To account for such case, we have to check the "dispose" flag again, and clean up if the flag was set
-        // in the meantime.
-        if (this.disposed) {
-            // Special case: in the meantime this pool has been disposed of. As explained above, we have to clean up.
-            this.disposeEntryOnShutdown(entry);
-            throw new IllegalStateException("The pool is already disposed of");
-        } else {
-            // Normal case: this pool is still alive. Even if the method "dispose()" has been called in another thread,
-            // it has not set the "dispose" flag yet. In such case, when the method "dispose()" continues to run
-            // (assuming it was called at all), it will clean up all entries in the map, including the one we just
-            // created.
-            return entry;
+    // Expire leases of shared objects which have not been renewed since the previous sweep. Expired leases are grouped
+    // by their entries, so that each entry releases all its expired shared objects at once.
+    private void sweepLeases() {
+        Map<Entry, List<Entry.LeaseHandle>> expired = new IdentityHashMap<>();
+        for (Entry.LeaseHandle lease : this.leases) {
+            if (!lease.checkRenewed()) {
+                expired.computeIfAbsent(lease.getEntry(), entry -> new ArrayList<>()).add(lease);
+            }
+        }
+
+        for (Map.Entry<Entry, List<Entry.LeaseHandle>> entry : expired.entrySet()) {
+            try {
+                entry.getKey().expireLeases(entry.getValue());
+            } catch (Exception ex) {
+                logger.error("Exception when expiring leases of shared objects {}", entry.getKey().getKey(), ex);
+            }
         }
     }
 
 
-    // Attempt to get a shared object from the specified entry optimistically, that is, assuming that the entry
-    // is active. Returns the obtained shared object, or null if the assumption was wrong.
-    private S optimisticGetSharedObject(Entry entry) {
-        Lock sharedEntryLock = entry.sharedLock();
-        sharedEntryLock.lock();
+    // Attempt to get a shared object from the specified entry, which a subclass has looked up in its own specialized
+    // map of entries. Covers only the fast path, that is an entry which is already active, so that besides the shared
+    // object itself nothing is allocated. Returns null if the entry is null or not active, in such case the caller
+    // shall fall back to get(K).
+    S tryGetActive(Entry entry) {
+        if (entry == null || this.disposed) {
+            return null;
+        }
+
+        long startGetTimestamp = System.nanoTime();
+        if (!entry.tryAcquire()) {
+            return null;
+        }
+
+        if (this.frequencySketch != null) {
+            this.frequencySketch.increment(entry.getKey());
+        }
+
         try {
-            if (entry.getSharedCount() >= 0) {
-                // Our optimistic assumption was right: the entry is active, so we may just create a new shared object.
-                return entry.createSharedObject();
-            } else {
-                // Our optimistic assumption was wrong: the entry is not initialized yet, or is already disposed of.
-                return null;
-            }
+            return entry.createSharedObject();
         } finally {
-            sharedEntryLock.unlock();
+            long endGetTimestamp = System.nanoTime();
+            this.fireSharedObjectGet(endGetTimestamp - startGetTimestamp, true);
         }
     }
 
 
-    // Attempt to get a shared object from the specified entry without any assumptions.
-    // Returns the obtained shared object, or null if it is not possible. In the latter case, another attempt
-    // is required.
-    private S getSharedObject(Entry entry) throws InitializationException {
-        // Duration statistics collected if we actually initialize a new pooled object.
-        boolean attemptedInitialize = false;
-        long startInitializeTimestamp = Long.MIN_VALUE;
-        long endInitializeTimestamp = Long.MIN_VALUE;
-        boolean initializeSuccess = false;
-
-        Lock exclusiveEntryLock = entry.exclusiveLock();
-        exclusiveEntryLock.lock();
-        try {
-            int entrySharedCount = entry.getSharedCount();
+    /**
+     * Returns shared objects for all specified keys. Pooled objects which are not available yet are initialized
+     * in parallel, using the default parallelism configured for this pool.
+     *
+     * @param keys the keys to return shared objects for.
+     * @return the map from keys to shared objects, in the iteration order of the specified keys. Duplicate keys are
+     * returned only once.
+     *
+     * @throws InvalidKeyException if any of the provided keys is invalid. No shared objects are returned in such case.
+     * @throws InitializationException if any of the backing implementation objects could not be initialized.
+     * No shared objects are returned in such case.
+     *
+     * @see #getAll(Collection, int)
+     */
+    public Map<K, S> getAll(Collection<? extends K> keys) throws InvalidKeyException, InitializationException {
+        return this.getAll(keys, this.initializeParallelism);
+    }
 
-            if (entrySharedCount >= 0) {
-                // The entry is active, so we may just create a new shared object.
-                return entry.createSharedObject();
-            } else if (entrySharedCount == Entry.NEW) {
-                // The entry was just added to the pool either by this thread or by another thread.
-                // Since this thread synchronized on the entry first, we have to initialize it.
-                attemptedInitialize = true;
-                startInitializeTimestamp = System.nanoTime();
-                try {
-                    entry.init();
-                    endInitializeTimestamp = System.nanoTime();
-                    initializeSuccess = true;
 
-                } catch (Exception ex) {
-                    // If an attempt to initialize an entry caused an exception, we will not attempt to create
-                    // and initialize an entry again, because it could cause an infinite loop.
-                    // Instead, we are re-throwing the exception.
-                    K key = entry.getKey();
-                    this.entries.remove(key, entry);
-                    throw InitializationException.wrap(key, ex);
-                }
-                return entry.createSharedObject();
-            } else {
-                assert (entrySharedCount == Entry.DISPOSED);
+    /**
+     * Returns shared objects for all specified keys. Shared objects for pooled objects which are already available
+     * are acquired in the calling thread in one pass. Pooled objects which are not available yet are initialized
+     * in parallel, with at most the specified number of pooled objects initialized at the same time. The calling thread
+     * takes part in initializing pooled objects, the rest runs in the initialization executor of this pool.
+     * <p>
+     * If getting a shared object for any of the keys fails, all shared objects already acquired by this method are
+     * disposed of before the exception is thrown, so the caller never receives partial results.
+     *
+     * @param keys the keys to return shared objects for.
+     * @param parallelism the maximal number of pooled objects initialized at the same time.
+     * @return the map from keys to shared objects, in the iteration order of the specified keys. Duplicate keys are
+     * returned only once.
+     *
+     * @throws InvalidKeyException if any of the provided keys is invalid. No shared objects are returned in such case.
+     * @throws InitializationException if any of the backing implementation objects could not be initialized.
+     * No shared objects are returned in such case.
+     */
+    public Map<K, S> getAll(Collection<? extends K> keys, int parallelism)
+            throws InvalidKeyException, InitializationException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism (" + parallelism + ") <= 0");
+        }
 
-                // The entry is already disposed of. This could happens, for example, in the following scenario:
-                // * This thread (A) got an entry from the cache. Currently entry supports 1 shared object.
-                // * Before this thread synchronizes on the entry, another thread (B) synchronizes on the entry
-                // and disposes of the shared object.
-                // * Since the entry does not support any shared object anymore, it is eligible for disposal.
-                // * The entry is disposed and removed from the cache, but this thread (A) already holds the entry.
-                // * Another thread (B) releases the synchronization lock on the entry.
-                // * This thread (A) synchronizes on the entry, but the entry is already disposed of.
-                //
-                // Examples above is just one of several possible scenarios. Either way, we should expect the case
-                // when the entry is already disposed of. In such case we will remove the disposed entry from the cache,
-                // and try once more.
-                K key = entry.getKey();
-                this.entries.remove(key, entry);
-                return null;
+        Set<K> distinctKeys = new LinkedHashSet<>(keys);
+        Map<K, S> sharedObjects = new ConcurrentHashMap<>();
+        try {
+            // Fast-track if this pool is already disposed of.
+            if (this.disposed) {
+                throw new IllegalStateException("The pool is already disposed of");
             }
-        } finally {
-            exclusiveEntryLock.unlock();
 
-            if (attemptedInitialize) {
-                // We have attempted to initialize a new pooled object. Were we successfull? If not, take the
-                // end timestamp.
-                if (!initializeSuccess) {
-                    endInitializeTimestamp = System.nanoTime();
+            // First pass: acquire shared objects from entries which are already active, and collect misses.
+            // Do not create new entries for misses yet: if getting any shared object fails, remaining misses are not
+            // processed at all, and new entries would remain in the pool without ever being initialized.
+            List<K> misses = new ArrayList<>();
+            for (K key : distinctKeys) {
+                long startGetTimestamp = System.nanoTime();
+                if (this.frequencySketch != null) {
+                    this.frequencySketch.increment(key);
+                }
+                Entry entry = this.entries.get(key);
+                if (entry != null && entry.tryAcquire()) {
+                    try {
+                        sharedObjects.put(key, entry.createSharedObject());
+                    } finally {
+                        long endGetTimestamp = System.nanoTime();
+                        this.fireSharedObjectGet(endGetTimestamp - startGetTimestamp, true);
+                    }
+                } else {
+                    misses.add(key);
                 }
-                this.firePooledObjectInitialized(endInitializeTimestamp - startInitializeTimestamp,
-                        initializeSuccess);
             }
+
+            // Second pass: initialize misses in parallel.
+            if (!misses.isEmpty()) {
+                this.getAllMisses(misses, parallelism, sharedObjects);
+            }
+        } catch (RuntimeException | Error ex) {
+            // Release all shared objects acquired so far, so that the caller does not leak partial results.
+            for (S sharedObject : sharedObjects.values()) {
+                sharedObject.dispose();
+            }
+            throw ex;
+        }
+
+        // Return shared objects in the iteration order of the provided keys.
+        Map<K, S> result = new LinkedHashMap<>();
+        for (K key : distinctKeys) {
+            result.put(key, sharedObjects.get(key));
         }
+        return result;
     }
 
 
-    private Entry createEntry(K key) throws InvalidKeyException {
-        // Duration statistics collected if we actually create a new pooled object.
-        long startCreateTimestamp = System.nanoTime();
-        long endCreateTimestamp = Long.MIN_VALUE;
-        boolean createSuccess = false;
-        try {
-            P pooledObject = createPooledObject(key);
-            endCreateTimestamp = System.nanoTime();
-            createSuccess = true;
+    // Get shared objects for the provided keys, initializing pooled objects in parallel, and put them in the provided
+    // map. If getting any shared object fails, throw an exception after all started attempts are finished. Shared
+    // objects for keys which did not fail are still put into the map, so that the caller may release them.
+    private void getAllMisses(List<K> misses, int parallelism, Map<K, S> sharedObjects) {
+        Queue<K> pendingKeys = new ConcurrentLinkedQueue<>(misses);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
 
-            return new Entry(key, pooledObject);
-        } finally {
-            // Were we successfull when creating a new pooled object? If not, take the end timestamp.
-            if (!createSuccess) {
-                endCreateTimestamp = System.nanoTime();
+        // Each worker takes keys from the queue until the queue is empty, or until any worker failed.
+        Runnable worker = () -> {
+            K key;
+            while (failure.get() == null && (key = pendingKeys.poll()) != null) {
+                try {
+                    sharedObjects.put(key, this.get(key));
+                } catch (Throwable ex) {
+                    // Pooled objects initialized in the same batch fail with the same exception.
+                    if (!failure.compareAndSet(null, ex) && failure.get() != ex) {
+                        failure.get().addSuppressed(ex);
+                    }
+                }
             }
-            this.firePooledObjectCreated(endCreateTimestamp - startCreateTimestamp, createSuccess);
+        };
+
+        // The calling thread is one of workers, so that the progress is guaranteed even if the executor is busy.
+        // Helper workers which start late just find the queue empty.
+        int helpers = Math.min(parallelism, misses.size()) - 1;
+        CountDownLatch helpersDone = new CountDownLatch(helpers);
+        for (int i = 0; i < helpers; ++i) {
+            try {
+                this.initializeExecutor.execute(() -> {
+                    try {
+                        worker.run();
+                    } finally {
+                        helpersDone.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // Continue with less parallelism.
+                helpersDone.countDown();
+            }
+        }
+
+        worker.run();
+
+        // Wait until all helpers are finished, so that no shared object is put into the map after we returned.
+        boolean interrupted = false;
+        while (true) {
+            try {
+                helpersDone.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable ex = failure.get();
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        } else if (ex != null) {
+            throw new IllegalStateException(ex);
         }
     }
 
 
-    // Try to dispose of the specified entry. We may dispose of the entry synchronously, or schedule a later attempt
-    // dependend on the configuration of this shared object pool.
-    // It could be that in the meantime the entry is not eligible for a disposal anymore, in such case no disposal
-    // takes place.
-    private void offerDispose(Entry entry) {
-        if (!this.disposeUnused) {
-            // Fast track if disposing of unused entries is disabled.
-            return;
+    /**
+     * Initializes pooled objects for all specified keys in advance, using the default parallelism configured for this
+     * pool.
+     *
+     * @param keys the keys to initialize pooled objects for.
+     * @return the future tracking the progress of warming up.
+     *
+     * @see #warmUp(Collection, int)
+     */
+    public WarmUpFuture warmUp(Collection<? extends K> keys) {
+        return this.warmUp(keys, this.initializeParallelism);
+    }
+
+
+    /**
+     * Initializes pooled objects for all specified keys in advance, so that the first caller for each key does not have
+     * to wait for the pooled object to be created and initialized. Pooled objects are initialized asynchronously
+     * in the initialization executor of this pool, with at most the specified number of pooled objects initialized
+     * at the same time.
+     * <p>
+     * Warming up a key is equivalent to getting a shared object for the key and disposing of it immediately, so pooled
+     * objects initialized in advance are subject to the usual disposal of unused pooled objects. Keys which should
+     * remain available until the pool is disposed of have to be {@link #pin(Object) pinned}.
+     *
+     * @param keys the keys to initialize pooled objects for.
+     * @param parallelism the maximal number of pooled objects initialized at the same time.
+     * @return the future tracking the progress of warming up.
+     */
+    public WarmUpFuture warmUp(Collection<? extends K> keys, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism (" + parallelism + ") <= 0");
         }
 
-        // Should we remove entry from the cache after the synchronized block?
-        boolean removeEntryFromCache;
+        Set<K> distinctKeys = new LinkedHashSet<>(keys);
+        WarmUpFuture progress = new WarmUpFuture(distinctKeys.size());
+        Queue<K> pendingKeys = new ConcurrentLinkedQueue<>(distinctKeys);
 
-        // Duration statistics collected if we actually dispose of the pooled object.
-        long startDisposeTimestamp = Long.MIN_VALUE;
-        long endDisposeTimestamp = Long.MIN_VALUE;
-        boolean disposeSuccess = false;
+        // Each worker takes keys from the queue until the queue is empty, or until the warm-up is cancelled.
+        Runnable worker = () -> {
+            K key;
+            while (!progress.isDone() && (key = pendingKeys.poll()) != null) {
+                try {
+                    this.get(key).dispose();
+                    progress.keyWarmedUp();
+                } catch (Exception ex) {
+                    logger.warn("Exception when warming up pooled object {}", key, ex);
+                    progress.keyFailed(ex);
+                }
+            }
+        };
 
-        Lock exclusiveEntryLock = entry.exclusiveLock();
-        exclusiveEntryLock.lock();
-        try {
-            // An entry may be disposed of only if it is not providing any shared objects. Since we are holding
-            // the exclusive lock, a number of provided shared objects can't change in the meantime.
-            int entrySharedCount = entry.getSharedCount();
-            if (entrySharedCount > 0) {
-                // The entry is providing some shared objects, so it can't be disposed of.
+        int workers = Math.min(parallelism, distinctKeys.size());
+        int startedWorkers = 0;
+        RejectedExecutionException rejected = null;
+        for (int i = 0; i < workers; ++i) {
+            try {
+                this.initializeExecutor.execute(worker);
+                startedWorkers++;
+            } catch (RejectedExecutionException ex) {
+                // Continue with less parallelism.
+                rejected = ex;
+            }
+        }
+        if (startedWorkers == 0 && rejected != null) {
+            progress.completeExceptionally(rejected);
+        }
+
+        return progress;
+    }
+
+
+    /**
+     * Pins the specified key. The pooled object for a pinned key is not disposed of even if it does not provide any
+     * shared objects, until the key is {@link #unpin(Object) unpinned}, or this pool is disposed of. Pinning a key does
+     * not create a pooled object for it, use {@link #warmUp(Collection, int)} to initialize pooled objects
+     * for pinned keys in advance.
+     * <p>
+     * If the pooled object for the key is being disposed of concurrently with pinning the key, it is not guaranteed
+     * to be kept. A new pooled object created afterwards is kept.
+     *
+     * @param key the key to pin.
+     */
+    public void pin(K key) {
+        this.pinnedKeys.add(Objects.requireNonNull(key));
+    }
+
+
+    /**
+     * Unpins the specified key. If the pooled object for the key does not provide any shared objects, it is offered
+     * for disposal as usual.
+     *
+     * @param key the key to unpin.
+     */
+    public void unpin(K key) {
+        if (this.pinnedKeys.remove(key)) {
+            Entry entry = this.entries.get(key);
+            if (entry != null && entry.getSharedCount() == 0) {
+                this.offerDispose(entry);
+            }
+        }
+    }
+
+
+    /**
+     * Checks if the specified key is pinned.
+     *
+     * @param key the key to check.
+     * @return {@code true} if the specified key is pinned, {@code false} otherwise.
+     */
+    public boolean isPinned(K key) {
+        return this.pinnedKeys.contains(key);
+    }
+
+
+    @Override
+    public CompletableFuture<S> getAsync(K key) {
+        return this.getAsync(key, this.initializeExecutor);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the pooled object for the specified key is already available, the returned future is completed immediately
+     * in the calling thread. Otherwise the pooled object is initialized in the specified executor, and concurrent
+     * callers for the same key share the same initialization.
+     * <p>
+     * If all callers waiting for the initialization cancel their futures, the initialization is cancelled as well,
+     * that is the thread initializing the pooled object is interrupted.
+     */
+    @Override
+    public CompletableFuture<S> getAsync(K key, Executor executor) {
+        Objects.requireNonNull(executor);
+
+        // Duration statistics and whether we hit or miss, see comments in the method get().
+        long startGetTimestamp = System.nanoTime();
+
+        try {
+            // Get an entry, or create a new one. If a new entry is created, it is not initialized yet.
+            Entry entry = this.getEntry(key);
+
+            // Fast path: the entry is already active, so we may complete immediately without switching threads.
+            if (entry.tryAcquire()) {
+                S sharedObject;
+                try {
+                    sharedObject = entry.createSharedObject();
+                } finally {
+                    long endGetTimestamp = System.nanoTime();
+                    this.fireSharedObjectGet(endGetTimestamp - startGetTimestamp, true);
+                }
+                return CompletableFuture.completedFuture(sharedObject);
+            }
+        } catch (Exception ex) {
+            long endGetTimestamp = System.nanoTime();
+            this.fireSharedObjectGet(endGetTimestamp - startGetTimestamp, false);
+
+            CompletableFuture<S> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+
+        // Slow path: the entry has to be initialized first, or we have to try again with another entry.
+        CompletableFuture<S> result = new CompletableFuture<>();
+        result.whenComplete((sharedObject, ex) -> {
+            long endGetTimestamp = System.nanoTime();
+            this.fireSharedObjectGet(endGetTimestamp - startGetTimestamp, false);
+        });
+        this.completeAsync(key, executor, result);
+
+        return result;
+    }
+
+
+    // Attempt to complete the provided future with a shared object for the specified key. If the entry for the key is
+    // not initialized yet, initialize it in the provided executor, and attempt again after the initialization is
+    // finished. Several attempts may be required due to asynchronous operations in other threads.
+    private void completeAsync(K key, Executor executor, CompletableFuture<S> result) {
+        try {
+            // The future may have been cancelled by the caller in the meantime.
+            if (result.isDone()) {
+                return;
+            }
+
+            Entry entry = this.getEntry(key);
+            if (entry.tryAcquire()) {
+                S sharedObject = entry.createSharedObject();
+                if (!result.complete(sharedObject)) {
+                    // The future has been cancelled in the meantime, nobody will use the shared object.
+                    sharedObject.dispose();
+                }
+                return;
+            }
+
+            CompletableFuture<Void> initFuture = entry.getInitFuture();
+            if (initFuture == null && entry.getSharedCount() == Entry.NEW) {
+                // This thread is the first one to wait for the entry, so we have to start initializing it.
+                CompletableFuture<Void> newInitFuture = new CompletableFuture<>();
+                if (entry.setInitFuture(newInitFuture)) {
+                    try {
+                        executor.execute(() -> this.initializeAsync(entry, newInitFuture));
+                    } catch (RejectedExecutionException ex) {
+                        // Allow the next caller to try again, possibly with another executor.
+                        entry.resetInitFuture(newInitFuture);
+                        newInitFuture.completeExceptionally(ex);
+                    }
+                }
+
+                // Another thread may have started initializing the entry in the meantime.
+                initFuture = entry.getInitFuture();
+            }
+
+            if (initFuture == null || (initFuture.isDone() && !initFuture.isCompletedExceptionally())) {
+                // The entry is not new, but we could not acquire a shared object from it, so the entry is being
+                // disposed of. Getting a shared object requires waiting until the disposal is finished, so do it
+                // in the executor.
+                executor.execute(() -> this.completeAsyncSlow(entry, key, executor, result));
+                return;
+            }
+
+            // Register as a thread waiting for the initialization. If the caller cancels the future before
+            // the initialization is finished, this thread gives up waiting, and the initialization is cancelled if no
+            // other thread waits for it anymore.
+            AtomicBoolean waiting = new AtomicBoolean(true);
+            entry.addInitWaiter();
+            result.whenComplete((sharedObject, ex) -> {
+                if (result.isCancelled() && waiting.compareAndSet(true, false)) {
+                    entry.giveUpInit();
+                }
+            });
+
+            // Attempt again once the initialization is finished. The callback runs in the thread which finished
+            // the initialization, or in this thread if the initialization is already finished. An initialization
+            // finishes successfully also if the entry turns out to be already disposed of, in such case the next
+            // attempt will create a new entry.
+            initFuture.whenComplete((ignore, ex) -> {
+                if (waiting.compareAndSet(true, false)) {
+                    entry.removeInitWaiter();
+                }
+
+                if (ex != null) {
+                    result.completeExceptionally(unwrapCompletionException(ex));
+                } else {
+                    this.completeAsync(key, executor, result);
+                }
+            });
+        } catch (Exception ex) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+
+    // Attempt to complete the provided future with a shared object from the provided entry without any assumptions,
+    // waiting on the exclusive lock of the entry if required. If it is not possible, attempt again with another entry.
+    private void completeAsyncSlow(Entry entry, K key, Executor executor, CompletableFuture<S> result) {
+        try {
+            // The future may have been cancelled by the caller in the meantime.
+            if (result.isDone()) {
                 return;
+            }
+
+            S sharedObject = this.getSharedObject(entry);
+            if (sharedObject == null) {
+                // The entry has been disposed of, attempt again with a new entry.
+                this.completeAsync(key, executor, result);
+            } else if (!result.complete(sharedObject)) {
+                // The future has been cancelled in the meantime, nobody will use the shared object.
+                sharedObject.dispose();
+            }
+        } catch (Exception ex) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+
+    // Initialize the provided entry, and complete the provided future when done.
+    private void initializeAsync(Entry entry, CompletableFuture<Void> initFuture) {
+        if (this.initialize(entry, initFuture)) {
+            // Completing the future has run callbacks of all waiting threads, so they had a chance to acquire their
+            // own shared objects. Release the shared object acquired on their behalf.
+            entry.releaseAcquired();
+        }
+    }
+
+
+    // Initialize the provided entry in the current thread without holding any lock, and complete the provided future
+    // when done. The current thread must have set the provided future as the init future of the entry.
+    // After a successful initialization, a shared object is acquired on behalf of all threads waiting for
+    // the initialization before the future is completed, so that the entry is not disposed of before they had a chance
+    // to acquire their own shared objects. Returns true if the shared object has been acquired, in such case the caller
+    // must either construct the shared object, or release it.
+    private boolean initialize(Entry entry, CompletableFuture<Void> initFuture) {
+        long startInitializeTimestamp = System.nanoTime();
+        try {
+            entry.init();
+        } catch (RuntimeException | Error ex) {
+            long endInitializeTimestamp = System.nanoTime();
+            this.firePooledObjectInitialized(endInitializeTimestamp - startInitializeTimestamp, false);
+
+            // If an attempt to initialize an entry caused an exception, we will not attempt to create and initialize
+            // an entry again, because it could cause an infinite loop. Instead, threads waiting for the initialization
+            // get the exception. The only exception is a cancelled initialization: threads which started waiting
+            // after all previous waiting threads gave up attempt again with a new entry.
+            this.entries.remove(entry.getKey(), entry);
+            if (entry.isInitCancelled()) {
+                initFuture.complete(null);
+            } else {
+                this.initializationFailed(entry.getKey(), ex);
+                initFuture.completeExceptionally(ex);
+            }
+            return false;
+        }
+
+        long endInitializeTimestamp = System.nanoTime();
+        this.firePooledObjectInitialized(endInitializeTimestamp - startInitializeTimestamp, true);
+        this.initializationSucceeded(entry.getKey());
+        if (entry.idleStats != null) {
+            entry.idleStats.recordInitialize(endInitializeTimestamp - startInitializeTimestamp);
+        }
+
+        // Acquiring fails only if the pool has been shut down in the meantime, waiting threads will find it out
+        // when they attempt again.
+        boolean acquired = entry.tryAcquire();
+
+        // Completing the future runs callbacks of all asynchronously waiting threads.
+        initFuture.complete(null);
+
+        // The new pooled object may have pushed the total weight over the maximum. The new entry itself is not evicted,
+        // because it provides a shared object acquired above.
+        this.evictIfOverweight();
+        return acquired;
+    }
+
+
+    // Wait until the initialization of the provided entry, running in another thread, is finished. If the
+    // initialization failed, re-throw the exception.
+    private void awaitInitialization(Entry entry, CompletableFuture<Void> initFuture) {
+        // This thread never gives up waiting, so the initialization is not cancelled while this thread is registered.
+        entry.addInitWaiter();
+        try {
+            initFuture.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw ex;
+            }
+        } finally {
+            entry.removeInitWaiter();
+        }
+    }
+
+
+    private static Throwable unwrapCompletionException(Throwable ex) {
+        return (ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+    }
+
+
+    private Entry getEntry(K key) throws InvalidKeyException {
+        // Fast-track if this pool is already disposed of.
+        if (this.disposed) {
+            throw new IllegalStateException("The pool is already disposed of");
+        }
+
+        // Get an entry from the map or create a new one. Looking up an existing entry first does not lock the map,
+        // and allows to reject a recently seen invalid key before attempting to create a new entry.
+        if (this.frequencySketch != null) {
+            this.frequencySketch.increment(key);
+        }
+
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.rejectInvalidKey(key);
+            this.rejectOpenCircuit(key);
+            entry = this.entries.computeIfAbsent(key, this::createEntry);
+        }
+
+        // Possible multi-threaded scenario we have to take into account:
+        //
+        // * This method was called on a pool in the thread A. This method had checked that the pool is not disposed of
+        // yet, but the thread A had been "frozen" directly afterwards, before "computeIfAbsent" above has been
+        // executed.
+        // * The method "dispose()" has been called in the thread B for this pool. The method "dispose()" set the
+        // dispose flag, iterated over all entries in the map, disposed of them and finished.
+        // * The thread A "awakes" and continue to execute this method. It executed "computeIfAbsent" above, and created
+        // a new entry, although this pool is already disposed of by the thread B.
+        //
+        // To account for such case, we have to check the "dispose" flag again, and clean up if the flag was set
+        // in the meantime.
+        if (this.disposed) {
+            // Special case: in the meantime this pool has been disposed of. As explained above, we have to clean up.
+            this.disposeEntryOnShutdown(entry);
+            throw new IllegalStateException("The pool is already disposed of");
+        } else {
+            // Normal case: this pool is still alive. Even if the method "dispose()" has been called in another thread,
+            // it has not set the "dispose" flag yet. In such case, when the method "dispose()" continues to run
+            // (assuming it was called at all), it will clean up all entries in the map, including the one we just
+            // created.
+            return entry;
+        }
+    }
+
+
+    // Attempt to get a shared object from the specified entry without any assumptions. This is the slow path: a new
+    // entry has to be initialized first, either by this thread or by another thread, and an entry which is being
+    // disposed of requires an exclusive lock.
+    // Returns the obtained shared object, or null if it is not possible. In the latter case, another attempt
+    // is required.
+    private S getSharedObject(Entry entry) throws InitializationException {
+        CompletableFuture<Void> initFuture = entry.getInitFuture();
+        if (initFuture == null && entry.getSharedCount() == Entry.NEW) {
+            CompletableFuture<Void> newInitFuture = new CompletableFuture<>();
+            if (entry.setInitFuture(newInitFuture)) {
+                // The entry was just added to the pool either by this thread or by another thread. Since this thread
+                // is the first one to get a shared object from it, we have to initialize it. The initialization runs
+                // without holding any lock, other threads wait for the init future. This thread counts as a waiting
+                // thread itself, so the initialization is not cancelled if all other waiting threads give up.
+                entry.addInitWaiter();
+                try {
+                    if (this.initialize(entry, newInitFuture)) {
+                        return entry.createSharedObject();
+                    }
+                } finally {
+                    entry.removeInitWaiter();
+                }
+            }
+
+            // Another thread may have started initializing the entry in the meantime.
+            initFuture = entry.getInitFuture();
+        }
+
+        if (initFuture != null) {
+            // Wait until the initialization is finished. If the initialization failed, the exception is re-thrown.
+            // Otherwise the entry is either active, or already disposed of, which is handled below.
+            this.awaitInitialization(entry, initFuture);
+            if (entry.tryAcquire()) {
+                return entry.createSharedObject();
+            }
+        }
+
+        if (!this.acquire(entry)) {
+            return null;
+        }
+
+        // We have acquired a shared object from the entry, so the entry can not be disposed of anymore (except
+        // when the whole pool is shut down). Constructing the shared object itself does not require any lock.
+        return entry.createSharedObject();
+    }
+
+
+    // Attempt to acquire a shared object from the specified entry, which is not new, without any further assumptions.
+    // This is the slow path which requires an exclusive lock on the entry.
+    // Returns true if a shared object has been acquired, or false if it is not possible because the entry is not
+    // initialized yet or already disposed of. In the latter case, another attempt is required.
+    private boolean acquire(Entry entry) {
+        synchronized (entry) {
+            int entrySharedCount = entry.getSharedCount();
+
+            if (entrySharedCount >= 0) {
+                // The entry is active, so we may just acquire a new shared object. Since we are holding the exclusive
+                // lock, the entry can not be disposed of in the meantime, so acquiring always succeeds.
+                entry.acquire();
+            } else if (entrySharedCount == Entry.NEW) {
+                // The entry is initialized without holding the exclusive lock. This happens only if an asynchronous
+                // initialization could not be started, and the init future has been reset. Attempt again.
+                return false;
+            } else {
+                assert (entrySharedCount == Entry.DISPOSED);
+
+                // The entry is already disposed of. This could happens, for example, in the following scenario:
+                // * This thread (A) got an entry from the cache. Currently entry supports 1 shared object.
+                // * Before this thread acquires a shared object, another thread (B) disposes of the shared object.
+                // * Since the entry does not support any shared object anymore, it is eligible for disposal.
+                // * The entry is disposed and removed from the cache, but this thread (A) already holds the entry.
+                // * This thread (A) fails to acquire a shared object on the fast path, and locks the entry, but the
+                // entry is already disposed of.
+                //
+                // Examples above is just one of several possible scenarios. Either way, we should expect the case
+                // when the entry is already disposed of. In such case we will remove the disposed entry from the cache,
+                // and try once more.
+                //
+                // Note that an entry is marked as disposed before the pooled object is actually disposed of, but both
+                // happens under the exclusive lock we are holding now. Removing the entry from the cache only after
+                // we got the lock ensures that a new entry with the same key is not created while the old pooled
+                // object is still being disposed of. If the pooled object is disposed of in a batch, we have to wait
+                // until the batch is processed as well.
+                CompletableFuture<Void> disposeFuture = entry.getDisposeFuture();
+                if (disposeFuture != null) {
+                    // Exceptions are reported by the thread which has disposed of the entry.
+                    disposeFuture.handle((ignore, ex) -> null).join();
+                }
+
+                K key = entry.getKey();
+                this.entries.remove(key, entry);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    private Entry createEntry(K key) throws InvalidKeyException {
+        // Restoring statistics of the key records the reuse gap since the previous pooled object became idle.
+        AdaptiveIdlePolicy.KeyStats idleStats = (this.idlePolicy != null ? this.idlePolicy.attach(key) : null);
+
+        // Duration statistics collected if we actually create a new pooled object.
+        long startCreateTimestamp = System.nanoTime();
+        long endCreateTimestamp = Long.MIN_VALUE;
+        boolean createSuccess = false;
+        try {
+            P pooledObject = createPooledObject(key);
+            endCreateTimestamp = System.nanoTime();
+            createSuccess = true;
+            if (idleStats != null) {
+                idleStats.recordCreate(endCreateTimestamp - startCreateTimestamp);
+            }
+
+            StripedCounter stripedCount = (this.hotKeys.test(key) ? new StripedCounter(this.hotKeyStripes) : null);
+            return new Entry(key, pooledObject, stripedCount, idleStats);
+        } finally {
+            // Were we successfull when creating a new pooled object? If not, take the end timestamp.
+            if (!createSuccess) {
+                endCreateTimestamp = System.nanoTime();
+            }
+            this.firePooledObjectCreated(endCreateTimestamp - startCreateTimestamp, createSuccess);
+        }
+    }
+
+
+    // Offer the specified entry, which does not provide any shared objects anymore, for disposal. If the asynchronous
+    // disposal is configured, the calling thread only enqueues the entry, and the offer is processed on the dispose
+    // executor. Until then the entry remains active, so another thread getting a shared object for the same key
+    // revives the entry with a single CAS, and the offer finds the entry not eligible for disposal anymore.
+    private void offerDispose(Entry entry) {
+        if (!this.asyncDispose) {
+            this.offerDisposeNow(entry);
+        } else if (entry.markDisposeQueued()) {
+            try {
+                this.executeDisposeTask(() -> {
+                    // Clear the mark before processing the offer, so that the entry is enqueued again if it becomes
+                    // idle after being checked.
+                    entry.clearDisposeQueued();
+                    this.offerDisposeNow(entry);
+                });
+            } catch (RejectedExecutionException ex) {
+                // The pool has been shut down in the meantime, and the shutdown disposes of all entries anyway.
+                entry.clearDisposeQueued();
+            }
+        }
+        // Otherwise an offer for the entry is already enqueued, and not processed yet.
+    }
+
+
+    // Try to dispose of the specified entry. We may dispose of the entry synchronously, or schedule a later attempt
+    // dependend on the configuration of this shared object pool.
+    // It could be that in the meantime the entry is not eligible for a disposal anymore, in such case no disposal
+    // takes place.
+    private void offerDisposeNow(Entry entry) {
+        if (this.pinnedKeys.contains(entry.getKey())) {
+            // Pinned entries are kept even if they do not provide any shared objects.
+            return;
+        }
+        if (this.idleEntries != null) {
+            // The entry becomes a candidate for eviction, even if disposing of unused entries is disabled.
+            this.addIdleEntry(entry);
+            this.evictIfOverweight();
+        }
+        if (!this.disposeUnused) {
+            // Fast track if disposing of unused entries is disabled.
+            return;
+        }
+
+        this.disposeIdleEntry(entry, false);
+    }
+
+
+    // Dispose of the specified entry, if it does not provide any shared objects. If the parameter evict is false,
+    // the entry may be scheduled for a later disposal dependent on the configuration of this shared object pool.
+    // If the parameter evict is true, the entry is disposed of immediately.
+    // Returns true if the entry has been disposed of.
+    private boolean disposeIdleEntry(Entry entry, boolean evict) {
+        // Should we remove entry from the cache after the locked block?
+        boolean removeEntryFromCache;
+
+        // Duration statistics collected if we actually dispose of the pooled object.
+        long startDisposeTimestamp = Long.MIN_VALUE;
+        long endDisposeTimestamp = Long.MIN_VALUE;
+        boolean disposeSuccess = false;
+
+        synchronized (entry) {
+            // An entry may be disposed of only if it is not providing any shared objects. Note that even though we
+            // are holding the exclusive lock, other threads may acquire new shared objects from an active entry in
+            // the meantime, because acquiring does not require the lock. The final check happens atomically when
+            // the entry is marked as disposed.
+            int entrySharedCount = entry.getSharedCount();
+            if (entrySharedCount > 0) {
+                // The entry is providing some shared objects, so it can't be disposed of.
+                return false;
             } else if (entrySharedCount == Entry.DISPOSED) {
                 // Another thread had already disposed of the entry. This could happens in the following scenario:
                 // * Another thread (B) released the last shared object from the entry, and called this method
@@ -376,7 +1432,7 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
                 // the entry for disposal.
                 // * Another thread (B) obtain the exclusive lock and disposes of the entry.
                 // * This thread (A) obtains the exclusive lock, but the entry is already disposed of.
-                return;
+                return false;
             } else if (entrySharedCount == Entry.NEW) {
                 throw new IllegalStateException("Entry offered for disposal, but the status is new: " + entry.getKey());
             }
@@ -384,15 +1440,19 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
             // The entry is eligible for disposal. Shall we dispose of the entry immediately, or shall we schedule it
             // to be disposed later?
             boolean disposeEntryImmediately;
-            if (this.idleDisposeTimeMillis > 0) {
+            if (evict) {
+                // The entry is evicted to reduce the total weight of this pool, regardless of how long it has been
+                // idle.
+                disposeEntryImmediately = true;
+            } else if (this.idleDisposeTimeMillis > 0) {
                 long lastReturnTime = entry.getLastReturnTime();
-                long disposeAt = lastReturnTime + this.idleDisposeTimeMillis;
+                long disposeAt = lastReturnTime + this.idleTimeMillis(entry);
                 long now = System.currentTimeMillis();
                 long delayBeforeDispose = disposeAt - now;
 
                 if (delayBeforeDispose > 0) {
                     // Instead of disposing of the entry immediately, schedule to try again later.
-                    ScheduledFuture<?> disposeTask = this.scheduleDisposeTask(() -> this.offerDispose(entry),
+                    TimingWheel.Timeout disposeTask = this.scheduleDisposeTask(() -> this.offerDisposeNow(entry),
                             delayBeforeDispose, TimeUnit.MILLISECONDS);
                     entry.setDisposeTask(disposeTask);
 
@@ -412,620 +1472,1765 @@ public class ConcurrentSharedObjectPool<K, S extends SharedObject, P> extends Ab
             if (disposeEntryImmediately) {
                 startDisposeTimestamp = System.nanoTime();
                 try {
-                    entry.dispose(false);
+                    boolean disposed = entry.dispose(false);
                     endDisposeTimestamp = System.nanoTime();
                     disposeSuccess = true;
+
+                    if (!disposed) {
+                        // Another thread has acquired a new shared object in the meantime, so the entry is not
+                        // eligible for disposal anymore.
+                        return false;
+                    }
                 } catch (Exception ex) {
                     endDisposeTimestamp = System.nanoTime();
                     disposeSuccess = false;
                     logger.error("Exception when disposing of entry {}", entry.getKey(), ex);
                 }
 
-                // We have disposed of the entry, so we shall remove it from cache after the synchronized block.
-                removeEntryFromCache = true;
-            } else {
-                // We have not disposed of the entry: either it is not eligible for the disposal at all (for example,
-                // because it provides shared objects), or we have scheduled the entry for a later disposal.
-                // Either way, the entry shall remain in the cache.
-                removeEntryFromCache = false;
+                // We have disposed of the entry, so we shall remove it from cache after the locked block.
+                removeEntryFromCache = true;
+            } else {
+                // We have not disposed of the entry: either it is not eligible for the disposal at all (for example,
+                // because it provides shared objects), or we have scheduled the entry for a later disposal.
+                // Either way, the entry shall remain in the cache.
+                removeEntryFromCache = false;
+            }
+        }
+
+        // Remove the entry from the cache, if it has been disposed of. When removing, make sure that we are removing
+        // the right entry to prevent case when another thread had already removed the "bad" entry and inserted into
+        // the cache another, "good" one.
+        if (removeEntryFromCache) {
+            CompletableFuture<Void> disposeFuture = entry.getDisposeFuture();
+            if (disposeFuture == null) {
+                this.entries.remove(entry.getKey(), entry);
+
+                // Since we have evicted the entry, we have disposed of the pooled object, either successfully
+                // or with a failure. Anyway, we may notify statistics listeners.
+                this.firePooledObjectDisposed(endDisposeTimestamp - startDisposeTimestamp, disposeSuccess);
+                this.recordDisposed(entry, endDisposeTimestamp - startDisposeTimestamp);
+            } else {
+                // The pooled object is disposed of in a batch. Remove the entry from the cache once the batch
+                // is processed.
+                final long startBatchDisposeTimestamp = startDisposeTimestamp;
+                disposeFuture.whenComplete((ignore, ex) -> {
+                    long endBatchDisposeTimestamp = System.nanoTime();
+                    if (ex != null) {
+                        logger.error("Exception when disposing of entry {}", entry.getKey(), ex);
+                    }
+
+                    this.entries.remove(entry.getKey(), entry);
+                    this.firePooledObjectDisposed(endBatchDisposeTimestamp - startBatchDisposeTimestamp, ex == null);
+                    this.recordDisposed(entry, endBatchDisposeTimestamp - startBatchDisposeTimestamp);
+                });
+            }
+
+            if (this.idleEntries != null) {
+                this.removeIdleEntry(entry);
+            }
+        }
+
+        return removeEntryFromCache;
+    }
+
+
+    // Returns how long to keep the specified entry idle before disposing of it.
+    private long idleTimeMillis(Entry entry) {
+        return (entry.idleStats != null ? this.idlePolicy.idleTimeMillis(entry.idleStats) : this.idleDisposeTimeMillis);
+    }
+
+
+    // Keeps statistics of the key of a disposed entry, so that they are available when the key is requested again.
+    private void recordDisposed(Entry entry, long disposeDurationNanos) {
+        if (entry.idleStats != null) {
+            entry.idleStats.recordDispose(disposeDurationNanos);
+            this.idlePolicy.detach(entry.getKey(), entry.idleStats, entry.getLastReturnTime());
+        }
+    }
+
+
+    /**
+     * Returns how long a pooled object for the specified key is kept after it stopped providing shared objects,
+     * before it is disposed of. If the adaptive idle time is enabled, the idle time is chosen for each key based on
+     * recent reuse gaps and the cost to re-create the pooled object, see
+     * {@link Builder#setKeepAliveCostNanosPerSecond(long)}. If the pool does not currently contain a pooled object
+     * for the key, the cost to create it is not known, and the maximal idle time is returned.
+     *
+     * @param key the key of the pooled object.
+     * @return the idle time in milliseconds.
+     */
+    public long getIdleDisposeTimeMillis(K key) {
+        Entry entry = (this.idlePolicy != null ? this.entries.get(key) : null);
+        return (entry != null ? this.idleTimeMillis(entry) : this.idleDisposeTimeMillis);
+    }
+
+
+    // Add the specified entry to idle entries, or move it to the end if it is already there.
+    private void addIdleEntry(Entry entry) {
+        this.evictionLock.lock();
+        try {
+            // An entry which is active again or already disposed of is not a candidate for eviction. The check
+            // is not exact, the exact check is done when the entry is disposed of.
+            this.idleEntries.remove(entry);
+            if (entry.getSharedCount() == 0) {
+                this.idleEntries.add(entry);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+
+    private void removeIdleEntry(Entry entry) {
+        this.evictionLock.lock();
+        try {
+            this.idleEntries.remove(entry);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+
+    // Evict idle entries while the total weight of all pooled objects exceeds the maximum. Entries which provide
+    // shared objects are never evicted, so the total weight may remain above the maximum.
+    private void evictIfOverweight() {
+        while (this.maximumWeight > 0 && this.totalWeight.get() > this.maximumWeight) {
+            Entry victim = this.selectVictim();
+            if (victim == null) {
+                // No idle entries to evict.
+                return;
+            }
+
+            // The victim is disposed of without holding the eviction lock. If another thread has acquired a shared
+            // object from the victim in the meantime, the victim is not disposed of, and we attempt again with
+            // another one.
+            if (this.disposeIdleEntry(victim, true)) {
+                this.evictedCount.increment();
+            }
+        }
+    }
+
+
+    // Select an idle entry to evict, and remove it from idle entries. Returns null if there are no idle entries.
+    //
+    // The policy is an adaptation of W-TinyLFU to a pool where only idle entries may be evicted. Entries which became
+    // idle most recently are at the end of idle entries, and act as an admission window: they are protected from
+    // the eviction for a while, even if their keys have been accessed only a few times so far. The eviction samples
+    // a few entries which have been idle for the longest time, and evicts the one with the lowest access frequency,
+    // so that keys accessed frequently survive idle periods, while keys accessed once are evicted first.
+    private Entry selectVictim() {
+        this.evictionLock.lock();
+        try {
+            Entry victim = null;
+            int victimFrequency = Integer.MAX_VALUE;
+            int sampled = 0;
+
+            Iterator<Entry> it = this.idleEntries.iterator();
+            while (it.hasNext() && sampled < EVICTION_SAMPLE_SIZE) {
+                Entry entry = it.next();
+                if (entry.getSharedCount() != 0 || this.pinnedKeys.contains(entry.getKey())) {
+                    // The entry is active again or already disposed of, or the key has been pinned in the meantime.
+                    // An active entry is added again when it becomes idle.
+                    it.remove();
+                    continue;
+                }
+
+                sampled++;
+                int frequency = this.frequencySketch.frequency(entry.getKey());
+                if (frequency < victimFrequency) {
+                    victim = entry;
+                    victimFrequency = frequency;
+                }
+            }
+
+            if (victim != null) {
+                this.idleEntries.remove(victim);
+            }
+            return victim;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+
+    // Calculate the weight of the specified initialized pooled object. Returns 0 if the total weight is not limited.
+    private int weigh(K key, P pooledObject) {
+        if (this.maximumWeight <= 0) {
+            return 0;
+        }
+
+        try {
+            int weight = this.weigher.weigh(key, pooledObject);
+            if (weight < 0) {
+                logger.error("Negative weight {} of pooled object for the key {}, using weight 0", weight, key);
+                return 0;
+            }
+            return weight;
+        } catch (RuntimeException ex) {
+            logger.error("Exception when weighing pooled object for the key {}, using weight 1", key, ex);
+            return 1;
+        }
+    }
+
+
+    /**
+     * Returns the total weight of all pooled objects in this pool. Returns 0 if the total weight of this pool is not
+     * limited.
+     *
+     * @return the total weight of all pooled objects in this pool.
+     */
+    public long getTotalWeight() {
+        return this.totalWeight.get();
+    }
+
+
+    /**
+     * Returns the number of idle pooled objects evicted because the total weight of this pool exceeded the maximum.
+     *
+     * @return the number of evicted idle pooled objects.
+     */
+    public long getEvictedCount() {
+        return this.evictedCount.sum();
+    }
+
+
+    @Override
+    public int getPooledObjectsCount() {
+        return this.entries.size();
+    }
+
+
+    @Override
+    public int getUnusedPooledObjectsCount() {
+        int unusedPooledObjectsCount = 0;
+        for (Entry entry : this.entries.values()) {
+            if (entry.getSharedCount() <= 0) {
+                unusedPooledObjectsCount++;
+            }
+        }
+
+        return unusedPooledObjectsCount;
+    }
+
+
+    @Override
+    public int getSharedObjectsCount() {
+        int sharedObjectsCount = 0;
+        for (Entry entry : this.entries.values()) {
+            sharedObjectsCount += Math.max(0, entry.getSharedCount());
+        }
+
+        return sharedObjectsCount;
+    }
+
+
+    @Override
+    public int getSharedObjectsCount(K key) {
+        Entry entry = this.entries.get(key);
+        return (entry == null ? 0 : Math.max(0, entry.getSharedCount()));
+    }
+
+
+    public boolean containsPooledObject(K key) {
+        return this.entries.containsKey(key);
+    }
+
+
+    // An entry holding a pooled object. The pool may hold many entries, so the state of an entry is kept in volatile
+    // fields of the entry itself updated through field updaters (see SHARED_COUNT and others), instead of separate
+    // atomic objects, and the monitor of the entry is used as the exclusive lock for lifecycle management.
+    // Disposing of an entry requires the exclusive lock. Initializing an entry holds the exclusive lock only for a short
+    // time before and after the pooled object is initialized, to coordinate with threads cancelling the initialization.
+    // Acquiring and releasing shared objects does not require any lock, see "sharedCount" below.
+    class Entry implements SharedObjectPhantomReference.ReapGroup {
+
+        // This entry is not initialized yet.
+        public static final int NEW = -1;
+
+        // This entry is already disposed of.
+        public static final int DISPOSED = -2;
+
+        // This entry is in the process of being disposed of (only for entries with a striped counter).
+        public static final int CLOSING = -3;
+
+        private final K key;
+        private final P pooledObject;
+
+        // Number of active shared objects, and a lifecycle stage, encoded in a single word.
+        // -1 (NEW): this entry has not been initialized yet. The entry must be initialized before it is able to provide
+        // shared objects.
+        // -2 (DISPOSED): this entry has been disposed of. A disposed entry can't be re-used. If cached, it must be
+        // removed from a cache and replaced with a new entry.
+        // >= 0: this entry is active (already initialized, not disposed of) and is providing this number of shared
+        // objects.
+        // -3 (CLOSING): this entry is checked for disposal. Used only for entries with a striped counter.
+        // Any other value (< -3): invalid, should never happens (indicates programming error).
+        //
+        // The entry may be in one of possible 3 states: NEW (-1), ACTIVE (>= 0) or DISPOSED (-2). An entry with
+        // a striped counter may be in the additional transient state CLOSING (-3) between ACTIVE and DISPOSED.
+        // Acquiring and releasing shared objects from an active entry is lock-free: it is a CAS on this word, which
+        // succeeds only if the entry is active. Disposing of this entry is the slow path which requires the exclusive
+        // lock (the monitor of this entry). The transition from ACTIVE to DISPOSED is a CAS from 0, so it fails if another
+        // thread has concurrently acquired a shared object. Initializing this entry does not hold the exclusive lock
+        // while the pooled object is initialized. The transition from NEW to ACTIVE is a CAS from NEW, so it fails
+        // if the pool has been shut down concurrently.
+        //
+        // If this entry has a striped counter (see "stripedCount" below), this word holds only the lifecycle stage,
+        // and an active entry is always 0. The number of shared objects is kept in the striped counter.
+        // Updated through SHARED_COUNT.
+        volatile int sharedCount = NEW;
+
+        // The number of active shared objects spread over multiple stripes, or null if this entry keeps the number
+        // of active shared objects in "sharedCount" above.
+        // A striped counter is used for hot keys, where a single atomic word updated by many threads becomes
+        // a bottleneck. A shared object is acquired by incrementing the stripe of the current thread, and then
+        // re-checking that the entry is still active. The entry is disposed of by moving the lifecycle stage from
+        // ACTIVE to CLOSING, and then checking that the sum of all stripes is 0. Both sides first write, then read
+        // what the other side writes, so either the acquiring thread sees CLOSING and backs off, or the disposing
+        // thread sees the incremented stripe and reverts the entry to ACTIVE.
+        // Each shared object remembers the stripe it has been acquired from, and decrements the same stripe
+        // when released, so that stripes never become negative.
+        private final StripedCounter stripedCount;
+
+        // Counter to create IDs for shared objects, updated through SHARED_OBJECT_ID_GEN. IDs are not required for
+        // the application logic, but they are written in a log to help investigate potential problems, such as when
+        // a shared reference is not properly disposed of.
+        volatile long sharedObjectIdGen;
+
+        // Lists of phanom references on tracked shared objects, or null until this entry provides the first tracked
+        // shared object. Keeping phanom references on shared objects allows to find shared objects which were not
+        // properly disposed of. An entry without a striped counter has a single list. An entry with a striped counter
+        // has a list per stripe, so that threads acquiring shared objects from different stripes do not contend on
+        // the same list. Set once through REF_LISTS.
+        volatile SharedObjectPhantomReference.RefList<S>[] refLists;
+
+        // Last time the last shared object from this entry was returned. The time makes sense only if this entry
+        // currently does not provide any shared objects, that is if sharedCount == 0, because the time is NOT reset
+        // when new shared objects are created.
+        private volatile long lastReturnTime = 0;
+
+        // The task on the dispose timing wheel for asynchronously disposing of this entry, if any.
+        // A task is set when this entry is scheduled for an asynchronous disposal.
+        // If this entry provides a new shared object before being disposed, it may cancel the task.
+        // Even if the task is not cancellled, it will not dispose of this entry when executed, if the
+        // entry provides a shared object.
+        // The task is set under the exclusive lock, but cancelled without any lock when acquiring a shared object.
+        private volatile TimingWheel.Timeout disposeTask;
+
+        // Is an offer to dispose of this entry enqueued on the dispose executor, but not processed yet? Used only if
+        // the asynchronous disposal is configured, so that an entry flapping between idle and active is enqueued
+        // at most once.
+        // 1 if enqueued, 0 otherwise, updated through DISPOSE_QUEUED.
+        volatile int disposeQueued;
+
+        // The future completed when the initialization of this entry is finished, or null if the initialization
+        // has not been started yet. The thread which sets the future initializes this entry, all other threads wait
+        // for the future, so that all of them share the same initialization. Updated through INIT_FUTURE.
+        volatile CompletableFuture<Void> initFuture;
+
+        // The number of threads waiting for the initialization of this entry. If the last waiting thread gives up,
+        // the initialization is cancelled. Updated through INIT_WAITERS.
+        volatile int initWaiters;
+
+        // The thread currently initializing the pooled object, or null.
+        // @GuardedBy(this)
+        private Thread initThread;
+
+        // Is the initialization of this entry finished, either successfully or with a failure?
+        // @GuardedBy(this)
+        private boolean initFinished;
+
+        // Has the initialization of this entry been cancelled because all waiting threads gave up?
+        // @GuardedBy(this)
+        private boolean initCancelled;
+
+        // The future completed when the pooled object of this entry is disposed of in a batch, or null if the pooled
+        // object is not disposed of in a batch.
+        private volatile CompletableFuture<Void> disposeFuture;
+
+        // The weight of the pooled object, calculated when this entry is initialized.
+        private int weight;
+
+        // Statistics of the key for choosing the idle time, or null if all keys have the same idle time.
+        final AdaptiveIdlePolicy.KeyStats idleStats;
+
+
+        Entry(K key, P pooledObject, StripedCounter stripedCount, AdaptiveIdlePolicy.KeyStats idleStats) {
+            this.key = Objects.requireNonNull(key);
+            this.pooledObject = Objects.requireNonNull(pooledObject);
+            this.stripedCount = stripedCount;
+            this.idleStats = idleStats;
+        }
+
+
+        K getKey() {
+            return this.key;
+        }
+
+
+        P getPooledObject() {
+            return this.pooledObject;
+        }
+
+
+        // Just getting a current number of shared objects does not require a lock (the variable is an atomic).
+        // Note that the value may change any moment by another thread.
+        // For an entry with a striped counter the value is not exact if shared objects are acquired or released
+        // concurrently. The exact check is done only when disposing of the entry.
+        public int getSharedCount() {
+            int currentSharedCount = this.sharedCount;
+            if (this.stripedCount != null && currentSharedCount >= 0) {
+                return (int) Math.max(0, this.stripedCount.sum());
+            } else {
+                return currentSharedCount;
+            }
+        }
+
+
+        long getLastReturnTime() {
+            return this.lastReturnTime;
+        }
+
+
+        CompletableFuture<Void> getDisposeFuture() {
+            return this.disposeFuture;
+        }
+
+
+        CompletableFuture<Void> getInitFuture() {
+            return this.initFuture;
+        }
+
+
+        // Set the future for an asynchronous initialization, if none is set yet. Returns true if the future has been
+        // set, or false if another thread has set a future in the meantime.
+        boolean setInitFuture(CompletableFuture<Void> initFuture) {
+            return INIT_FUTURE.compareAndSet(this, null, initFuture);
+        }
+
+
+        void resetInitFuture(CompletableFuture<Void> initFuture) {
+            INIT_FUTURE.compareAndSet(this, initFuture, null);
+        }
+
+
+        void addInitWaiter() {
+            INIT_WAITERS.incrementAndGet(this);
+        }
+
+
+        void removeInitWaiter() {
+            INIT_WAITERS.decrementAndGet(this);
+        }
+
+
+        // A thread waiting for the initialization of this entry gives up. If it was the last waiting thread, cancel
+        // the initialization.
+        void giveUpInit() {
+            if (INIT_WAITERS.decrementAndGet(this) == 0) {
+                this.cancelInit();
+            }
+        }
+
+
+        // Cancel the initialization of this entry, if it is not finished yet. If the pooled object is being
+        // initialized, the initializing thread is interrupted. It depends on the pooled object factory if the
+        // initialization actually fails, or if it finishes successfully anyway, in which case the entry will be
+        // disposed of as unused.
+        private void cancelInit() {
+            synchronized (this) {
+                if (this.initFinished || this.initCancelled) {
+                    return;
+                }
+
+                this.initCancelled = true;
+                if (this.initThread != null) {
+                    this.initThread.interrupt();
+                }
+            }
+        }
+
+
+        boolean isInitCancelled() {
+            synchronized (this) {
+                return this.initCancelled;
+            }
+        }
+
+
+        // Attempt to acquire a shared object from this entry without locking. Returns true if this entry is active
+        // and the number of provided shared objects has been incremented, false if this entry is not initialized yet
+        // or already disposed of. Once this method returned true, this entry can not be disposed of until the acquired
+        // shared object is released (except when the whole pool is shut down).
+        public boolean tryAcquire() {
+            if (this.stripedCount != null) {
+                return this.tryAcquireStriped();
+            }
+
+            while (true) {
+                int currentSharedCount = this.sharedCount;
+                if (currentSharedCount < 0) {
+                    return false;
+                }
+                if (SHARED_COUNT.compareAndSet(this, currentSharedCount, currentSharedCount + 1)) {
+                    return true;
+                }
+            }
+        }
+
+
+        private boolean tryAcquireStriped() {
+            // Fail fast without touching the stripe if the entry is not active.
+            if (this.sharedCount != 0) {
+                return false;
+            }
+
+            int stripe = this.stripedCount.currentStripe();
+            this.stripedCount.increment(stripe);
+
+            // Re-check the lifecycle stage after incrementing the stripe. If another thread is disposing of this
+            // entry concurrently, back off and let the caller take the slow path.
+            if (this.sharedCount == 0) {
+                return true;
+            } else {
+                this.stripedCount.decrement(stripe);
+                return false;
+            }
+        }
+
+
+        // Acquire a shared object from this entry, which must be active. Must be called under the exclusive lock,
+        // which guarantees that the entry remains active.
+        public void acquire() {
+            assert (Thread.holdsLock(this));
+
+            if (!this.tryAcquire()) {
+                throw new IllegalStateException("Can not acquire shared object from entry " + this.key
+                        + ": the entry is not active");
+            }
+        }
+
+
+        // Release a shared object previously acquired from this entry. Returns the number of shared objects this entry
+        // provides after the release, or DISPOSED if the entry has been disposed of in the meantime when shutting down
+        // the pool. The stripe is the one the shared object has been acquired from, it is ignored if this entry does
+        // not have a striped counter.
+        private int release(int stripe) {
+            return this.release(stripe, 1);
+        }
+
+
+        // Release the specified number of shared objects previously acquired from the same stripe of this entry
+        // at once, see release(int).
+        private int release(int stripe, int count) {
+            if (this.stripedCount != null) {
+                return this.releaseStriped(stripe, count);
+            }
+
+            while (true) {
+                int currentSharedCount = this.sharedCount;
+                if (currentSharedCount == NEW) {
+                    throw new IllegalStateException("Can not dispose of shared object from entry " + this.key
+                            + ": the entry is not initialized yet");
+                } else if (currentSharedCount == DISPOSED) {
+                    // The pool has been shut down concurrently. There is nothing to release anymore.
+                    return DISPOSED;
+                } else if (currentSharedCount < count) {
+                    throw new IllegalStateException("Can not dispose of " + count + " shared objects from entry "
+                            + this.key + ": the entry has " + currentSharedCount + " shared objects");
+                }
+                assert (currentSharedCount > 0);
+
+                if (SHARED_COUNT.compareAndSet(this, currentSharedCount, currentSharedCount - count)) {
+                    return currentSharedCount - count;
+                }
+            }
+        }
+
+
+        private int releaseStriped(int stripe, int count) {
+            int currentSharedCount = this.sharedCount;
+            if (currentSharedCount == NEW) {
+                throw new IllegalStateException("Can not dispose of shared object from entry " + this.key
+                        + ": the entry is not initialized yet");
+            } else if (currentSharedCount == DISPOSED) {
+                // The pool has been shut down concurrently. There is nothing to release anymore.
+                return DISPOSED;
+            }
+
+            long updatedStripeCount = this.stripedCount.add(stripe, -count);
+            if (updatedStripeCount < 0) {
+                throw new IllegalStateException("Can not dispose of " + count + " shared objects from entry "
+                        + this.key + ": the stripe " + stripe + " has " + (updatedStripeCount + count)
+                        + " shared objects");
+            } else if (updatedStripeCount > 0) {
+                // The stripe still counts other shared objects, so the entry is definitely in use.
+                return (int) Math.min(Integer.MAX_VALUE, updatedStripeCount);
+            } else {
+                // Our stripe is empty, but other stripes may still count shared objects. Reading all stripes
+                // is not exact, the exact check is done under the exclusive lock when disposing of the entry.
+                return (int) Math.max(0, this.stripedCount.sum());
+            }
+        }
+
+
+        // Mark this active entry as disposed, if it does not provide any shared objects. Returns true if the entry
+        // has been marked as disposed, or false if it provides shared objects or another thread has just acquired one.
+        // Must be called under the exclusive lock.
+        private boolean tryMarkDisposed(int currentSharedCount) {
+            assert (Thread.holdsLock(this));
+
+            if (this.stripedCount == null) {
+                return (currentSharedCount == 0 && SHARED_COUNT.compareAndSet(this, 0, DISPOSED));
+            }
+
+            // Block acquiring new shared objects on the fast path while checking all stripes. The disposal succeeds
+            // only if no stripe counts a shared object after the entry has been marked.
+            if (!SHARED_COUNT.compareAndSet(this, 0, CLOSING)) {
+                return false;
+            }
+            if (this.stripedCount.sum() == 0) {
+                this.sharedCount = DISPOSED;
+                return true;
+            } else {
+                this.sharedCount = 0;
+                return false;
+            }
+        }
+
+
+        // Initialize this entry. Must be called only by the thread which has set the init future. The pooled object is
+        // initialized without holding the exclusive lock, so that the initialization may be cancelled, see
+        // cancelInit().
+        public void init() throws InitializationException {
+            synchronized (this) {
+                int currentSharedCount = this.sharedCount;
+                if (currentSharedCount >= 0) {
+                    throw new IllegalStateException("Can not initialize entry " + this.key
+                            + ": the entry is already initialized");
+                }
+                if (currentSharedCount == DISPOSED) {
+                    throw new IllegalStateException("Can not initiaize entry " + this.key
+                            + ": the entry is already disposed of");
+                }
+                assert (currentSharedCount == NEW);
+
+                if (this.initCancelled) {
+                    // All waiting threads gave up before the initialization has been even started.
+                    this.initFinished = true;
+                    SHARED_COUNT.compareAndSet(this, NEW, DISPOSED);
+                    throw new InitializationException(this.key, "The initialization has been cancelled");
+                }
+                this.initThread = Thread.currentThread();
+            }
+
+            boolean initialized = false;
+            try {
+                ConcurrentSharedObjectPool.this.initializePooledObject(this.pooledObject);
+                initialized = true;
+            } catch (Exception ex) {
+                throw InitializationException.wrap(this.key, ex);
+            } finally {
+                synchronized (this) {
+                    this.initThread = null;
+                    this.initFinished = true;
+                    if (this.initCancelled) {
+                        // Clear the interruption caused by cancelling, the thread may be re-used by an executor.
+                        Thread.interrupted();
+                    }
+                    if (!initialized) {
+                        // An attempt to initialize this entry failed. Mark the entry as disposed.
+                        SHARED_COUNT.compareAndSet(this, NEW, DISPOSED);
+                    }
+                }
+            }
+
+            // Weigh the pooled object before this entry becomes active, so that the weight is known whenever this entry
+            // is disposed of.
+            this.weight = ConcurrentSharedObjectPool.this.weigh(this.key, this.pooledObject);
+
+            if (!SHARED_COUNT.compareAndSet(this, NEW, 0)) {
+                // The pool has been shut down while the pooled object has been initialized. The shutdown skipped
+                // the pooled object because it was not initialized yet, so we have to dispose of it ourselves.
+                try {
+                    ConcurrentSharedObjectPool.this.disposePooledObject(this.pooledObject);
+                } catch (Exception ex) {
+                    logger.error("Exception when attempting to dispose of pooled object for the entry {}", this.key,
+                            ex);
+                }
+                throw new IllegalStateException("The pool is already disposed of");
+            }
+            ConcurrentSharedObjectPool.this.totalWeight.addAndGet(this.weight);
+        }
+
+
+        // Dispose of this entry, that is dispose of the underlying pooled object and mark this entry as disposed.
+        // If the parameter onShutdown is true, it indicates this method is called when shutting down the whole pool.
+        // When this method is called with onShutdown = false, it ensures that the lifecycle stage is respected,
+        // that is it disposes of this entry only if the entry is active, but does not provide any shared objects.
+        // If the parameter onShutdown = true, this method will dispose of this entry regardless of the lifecycle stage.
+        //
+        // Returns true if this entry has been disposed of, or false if this method is called with onShutdown = false,
+        // and another thread has acquired a shared object from this entry in the meantime.
+        public boolean dispose(boolean onShutdown) {
+            synchronized (this) {
+                // Mark this entry as disposed before disposing of the pooled object, to prevent other threads from
+                // acquiring new shared objects. Threads which attempt to acquire a shared object from the disposed
+                // entry will take the slow path and wait on the exclusive lock until we are finished.
+                int currentSharedCount;
+                if (onShutdown) {
+                    currentSharedCount = SHARED_COUNT.getAndSet(this, DISPOSED);
+                } else {
+                    currentSharedCount = this.sharedCount;
+                    if (currentSharedCount == NEW) {
+                        throw new IllegalStateException("Can not dispose of entry " + this.key
+                                + ": the entry is not initialized yet");
+                    } else if (currentSharedCount == DISPOSED) {
+                        throw new IllegalStateException("Can not dispose of entry " + this.key
+                                + ": the entry is already disposed of");
+                    } else if (!this.tryMarkDisposed(currentSharedCount)) {
+                        // The entry provides shared objects, or another thread just acquired one.
+                        return false;
+                    }
+                }
+
+                // If we are shutting down the pool, cancel the asynchronous dispose task, if any.
+                // We are already disposing of this entry, and by cancelling the task we may reduce unnecessary load
+                // on the disposal executor.
+                TimingWheel.Timeout disposeTaskSnapshot = this.disposeTask;
+                if (onShutdown && disposeTaskSnapshot != null) {
+                    disposeTaskSnapshot.cancel();
+                    this.disposeTask = null;
+                }
+
+                // If we are shutting down the pool, there could be shared objects provided by this entry.
+                // Dispose of them.
+                if (onShutdown) {
+                    // Mark all references on shared objects as disposed. Shared objects may be released by concurrent
+                    // threads, so each phantom reference is handled under the synchronization lock on the reference.
+                    // New shared objects can not be acquired anymore, because this entry is already marked
+                    // as disposed.
+                    SharedObjectPhantomReference.RefList<S>[] refListsSnapshot = this.refLists;
+                    if (refListsSnapshot != null) {
+                        for (SharedObjectPhantomReference.RefList<S> refList : refListsSnapshot) {
+                            for (SharedObjectPhantomReference<S> phantomRef : refList.snapshot()) {
+                                disposeSharedObjectOnShutdown(phantomRef);
+                            }
+                            refList.clear();
+                        }
+                    }
+                }
+
+                // Shall we dispose of the pooled object? We do not dispose of the pooled object if this entry has not
+                // been initialized yet (that is, the entry state is NEW = -1), or if this entry is already disposed of
+                // (that is, the entry state is DISPOSED = -2).
+                if (currentSharedCount >= 0) {
+                    ConcurrentSharedObjectPool.this.totalWeight.addAndGet(-this.weight);
+
+                    PooledObjectBatcher<P> disposeBatcher = ConcurrentSharedObjectPool.this.disposeBatcher;
+                    if (disposeBatcher != null && !onShutdown) {
+                        // Dispose of the pooled object together with other pooled objects in a batch. The entry
+                        // remains in the cache until the batch is processed, and threads attempting to get a shared
+                        // object for the same key wait for it, so a new pooled object is not initialized before
+                        // the old one is disposed of.
+                        this.disposeFuture = disposeBatcher.submit(this.pooledObject);
+                        return true;
+                    }
+
+                    try {
+                        ConcurrentSharedObjectPool.this.disposePooledObject(this.pooledObject);
+                    } catch (Exception ex) {
+                        // An attempt to dispose of the pooled object failed. Log the exception, but otherwise proceed
+                        // to remove the pooled object.
+                        logger.error("Exception when attempting to dispose of pooled object for the entry {}, "
+                                + "continue removing pooled object", this.key, ex);
+                    }
+                }
+
+                return true;
+            }
+        }
+
+
+        // Mark this entry as enqueued for disposal. Returns true if the mark has been set, or false if this entry
+        // is already enqueued.
+        boolean markDisposeQueued() {
+            return DISPOSE_QUEUED.compareAndSet(this, 0, 1);
+        }
+
+
+        void clearDisposeQueued() {
+            this.disposeQueued = 0;
+        }
+
+
+        // Mark this entry as disposed without disposing of the pooled object, when the shutdown deadline expired.
+        // The exclusive lock is not required, it may be held by a thread which is still disposing of this entry.
+        void abandon() {
+            this.sharedCount = DISPOSED;
+
+            TimingWheel.Timeout disposeTaskSnapshot = this.disposeTask;
+            if (disposeTaskSnapshot != null) {
+                disposeTaskSnapshot.cancel();
+            }
+        }
+
+
+        void setDisposeTask(TimingWheel.Timeout disposeTask) {
+            synchronized (this) {
+                this.disposeTask = disposeTask;
+            }
+        }
+
+
+        // Construct a new shared object. The caller must have already acquired the shared object from this entry,
+        // that is incremented the number of provided shared objects, which guarantees that this entry remains active.
+        // No lock is required.
+        public S createSharedObject() {
+            // The stripe the shared object has been acquired from. The shared object is acquired in the same thread,
+            // so it is the stripe of the current thread.
+            int stripe = (this.stripedCount == null ? 0 : this.stripedCount.currentStripe());
+            try {
+                return this.doCreateSharedObject(stripe);
+            } catch (RuntimeException | Error ex) {
+                // We could not construct the shared object: release the shared object we have acquired on behalf
+                // of the caller, so that this entry does not leak.
+                this.releaseAcquired(stripe);
+                throw ex;
+            }
+        }
+
+
+        private S doCreateSharedObject(final int stripe) {
+            // Get the next ID for the new shared object. IDs are just for logging, to investigate potential
+            // problems such as when a shared object is not properly disposed of.
+            final long sharedObjectId = SHARED_OBJECT_ID_GEN.getAndIncrement(this);
+
+            if (ConcurrentSharedObjectPool.this.leases != null) {
+                return this.doCreateLeasedSharedObject(stripe, sharedObjectId);
+            }
+
+            // Shared objects which are not tracked are not registered with a phantom reference, a client which
+            // forgets to dispose of such shared object leaks it.
+            if (!ConcurrentSharedObjectPool.this.isTracked(sharedObjectId)) {
+                return this.doCreateUntrackedSharedObject(stripe);
+            }
+
+            // A single handle serves as the dispose callback of the new shared object, and as the callback of the reaper
+            // thread. The handle has to be constructed before the shared object, and receives the phantom reference
+            // afterwards.
+            SharedObjectHandle handle = new SharedObjectHandle(stripe);
+
+            // Construct a new shared object which will invoke the handle when disposed.
+            S sharedObject = ConcurrentSharedObjectPool.this.createSharedObject(this.pooledObject, handle);
+
+            // Take the stack trace to track abandoned shared objects. We skip several call frames on the top
+            // to keep only the caller's methods in the stack trace.
+            StackTrace stackTrace = ConcurrentSharedObjectPool.this.stackTraceProvider.provide(4);
+
+            // Construct a phantom reference on the shared object and register it in the reference queue.
+            // The reaper thread will invoke the handle if the shared object is not properly disposed of.
+            SharedObjectPhantomReference<S> sharedObjectPhantomRef = new SharedObjectPhantomReference<>(sharedObjectId,
+                    stackTrace, sharedObject, handle, ConcurrentSharedObjectPool.this.sharedObjectsRefQueue);
+            handle.ref = sharedObjectPhantomRef;
+
+            // Link the phantom reference on the shared object into the list of the stripe, so that we may track
+            // if the shared object is properly disposed of.
+            SharedObjectPhantomReference.RefList<S> refList = this.refList(stripe);
+            refList.add(sharedObjectPhantomRef);
+
+            // The pool may have been shut down after we have acquired the shared object, but before we have stored
+            // the phantom reference. In such case the shutdown could not see our phantom reference, so we have
+            // to clean up ourselves.
+            if (this.sharedCount == DISPOSED) {
+                synchronized (sharedObjectPhantomRef) {
+                    if (!sharedObjectPhantomRef.isDisposed()) {
+                        sharedObjectPhantomRef.markAsDisposed(SharedObjectDisposeType.SHUTDOWN);
+                    }
+                }
+                refList.remove(sharedObjectPhantomRef);
+                throw new IllegalStateException("The pool is already disposed of");
+            }
+
+            this.cancelDisposeTask();
+            return sharedObject;
+        }
+
+
+        // Returns the list of phantom references on shared objects acquired from the specified stripe, creating
+        // the lists on the first call.
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private SharedObjectPhantomReference.RefList<S> refList(int stripe) {
+            SharedObjectPhantomReference.RefList<S>[] lists = this.refLists;
+            if (lists == null) {
+                lists = new SharedObjectPhantomReference.RefList[this.stripedCount == null ? 1
+                        : this.stripedCount.stripes()];
+                for (int i = 0; i < lists.length; ++i) {
+                    lists[i] = new SharedObjectPhantomReference.RefList<>();
+                }
+                if (!REF_LISTS.compareAndSet(this, null, lists)) {
+                    lists = this.refLists;
+                }
+            }
+            return lists[stripe & (lists.length - 1)];
+        }
+
+
+        private S doCreateLeasedSharedObject(int stripe, long sharedObjectId) {
+            // Take the stack trace to report the shared object if its lease expires. We skip one more call frame than
+            // for shared objects tracked by phantom references, because of this method.
+            StackTrace stackTrace = ConcurrentSharedObjectPool.this.stackTraceProvider.provide(5);
+
+            // The lease serves as the dispose callback of the new shared object, and is renewed by the shared object.
+            LeaseHandle lease = new LeaseHandle(stripe, sharedObjectId, stackTrace);
+            S sharedObject = ConcurrentSharedObjectPool.this.createSharedObject(this.pooledObject, lease);
+            ConcurrentSharedObjectPool.this.leases.add(lease);
+
+            // The pool may have been shut down after we have acquired the shared object, but before we have registered
+            // the lease. In such case the shutdown could not see our lease, so we have to clean up ourselves.
+            if (this.sharedCount == DISPOSED) {
+                lease.disposeOnShutdown();
+                ConcurrentSharedObjectPool.this.leases.remove(lease);
+                throw new IllegalStateException("The pool is already disposed of");
+            }
+
+            this.cancelDisposeTask();
+            return sharedObject;
+        }
+
+
+        private S doCreateUntrackedSharedObject(int stripe) {
+            UntrackedSharedObjectHandle handle = new UntrackedSharedObjectHandle(stripe);
+            S sharedObject = ConcurrentSharedObjectPool.this.createSharedObject(this.pooledObject, handle);
+
+            // The pool may have been shut down after we have acquired the shared object. The shutdown does not know
+            // about untracked shared objects, so we do not provide the shared object.
+            if (this.sharedCount == DISPOSED) {
+                throw new IllegalStateException("The pool is already disposed of");
+            }
+
+            this.cancelDisposeTask();
+            return sharedObject;
+        }
+
+
+        // Cancel the dispose task of this entry, because the entry provides a shared object again.
+        private void cancelDisposeTask() {
+            // If this entry was scheduled for disposal, attempt to cancel the dispose task.
+            // This entry will not be disposed of even if the task can not be cancelled (the task will not dispose
+            // of this entry if it provides any shared objects), but cancelling the task reduces unnecessary load
+            // on the disposal executor.
+            // Since no lock is held, it is possible that multiple threads will attempt to cancel the same task
+            // simultaneously. While cancelling a task multiple times does not cause any error, accessing a variable
+            // which was set to null by another thread is. To prevent such exception, we have to get a local copy
+            // of the variable.
+            TimingWheel.Timeout disposeTaskSnapshot = this.disposeTask;
+            if (disposeTaskSnapshot != null) {
+                // Only the thread which actually cancelled the task records the reuse gap.
+                if (disposeTaskSnapshot.cancel() && this.idleStats != null) {
+                    this.idleStats.recordGap(System.currentTimeMillis() - this.lastReturnTime);
+                }
+                this.disposeTask = null;
+            }
+        }
+
+
+        // Release a shared object which has been acquired in this thread, but not constructed.
+        public void releaseAcquired() {
+            this.releaseAcquired(this.stripedCount == null ? 0 : this.stripedCount.currentStripe());
+        }
+
+
+        // Release a shared object which has been acquired, but could not be constructed.
+        private void releaseAcquired(int stripe) {
+            int updatedSharedCount = this.release(stripe);
+            if (updatedSharedCount == 0) {
+                this.lastReturnTime = System.currentTimeMillis();
+                ConcurrentSharedObjectPool.this.offerDispose(this);
+            }
+        }
+
+
+        // Dispose of a shared object directly, that is when the client calls dispose() on the shared object.
+        private void disposeSharedObject(SharedObjectPhantomReference<S> providedPhantomRef, int stripe) {
+            // Should we offer the pool to dispose of this entry after the synchronized section?
+            boolean offerDisposeEntry = false;
+
+            long sharedObjectId = providedPhantomRef.getSharedObjectId();
+
+            // Synchronize on the provided phantom reference to prevent simultaneous attempts to dispose
+            // of the shared object in multiple threads. This could happens in several scenarios:
+            // * The most obvious scenario is if the shared object is not properly protected agains calling
+            // dispose() from multiple threads.
+            // * More subtle case is when this method is invoked simultaneously explicitly by the user,
+            // and implicitly by the reaper thread. I have observed such behavour sometimes to happen if the shared
+            // object is not used after the method dispose() is invoked, which is a pretty normal case. In such case
+            // the HotSpot optimizer may find that the object is not used by the code anymore, and give it to the
+            // GC even though the method dispose() is still running.
+            // * When the pool is shut down concurrently, and marks all shared objects as disposed.
+            //
+            // The thread which marks the phantom reference as disposed under the synchronization lock is the one
+            // which releases the shared object. Removing the phantom reference from the list of references on shared
+            // objects we are providing is just bookkeeping, the reaper removes phantom references in batches after
+            // marking them.
+            synchronized (providedPhantomRef) {
+                SharedObjectDisposeType refDisposeType = providedPhantomRef.getDisposeType();
+                if (refDisposeType == null) {
+                    // Expected case: the shared object is not disposed of yet.
+                    // Dispose of the shared object. The return value indicates that this entry does not
+                    // support any shared objects anymore, and we may offer the pool to remove this entry.
+                    this.refList(stripe).remove(providedPhantomRef);
+                    offerDisposeEntry = doDisposeSharedObject(providedPhantomRef, stripe);
+                } else if (refDisposeType == SharedObjectDisposeType.DIRECT) {
+                    // Already disposed directly by the client, now attempt to dispose directly by the client the second
+                    // time. This indicates a programming error on the client side: the client attempts to dispose
+                    // of the same shared object more than once.
+                    logger.warn("Disposing of shared object {} / {} (direct): the object is already disposed ({})",
+                            this.key, sharedObjectId, refDisposeType);
+                } else if (refDisposeType == SharedObjectDisposeType.REAPER) {
+                    // Already disposed by the reaper thread through the phantom reference, now attempt to
+                    // dispose directly by the client.
+                    // I have observed such case due to Java runtime optimization. If the JVM runtime may
+                    // prove that the object is not used in the subsequent code, it may give the object to
+                    // the GC even though a method invoked on that object is still running. The "natural"
+                    // borders of methods do not play any role, because methods may be inlined by the JVM
+                    // runtime. As a workaround to prevent such false positives, one has to use the shared
+                    // object after the method dispose() is called on it, but it is not elegant.
+                    logger.info("Disposing of shared object {} / {} (direct): the object is already "
+                            + "disposed by the reaper thread. Please ignore previous warning from the "
+                            + "reaper thread about this shared object not being properly disposed of, "
+                            + "that is just a result of JVM runtime optimization", this.key, sharedObjectId);
+                } else {
+                    // The shared object has been already disposed when shutting down the pool. This is a valid case:
+                    // when shutting down an applicaiton, various components may shut down in parallel, so the client
+                    // components will dispose of shared objects in parallel with the pool being disposed of.
+                    assert (refDisposeType == SharedObjectDisposeType.SHUTDOWN);
+                }
+            }
+
+            // If this entry is not providing any shared objects, offer to the pool to dispose of this entry.
+            // It is up to the pool to decide if and when this entry should be disposed of.
+            // Note that this is just a suggestion for the pool. We are not holding a lock, so in the meantime
+            // this entry may provide another shared object. Before actually disposing of this entry, the pool will
+            // check the prerequisites under an exclusive lock.
+            if (offerDisposeEntry) {
+                ConcurrentSharedObjectPool.this.offerDispose(this);
+            }
+        }
+
+
+        private boolean doDisposeSharedObject(SharedObjectPhantomReference<S> sharedObjectPhantomRef, int stripe) {
+            assert (Thread.holdsLock(sharedObjectPhantomRef));
+
+            // Mark the phantom reference as disposed.
+            sharedObjectPhantomRef.markAsDisposed(SharedObjectDisposeType.DIRECT);
+
+            // Decrement number of shared objects provided by this entry.
+            int updatedSharedCount = this.release(stripe);
+
+            // If this entry is not providing any shared objects anymore, it may be disposed of.
+            // It is up to the pool to deside if the entry should actually be disposed of.
+            // A pool implementation may decide to dispose of the entry immediately, or it may decide to keep
+            // an entry active for a time, so that it is immediately available if required.
+            // Note that in the meantime this entry may provide another shared object, to before actually disposing
+            // of this entry the pool will check the prerequisites under an exclusive lock.
+            if (updatedSharedCount == 0) {
+                // Set the time when the last shared object was returned.
+                this.lastReturnTime = System.currentTimeMillis();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+
+        // Dispose of shared objects claimed by the GC without being disposed of by the client. The reaper drains
+        // phantom references in batches, and passes all phantom references on shared objects from this entry at once,
+        // so that they are unlinked under one lock of each list, and released with one update of the counter.
+        @Override
+        @SuppressWarnings("unchecked")
+        public void reap(List<? extends SharedObjectPhantomReference<?>> refs) {
+            // Phantom references marked as disposed by this call, grouped by the list they are linked into.
+            SharedObjectPhantomReference.RefList<S>[] lists = this.refLists;
+            List<List<SharedObjectPhantomReference<S>>> reaped =
+                    new ArrayList<>(Collections.nCopies(lists.length, null));
+            int reapedCount = 0;
+
+            for (SharedObjectPhantomReference<?> ref : refs) {
+                SharedObjectPhantomReference<S> phantomRef = (SharedObjectPhantomReference<S>) ref;
+
+                // Mark each phantom reference as disposed under its own synchronization lock, exactly as when
+                // disposing of a single shared object directly.
+                synchronized (phantomRef) {
+                    SharedObjectDisposeType refDisposeType = phantomRef.getDisposeType();
+                    if (refDisposeType == null) {
+                        phantomRef.markAsDisposed(SharedObjectDisposeType.REAPER);
+                    } else {
+                        if (refDisposeType == SharedObjectDisposeType.REAPER) {
+                            // This indicates an internal error because the reaper should process each shared object
+                            // only once.
+                            logger.error("Disposing of shared object {} / {} (reaper): the object is already "
+                                    + "disposed by the reaper thread", this.key, phantomRef.getSharedObjectId());
+                        }
+                        // Otherwise the shared object has been already disposed of directly by the client, or when
+                        // shutting down the pool. Both are valid cases, just skip.
+                        continue;
+                    }
+                }
+
+                int index = this.stripeOf(phantomRef) & (lists.length - 1);
+                List<SharedObjectPhantomReference<S>> reapedOfList = reaped.get(index);
+                if (reapedOfList == null) {
+                    reapedOfList = new ArrayList<>();
+                    reaped.set(index, reapedOfList);
+                }
+                reapedOfList.add(phantomRef);
+                reapedCount++;
+            }
+            if (reapedCount == 0) {
+                return;
+            }
+
+            ConcurrentSharedObjectPool.this.sharedObjectAbandoned(
+                    (long) reapedCount * ConcurrentSharedObjectPool.this.trackingWeight);
+            this.logReaped(reaped);
+
+            // Unlink and release shared objects of each list at once. Entries with a striped counter have a list
+            // per stripe, so all shared objects in one list have been acquired from the same stripe.
+            // The result of the last release is what counts: once a stripe becomes empty, the release checks
+            // all stripes.
+            int updatedSharedCount = -1;
+            for (int i = 0; i < lists.length; ++i) {
+                List<SharedObjectPhantomReference<S>> reapedOfList = reaped.get(i);
+                if (reapedOfList != null) {
+                    lists[i].removeAll(reapedOfList);
+                    updatedSharedCount = this.release(i, reapedOfList.size());
+                }
+            }
+
+            if (updatedSharedCount == 0) {
+                this.lastReturnTime = System.currentTimeMillis();
+                ConcurrentSharedObjectPool.this.offerDispose(this);
+            }
+        }
+
+
+        // Log a warning for shared objects released by the reaper, once for each distinct stack trace taken when
+        // the shared objects have been allocated. If stack traces are interned (see StackTraceProvider), shared objects
+        // allocated at the same call site share the same stack trace, so a burst of abandoned shared objects results
+        // in a few log messages only.
+        private void logReaped(List<List<SharedObjectPhantomReference<S>>> reaped) {
+            if (!logger.isWarnEnabled()) {
+                return;
+            }
+
+            Map<StackTrace, List<Long>> idsByStackTrace = new IdentityHashMap<>();
+            for (List<SharedObjectPhantomReference<S>> refs : reaped) {
+                if (refs != null) {
+                    for (SharedObjectPhantomReference<S> ref : refs) {
+                        idsByStackTrace.computeIfAbsent(ref.getStackTrace(), stackTrace -> new ArrayList<>())
+                                .add(ref.getSharedObjectId());
+                    }
+                }
+            }
+
+            this.logAbandoned(idsByStackTrace, "through phantom references. "
+                    + "The shared objects may have not been properly disposed of. "
+                    + "In seldom cases Java runtime optimization may cause GC to claim the object before "
+                    + "the proper dispose is finished. In such case, below you should find an explanation "
+                    + "from the proper dispose attempt with the same shared object ID");
+        }
+
+
+        private void logAbandoned(Map<StackTrace, List<Long>> idsByStackTrace, String reason) {
+            for (Map.Entry<StackTrace, List<Long>> entry : idsByStackTrace.entrySet()) {
+                List<Long> ids = entry.getValue();
+                logger.warn("Disposing of {} shared object(s) {} / {} {}. The shared objects have been allocated\n{}",
+                        ids.size(), this.key, (ids.size() <= MAX_LOGGED_IDS ? ids
+                                : ids.subList(0, MAX_LOGGED_IDS) + " and " + (ids.size() - MAX_LOGGED_IDS)
+                                        + " more"), reason, entry.getKey());
+            }
+        }
+
+
+        private int stripeOf(SharedObjectPhantomReference<S> ref) {
+            return ((ConcurrentSharedObjectPool<?, ?, ?>.Entry.SharedObjectHandle) ref.getDisposeCallback()).stripe;
+        }
+
+
+        // Dispose of a shared object tracked by a lease directly, that is when the client calls dispose() on the shared
+        // object. The lease is synchronized on, like a phantom reference, to prevent a concurrent sweep from expiring it.
+        private void disposeLeasedSharedObject(LeaseHandle lease) {
+            boolean offerDisposeEntry = false;
+
+            synchronized (lease) {
+                SharedObjectDisposeType leaseDisposeType = lease.disposeType;
+                if (leaseDisposeType == null) {
+                    // Expected case: the shared object is not disposed of yet.
+                    lease.disposeType = SharedObjectDisposeType.DIRECT;
+                    ConcurrentSharedObjectPool.this.leases.remove(lease);
+
+                    if (this.release(lease.stripe) == 0) {
+                        this.lastReturnTime = System.currentTimeMillis();
+                        offerDisposeEntry = true;
+                    }
+                } else if (leaseDisposeType == SharedObjectDisposeType.DIRECT) {
+                    logger.warn("Disposing of shared object {} / {} (direct): the object is already disposed ({})",
+                            this.key, lease.sharedObjectId, leaseDisposeType);
+                } else if (leaseDisposeType == SharedObjectDisposeType.EXPIRED) {
+                    // The client has held the shared object without using it or renewing its lease for longer than
+                    // the lease time, so the shared object has been already released.
+                    logger.warn("Disposing of shared object {} / {} (direct): the lease of the object has already "
+                            + "expired. The client shall renew the lease of a shared object which is not used "
+                            + "for longer than the lease time", this.key, lease.sharedObjectId);
+                } else {
+                    // The shared object has been already disposed when shutting down the pool.
+                    assert (leaseDisposeType == SharedObjectDisposeType.SHUTDOWN);
+                }
+            }
+
+            if (offerDisposeEntry) {
+                ConcurrentSharedObjectPool.this.offerDispose(this);
+            }
+        }
+
+
+        // Dispose of shared objects whose leases have expired. The leases are re-checked under their synchronization
+        // locks, because they may have been renewed or disposed of concurrently after the sweep has checked them.
+        private void expireLeases(List<LeaseHandle> leases) {
+            int[] expiredByStripe = new int[this.stripedCount == null ? 1 : this.stripedCount.stripes()];
+            Map<StackTrace, List<Long>> idsByStackTrace = new IdentityHashMap<>();
+            int expiredCount = 0;
+
+            for (LeaseHandle lease : leases) {
+                synchronized (lease) {
+                    if (lease.disposeType != null || !lease.expire()) {
+                        continue;
+                    }
+                    lease.disposeType = SharedObjectDisposeType.EXPIRED;
+                }
+                ConcurrentSharedObjectPool.this.leases.remove(lease);
+
+                expiredByStripe[lease.stripe & (expiredByStripe.length - 1)]++;
+                idsByStackTrace.computeIfAbsent(lease.stackTrace, stackTrace -> new ArrayList<>())
+                        .add(lease.sharedObjectId);
+                expiredCount++;
+            }
+            if (expiredCount == 0) {
+                return;
+            }
+
+            ConcurrentSharedObjectPool.this.sharedObjectAbandoned(expiredCount);
+            if (logger.isWarnEnabled()) {
+                this.logAbandoned(idsByStackTrace, "because their leases have expired. The shared objects may have "
+                        + "been abandoned by the client without being disposed of, or the client has not used them "
+                        + "nor renewed their leases for longer than the lease time ("
+                        + ConcurrentSharedObjectPool.this.leaseTimeMillis + " ms)");
+            }
+
+            // The result of the last release is what counts: once a stripe becomes empty, the release checks
+            // all stripes.
+            int updatedSharedCount = -1;
+            for (int i = 0; i < expiredByStripe.length; ++i) {
+                if (expiredByStripe[i] > 0) {
+                    updatedSharedCount = this.release(i, expiredByStripe[i]);
+                }
+            }
+
+            if (updatedSharedCount == 0) {
+                this.lastReturnTime = System.currentTimeMillis();
+                ConcurrentSharedObjectPool.this.offerDispose(this);
+            }
+        }
+
+
+        // Dispose of the shared object held by the provided reference, when shutting down the pool.
+        // When shutting down a pool, different rules apply as during the normal disposing.
+        private void disposeSharedObjectOnShutdown(SharedObjectPhantomReference<S> providedPhantomRef) {
+            // We are already have an exclusive lock on the pool when shutting it down.
+            assert (Thread.holdsLock(this));
+
+            long sharedObjectId = providedPhantomRef.getSharedObjectId();
+
+            synchronized (providedPhantomRef) {
+                // Difference to a normal callback-based dispose method: here we do not check if the provided reference
+                // is still in the list, because we were called from a method which iterates over the list.
+
+                boolean isDisposed = providedPhantomRef.isDisposed();
+                if (isDisposed) {
+                    // The shared object is still in the snapshot of the list, but it is already marked as disposed.
+                    // This could happen if a client thread is concurrently disposing of the shared object, and has
+                    // marked the phantom reference as disposed just after we took the snapshot. There is nothing to do.
+                    logger.debug("Disposing of shared object {} / {} ({}): the object is concurrently disposed ({})",
+                            this.key, sharedObjectId, SharedObjectDisposeType.SHUTDOWN,
+                            providedPhantomRef.getDisposeType());
+                } else {
+                    // Expected case: ref is available and is not marked as disposed. Dispose of the shared object.
+
+                    // Difference with the normal disposing method: we do not validate the state of this entry and
+                    // the number of shared objects when disposing each entry. We have already checked them and
+                    // written an appropriate log message once, before disposing of all entries.
+                    // We also could skip decrementing a number of shared objects provided by this entry: since this
+                    // method is called only when disposing of all shared objects during shutdown, the entry is
+                    // already marked as disposed.
+                    // Mark the phantom reference as disposed.
+                    providedPhantomRef.markAsDisposed(SharedObjectDisposeType.SHUTDOWN);
+                }
+            }
+
+            // Difference to a normal disposing method: here we do not remove the provided reference from the list,
+            // it will be cleared by the caller after it disposes of all shared objects.
+        }
+
+
+        // The dispose callback of a single shared object. Disposing directly through the shared object invokes
+        // run(), the reaper thread invokes dispose(false) through the phantom reference. One handle replaces separate
+        // callbacks and a holder for the phantom reference, so that providing a shared object allocates less.
+        private final class SharedObjectHandle implements Runnable, SharedObjectPhantomReference.DisposeCallback {
+
+            // The stripe the shared object has been acquired from.
+            private final int stripe;
+
+            // The phantom reference on the shared object. Set directly after the shared object has been constructed,
+            // before the shared object is provided to the client.
+            private SharedObjectPhantomReference<S> ref;
+
+
+            SharedObjectHandle(int stripe) {
+                this.stripe = stripe;
+            }
+
+
+            @Override
+            public void run() {
+                Entry.this.disposeSharedObject(this.ref, this.stripe);
+            }
+
+
+            @Override
+            public SharedObjectPhantomReference.ReapGroup getReapGroup() {
+                return Entry.this;
             }
-        } finally {
-            exclusiveEntryLock.unlock();
         }
 
-        // Remove the entry from the cache, if it has been disposed of. When removing, make sure that we are removing
-        // the right entry to prevent case when another thread had already removed the "bad" entry and inserted into
-        // the cache another, "good" one.
-        if (removeEntryFromCache) {
-            this.entries.remove(entry.getKey(), entry);
 
-            // Since we have evicted the entry, we have disposed of the pooled object, either successfully
-            // or with a failure. Anyway, we may notify statistics listeners.
-            this.firePooledObjectDisposed(endDisposeTimestamp - startDisposeTimestamp, disposeSuccess);
-        }
-    }
+        // The dispose callback of a single shared object which is not tracked by a phantom reference. Without
+        // the phantom reference there is nothing to synchronize on, so the handle itself protects against releasing
+        // the shared object more than once.
+        private final class UntrackedSharedObjectHandle implements Runnable {
 
+            // The stripe the shared object has been acquired from.
+            private final int stripe;
 
-    @Override
-    public int getPooledObjectsCount() {
-        return this.entries.size();
-    }
+            // Has the shared object been already disposed of?
+            // @GuardedBy(this)
+            private boolean disposed;
 
 
-    @Override
-    public int getUnusedPooledObjectsCount() {
-        int unusedPooledObjectsCount = 0;
-        for (Entry entry : this.entries.values()) {
-            if (entry.getSharedCount() <= 0) {
-                unusedPooledObjectsCount++;
+            UntrackedSharedObjectHandle(int stripe) {
+                this.stripe = stripe;
             }
-        }
 
-        return unusedPooledObjectsCount;
-    }
 
+            @Override
+            public void run() {
+                synchronized (this) {
+                    if (this.disposed) {
+                        logger.warn("Disposing of untracked shared object {}: the object is already disposed of",
+                                Entry.this.key);
+                        return;
+                    }
+                    this.disposed = true;
+                }
 
-    @Override
-    public int getSharedObjectsCount() {
-        int sharedObjectsCount = 0;
-        for (Entry entry : this.entries.values()) {
-            sharedObjectsCount += Math.max(0, entry.getSharedCount());
+                // The entry is already disposed of if the pool has been shut down, there is nothing to release then.
+                int updatedSharedCount = Entry.this.release(this.stripe);
+                if (updatedSharedCount == 0) {
+                    Entry.this.lastReturnTime = System.currentTimeMillis();
+                    ConcurrentSharedObjectPool.this.offerDispose(Entry.this);
+                }
+            }
         }
 
-        return sharedObjectsCount;
-    }
 
+        // The dispose callback and the lease of a single shared object tracked by a lease, see
+        // AbandonedTrackingMode.LEASE.
+        final class LeaseHandle implements Runnable, SharedObjectLease {
 
-    @Override
-    public int getSharedObjectsCount(K key) {
-        Entry entry = this.entries.get(key);
-        return (entry == null ? 0 : Math.max(0, entry.getSharedCount()));
-    }
+            // States of a lease.
+            static final int RENEWED = 1;
+            static final int IDLE = 0;
+            static final int EXPIRED = -1;
 
+            // The stripe the shared object has been acquired from.
+            private final int stripe;
 
-    public boolean containsPooledObject(K key) {
-        return this.entries.containsKey(key);
-    }
+            // The ID of the shared object, used only for logging.
+            private final long sharedObjectId;
 
+            // The stack trace taken when the shared object has been allocated.
+            private final StackTrace stackTrace;
 
-    private class Entry {
+            // The state of the lease: renewed since the last sweep, not renewed since the last sweep, or expired.
+            // A new lease counts as renewed, so that it does not expire on the first sweep. An expired lease is never
+            // renewed again, so that the shared object rejects calls once the pool has released it.
+            volatile int state = RENEWED;
 
-        // This entry is not initialized yet.
-        public static final int NEW = -1;
+            // How the shared object has been disposed of, or null if it has not been disposed of yet.
+            // @GuardedBy(this)
+            private SharedObjectDisposeType disposeType;
 
-        // This entry is already disposed of.
-        public static final int DISPOSED = -2;
 
-        private final K key;
-        private final P pooledObject;
+            LeaseHandle(int stripe, long sharedObjectId, StackTrace stackTrace) {
+                this.stripe = stripe;
+                this.sharedObjectId = sharedObjectId;
+                this.stackTrace = Objects.requireNonNull(stackTrace);
+            }
 
-        // Number of active shared objects, and a lifecycle stage.
-        // -1 (NEW): this entry has not been initialized yet. The entry must be initialized before it is able to provide
-        // shared objects.
-        // -2 (DISPOSED): this entry has been disposed of. A disposed entry can't be re-used. If cached, it must be
-        // removed from a cache and replaced with a new entry.
-        // >= 0: this entry is active (already initialized, not disposed of) and is providing this number of shared
-        // objects.
-        // Any other value (< -2): invalid, should never happens (indicates programming error).
-        //
-        // The entry may be in one of possible 3 states: NEW (-1), ACTIVE (>= 0) or DISPOSED (-2).
-        // In order to change the state, this entry must be locked for the exclusive access (this.lock.writeLock),
-        // other operations require shared lock (this.lock.readLock).
-        //
-        // See "lock" below.
-        private final AtomicInteger sharedCount = new AtomicInteger(NEW);
 
-        // Atomic counter to create IDs for shared objects. IDs are not required for the application logic, but they
-        // are written in a log to help investigate potential problems, such as when a shared reference is not
-        // properly disposed of.
-        private final AtomicLong sharedObjectIdGen = new AtomicLong();
+            Entry getEntry() {
+                return Entry.this;
+            }
 
-        // Phanom references on shared objects. Keeping phanom references on shared objects allows to find
-        // shared objects which were not properly disposed of.
-        // Key: dispose callback for a shared object (runnable), value: phantom reference on shared object.
-        private final ConcurrentMap<Object, SharedObjectPhantomReference<K, S>> sharedObjectPhantomRefs =
-                new ConcurrentHashMap<>();
 
-        // Last time the last shared object from this entry was returned. The time makes sense only if this entry
-        // currently does not provide any shared objects, that is if sharedCount == 0, because the time is NOT reset
-        // when new shared objects are created.
-        // @GuardedBy(this.lock)
-        private long lastReturnTime = 0;
+            @Override
+            public boolean renew() {
+                // Reading before writing keeps the cache line shared while the lease is renewed by multiple threads
+                // between sweeps. A lease which is not renewed yet is renewed with a CAS, so that it is not renewed
+                // after a concurrent sweep has expired it.
+                while (true) {
+                    int currentState = this.state;
+                    if (currentState == RENEWED) {
+                        return true;
+                    } else if (currentState == EXPIRED) {
+                        return false;
+                    } else if (LEASE_STATE.compareAndSet(this, IDLE, RENEWED)) {
+                        return true;
+                    }
+                }
+            }
 
-        // The ScheduledFuture for asynchronously disposing of this entry, if any.
-        // A ScheduledFuture is set when this entry is scheduled for an asynchronous disposal.
-        // If this entry provides a new shared object before being disposed, it may cancel the ScheduledFuture.
-        // Even if the ScheduledFuture is not cancellled, it will not dispose of this entry when executed, if the
-        // entry provides a shared object.
-        // @GuardedBy(this.lock)
-        private ScheduledFuture<?> disposeTask;
 
-        // Lock for lifecycle management.
-        // Changing the lifecycle of this entry, that is executing init() and dispose(), requires exclusive ("write")
-        // lock. Other operations, such as creating or disposing of a shared object, requires shared ("read") lock.
-        // The locking policy ensures that no other operations may run when the entry's lifecycle stage is changed,
-        // but many non-lifecycle-related operations may run in parallel when the entry is active.
-        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+            // Returns true if the lease has been renewed since the previous call, and resets the renewal.
+            boolean checkRenewed() {
+                if (this.state == RENEWED) {
+                    this.state = IDLE;
+                    return true;
+                } else {
+                    return false;
+                }
+            }
 
 
-        Entry(K key, P pooledObject) {
-            this.key = Objects.requireNonNull(key);
-            this.pooledObject = Objects.requireNonNull(pooledObject);
-        }
+            // Expires the lease, unless it has been renewed since the previous sweep. Returns true if the lease has
+            // expired.
+            boolean expire() {
+                return LEASE_STATE.compareAndSet(this, IDLE, EXPIRED);
+            }
 
 
-        K getKey() {
-            return this.key;
-        }
+            @Override
+            public void run() {
+                Entry.this.disposeLeasedSharedObject(this);
+            }
 
 
-        P getPooledObject() {
-            return this.pooledObject;
+            // Mark the shared object as disposed of when shutting down the pool, unless it is disposed of already.
+            void disposeOnShutdown() {
+                synchronized (this) {
+                    if (this.disposeType == null) {
+                        this.disposeType = SharedObjectDisposeType.SHUTDOWN;
+                    }
+                }
+            }
         }
+    }
 
 
-        public Lock sharedLock() {
-            return this.lock.readLock();
+    public static class Builder<K, S extends SharedObject, P> extends AbstractSharedObjectPool.Builder<K, S, P, Builder<K, S, P>> {
+
+        // Keys which are expected to be accessed concurrently by many threads. Entries for hot keys spread the number
+        // of shared objects across multiple padded stripes, so that acquiring and releasing shared objects from
+        // different threads does not contend on a single memory location. Striped entries consume more memory,
+        // so they should be used only for keys which are actually hot.
+        // By default no keys are hot.
+        private Predicate<? super K> hotKeys = key -> false;
+
+        // The number of stripes in counters of entries for hot keys, rounded up to the next power of 2.
+        // By default the number of available processors, but not more than 64.
+        private int hotKeyStripes = StripedCounter.defaultStripes();
+
+        // The executor for initializing pooled objects in parallel when getting multiple shared objects at once,
+        // and for asynchronously initializing pooled objects, if no executor is explicitly specified.
+        // Initializing pooled objects may block for a long time, for example on remote calls, so the common ForkJoinPool
+        // shall not be used.
+        // By default a cached executor with daemon threads shared by all pools, see DefaultInitializeExecutor.
+        private Executor initializeExecutor = DefaultInitializeExecutor.get();
+
+        // The default maximal number of pooled objects initialized in parallel when getting multiple shared objects
+        // at once.
+        // By default the number of available processors.
+        private int initializeParallelism = Runtime.getRuntime().availableProcessors();
+
+        // The time window in milliseconds to collect pooled objects to be initialized or disposed of in one batch.
+        // Used only if the pooled object factory is a BatchPooledObjectFactory. Non-positive number means
+        // initializing and disposing of each pooled object separately. Batches are processed on the dispose threads,
+        // so requires disposeThreads to be positive, unless a runtime is set.
+        // By default batches are not used.
+        private long batchWindowMillis;
+
+        // The maximal number of pooled objects in one batch. A full batch is processed immediately, without waiting
+        // for the end of the batch window.
+        // By default 500.
+        private int maxBatchSize = 500;
+
+        // Which shared objects are tracked by phantom references to detect shared objects abandoned by clients without
+        // being disposed of. Each tracked shared object keeps a phantom reference, which adds to the reference
+        // processing time of the GC.
+        // By default all shared objects are tracked.
+        private AbandonedTrackingMode abandonedTrackingMode = AbandonedTrackingMode.FULL;
+
+        // When tracking in the mode SAMPLED, one in this number of shared objects for each key is tracked.
+        // By default 100.
+        private int abandonedTrackingSampleRate = 100;
+
+        // When tracking in the mode LEASE, the time in milliseconds after which a lease of a shared object which has
+        // not been renewed expires. The lease expires after between once and twice this time without being renewed.
+        // By default 1 minute.
+        private long leaseTimeMillis = TimeUnit.MINUTES.toMillis(1);
+
+        // The maximal total weight of all pooled objects. If the total weight exceeds the maximum, pooled objects
+        // which do not provide any shared objects are evicted, even if disposing of unused pooled objects is disabled
+        // or their idle time has not expired yet. Pooled objects which provide shared objects and pooled objects
+        // for pinned keys are never evicted. Non-positive number means the total weight is not limited.
+        // By default the total weight is not limited.
+        private long maximumWeight;
+
+        // Calculates the weight of pooled objects.
+        // By default each pooled object has the weight 1, so that the maximal weight is the maximal number of pooled
+        // objects.
+        private PooledObjectWeigher<? super K, ? super P> weigher = (key, pooledObject) -> 1;
+
+        // The cost of keeping an idle pooled object for one second, expressed as nanoseconds spent on creating,
+        // initializing and disposing of pooled objects. If positive, the idle time is chosen for each key to minimize
+        // the total cost: based on recent reuse gaps of the key and the measured time to create, initialize
+        // and dispose of its pooled objects, a pooled object is either kept long enough to be reused, or disposed
+        // of early if keeping it is more expensive than re-creating it later. The idle time never exceeds
+        // idleDisposeTimeMillis, which must be positive. Non-positive number means all keys have the same idle time
+        // idleDisposeTimeMillis.
+        // By default all keys have the same idle time.
+        private long keepAliveCostNanosPerSecond;
+
+        // The maximal number of keys whose statistics for choosing the idle time are kept after their pooled objects
+        // have been disposed of, so that the reuse gap can be measured when such key is requested again.
+        // By default 10000.
+        private int adaptiveIdleHistorySize = 10_000;
+
+        // Should pooled objects which do not provide any shared objects anymore be disposed of on the dispose threads?
+        // If true, disposing of the last shared object for a key only enqueues the pooled object and returns
+        // immediately, so that the client thread never runs PooledObjectFactory.dispose(), and never blocks
+        // on the lock of the pooled object. Getting a shared object for the same key before the dispose thread
+        // processes the pooled object cancels the disposal. Requires disposeThreads to be positive, unless a runtime
+        // is set.
+        // By default pooled objects with idleDisposeTimeMillis 0 are disposed of on the client thread.
+        private boolean asyncDispose;
+
+        // The executor for disposing of pooled objects in parallel when shutting down the pool. Null means that
+        // the shutdown starts its own threads up to shutdownParallelism, and stops them once it is finished.
+        // By default the shutdown uses its own threads.
+        private Executor shutdownExecutor;
+
+        // The maximal number of pooled objects disposed of in parallel when shutting down the pool.
+        // By default 1, that is pooled objects are disposed of one after another.
+        private int shutdownParallelism = 1;
+
+        // Duration in milliseconds to wait for clients to dispose of shared objects they still hold when shutting down
+        // the pool, before disposing of pooled objects. New shared objects are not provided while waiting.
+        // Non-positive number means not waiting.
+        // By default the pool does not wait.
+        private long shutdownDrainMillis;
+
+        // The maximal duration in milliseconds of shutting down the pool, including waiting for clients. Pooled
+        // objects which are not disposed of by then are abandoned without being disposed of, and reported.
+        // Non-positive number means the shutdown has no deadline.
+        // By default the shutdown has no deadline.
+        private long shutdownTimeoutMillis;
+
+
+        public Builder<K, S, P> setHotKeys(Predicate<? super K> hotKeys) {
+            this.hotKeys = hotKeys;
+            return this;
         }
 
 
-        public Lock exclusiveLock() {
-            return this.lock.writeLock();
+        public Builder<K, S, P> setHotKeyStripes(int hotKeyStripes) {
+            this.hotKeyStripes = hotKeyStripes;
+            return this;
         }
 
 
-        // Just getting a current number of shared objects does not require a lock (the variable is an atomic).
-        // Note that the value may change any moment by another thread.
-        public int getSharedCount() {
-            return this.sharedCount.get();
+        public Builder<K, S, P> setInitializeExecutor(Executor initializeExecutor) {
+            this.initializeExecutor = initializeExecutor;
+            return this;
         }
 
 
-        long getLastReturnTime() {
-            Lock entrySharedLock = this.sharedLock();
-            entrySharedLock.lock();
-            try {
-                return this.lastReturnTime;
-            } finally {
-                entrySharedLock.unlock();
-            }
+        public Builder<K, S, P> setInitializeParallelism(int initializeParallelism) {
+            this.initializeParallelism = initializeParallelism;
+            return this;
         }
 
 
-        public void init() throws InitializationException {
-            Lock exclusiveLock = this.exclusiveLock();
-            exclusiveLock.lock();
-            try {
-                int currentSharedCount = this.sharedCount.get();
-                if (currentSharedCount >= 0) {
-                    throw new IllegalStateException("Can not initialize entry " + this.key
-                            + ": the entry is already initialized");
-                }
-                if (currentSharedCount == DISPOSED) {
-                    throw new IllegalStateException("Can not initiaize entry " + this.key
-                            + ": the entry is already disposed of");
-                }
-                assert (currentSharedCount == NEW);
-
-                try {
-                    ConcurrentSharedObjectPool.this.initializePooledObject(this.pooledObject);
-                    this.sharedCount.set(0);
-                } catch (Exception ex) {
-                    // An attempt to initialize this entry failed. Mark the entry as disposed and re-throw the exception.
-                    this.sharedCount.set(DISPOSED);
-                    throw InitializationException.wrap(this.key, ex);
-                }
-            } finally {
-                exclusiveLock.unlock();
-            }
+        public Builder<K, S, P> setBatchWindowMillis(long batchWindowMillis) {
+            this.batchWindowMillis = batchWindowMillis;
+            return this;
         }
 
 
-        // Dispose of this entry, that is dispose of the underlying pooled object and mark this entry as disposed.
-        // If the parameter onShutdown is true, it indicates this method is called when shutting down the whole pool.
-        // When this method is called with onShutdown = false, it ensures that the lifecycle stage is respected,
-        // that is it disposes of this entry only if the entry is active, but does not provide any shared objects.
-        // If the parameter onShutdown = true, this method will dispose of this entry regardless of the lifecycle stage.
-        public void dispose(boolean onShutdown) {
-            Lock exclusiveLock = this.exclusiveLock();
-            exclusiveLock.lock();
-            try {
-                int currentSharedCount = this.sharedCount.get();
-                if (!onShutdown) {
-                    if (currentSharedCount == NEW) {
-                        throw new IllegalStateException("Can not dispose of entry " + this.key
-                                + ": the entry is not initialized yet");
-                    } else if (currentSharedCount == DISPOSED) {
-                        throw new IllegalStateException("Can not dispose of entry " + this.key
-                                + ": the entry is already disposed of");
-                    } else if (currentSharedCount > 0) {
-                        throw new IllegalStateException("Can not dispose of entry " + this.key
-                                + ": the entry provides" + currentSharedCount + " shared objects");
-                    }
-                }
+        public Builder<K, S, P> setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
 
-                // If we are shutting down the pool, cancel the asynchronous dispose task, if any.
-                // We are already disposing of this entry, and by cancelling the task we may reduce unnecessary load
-                // on the disposal executor.
-                if (onShutdown && this.disposeTask != null) {
-                    this.disposeTask.cancel(true);
-                    this.disposeTask = null;
-                }
 
-                // If we are shutting down the pool, there could be shared objects provided by this entry.
-                // Dispose of them.
-                if (onShutdown) {
-                    // Mark all references on shared objects as disposed. Note that shared objects can not be created
-                    // or disposed by concurrent threads, because creating or disposing of shared objects requires
-                    // a shared lock on this entry, but we are holding the exclusive lock.
-                    // Due to the exclusive lock, we are accessing sharedObjectPhantomRefs in exclusive mode.
-                    for (SharedObjectPhantomReference<K, S> phantomRef : this.sharedObjectPhantomRefs.values()) {
-                        disposeSharedObjectOnShutdown(phantomRef);
-                    }
-                    this.sharedObjectPhantomRefs.clear();
-                }
+        public Builder<K, S, P> setAbandonedTrackingMode(AbandonedTrackingMode abandonedTrackingMode) {
+            this.abandonedTrackingMode = abandonedTrackingMode;
+            return this;
+        }
 
-                // Shall we dispose of the pooled object? We do not dispose of the pooled object if this entry has not
-                // been initialized yet (that is, the entry state is NEW = -1), or if this entry is already disposed of
-                // (that is, the entry state is DISPOSED = -2).
-                if (currentSharedCount >= 0) {
-                    try {
-                        ConcurrentSharedObjectPool.this.disposePooledObject(this.pooledObject);
-                    } catch (Exception ex) {
-                        // An attempt to dispose of the pooled object failed. Log the exception, but otherwise proceed
-                        // to remove the pooled object.
-                        logger.error("Exception when attempting to dispose of pooled object for the entry {}, "
-                                + "continue removing pooled object", this.key, ex);
-                    }
-                }
 
-                // Finally, mark this entry as disposed.
-                this.sharedCount.set(DISPOSED);
-            } finally {
-                exclusiveLock.unlock();
-            }
+        public Builder<K, S, P> setAbandonedTrackingSampleRate(int abandonedTrackingSampleRate) {
+            this.abandonedTrackingSampleRate = abandonedTrackingSampleRate;
+            return this;
         }
 
 
-        void setDisposeTask(ScheduledFuture<?> disposeTask) {
-            Lock entryExclusiveLock = this.exclusiveLock();
-            entryExclusiveLock.lock();
-            try {
-                this.disposeTask = disposeTask;
-            } finally {
-                entryExclusiveLock.unlock();
-            }
+        public Builder<K, S, P> setLeaseTimeMillis(long leaseTimeMillis) {
+            this.leaseTimeMillis = leaseTimeMillis;
+            return this;
         }
 
 
-        public S createSharedObject() {
-            Lock sharedLock = this.sharedLock();
-            sharedLock.lock();
-            try {
-                int currentSharedCount = this.sharedCount.get();
-                if (currentSharedCount == NEW) {
-                    throw new IllegalStateException("Can not create shared object from entry " + this.key
-                            + ": the entry is not initialized yet");
-                } else if (currentSharedCount == DISPOSED) {
-                    throw new IllegalStateException("Can not create shared object from entry " + this.key
-                            + ": the entry is already disposed of");
-                }
-                assert (currentSharedCount >= 0);
+        public Builder<K, S, P> setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
 
-                // We have just ensured that this entry is active. Since we are holding the shared lock, the lifecycle
-                // of this entry can't change (it remains active as long the lock is not released), even though
-                // the number of shared objects may be changed by other threads which are also holding the shared lock.
-                //
-                // Get the next ID for the new shared object. IDs are just for logging, to investigate potential
-                // problems such as when a shared object is not properly disposed of.
-                final long sharedObjectId = this.sharedObjectIdGen.getAndIncrement();
-
-                // A simple value-holder is required to pass the value into a callback, because the callback has to be
-                // constructed before the value is available. We may have used a 1-element array instead, but arrays
-                // of generic objects are not directly supported (casting is required etc), so using a simple helper
-                // class is more elegant.
-                final SharedObjectPhantomReference.Holder<K, S> sharedObjectPhantomRefHolder =
-                        new SharedObjectPhantomReference.Holder<>();
-
-                // Create a callback for disposing the shared object directly, that is by invoking the dispose method.
-                Runnable disposeDirectCallback = () -> {
-                    Entry.this.disposeSharedObject(sharedObjectPhantomRefHolder.ref, true);
-                };
-                // Create a callback for disposing the shared object indirectly, that is from the reaper thread
-                // through the phantom reference.
-                Runnable disposePhantomRefCallback = () -> {
-                    Entry.this.disposeSharedObject(sharedObjectPhantomRefHolder.ref, false);
-                };
-
-                // The direct callback is also used as a key in a map which contains phantom references
-                // on shared objects.
-                // Using the callback itself as a map key looks tricky, but actually it is not. We may have used
-                // any unique object for a particular shared object (just "new Object()" would be perfectly OK)
-                // as a map key, but it makes little sense to create additional objects when we already have
-                // a unique dispose callback for each shared object.
-                Object phantomReferenceKey = disposeDirectCallback;
-
-                // Construct a new shared object which will invoke disposeDirectCallback when disposed.
-                S sharedObject = ConcurrentSharedObjectPool.this.createSharedObject(this.pooledObject,
-                        disposeDirectCallback);
-
-                // Take the stack trace to track abandoned shared objects. We skip several call frames on the top
-                // to keep only the caller's methods in the stack trace.
-                StackTrace stackTrace = ConcurrentSharedObjectPool.this.stackTraceProvider.provide(3);
-
-                // Construct a phantom reference on the shared object and register it in the reference queue.
-                // The reaper thread will invoke disposePhantomRefCallback if the shared object is not properly
-                // disposed of.
-                SharedObjectPhantomReference<K, S> sharedObjectPhantomRef = new SharedObjectPhantomReference<>(this.key,
-                        sharedObjectId, stackTrace, sharedObject, disposePhantomRefCallback, phantomReferenceKey,
-                        ConcurrentSharedObjectPool.this.sharedObjectsRefQueue);
-                sharedObjectPhantomRefHolder.ref = sharedObjectPhantomRef;
-
-                // Store the phantom reference on the shared object in a map, so that we may track if the shared
-                // object is properly disposed of.
-                this.sharedObjectPhantomRefs.put(phantomReferenceKey, sharedObjectPhantomRef);
-
-                // Increment the number of shared objects provided by this entry. Note that the number of provided
-                // shared objects may have changed since the start of this method (we are holding a shared lock, so
-                // other threads may create shared objects in parallel), but this entry still remains active (changing
-                // the lifecycle stage requires an exclusive lock, but we are holding a shared lock).
-                // We do not actually require the return value.
-                int updatedSharedCount = this.sharedCount.incrementAndGet();
-
-                // If this entry was scheduled for disposal, attempt to cancel the dispose task.
-                // This entry will not be disposed of even if the task can not be cancelled (the task will not dispose
-                // of this entry if it provides any shared objects), but cancelling the task reduces unnecessary load
-                // on the disposal executor.
-                // Since we are holding a shared lock, it is possible that multiple threads will attempt to cancel
-                // the same task simultaneously. While cancelling a task multiple times does not cause any error,
-                // accessing a variable which was set to null by another thread is. To prevent such exception, we have
-                // to get a local copy of the variable.
-                // Note that another thread could not set a new task in parallel, because the method setDisposeTask()
-                // requires an exclusive lock.
-                ScheduledFuture<?> disposeTaskSnapshot = this.disposeTask;
-                if (disposeTaskSnapshot != null) {
-                    disposeTaskSnapshot.cancel(true);
-                    this.disposeTask = null;
-                }
 
-                return sharedObject;
-            } finally {
-                sharedLock.unlock();
-            }
+        public Builder<K, S, P> setWeigher(PooledObjectWeigher<? super K, ? super P> weigher) {
+            this.weigher = weigher;
+            return this;
         }
 
 
-        private void disposeSharedObject(SharedObjectPhantomReference<K, S> providedPhantomRef, boolean direct) {
-            // Should we offer the pool to dispose of this entry after the locked section?
-            boolean offerDisposeEntry = false;
-
-            Object phantomRefKey = providedPhantomRef.getPhantomReferenceKey();
-            long sharedObjectId = providedPhantomRef.getSharedObjectId();
+        public Builder<K, S, P> setKeepAliveCostNanosPerSecond(long keepAliveCostNanosPerSecond) {
+            this.keepAliveCostNanosPerSecond = keepAliveCostNanosPerSecond;
+            return this;
+        }
 
-            Lock sharedLock = this.sharedLock();
-            sharedLock.lock();
-            try {
-                // Synchronize on the provided phantom reference to prevent simultaneous attempts to dispose
-                // of the shared object in multiple threads. This could happens in several scenarios:
-                // * The most obvious scenario is if the shared object is not properly protected agains calling
-                // dispose() from multiple threads.
-                // * More subtle case is when this method is invoked simultaneously explicitly by the user,
-                // and implicitly by the reaper thread. I have observed such behavour sometimes to happen if the shared
-                // object is not used after the method dispose() is invoked, which is a pretty normal case. In such case
-                // the HotSpot optimizer may find that the object is not used by the code anymore, and give it to the
-                // GC even though the method dispose() is still running.
-                synchronized (providedPhantomRef) {
-                    // Remove the phantom reference on the shared object.
-                    SharedObjectPhantomReference<K, S> sharedObjectPhantomRef =
-                            this.sharedObjectPhantomRefs.remove(phantomRefKey);
-                    if (sharedObjectPhantomRef != null) {
-                        // Normal case: the reference we are disposing of is still in the map with references on shared
-                        // objects we are providing.
-
-                        boolean isDisposed = sharedObjectPhantomRef.isDisposed();
-                        if (isDisposed) {
-                            // The shared object is still in the active map, but it is already marked as disposed.
-                            // This is an unexpected case, because normally the phantom reference should have been
-                            // removed from the map and marked as disposed under the synchronization lock,
-                            // so this case indicates a programming error.
-                            logger.error("Disposing of shared object {} / {} ({}): ref still exist, but the object "
-                                    + "is already disposed by {} ({})", this.key, sharedObjectId,
-                                    (direct ? "direct" : "reaper"), sharedObjectPhantomRef.getDisposedByName(),
-                                    sharedObjectPhantomRef.getDisposeType());
-                        } else {
-                            // Expected case: ref is available and is not marked as disposed.
-                            // Dispose of the shared object. The return value indicates that this entry does not
-                            // support any shared objects anymore, and we may offer the pool to remove this entry.
-                            offerDisposeEntry = doDisposeSharedObject(sharedObjectPhantomRef, direct);
-                            if (offerDisposeEntry) {
-                                // Set the time when the last shared object was returned.
-                                this.lastReturnTime = System.currentTimeMillis();
-                            }
-                        }
-                    } else {
-                        // Phantom reference is not found in the map, so the shared object is already disposed of.
-                        // Below we check various cases: some of them are perfectly OK, other indicate errors.
-
-                        // Check the reference (which we received as an argument to this method) to see how the shared
-                        // object was disposed of.
-                        SharedObjectDisposeType refDisposeType = providedPhantomRef.getDisposeType();
-                        if (refDisposeType == SharedObjectDisposeType.DIRECT) {
-                            // The shared object has been already directly disposed of by the client.
-
-                            if (direct) {
-                                // Already disposed directly by the client, now attempt to dispose directly by the
-                                // client the second time. This indicates a programming error on the client side: the client
-                                // attempts to dispose of the same shared object more than once.
-                                logger.warn("Disposing of shared object {} / {} ({}): the object is already disposed "
-                                        + "by {} ()", this.key, sharedObjectId, (direct ? "direct" : "reaper"),
-                                        providedPhantomRef.getDisposedByName(), refDisposeType);
-                            } else {
-                                // Already disposed directly by the client, now the reaper thread attempts to dispose
-                                // of the shared object by the phantom reference. This is a possible valid case,
-                                // just skip.
-                            }
-                        } else if (refDisposeType == SharedObjectDisposeType.REAPER) {
-                            // The shared object has been already directly disposed of by the reaper thread.
-
-                            if (direct) {
-                                // Already disposed by the reaper thread through the phantom reference, now attempt to
-                                // dispose directly by the client.
-                                // I have observed such case due to Java runtime optimization. If the JVM runtime may
-                                // prove that the object is not used in the subsequent code, it may give the object to
-                                // the GC even though a method invoked on that object is still running. The "natural"
-                                // borders of methods do not play any role, because methods may be inlined by the JVM
-                                // runtime. As a workaround to prevent such false positives, one has to use the shared
-                                // object after the method dispose() is called on it, but it is not elegant.
-                                logger.info("Disposing of shared object {} / {} (direct): the object is already "
-                                        + " disposed by the reaper thread {}. Please ignore previous warning from the "
-                                        + "reaper thread about this shared object not being properly disposed of, "
-                                        + "that is just a result of JVM runtime optimization", this.key, sharedObjectId,
-                                        providedPhantomRef.getDisposedByName());
-                            } else {
-                                // Already disposed by the reaper thread through the phantom reference, now attemp to
-                                // dispose by the reaper thread again. This indicates an internal error because the
-                                // reaper thread should process each shared object only once.
-                                logger.error("Disposing of shared object {} / {} (reaper): the object is already "
-                                        + "disposed by the reaper thread {}", this.key, sharedObjectId,
-                                        providedPhantomRef.getDisposedByName());
-                            }
-                        } else if (refDisposeType == SharedObjectDisposeType.SHUTDOWN) {
-                            // The shared object has been already directly disposed when shutting down the pool.
-
-                            // This is valid in both cases:
-                            //
-                            // * When now a client attempts to dispose of the shared object: when shutting down an
-                            // applicaiton, various components may shut down in parallel, so the client components will
-                            // dispose of shared objects in parallel with the pool being disposed of.
-                            //
-                            // * When now a reaper attempts to dispose of the shared object: during the shutdown process
-                            // we interrupt the reaper thread to stop it, but we do not wait until the reaper thread
-                            // is actually stopped. It could happens that the reaper thread runs for a while after
-                            // the shutdown of the pool is complete, and attempts to dispose of already disposed
-                            // entries.
-                            //
-                            // In both cases, we have nothing to do, this entry already has been disposed of.
-                        } else {
-                            // We have not found the phantom reference in the map, but the reference is not marked as
-                            // disposed yet. This is an internal error: the phantom reference shall be removed from
-                            // the map and marked as disposed of in the synchronized block we are currently in.
-                            assert (refDisposeType == null);
-
-                            logger.error("Disposing of shared object {} / {} ({}): ref is not found, but the object "
-                                    + "is not marked as disposed");
-                        }
-                    }
-                }
-            } finally {
-                sharedLock.unlock();
-            }
 
-            // If this entry is not providing any shared objects, offer to the pool to dispose of this entry.
-            // It is up to the pool to decide if and when this entry should be disposed of.
-            // Note that this is just a suggestion for the pool. We are not holding a lock anymore, so in the meantime
-            // this entry may provide another shared object. Before actually disposing of this entry, the pool will
-            // check the prerequisites under an exclusive lock.
-            if (offerDisposeEntry) {
-                ConcurrentSharedObjectPool.this.offerDispose(this);
-            }
+        public Builder<K, S, P> setAdaptiveIdleHistorySize(int adaptiveIdleHistorySize) {
+            this.adaptiveIdleHistorySize = adaptiveIdleHistorySize;
+            return this;
         }
 
 
-        private boolean doDisposeSharedObject(SharedObjectPhantomReference<K, S> sharedObjectPhantomRef,
-                boolean direct) {
-            assert (Thread.holdsLock(sharedObjectPhantomRef));
-
-            if (!direct) {
-                logger.warn("Disposing of shared object {} / {} through a phantom reference. "
-                        + "The shared object may have been not been properly disposed of. "
-                        + "In seldom cases Java runtime optimization may cause GC to claim the object before "
-                        + "the proper dispose is finished. In such case, below you should find an explanation "
-                        + "from the proper dispose attempt with the same shared object ID. "
-                        + "The shared object has been allocated\n{}",
-                        this.key, sharedObjectPhantomRef.getSharedObjectId(), sharedObjectPhantomRef.getStackTrace());
-            }
+        public Builder<K, S, P> setAsyncDispose(boolean asyncDispose) {
+            this.asyncDispose = asyncDispose;
+            return this;
+        }
 
-            int currentSharedCount = this.sharedCount.get();
-            if (currentSharedCount == NEW) {
-                throw new IllegalStateException("Can not dispose of shared object from entry " + this.key
-                        + ": the entry is not initialized yet");
-            } else if (currentSharedCount == DISPOSED) {
-                throw new IllegalStateException("Can not dispose of shared object from entry " + this.key
-                        + ": the entry is already disposed of");
-            } else if (currentSharedCount == 0) {
-                throw new IllegalStateException("Can not dispose of shared object from entry " + this.key
-                        + ": the entry has 0 shared objects");
-            }
-            assert (currentSharedCount > 0);
 
-            // Mark the phantom reference as disposed.
-            sharedObjectPhantomRef.markAsDisposed(direct ? SharedObjectDisposeType.DIRECT
-                    : SharedObjectDisposeType.REAPER);
+        public Builder<K, S, P> setShutdownExecutor(Executor shutdownExecutor) {
+            this.shutdownExecutor = shutdownExecutor;
+            return this;
+        }
 
-            // Decrement number of shared objects provided by this entry.
-            int updatedSharedCount = this.sharedCount.decrementAndGet();
 
-            // If this entry is not providing any shared objects anymore, it may be disposed of.
-            // It is up to the pool to deside if the entry should actually be disposed of.
-            // A pool implementation may decide to dispose of the entry immediately, or it may decide to keep
-            // an entry active for a time, so that it is immediately available if required.
-            // Note that in the meantime this entry may provide another shared object, to before actually disposing
-            // of this entry the pool will check the prerequisites under an exclusive lock.
-            return (updatedSharedCount == 0);
+        public Builder<K, S, P> setShutdownParallelism(int shutdownParallelism) {
+            this.shutdownParallelism = shutdownParallelism;
+            return this;
         }
 
 
-        // Dispose of the shared object held by the provided reference, when shutting down the pool.
-        // When shutting down a pool, different rules apply as during the normal disposing.
-        private void disposeSharedObjectOnShutdown(SharedObjectPhantomReference<K, S> providedPhantomRef) {
-            // We are already have an exclusive lock on the pool when shutting it down.
-            assert (this.lock.isWriteLockedByCurrentThread());
+        public Builder<K, S, P> setShutdownDrainMillis(long shutdownDrainMillis) {
+            this.shutdownDrainMillis = shutdownDrainMillis;
+            return this;
+        }
 
-            long sharedObjectId = providedPhantomRef.getSharedObjectId();
 
-            synchronized (providedPhantomRef) {
-                // Difference to a normal callback-based dispose method: here we do not check if the provided reference
-                // is still in the map, because we were called from a method which iterates over the map.
+        public Builder<K, S, P> setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+            this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+            return this;
+        }
 
-                boolean isDisposed = providedPhantomRef.isDisposed();
-                if (isDisposed) {
-                    // The shared object is still in the active map, but it is already marked as disposed.
-                    // This is an unexpected case, because normally the phantom reference should have been
-                    // removed from the map and marked as disposed under the synchronization lock,
-                    // so this case indicates a programming error.
-                    logger.error("Disposing of shared object {} / {} ({}): ref still exist, but the object "
-                            + "is already disposed by {}", this.key, sharedObjectId,
-                            SharedObjectDisposeType.SHUTDOWN, providedPhantomRef.getDisposedByName());
-                } else {
-                    // Expected case: ref is available and is not marked as disposed. Dispose of the shared object.
 
-                    // Difference with the normal disposing method: we do not validate the state of this entry and
-                    // the number of shared objects when disposing each entry. We have already checked them and
-                    // written an appropriate log message once, before disposing of all entries.
-                    // We also could skip decrementing a number of shared objects provided by this entry: since this
-                    // method is called only when disposing of all shared objects during shutdown, the counter will
-                    // be set once after all shared objects are disposed of. No other thread could see the counter
-                    // in the meantime, because we are holding an exclusive lock on this entry.
-                    // Mark the phantom reference as disposed.
-                    providedPhantomRef.markAsDisposed(SharedObjectDisposeType.SHUTDOWN);
+        @Override
+        protected void validate() {
+            super.validate();
+
+            if (this.hotKeys == null) {
+                throw new IllegalStateException("hotKeys is required");
+            }
+            if (this.hotKeyStripes <= 0) {
+                throw new IllegalStateException("hotKeyStripes (" + this.hotKeyStripes + ") <= 0");
+            }
+            if (this.initializeExecutor == null) {
+                throw new IllegalStateException("initializeExecutor is required");
+            }
+            if (this.initializeParallelism <= 0) {
+                throw new IllegalStateException("initializeParallelism (" + this.initializeParallelism + ") <= 0");
+            }
+            if (this.batchWindowMillis > 0 && !(this.pooledObjectFactory instanceof BatchPooledObjectFactory)) {
+                throw new IllegalStateException("batchWindowMillis (" + this.batchWindowMillis + ") > 0, "
+                        + "but pooledObjectFactory is not a BatchPooledObjectFactory");
+            }
+            if (this.batchWindowMillis > 0 && this.disposeThreads <= 0 && this.runtime == null) {
+                throw new IllegalStateException("batchWindowMillis (" + this.batchWindowMillis + ") > 0, "
+                        + "but disposeThreads (" + this.disposeThreads + ") <= 0");
+            }
+            if (this.maxBatchSize <= 0) {
+                throw new IllegalStateException("maxBatchSize (" + this.maxBatchSize + ") <= 0");
+            }
+            if (this.weigher == null) {
+                throw new IllegalStateException("weigher is required");
+            }
+            if (this.abandonedTrackingMode == null) {
+                throw new IllegalStateException("abandonedTrackingMode is required");
+            }
+            if (this.abandonedTrackingSampleRate <= 0) {
+                throw new IllegalStateException("abandonedTrackingSampleRate (" + this.abandonedTrackingSampleRate
+                        + ") <= 0");
+            }
+            if (this.abandonedTrackingMode == AbandonedTrackingMode.LEASE && this.leaseTimeMillis <= 0) {
+                throw new IllegalStateException("leaseTimeMillis (" + this.leaseTimeMillis + ") <= 0");
+            }
+            if (this.keepAliveCostNanosPerSecond > 0 && this.idleDisposeTimeMillis <= 0) {
+                throw new IllegalStateException("keepAliveCostNanosPerSecond (" + this.keepAliveCostNanosPerSecond
+                        + ") > 0, but idleDisposeTimeMillis (" + this.idleDisposeTimeMillis + ") <= 0");
+            }
+            if (this.adaptiveIdleHistorySize < 0) {
+                throw new IllegalStateException("adaptiveIdleHistorySize (" + this.adaptiveIdleHistorySize + ") < 0");
+            }
+            if (this.asyncDispose) {
+                if (!this.disposeUnused) {
+                    throw new IllegalStateException("disposeUnused is false, but asyncDispose is true");
+                }
+                if (this.disposeThreads <= 0 && this.runtime == null) {
+                    throw new IllegalStateException("asyncDispose is true, but disposeThreads (" + this.disposeThreads
+                            + ") <= 0");
                 }
             }
-
-            // Difference to a normal disposing method: here we do not remove the provided reference from the map,
-            // it will be removed by the caller after it disposes of all shared objects.
+            // A null shutdownExecutor is valid, it indicates that the shutdown shall use its own threads.
+            if (this.shutdownParallelism <= 0) {
+                throw new IllegalStateException("shutdownParallelism (" + this.shutdownParallelism + ") <= 0");
+            }
         }
-    }
-
 
-    public static class Builder<K, S extends SharedObject, P> extends AbstractSharedObjectPool.Builder<K, S, P, Builder<K, S, P>> {
 
         public ConcurrentSharedObjectPool<K, S, P> build() {
             this.validate();
-
-            // No need to explicitly check stackTraceProvider: default value is not null, and the setter protects
-            // against null.
-            return new ConcurrentSharedObjectPool<>(this.name, this.pooledObjectFactory, this.sharedObjectFactory,
-                    this.disposeUnused, this.idleDisposeTimeMillis, this.disposeThreads, this.stackTraceProvider);
+            return new ConcurrentSharedObjectPool<>(this, new ConcurrentHashMap<>());
         }
     }
 }
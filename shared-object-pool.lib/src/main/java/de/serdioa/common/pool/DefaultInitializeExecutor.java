@@ -0,0 +1,48 @@
+package de.serdioa.common.pool;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The default executor for initializing pooled objects outside of the calling thread, shared by all pools which are
+ * not configured with a dedicated executor.
+ * <p>
+ * Initializing a pooled object may block for a long time, for example on a remote subscription, so this executor
+ * does not run such tasks on the common {@link java.util.concurrent.ForkJoinPool}, where blocked tasks would starve
+ * unrelated parallel computations of the application. Instead it starts a new thread whenever all its threads are
+ * busy, similar to {@link java.util.concurrent.Executors#newCachedThreadPool()}, so that an initialization never waits
+ * for another one. Threads are daemon threads, and terminate after being idle for 60 seconds, so the executor never
+ * has to be shut down.
+ */
+final class DefaultInitializeExecutor {
+
+    // The time in seconds an idle thread is kept before it terminates.
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final Executor INSTANCE = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "shared-object-pool-initializer-" + THREAD_COUNTER.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+
+    private DefaultInitializeExecutor() {
+    }
+
+
+    /**
+     * Returns the default executor for initializing pooled objects.
+     *
+     * @return the default executor for initializing pooled objects.
+     */
+    static Executor get() {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,137 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * A probabilistic estimate of how often keys are accessed, used to decide which idle pooled objects to evict.
+ * The sketch is a count-min sketch with 4 counters per key, each counter having 4 bits, so that the frequency
+ * of a key is capped at 15. To let the estimate adapt to changing access patterns, all counters are halved
+ * periodically, after a number of increments proportional to the size of the sketch. This is the frequency filter
+ * of the TinyLFU family of eviction policies.
+ * <p>
+ * This class does not synchronize updates. Increments from concurrent threads may be lost, which only reduces
+ * the precision of the estimate, and is much cheaper than any synchronization on the hot path of getting shared
+ * objects.
+ *
+ * @param <K> the type of keys.
+ */
+class FrequencySketch<K> {
+
+    // The maximal length of the table, so that the sketch never takes more than 128 KB.
+    private static final int MAX_TABLE_LENGTH = 1 << 14;
+
+    // Seeds for the 4 hash functions selecting counters for a key.
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    // Masks to halve all 16 counters in a word, and to find counters with an odd value.
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    // Each word holds 16 counters, 4 bits each.
+    private final long[] table;
+    private final int tableMask;
+
+    // After so many increments all counters are halved.
+    private final int sampleSize;
+
+    // The number of increments since the counters were halved last time.
+    private int size;
+
+
+    /**
+     * Constructs a new sketch.
+     *
+     * @param expectedSize the expected number of distinct keys, used to size the sketch.
+     */
+    FrequencySketch(long expectedSize) {
+        int tableLength = tableLengthFor(expectedSize);
+        this.table = new long[tableLength];
+        this.tableMask = tableLength - 1;
+        this.sampleSize = 10 * tableLength;
+    }
+
+
+    private static int tableLengthFor(long expectedSize) {
+        int length = (int) Math.max(16, Math.min(expectedSize, MAX_TABLE_LENGTH));
+        return Integer.highestOneBit(length - 1) << 1;
+    }
+
+
+    /**
+     * Returns the estimated number of accesses of the specified key, capped at 15.
+     *
+     * @param key the key to estimate.
+     * @return the estimated number of accesses of the specified key.
+     */
+    int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int index = this.indexOf(hash, i);
+            int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+
+    /**
+     * Records an access of the specified key.
+     *
+     * @param key the accessed key.
+     */
+    void increment(K key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = this.indexOf(hash, i);
+            added |= this.incrementAt(index, start + i);
+        }
+
+        if (added && ++this.size >= this.sampleSize) {
+            this.reset();
+        }
+    }
+
+
+    // Increment the counter j (0 - 15) in the word i, unless the counter has reached the maximum.
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((this.table[i] & mask) != mask) {
+            this.table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+
+    // Halve all counters, so that keys which are not accessed anymore lose their frequency over time.
+    private void reset() {
+        int oddCount = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            oddCount += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = (this.size >>> 1) - (oddCount >>> 2);
+    }
+
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += (h >>> 32);
+        return ((int) h) & this.tableMask;
+    }
+
+
+    // Spread bits of a hash code, to protect against poor hash functions.
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,58 @@
+package de.serdioa.common.pool;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Requests to generate at compile time an implementation of the annotated shared object interface, and a
+ * {@link SharedObjectFactory} for it. The annotated interface shall extend {@link SharedObject} and one or more
+ * business interfaces implemented by pooled objects, and shall not declare any abstract methods itself, for example:
+ * <pre>
+ * &#64;GenerateSharedObject
+ * public interface SharedFxRate extends FxRate, SharedObject {}
+ * </pre>
+ * The annotation processor from the module {@code shared-object-pool.processor} generates in the same package
+ * the class {@code GeneratedSharedFxRate}, which delegates all methods of the business interfaces directly
+ * to the pooled object. The factory is returned by its static method {@code factory()}:
+ * <pre>
+ * SharedObjectFactory&lt;FxRate, SharedFxRate&gt; sharedObjectFactory = GeneratedSharedFxRate.factory();
+ * </pre>
+ * Generated shared objects have the same semantics as shared objects created by {@link LockingSharedObject}
+ * or {@link SynchronizedSharedObject}, but do not use reflection: calling a method does not allocate an array
+ * of arguments, and primitive values are not boxed. Contrary to reflection-based shared objects, the methods
+ * {@code equals()}, {@code hashCode()} and {@code toString()} are not delegated to the pooled object.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateSharedObject {
+
+    /**
+     * Returns how the generated shared object synchronizes calls to the pooled object with disposing of the shared
+     * object.
+     *
+     * @return how the generated shared object synchronizes calls to the pooled object.
+     */
+    Synchronization synchronization() default Synchronization.LOCKING;
+
+
+    /**
+     * How a generated shared object synchronizes calls to the pooled object with disposing of the shared object.
+     */
+    enum Synchronization {
+        /**
+         * Using a read-write lock, like {@link LockingSharedObject}. Recommended in most cases.
+         */
+        LOCKING,
+
+        /**
+         * Using plain Java synchronization, like {@link SynchronizedSharedObject}. Marginally faster when each shared
+         * object is used by a single thread, but degrades when the same shared object is used by multiple threads.
+         */
+        SYNCHRONIZED
+    }
+}
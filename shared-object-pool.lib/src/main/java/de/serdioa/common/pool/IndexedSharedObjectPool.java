@@ -0,0 +1,107 @@
+package de.serdioa.common.pool;
+
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+
+/**
+ * A {@link ConcurrentSharedObjectPool} for a bounded universe of keys known in advance, such as constants of an enum
+ * or a fixed set of symbols. Each key is mapped to a unique index in the range {@code [0, keyCount)}, and pooled
+ * objects are kept in an array at the index of their key. Looking up a pooled object does not hash the key, it is
+ * a single volatile array load. Getting a shared object for a key with an index out of range throws an
+ * {@link InvalidKeyException}.
+ * <p>
+ * All other features of the {@link ConcurrentSharedObjectPool}, including disposing of idle pooled objects and tracking
+ * abandoned shared objects, work exactly the same. Setters of the builder inherited from
+ * {@link ConcurrentSharedObjectPool.Builder} return the base builder type, so the pool is best built from a builder
+ * variable:
+ * <pre>{@code
+ * IndexedSharedObjectPool.Builder<Currency, MySharedObject, MyPooledObject> builder =
+ *         IndexedSharedObjectPool.Builder.forEnum(Currency.class);
+ * builder.setPooledObjectFactory(pooledObjectFactory).setSharedObjectFactory(sharedObjectFactory);
+ * IndexedSharedObjectPool<Currency, MySharedObject, MyPooledObject> pool = builder.build();
+ * }</pre>
+ *
+ * @param <K> the type of keys used to access shared objects provided by this pool.
+ * @param <S> the type of shared objects provided by this pool.
+ * @param <P> the type of implementation objects backing shared objects provided by this pool.
+ */
+public class IndexedSharedObjectPool<K, S extends SharedObject, P> extends ConcurrentSharedObjectPool<K, S, P> {
+
+    // The number of keys in the universe of this pool.
+    private final int keyCount;
+
+
+    private IndexedSharedObjectPool(Builder<K, S, P> builder) {
+        super(builder, new ConcurrentIndexedMap<>(builder.keyIndex, builder.keyCount));
+        this.keyCount = builder.keyCount;
+    }
+
+
+    /**
+     * Returns the number of keys in the universe of this pool, that is the maximal number of pooled objects.
+     *
+     * @return the number of keys in the universe of this pool.
+     */
+    public int getKeyCount() {
+        return this.keyCount;
+    }
+
+
+    public static class Builder<K, S extends SharedObject, P> extends ConcurrentSharedObjectPool.Builder<K, S, P> {
+
+        // Maps keys to unique indices in the range [0, keyCount). Different keys must have different indices.
+        private ToIntFunction<? super K> keyIndex;
+
+        // The number of keys in the universe of the pool.
+        private int keyCount;
+
+
+        /**
+         * Returns a new builder for a pool with constants of the specified enum as keys, indexed by their ordinal.
+         *
+         * @param <E> the type of the enum.
+         * @param <S> the type of shared objects provided by the pool.
+         * @param <P> the type of implementation objects backing shared objects provided by the pool.
+         * @param keyType the class of the enum.
+         * @return the new builder.
+         */
+        public static <E extends Enum<E>, S extends SharedObject, P> Builder<E, S, P> forEnum(Class<E> keyType) {
+            return new Builder<E, S, P>()
+                    .setKeyIndex(Enum::ordinal)
+                    .setKeyCount(keyType.getEnumConstants().length);
+        }
+
+
+        public Builder<K, S, P> setKeyIndex(ToIntFunction<? super K> keyIndex) {
+            this.keyIndex = Objects.requireNonNull(keyIndex);
+            return this;
+        }
+
+
+        public Builder<K, S, P> setKeyCount(int keyCount) {
+            this.keyCount = keyCount;
+            return this;
+        }
+
+
+        @Override
+        protected void validate() {
+            super.validate();
+
+            if (this.keyIndex == null) {
+                throw new IllegalStateException("keyIndex is required");
+            }
+            if (this.keyCount <= 0) {
+                throw new IllegalStateException("keyCount (" + this.keyCount + ") <= 0");
+            }
+        }
+
+
+        @Override
+        public IndexedSharedObjectPool<K, S, P> build() {
+            this.validate();
+            return new IndexedSharedObjectPool<>(this);
+        }
+    }
+}
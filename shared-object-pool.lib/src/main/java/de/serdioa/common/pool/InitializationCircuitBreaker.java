@@ -0,0 +1,170 @@
+package de.serdioa.common.pool;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A per-key circuit breaker for initializing pooled objects. After a number of consecutive failures to initialize
+ * a pooled object for a key, the circuit for the key opens, and attempts to get a shared object for the key fail fast
+ * without creating and initializing a new pooled object. When the backoff time elapses, the circuit becomes half-open:
+ * exactly one caller is let through as a probe, while all other callers still fail fast. If the probe succeeds,
+ * the circuit closes. If the probe fails, the circuit opens again with a doubled backoff time, up to the maximal
+ * backoff time. If the probe does not complete at all, for example because the initialization has been cancelled,
+ * another probe is let through after the backoff time.
+ *
+ * @param <K> the type of keys.
+ */
+class InitializationCircuitBreaker<K> {
+
+    // The number of consecutive failures to initialize a pooled object which opens the circuit.
+    private final int failureThreshold;
+
+    // The backoff time in nanoseconds when the circuit opens first time, and the maximal backoff time.
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    // Circuits for keys which failed to initialize at least once since the last successful initialization.
+    private final ConcurrentMap<K, Circuit> circuits = new ConcurrentHashMap<>();
+
+    // The number of attempts rejected because the circuit is open.
+    private final LongAdder rejectedCount = new LongAdder();
+
+
+    InitializationCircuitBreaker(int failureThreshold, long initialBackoff, long maxBackoff, TimeUnit unit) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold (" + failureThreshold + ") <= 0");
+        }
+        if (initialBackoff <= 0) {
+            throw new IllegalArgumentException("initialBackoff (" + initialBackoff + ") <= 0");
+        }
+        if (maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("maxBackoff (" + maxBackoff + ") < initialBackoff ("
+                    + initialBackoff + ")");
+        }
+
+        this.failureThreshold = failureThreshold;
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+
+    /**
+     * Checks that an attempt to initialize a pooled object for the specified key is allowed. If the circuit for the key
+     * is open, throws an exception. If the circuit is half-open, lets the calling thread through as a probe.
+     *
+     * @param key the key to check.
+     * @throws InitializationException if the circuit for the key is open.
+     */
+    void checkClosed(K key) throws InitializationException {
+        Circuit circuit = this.circuits.get(key);
+        if (circuit == null) {
+            return;
+        }
+
+        // Fast path: the circuit is open, reject without any locking.
+        InitializationException openException = circuit.openException;
+        if (openException == null) {
+            // The number of consecutive failures has not reached the threshold yet.
+            return;
+        }
+        long now = System.nanoTime();
+        if (circuit.openUntil - now > 0) {
+            this.rejectedCount.increment();
+            throw openException;
+        }
+
+        // The backoff time elapsed, the circuit is half-open. Let exactly one thread through as a probe, and keep
+        // the circuit open for other threads while the probe is running.
+        synchronized (circuit) {
+            if (circuit.openUntil - now > 0) {
+                this.rejectedCount.increment();
+                throw circuit.openException;
+            }
+            circuit.openUntil = now + circuit.backoffNanos;
+        }
+    }
+
+
+    /**
+     * Records a successful initialization of a pooled object for the specified key, closing the circuit.
+     *
+     * @param key the key of the initialized pooled object.
+     * @return {@code true} if the circuit for the key has been open, {@code false} otherwise.
+     */
+    boolean onSuccess(K key) {
+        Circuit circuit = this.circuits.remove(key);
+        return (circuit != null && circuit.openException != null);
+    }
+
+
+    /**
+     * Records a failed initialization of a pooled object for the specified key.
+     *
+     * @param key the key of the pooled object failed to initialize.
+     * @param cause the exception thrown when initializing the pooled object.
+     * @return the backoff time in nanoseconds if the circuit for the key is open as the result of this failure,
+     * or 0 if the circuit is still closed.
+     */
+    long onFailure(K key, Throwable cause) {
+        Circuit circuit = this.circuits.computeIfAbsent(key, k -> new Circuit());
+        synchronized (circuit) {
+            circuit.failures++;
+            if (circuit.failures < this.failureThreshold) {
+                return 0;
+            }
+
+            // Open the circuit first time, or open it again with a doubled backoff time if the probe failed.
+            circuit.backoffNanos = (circuit.openException == null ? this.initialBackoffNanos
+                    : Math.min(circuit.backoffNanos * 2, this.maxBackoffNanos));
+            circuit.openUntil = System.nanoTime() + circuit.backoffNanos;
+
+            // The exception is prepared once for each opening, so that rejecting attempts is as cheap as possible.
+            circuit.openException = new InitializationException(key, "The circuit is open for "
+                    + TimeUnit.NANOSECONDS.toMillis(circuit.backoffNanos) + " ms after " + circuit.failures
+                    + " consecutive failures", cause);
+            return circuit.backoffNanos;
+        }
+    }
+
+
+    /**
+     * Returns the number of keys with an open or a half-open circuit.
+     *
+     * @return the number of keys with an open or a half-open circuit.
+     */
+    int getOpenCount() {
+        int count = 0;
+        for (Circuit circuit : this.circuits.values()) {
+            if (circuit.openException != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    long getRejectedCount() {
+        return this.rejectedCount.sum();
+    }
+
+
+    private static final class Circuit {
+
+        // The number of consecutive failures.
+        // @GuardedBy(this)
+        private int failures;
+
+        // The current backoff time in nanoseconds.
+        // @GuardedBy(this)
+        private long backoffNanos;
+
+        // System.nanoTime() until which the circuit stays open.
+        private volatile long openUntil;
+
+        // The exception thrown while the circuit is open, or null if the circuit is closed.
+        private volatile InitializationException openException;
+    }
+}
@@ -24,6 +24,11 @@ public class InitializationException extends RuntimeException {
     }
 
 
+    public InitializationException(Object key, String message, Throwable cause) {
+        super(buildDefaultMessage(key) + ": " + message, cause);
+    }
+
+
     private static String buildDefaultMessage(Object pooledObject) {
         return "Can't initialize pooled object " + pooledObject;
     }
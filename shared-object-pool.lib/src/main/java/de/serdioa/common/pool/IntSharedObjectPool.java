@@ -0,0 +1,67 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * A {@link ConcurrentSharedObjectPool} with {@code int} keys. Pooled objects are kept in a concurrent open-addressing
+ * map with primitive keys, so that getting a shared object with {@link #get(int)} for a pooled object which is already
+ * available neither boxes the key nor allocates anything except for the shared object itself. Getting a shared object
+ * for a pooled object which is not available yet falls back to {@link #get(Object)} with a boxed key.
+ * <p>
+ * Setters of the builder inherited from {@link ConcurrentSharedObjectPool.Builder} return the base builder type,
+ * so the pool is best built from a builder variable:
+ * <pre>{@code
+ * IntSharedObjectPool.Builder<MySharedObject, MyPooledObject> builder = new IntSharedObjectPool.Builder<>();
+ * builder.setPooledObjectFactory(pooledObjectFactory).setSharedObjectFactory(sharedObjectFactory);
+ * IntSharedObjectPool<MySharedObject, MyPooledObject> pool = builder.build();
+ * }</pre>
+ *
+ * @param <S> the type of shared objects provided by this pool.
+ * @param <P> the type of implementation objects backing shared objects provided by this pool.
+ */
+public class IntSharedObjectPool<S extends SharedObject, P> extends ConcurrentSharedObjectPool<Integer, S, P> {
+
+    // Pooled entries, the same map as used by the base class.
+    private final ConcurrentIntObjectMap<Entry> intEntries;
+
+
+    private IntSharedObjectPool(Builder<S, P> builder) {
+        this(builder, new ConcurrentIntObjectMap<>());
+    }
+
+
+    private IntSharedObjectPool(Builder<S, P> builder, ConcurrentIntObjectMap<Entry> intEntries) {
+        super(builder, intEntries);
+        this.intEntries = intEntries;
+    }
+
+
+    /**
+     * Returns a shared object for the specified key. If the pooled object for the key is already available,
+     * the key is not boxed.
+     *
+     * @param key the key of the shared object.
+     * @return the shared object for the specified key.
+     *
+     * @throws InvalidKeyException if the provided key is invalid.
+     * @throws InitializationException if the backing implementation object could not be initialized.
+     */
+    public S get(int key) throws InvalidKeyException, InitializationException {
+        S sharedObject = this.tryGetActive(this.intEntries.get(key));
+        return (sharedObject != null ? sharedObject : this.get(Integer.valueOf(key)));
+    }
+
+
+    public boolean containsPooledObject(int key) {
+        return this.intEntries.containsKey(key);
+    }
+
+
+    public static class Builder<S extends SharedObject, P> extends ConcurrentSharedObjectPool.Builder<Integer, S, P> {
+
+        @Override
+        public IntSharedObjectPool<S, P> build() {
+            this.validate();
+            return new IntSharedObjectPool<>(this);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.serdioa.common.pool;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A bounded cache of invalid keys. The cache remembers for a limited time the {@link InvalidKeyException} thrown when
+ * attempting to create a pooled object for a key, so that a pool may reject the same key again without calling
+ * the pooled object factory.
+ * <p>
+ * When the cache is full, the oldest keys are evicted first. Expired keys are not evicted eagerly, they are just ignored
+ * when looking up and replaced when the same key is found to be invalid again.
+ *
+ * @param <K> the type of keys.
+ */
+class InvalidKeyCache<K> {
+
+    // The maximal number of cached keys.
+    private final int maxSize;
+
+    // Time in nanoseconds to remember an invalid key.
+    private final long ttlNanos;
+
+    // Cached exceptions by key.
+    private final ConcurrentMap<K, CachedException> exceptions = new ConcurrentHashMap<>();
+
+    // Cached keys in the order of insertion, to evict the oldest keys first. Each cached key is in the queue exactly
+    // once, because keys are removed from the map only when evicted.
+    private final Queue<K> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    // The number of lookups which found a cached exception, and which did not.
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+
+    InvalidKeyCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize (" + maxSize + ") <= 0");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl (" + ttl + ") <= 0");
+        }
+
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+
+    /**
+     * Returns the cached exception for the specified key, or {@code null} if the key is not known to be invalid.
+     *
+     * @param key the key to look up.
+     * @return the cached exception for the specified key, or {@code null} if the key is not known to be invalid.
+     */
+    InvalidKeyException get(K key) {
+        CachedException cached = this.exceptions.get(key);
+        if (cached != null && cached.expiresAt - System.nanoTime() > 0) {
+            this.hitCount.increment();
+            return cached.exception;
+        } else {
+            this.missCount.increment();
+            return null;
+        }
+    }
+
+
+    /**
+     * Remembers that the specified key is invalid.
+     *
+     * @param key the invalid key.
+     * @param exception the exception thrown when attempting to create a pooled object for the key.
+     */
+    void put(K key, InvalidKeyException exception) {
+        CachedException cached = new CachedException(exception, System.nanoTime() + this.ttlNanos);
+        if (this.exceptions.put(key, cached) == null) {
+            this.insertionOrder.offer(key);
+
+            // Evict the oldest keys, if the cache is full. Concurrent threads may evict slightly more keys than
+            // required, which is not a problem for a cache.
+            while (this.exceptions.size() > this.maxSize) {
+                K oldestKey = this.insertionOrder.poll();
+                if (oldestKey == null) {
+                    break;
+                }
+                this.exceptions.remove(oldestKey);
+            }
+        }
+    }
+
+
+    long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+
+    long getMissCount() {
+        return this.missCount.sum();
+    }
+
+
+    private static final class CachedException {
+
+        private final InvalidKeyException exception;
+
+        // System.nanoTime() when the cached exception expires.
+        private final long expiresAt;
+
+
+        CachedException(InvalidKeyException exception, long expiresAt) {
+            this.exception = Objects.requireNonNull(exception);
+            this.expiresAt = expiresAt;
+        }
+    }
+}
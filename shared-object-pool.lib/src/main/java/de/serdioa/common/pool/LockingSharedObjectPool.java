@@ -4,7 +4,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -43,8 +42,16 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
             SharedObjectFactory<P, S> sharedObjectFactory,
             boolean disposeUnused,
             long idleDisposeTimeMillis,
-            int disposeThreads) {
-        super(name, pooledObjectFactory, sharedObjectFactory, disposeUnused, idleDisposeTimeMillis, disposeThreads);
+            int disposeThreads,
+            SharedObjectPoolRuntime runtime,
+            int invalidKeyCacheSize,
+            long invalidKeyCacheTtlMillis,
+            int circuitBreakerFailureThreshold,
+            long circuitBreakerBackoffMillis,
+            long circuitBreakerMaxBackoffMillis) {
+        super(name, pooledObjectFactory, sharedObjectFactory, disposeUnused, idleDisposeTimeMillis, disposeThreads,
+                false, runtime, invalidKeyCacheSize, invalidKeyCacheTtlMillis, circuitBreakerFailureThreshold,
+                circuitBreakerBackoffMillis, circuitBreakerMaxBackoffMillis);
     }
 
 
@@ -121,6 +128,11 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
                         }
                         this.firePooledObjectInitialized(endInitializeTimestamp - startInitializeTimestamp,
                                 initializeSuccess);
+                        if (initializeSuccess) {
+                            this.initializationSucceeded(key);
+                        } else if (exceptionOnInit != null) {
+                            this.initializationFailed(key, exceptionOnInit);
+                        }
                     }
                 }
 
@@ -191,6 +203,10 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
 
             Entry entry = this.entries.get(key);
             if (entry == null) {
+                // Reject a recently seen invalid key without attempting to create a new entry.
+                this.rejectInvalidKey(key);
+                this.rejectOpenCircuit(key);
+
                 attemptedCreate = true;
                 startCreateTimestamp = System.nanoTime();
                 entry = createEntry(key);
@@ -274,7 +290,7 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
 
                 if (delayBeforeDispose > 0) {
                     // Instead of disposing of the entry immediately, schedule to try again later.
-                    ScheduledFuture<?> disposeTask = this.scheduleDisposeTask(() -> this.offerDispose(entry),
+                    TimingWheel.Timeout disposeTask = this.scheduleDisposeTask(() -> this.offerDispose(entry),
                             delayBeforeDispose, TimeUnit.MILLISECONDS);
                     entry.setDisposeTask(disposeTask);
 
@@ -427,6 +443,7 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
             poolWriteLock.unlock();
         }
 
+        this.enterShutdownPhase(ShutdownPhase.DISPOSING);
         this.disposeEntriesOnShutdown();
 
         super.dispose();
@@ -509,13 +526,13 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
         // @GuardedBy(this.lock)
         private long lastReturnTime = 0;
 
-        // The ScheduledFuture for asynchronously disposing of this entry, if any.
-        // A ScheduledFuture is set when this entry is scheduled for an asynchronous disposal.
-        // If this entry provides a new shared object before being disposed, it may cancel the ScheduledFuture.
-        // Even if the ScheduledFuture is not cancellled, it will not dispose of this entry when executed, if the
+        // The task on the dispose timing wheel for asynchronously disposing of this entry, if any.
+        // A task is set when this entry is scheduled for an asynchronous disposal.
+        // If this entry provides a new shared object before being disposed, it may cancel the task.
+        // Even if the task is not cancellled, it will not dispose of this entry when executed, if the
         // entry provides a shared object.
         // @GuardedBy(this.lock)
-        private ScheduledFuture<?> disposeTask;
+        private TimingWheel.Timeout disposeTask;
 
         // Lock for lifecycle management.
         // Changing the lifecycle of this entry, that is executing init() and dispose(), requires exclusive ("write")
@@ -627,7 +644,7 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
         }
 
 
-        void setDisposeTask(ScheduledFuture<?> disposeTask) {
+        void setDisposeTask(TimingWheel.Timeout disposeTask) {
             Lock entryExclusiveLock = this.exclusiveLock();
             entryExclusiveLock.lock();
             try {
@@ -654,7 +671,7 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
                 // of this entry if it provides any shared objects), but cancelling the task reduces unnecessary load
                 // on the disposal executor.
                 if (this.disposeTask != null) {
-                    this.disposeTask.cancel(true);
+                    this.disposeTask.cancel();
                     this.disposeTask = null;
                 }
 
@@ -726,7 +743,9 @@ public class LockingSharedObjectPool<K, S extends SharedObject, P> extends Abstr
             this.validate();
 
             return new LockingSharedObjectPool<>(this.name, this.pooledObjectFactory, this.sharedObjectFactory,
-                    this.disposeUnused, this.idleDisposeTimeMillis, this.disposeThreads);
+                    this.disposeUnused, this.idleDisposeTimeMillis, this.disposeThreads, this.runtime,
+                    this.invalidKeyCacheSize, this.invalidKeyCacheTtlMillis, this.circuitBreakerFailureThreshold,
+                    this.circuitBreakerBackoffMillis, this.circuitBreakerMaxBackoffMillis);
         }
     }
 }
@@ -0,0 +1,67 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * A {@link ConcurrentSharedObjectPool} with {@code long} keys. Pooled objects are kept in a concurrent open-addressing
+ * map with primitive keys, so that getting a shared object with {@link #get(long)} for a pooled object which is already
+ * available neither boxes the key nor allocates anything except for the shared object itself. Getting a shared object
+ * for a pooled object which is not available yet falls back to {@link #get(Object)} with a boxed key.
+ * <p>
+ * Setters of the builder inherited from {@link ConcurrentSharedObjectPool.Builder} return the base builder type,
+ * so the pool is best built from a builder variable:
+ * <pre>{@code
+ * LongSharedObjectPool.Builder<MySharedObject, MyPooledObject> builder = new LongSharedObjectPool.Builder<>();
+ * builder.setPooledObjectFactory(pooledObjectFactory).setSharedObjectFactory(sharedObjectFactory);
+ * LongSharedObjectPool<MySharedObject, MyPooledObject> pool = builder.build();
+ * }</pre>
+ *
+ * @param <S> the type of shared objects provided by this pool.
+ * @param <P> the type of implementation objects backing shared objects provided by this pool.
+ */
+public class LongSharedObjectPool<S extends SharedObject, P> extends ConcurrentSharedObjectPool<Long, S, P> {
+
+    // Pooled entries, the same map as used by the base class.
+    private final ConcurrentLongObjectMap<Entry> longEntries;
+
+
+    private LongSharedObjectPool(Builder<S, P> builder) {
+        this(builder, new ConcurrentLongObjectMap<>());
+    }
+
+
+    private LongSharedObjectPool(Builder<S, P> builder, ConcurrentLongObjectMap<Entry> longEntries) {
+        super(builder, longEntries);
+        this.longEntries = longEntries;
+    }
+
+
+    /**
+     * Returns a shared object for the specified key. If the pooled object for the key is already available,
+     * the key is not boxed.
+     *
+     * @param key the key of the shared object.
+     * @return the shared object for the specified key.
+     *
+     * @throws InvalidKeyException if the provided key is invalid.
+     * @throws InitializationException if the backing implementation object could not be initialized.
+     */
+    public S get(long key) throws InvalidKeyException, InitializationException {
+        S sharedObject = this.tryGetActive(this.longEntries.get(key));
+        return (sharedObject != null ? sharedObject : this.get(Long.valueOf(key)));
+    }
+
+
+    public boolean containsPooledObject(long key) {
+        return this.longEntries.containsKey(key);
+    }
+
+
+    public static class Builder<S extends SharedObject, P> extends ConcurrentSharedObjectPool.Builder<Long, S, P> {
+
+        @Override
+        public LongSharedObjectPool<S, P> build() {
+            this.validate();
+            return new LongSharedObjectPool<>(this);
+        }
+    }
+}
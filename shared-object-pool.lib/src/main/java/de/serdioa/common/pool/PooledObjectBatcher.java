@@ -0,0 +1,203 @@
+package de.serdioa.common.pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+/**
+ * Collects pooled objects arriving within a short time window, and processes them in one batch. Batches are processed
+ * on the provided executor, usually the dispose executor of the {@link SharedObjectPoolRuntime}, so that batching pools
+ * sharing a runtime share its threads as well.
+ *
+ * @param <P> the type of pooled objects.
+ */
+class PooledObjectBatcher<P> {
+
+    // The action processing a batch of pooled objects.
+    private final Consumer<List<P>> batchAction;
+
+    // The time window in milliseconds to collect pooled objects, starting with the first pooled object in a batch.
+    private final long windowMillis;
+
+    // The maximal number of pooled objects in one batch. A batch is processed immediately when it is full.
+    private final int maxBatchSize;
+
+    // The executor processing batches. The executor is not owned by this batcher, and may be shared with other pools.
+    private final ScheduledExecutorService executor;
+
+    private final Object monitor = new Object();
+
+    // The batch currently collecting pooled objects, if any.
+    // @GuardedBy(this.monitor)
+    private Batch<P> pendingBatch;
+
+    // Batches which are not processed yet, including the pending batch and full batches submitted to the executor.
+    // @GuardedBy(this.monitor)
+    private final List<Batch<P>> unflushedBatches = new ArrayList<>();
+
+    // Is this batcher already shut down?
+    // @GuardedBy(this.monitor)
+    private boolean shutdown;
+
+
+    PooledObjectBatcher(ScheduledExecutorService executor, Consumer<List<P>> batchAction, long windowMillis,
+            int maxBatchSize) {
+        this.executor = Objects.requireNonNull(executor);
+        this.batchAction = Objects.requireNonNull(batchAction);
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+
+    /**
+     * Adds the provided pooled object to the current batch, starting a new batch if required.
+     *
+     * @param pooledObject the pooled object to add.
+     * @return the future completed when the batch containing the pooled object is processed.
+     */
+    CompletableFuture<Void> submit(P pooledObject) {
+        Batch<P> fullBatch = null;
+        CompletableFuture<Void> result;
+
+        synchronized (this.monitor) {
+            if (this.shutdown) {
+                return failed(null);
+            }
+
+            if (this.pendingBatch == null) {
+                Batch<P> batch = new Batch<>();
+                try {
+                    batch.flushTask = this.executor.schedule(() -> this.flush(batch), this.windowMillis,
+                            TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ex) {
+                    // The executor is already shut down together with the runtime.
+                    return failed(ex);
+                }
+                this.pendingBatch = batch;
+                this.unflushedBatches.add(batch);
+            }
+
+            this.pendingBatch.pooledObjects.add(pooledObject);
+            result = this.pendingBatch.future;
+
+            if (this.pendingBatch.pooledObjects.size() >= this.maxBatchSize) {
+                // The batch is full: process it immediately, without waiting for the end of the window.
+                fullBatch = this.pendingBatch;
+                this.pendingBatch = null;
+            }
+        }
+
+        if (fullBatch != null) {
+            final Batch<P> batch = fullBatch;
+            batch.flushTask.cancel(false);
+            try {
+                this.executor.execute(() -> this.flush(batch));
+            } catch (RejectedExecutionException ex) {
+                // The executor has been shut down in the meantime, so the cancelled delayed flush will not run either.
+                this.flush(batch);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Adds the provided pooled object to the current batch, and waits until the batch is processed.
+     *
+     * @param pooledObject the pooled object to add.
+     *
+     * @throws RuntimeException if processing the batch failed.
+     */
+    void submitAndWait(P pooledObject) {
+        try {
+            this.submit(pooledObject).join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw ex;
+            }
+        }
+    }
+
+
+    private void flush(Batch<P> batch) {
+        synchronized (this.monitor) {
+            // A full batch is flushed immediately, but the delayed flush may have already started.
+            if (batch.flushed) {
+                return;
+            }
+            batch.flushed = true;
+
+            if (this.pendingBatch == batch) {
+                this.pendingBatch = null;
+            }
+            this.unflushedBatches.remove(batch);
+        }
+
+        // Pooled objects are not added to the batch anymore, so the list may be read without synchronization.
+        try {
+            this.batchAction.accept(Collections.unmodifiableList(batch.pooledObjects));
+            batch.future.complete(null);
+        } catch (Throwable ex) {
+            batch.future.completeExceptionally(ex);
+        }
+    }
+
+
+    /**
+     * Shuts down this batcher. Batches which are not processed yet are processed in the calling thread, since
+     * the executor may be shut down together with the runtime right afterwards. Pooled objects submitted afterwards
+     * are rejected.
+     */
+    void shutdown() {
+        List<Batch<P>> batches;
+        synchronized (this.monitor) {
+            if (this.shutdown) {
+                return;
+            }
+            this.shutdown = true;
+            batches = new ArrayList<>(this.unflushedBatches);
+        }
+
+        for (Batch<P> batch : batches) {
+            batch.flushTask.cancel(false);
+            this.flush(batch);
+        }
+    }
+
+
+    private static CompletableFuture<Void> failed(Throwable cause) {
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("The pool is already disposed of", cause));
+        return failed;
+    }
+
+
+    private static class Batch<P> {
+
+        // @GuardedBy(PooledObjectBatcher.this.monitor) until flushed.
+        final List<P> pooledObjects = new ArrayList<>();
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        // @GuardedBy(PooledObjectBatcher.this.monitor)
+        ScheduledFuture<?> flushTask;
+
+        // @GuardedBy(PooledObjectBatcher.this.monitor)
+        boolean flushed;
+    }
+}
@@ -0,0 +1,25 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * A function to calculate the weight of pooled objects contained by a {@link SharedObjectPool}. A pool with
+ * a maximal weight evicts idle pooled objects when the total weight of all pooled objects exceeds the maximum.
+ *
+ * @param <K> type of keys used to create pooled objects.
+ * @param <P> type of pooled objects.
+ */
+@FunctionalInterface
+public interface PooledObjectWeigher<K, P> {
+
+    /**
+     * Returns the weight of the specified pooled object. The weight is calculated once, when the pooled object has
+     * been initialized, and is not re-calculated later. The weight is measured in arbitrary units, for example
+     * the approximate size of the pooled object in bytes, or the number of instruments in a pooled market data
+     * snapshot.
+     *
+     * @param key the key of the pooled object.
+     * @param pooledObject the initialized pooled object.
+     * @return the weight of the pooled object, must not be negative.
+     */
+    int weigh(K key, P pooledObject);
+}
@@ -2,21 +2,35 @@ package de.serdioa.common.pool;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.List;
 
 
 /**
  * An implementation of the {@link StackTraceProvider} which uses a {@link SecurityManager} to obtain the current call
  * stack. This implementation is faster than {@link ThrowableStackTraceProvider}, but it provides only class names in
  * the call stack, method names are not available.
+ * <p>
+ * Optionally this provider interns captured stack traces, so that all stack traces captured at the same call site are
+ * represented by a single {@link StackTrace} instance, see {@link ThrowableStackTraceProvider}.
  */
 public class SecurityManagerStackTraceProvider implements StackTraceProvider {
 
     private final StackFillingSecurityManager securityManager;
 
+    // Interned call sites, or null if call sites are not interned.
+    private final CallSiteTable<List<StackTraceElement>> callSites;
+
 
     public SecurityManagerStackTraceProvider() {
+        this(false);
+    }
+
+
+    public SecurityManagerStackTraceProvider(boolean internCallSites) {
         this.securityManager = AccessController
                 .doPrivileged((PrivilegedAction<StackFillingSecurityManager>) StackFillingSecurityManager::new);
+        this.callSites = (internCallSites ? new CallSiteTable<>() : null);
     }
 
 
@@ -54,7 +68,11 @@ public class SecurityManagerStackTraceProvider implements StackTraceProvider {
                         new StackTraceElement(classContext[i + 2 + skipFrames].getName(), "<unavailable>", null, -1);
             }
 
-            return new StackTrace(elements);
+            if (SecurityManagerStackTraceProvider.this.callSites == null) {
+                return new StackTrace(elements);
+            }
+            return SecurityManagerStackTraceProvider.this.callSites
+                    .intern(Arrays.asList(elements), callSite -> new StackTrace(elements));
         }
     }
 }
@@ -27,4 +27,21 @@ public interface SharedObject {
      * @see #dispose()
      */
     boolean isDisposed();
+
+
+    /**
+     * Renews the lease of this shared object, if the pool tracks abandoned shared objects with leases (see
+     * {@link AbandonedTrackingMode#LEASE}). A client holding a shared object without using it for longer than
+     * the lease time shall call this method periodically, otherwise the pool considers the shared object abandoned
+     * and releases it. Does nothing if the pool does not track shared objects with leases.
+     * <p>
+     * The default implementation does nothing. Implementations of shared objects shall renew the lease by calling
+     * {@link SharedObjectLease#renew()} on the dispose callback, if the dispose callback is a {@link SharedObjectLease},
+     * and shall reject calls of any methods except {@link #dispose()} and {@link #isDisposed()} once the lease has
+     * expired.
+     *
+     * @throws IllegalStateException if the lease of this shared object has already expired.
+     */
+    default void renewLease() {
+    }
 }
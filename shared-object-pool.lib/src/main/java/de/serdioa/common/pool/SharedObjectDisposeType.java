@@ -21,5 +21,11 @@ package de.serdioa.common.pool;
     /**
      * The shared object has been disposed of when the pool has been shut down.
      */
-    SHUTDOWN
+    SHUTDOWN,
+
+    /**
+     * The shared object has been disposed of by the pool, because its lease has not been renewed in time, see
+     * {@link AbandonedTrackingMode#LEASE}.
+     */
+    EXPIRED
 }
@@ -0,0 +1,23 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * A renewable lease of a shared object provided by a pool which tracks abandoned shared objects with leases, see
+ * {@link AbandonedTrackingMode#LEASE}. In such case the dispose callback passed to
+ * {@link SharedObjectFactory#createShared(Object, Runnable)} implements this interface, and a shared object shall
+ * renew the lease when the client uses it, or calls {@link SharedObject#renewLease()}.
+ * <p>
+ * Renewing a lease is cheap: a lease which has been already renewed since the last sweep of the pool is not written
+ * again, so that shared objects used concurrently by many threads do not contend on the lease.
+ */
+public interface SharedObjectLease {
+
+    /**
+     * Renews this lease, unless it has already expired. Once a lease has expired, the pool has released the shared
+     * object, and the pooled object backing it may be already disposed of, so the shared object shall not be used
+     * anymore.
+     *
+     * @return {@code true} if this lease has been renewed, or {@code false} if it has already expired.
+     */
+    boolean renew();
+}
@@ -2,61 +2,52 @@ package de.serdioa.common.pool;
 
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 
 /**
  * A phantom reference on a shared object held by the pool to track shared objects abandoned by a client without
  * properly disposing of it.
+ * <p>
+ * A pool may hold a phantom reference for each shared object it provides, so this class is kept as compact as
+ * possible: it does not keep the key of the pooled object, which is known to the dispose callback, and phantom
+ * references of a pooled object are linked directly with each other in a {@link RefList} instead of being registered
+ * in a separate collection.
  */
-/* package private */ class SharedObjectPhantomReference<K, S extends SharedObject> extends PhantomReference<S> {
+/* package private */ class SharedObjectPhantomReference<S extends SharedObject> extends PhantomReference<S> {
 
-    // The key of the pooled object, and the ID of the shared object. Both are used only for logging.
-    private final K key;
+    // The ID of the shared object, used only for logging.
     private final long sharedObjectId;
 
     // The stack trace taken when the shared object has been allocated, to track abandoned shared objects.
     private final StackTrace stackTrace;
 
-    // A callback to be invoked to dispose of the shared object by the abandoned objects monitor.
-    // This callback is invoked when an abandoned objects monitor detects that the shared object has been GC'ed
-    // without being explicitly disposed of.
-    private final Runnable disposeCallback;
+    // A callback to dispose of the shared object. The callback provides the group which releases the shared object when
+    // the reaper detects that the shared object has been GC'ed without being explicitly disposed of.
+    private final DisposeCallback disposeCallback;
 
-    // A key in the entry map pointing to this phantom reference, so that it may be removed after disposing
-    // of the object.
-    private final Object phantomReferenceKey;
+    // Links to neighbours in the list of phantom references on shared objects provided by the same pooled object.
+    // @GuardedBy(list)
+    private SharedObjectPhantomReference<S> prev;
+    private SharedObjectPhantomReference<S> next;
 
-    // The name of the thread which disposed of the shared object held by this phantom reference, if any.
-    // We do not keep the thread object itself to prevent possible thread-related memory leaks, such as keeping
-    // unnecessary thread-local variables after the thread stopped.
-    // This variable is used to track double-dispose errors, when the same shared object is disposed of more than
-    // once.
-    // @GuardedBy synchronized(this)
-    private String disposedByName;
-
-    // Was the shared object held by this phantom reference disposed directly, that is by calling it's dispose
-    // method (true) or indirectly, that is by the reaper thread cleaning up phantom references (false).
+    // How the shared object held by this phantom reference has been disposed of: directly, that is by calling it's
+    // dispose method, indirectly by the reaper thread cleaning up phantom references, or when shutting down the pool.
+    // Null if the shared object has not been disposed of yet.
     // This variable is used to track double-dispose errors, when the same shared object is disposed of more than
     // once.
     // @GuardedBy synchronized(this)
     private SharedObjectDisposeType disposeType;
 
 
-    SharedObjectPhantomReference(K key, long sharedObjectId, StackTrace stackTrace,
-            S referent, Runnable disposeCallback,
-            Object phantomReferenceKey, ReferenceQueue<? super S> queue) {
+    SharedObjectPhantomReference(long sharedObjectId, StackTrace stackTrace, S referent,
+            DisposeCallback disposeCallback, ReferenceQueue<? super S> queue) {
         super(referent, queue);
-        this.key = Objects.requireNonNull(key);
         this.sharedObjectId = sharedObjectId;
         this.stackTrace = Objects.requireNonNull(stackTrace);
         this.disposeCallback = Objects.requireNonNull(disposeCallback);
-        this.phantomReferenceKey = Objects.requireNonNull(phantomReferenceKey);
-    }
-
-
-    public K getKey() {
-        return this.key;
     }
 
 
@@ -70,15 +61,16 @@ import java.util.Objects;
     }
 
 
-    public Object getPhantomReferenceKey() {
-        return this.phantomReferenceKey;
+    public DisposeCallback getDisposeCallback() {
+        return this.disposeCallback;
     }
 
 
-    public void disposeIfRequired() {
-        this.disposeCallback.run();
+    public ReapGroup getReapGroup() {
+        return this.disposeCallback.getReapGroup();
     }
 
+
     // Subsequent methods must be called when synchronized on this phantom reference, each of them contains
     // an assertion. We are using assertions instead of checks with runtime exceptions, because all methods
     // may be used only inside the class ConcurrentSharedObjectPool (this file), so we are in a full control.
@@ -92,7 +84,6 @@ import java.util.Objects;
         // If the shared object has been GC'ed without being properly disposed of, and disposal was triggered
         // by the reaper thread, there is nothing to track anymore (the shared object already has been GC'ed).
         this.clear();
-        this.disposedByName = Thread.currentThread().getName();
         this.disposeType = disposeType;
     }
 
@@ -100,30 +91,124 @@ import java.util.Objects;
     public boolean isDisposed() {
         assert (Thread.holdsLock(this));
 
-        return (this.disposedByName != null);
+        return (this.disposeType != null);
     }
 
 
-    public String getDisposedByName() {
+    public SharedObjectDisposeType getDisposeType() {
         assert (Thread.holdsLock(this));
 
-        return this.disposedByName;
+        return this.disposeType;
     }
 
 
-    public SharedObjectDisposeType getDisposeType() {
-        assert (Thread.holdsLock(this));
-
-        return this.disposeType;
+    /**
+     * A callback to dispose of the shared object held by a phantom reference.
+     */
+    interface DisposeCallback {
+
+        /**
+         * Returns the group which disposes of the shared object when it has been GC'ed without being disposed of
+         * directly by the client.
+         *
+         * @return the group which disposes of the shared object.
+         */
+        ReapGroup getReapGroup();
     }
 
 
     /**
-     * A simple mutable holder class. We may have used a 1-element array to hold the object, but arrays of generic
-     * objects are not directly support and require casting, so a simple mutable object is more elegant.
+     * A group of phantom references disposed of together by the reaper, usually phantom references on shared objects
+     * provided by the same pooled object. The reaper drains phantom references in batches, and passes all phantom
+     * references of a batch belonging to the same group in a single call, so that the group may update its state once
+     * per batch instead of once per shared object.
      */
-    public static class Holder<K, S extends SharedObject> {
+    interface ReapGroup {
+
+        /**
+         * Disposes of shared objects which have been GC'ed. Phantom references on shared objects which have been
+         * already disposed of directly by the client, or when shutting down the pool, shall be skipped.
+         *
+         * @param refs the phantom references on shared objects which have been GC'ed.
+         */
+        void reap(List<? extends SharedObjectPhantomReference<?>> refs);
+    }
+
 
-        public SharedObjectPhantomReference<K, S> ref;
+    /**
+     * An intrusive doubly linked list of phantom references. Phantom references are linked through their own fields,
+     * so adding a phantom reference to the list does not allocate. Each phantom reference may be in at most one list.
+     * All methods synchronize on the list.
+     *
+     * @param <S> the type of shared objects.
+     */
+    static final class RefList<S extends SharedObject> {
+
+        // @GuardedBy(this)
+        private SharedObjectPhantomReference<S> head;
+
+
+        synchronized void add(SharedObjectPhantomReference<S> ref) {
+            assert (ref.prev == null && ref.next == null && this.head != ref);
+
+            ref.next = this.head;
+            if (this.head != null) {
+                this.head.prev = ref;
+            }
+            this.head = ref;
+        }
+
+
+        // Removes the phantom reference from this list. Returns true if the phantom reference has been removed,
+        // or false if it was not in this list.
+        synchronized boolean remove(SharedObjectPhantomReference<S> ref) {
+            if (ref.prev == null && this.head != ref) {
+                return false;
+            }
+
+            if (ref.prev == null) {
+                this.head = ref.next;
+            } else {
+                ref.prev.next = ref.next;
+            }
+            if (ref.next != null) {
+                ref.next.prev = ref.prev;
+            }
+            ref.prev = null;
+            ref.next = null;
+            return true;
+        }
+
+
+        // Removes the specified phantom references from this list under a single lock. Phantom references which are
+        // not in this list are skipped.
+        synchronized void removeAll(List<SharedObjectPhantomReference<S>> refs) {
+            for (SharedObjectPhantomReference<S> ref : refs) {
+                this.remove(ref);
+            }
+        }
+
+
+        // Returns a snapshot of all phantom references in this list.
+        synchronized List<SharedObjectPhantomReference<S>> snapshot() {
+            List<SharedObjectPhantomReference<S>> refs = new ArrayList<>();
+            for (SharedObjectPhantomReference<S> ref = this.head; ref != null; ref = ref.next) {
+                refs.add(ref);
+            }
+            return refs;
+        }
+
+
+        // Removes all phantom references from this list.
+        synchronized void clear() {
+            SharedObjectPhantomReference<S> ref = this.head;
+            while (ref != null) {
+                SharedObjectPhantomReference<S> next = ref.next;
+                ref.prev = null;
+                ref.next = null;
+                ref = next;
+            }
+            this.head = null;
+        }
     }
 }
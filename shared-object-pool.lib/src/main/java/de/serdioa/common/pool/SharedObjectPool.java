@@ -1,5 +1,11 @@
 package de.serdioa.common.pool;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A pool of objects available by key, where each object in a pool may be simultaneously used by multiple clients. A
@@ -25,4 +31,104 @@ public interface SharedObjectPool<K, S extends SharedObject> {
      * @throws InitializationException if the backing implementation object could not be initialized.
      */
     S get(K key) throws InvalidKeyException, InitializationException;
+
+
+    /**
+     * Returns a shared object for the specified key, waiting at most the specified time if the backing implementation
+     * object is not available yet. If the time elapses, the caller gives up waiting, but the backing implementation
+     * object may still be initialized by the pool.
+     * <p>
+     * The default implementation waits for the future returned by the method {@link #getAsync(Object)}, and cancels
+     * the future if the time elapses or if the calling thread is interrupted.
+     *
+     * @param key the key to return a shared object for.
+     * @param timeout the maximal time to wait.
+     * @param unit the time unit of the timeout argument.
+     * @return the shared object for the specified key.
+     *
+     * @throws InvalidKeyException if the provided key is invalid, and the pool could not provide a shared object for
+     * it.
+     * @throws InitializationException if the backing implementation object could not be initialized.
+     * @throws TimeoutException if the shared object is not available within the specified time.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    default S get(K key, long timeout, TimeUnit unit)
+            throws InvalidKeyException, InitializationException, TimeoutException, InterruptedException {
+        CompletableFuture<S> future = this.getAsync(key);
+        try {
+            return future.get(timeout, unit);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new InitializationException(key, cause);
+            }
+        } catch (TimeoutException | InterruptedException ex) {
+            // Give up waiting. If the shared object has been provided in the meantime, nobody will use it.
+            future.cancel(false);
+            future.thenAccept(SharedObject::dispose);
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Asynchronously returns a shared object for the specified key. If initializing a backing implementation object is
+     * required, it runs in a cached executor with daemon threads shared by all pools, which starts a new thread
+     * whenever all its threads are busy, so that blocking initializations do not occupy threads of the common
+     * {@link java.util.concurrent.ForkJoinPool}. To limit the number of threads, use the method
+     * {@link #getAsync(Object, Executor)} with a dedicated executor.
+     *
+     * @param key the key to return a shared object for.
+     * @return the future completed with the shared object for the specified key, or completed exceptionally with
+     * {@link InvalidKeyException} or {@link InitializationException} if the pool could not provide a shared object.
+     */
+    default CompletableFuture<S> getAsync(K key) {
+        return this.getAsync(key, DefaultInitializeExecutor.get());
+    }
+
+
+    /**
+     * Asynchronously returns a shared object for the specified key. If initializing a backing implementation object is
+     * required, it runs in the specified executor.
+     * <p>
+     * The default implementation just calls the method {@link #get(Object)} in the specified executor. Implementations
+     * are encouraged to complete the returned future immediately, without switching threads, if the backing
+     * implementation object is already available.
+     * <p>
+     * If the returned future is cancelled, the shared object, if any, is disposed of.
+     *
+     * @param key the key to return a shared object for.
+     * @param executor the executor to initialize a backing implementation object, if required.
+     * @return the future completed with the shared object for the specified key, or completed exceptionally with
+     * {@link InvalidKeyException} or {@link InitializationException} if the pool could not provide a shared object.
+     */
+    default CompletableFuture<S> getAsync(K key, Executor executor) {
+        CompletableFuture<S> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            if (result.isDone()) {
+                // The future has been cancelled in the meantime.
+                return;
+            }
+            try {
+                S sharedObject = this.get(key);
+                if (!result.complete(sharedObject)) {
+                    // The future has been cancelled in the meantime.
+                    sharedObject.dispose();
+                }
+            } catch (Exception ex) {
+                result.completeExceptionally(ex);
+            }
+        };
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
 }
@@ -5,10 +5,13 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.Timer;
 
 
@@ -26,6 +29,20 @@ public class SharedObjectPoolMetrics {
     private final Gauge unusedPooledObjectsCount;
     private final Gauge sharedObjectsCount;
 
+    private final FunctionCounter invalidKeyCacheHit;
+    private final FunctionCounter invalidKeyCacheMiss;
+
+    private final Gauge openCircuitsCount;
+    private final FunctionCounter openCircuitRejected;
+    private final Counter circuitOpened;
+    private final Counter circuitClosed;
+
+    private final FunctionCounter abandonedOnShutdown;
+    private final FunctionCounter abandonedShared;
+
+    private final Gauge reaperBacklog;
+    private final TimeGauge reaperLag;
+
     private final Timer hit;
     private final Timer miss;
     private final Timer createdSuccess;
@@ -58,6 +75,62 @@ public class SharedObjectPoolMetrics {
                 .tags(tags)
                 .register(this.meterRegistry);
 
+        this.invalidKeyCacheHit = FunctionCounter.builder("sharedObjectPool.invalidKeyCache", this.stats,
+                SharedObjectPoolStats::getInvalidKeyCacheHitCount)
+                .description("Recently seen invalid keys rejected without creating pooled objects")
+                .tags(tags)
+                .tag("result", "hit")
+                .register(this.meterRegistry);
+        this.invalidKeyCacheMiss = FunctionCounter.builder("sharedObjectPool.invalidKeyCache", this.stats,
+                SharedObjectPoolStats::getInvalidKeyCacheMissCount)
+                .description("Keys not found in recently seen invalid keys")
+                .tags(tags)
+                .tag("result", "miss")
+                .register(this.meterRegistry);
+
+        this.openCircuitsCount = Gauge.builder("sharedObjectPool.openCircuits", this.stats,
+                SharedObjectPoolStats::getOpenCircuitsCount)
+                .description("Number of keys with an open circuit after repeated initialization failures")
+                .tags(tags)
+                .register(this.meterRegistry);
+        this.openCircuitRejected = FunctionCounter.builder("sharedObjectPool.openCircuitRejected", this.stats,
+                SharedObjectPoolStats::getOpenCircuitRejectedCount)
+                .description("Attempts to get objects from the pool rejected because the circuit was open")
+                .tags(tags)
+                .register(this.meterRegistry);
+        this.circuitOpened = Counter.builder("sharedObjectPool.circuit")
+                .description("Circuit state changes after repeated initialization failures")
+                .tags(tags)
+                .tag("state", "open")
+                .register(this.meterRegistry);
+        this.circuitClosed = Counter.builder("sharedObjectPool.circuit")
+                .description("Circuit state changes after repeated initialization failures")
+                .tags(tags)
+                .tag("state", "closed")
+                .register(this.meterRegistry);
+
+        this.abandonedOnShutdown = FunctionCounter.builder("sharedObjectPool.abandonedOnShutdown", this.stats,
+                SharedObjectPoolStats::getAbandonedOnShutdownCount)
+                .description("Pooled objects abandoned because they could not be disposed of before the deadline")
+                .tags(tags)
+                .register(this.meterRegistry);
+        this.abandonedShared = FunctionCounter.builder("sharedObjectPool.abandonedShared", this.stats,
+                SharedObjectPoolStats::getAbandonedSharedObjectsCount)
+                .description("Estimated shared objects abandoned by clients without being disposed of")
+                .tags(tags)
+                .register(this.meterRegistry);
+
+        this.reaperBacklog = Gauge.builder("sharedObjectPool.reaperBacklog", this.stats,
+                SharedObjectPoolStats::getReaperBacklog)
+                .description("Phantom references on abandoned shared objects drained, but not processed yet")
+                .tags(tags)
+                .register(this.meterRegistry);
+        this.reaperLag = TimeGauge.builder("sharedObjectPool.reaperLag", this.stats, TimeUnit.MILLISECONDS,
+                SharedObjectPoolStats::getReaperLagMillis)
+                .description("Time the reaper has been processing the current batch of phantom references")
+                .tags(tags)
+                .register(this.meterRegistry);
+
         this.hit = Timer.builder("sharedObjectPool.get")
                 .description("Cache hit when getting object from the pool")
                 .tags(tags)
@@ -118,6 +191,20 @@ public class SharedObjectPoolMetrics {
         this.meterRegistry.remove(this.unusedPooledObjectsCount);
         this.meterRegistry.remove(this.sharedObjectsCount);
 
+        this.meterRegistry.remove(this.invalidKeyCacheHit);
+        this.meterRegistry.remove(this.invalidKeyCacheMiss);
+
+        this.meterRegistry.remove(this.openCircuitsCount);
+        this.meterRegistry.remove(this.openCircuitRejected);
+        this.meterRegistry.remove(this.circuitOpened);
+        this.meterRegistry.remove(this.circuitClosed);
+
+        this.meterRegistry.remove(this.abandonedOnShutdown);
+        this.meterRegistry.remove(this.abandonedShared);
+
+        this.meterRegistry.remove(this.reaperBacklog);
+        this.meterRegistry.remove(this.reaperLag);
+
         this.meterRegistry.remove(this.hit);
         this.meterRegistry.remove(this.miss);
         this.meterRegistry.remove(this.createdSuccess);
@@ -137,6 +224,20 @@ public class SharedObjectPoolMetrics {
         b.append(toString(this.unusedPooledObjectsCount)).append("\n");
         b.append(toString(this.sharedObjectsCount)).append("\n");
 
+        b.append(toString(this.invalidKeyCacheHit)).append("\n");
+        b.append(toString(this.invalidKeyCacheMiss)).append("\n");
+
+        b.append(toString(this.openCircuitsCount)).append("\n");
+        b.append(toString(this.openCircuitRejected)).append("\n");
+        b.append(toString(this.circuitOpened)).append("\n");
+        b.append(toString(this.circuitClosed)).append("\n");
+
+        b.append(toString(this.abandonedOnShutdown)).append("\n");
+        b.append(toString(this.abandonedShared)).append("\n");
+
+        b.append(toString(this.reaperBacklog)).append("\n");
+        b.append(toString(this.reaperLag)).append("\n");
+
         b.append(toString(this.hit)).append("\n");
         b.append(toString(this.miss)).append("\n");
         b.append(toString(this.createdSuccess)).append("\n");
@@ -195,5 +296,17 @@ public class SharedObjectPoolMetrics {
                 SharedObjectPoolMetrics.this.disposedFailed.record(durationNanos, TimeUnit.NANOSECONDS);
             }
         }
+
+
+        @Override
+        public void onInitializationCircuitOpened(Object key, long backoffNanos) {
+            SharedObjectPoolMetrics.this.circuitOpened.increment();
+        }
+
+
+        @Override
+        public void onInitializationCircuitClosed(Object key) {
+            SharedObjectPoolMetrics.this.circuitClosed.increment();
+        }
     }
 }
@@ -0,0 +1,399 @@
+package de.serdioa.common.pool;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Background threads of shared object pools: a group of reaper threads disposing of shared objects abandoned
+ * by clients, a lease sweeper disposing of shared objects with expired leases (see {@link AbandonedTrackingMode#LEASE}),
+ * and a scheduler disposing of idle pooled objects.
+ * <p>
+ * By default each pool has its own runtime, that is its own reaper thread and, if idle pooled objects are disposed
+ * of asynchronously or pooled objects are processed in batches, its own dispose threads. An application with many pools may instead build a single runtime and
+ * pass it to builders of all pools (see {@code setRuntime()} of pool builders), so that the number of background
+ * threads does not grow with the number of pools. Pools sharing a runtime register phantom references on their shared
+ * objects in a single reference queue drained by the reaper threads, and schedule disposals and batches of pooled
+ * objects to initialize or to dispose of on a single executor. Pools with the same tick of the dispose timing wheel
+ * share the wheel as well.
+ * <p>
+ * Threads are started lazily: reaper threads when the first pool tracking abandoned shared objects with phantom
+ * references is registered, the lease sweeper when the first pool tracking them with leases is registered, dispose
+ * threads when the first pool requiring them is registered. A runtime which is not used by any pool does not
+ * start any threads.
+ * <p>
+ * Disposing of a pool does not stop a shared runtime. The application shall dispose of the runtime after all pools
+ * using it have been disposed of.
+ */
+public class SharedObjectPoolRuntime {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedObjectPoolRuntime.class);
+
+    // The maximum number of phantom references drained by a reaper thread from the reference queue in one batch.
+    private static final int MAX_REAP_BATCH = 4096;
+
+    // The value of the start of the current batch for a reaper thread which is waiting for phantom references.
+    private static final long IDLE = Long.MIN_VALUE;
+
+    // A static counter used to create unique names for runtimes.
+    private static final AtomicInteger NAME_COUNTER = new AtomicInteger();
+
+    // Name of this runtime used for naming threads.
+    private final String name;
+
+    // The number of threads processing phantom references on shared objects claimed by the GC.
+    private final int reaperThreads;
+
+    // The number of threads running disposals.
+    private final int disposeThreads;
+
+    // A queue with phantom references on shared objects of all pools using this runtime.
+    private final ReferenceQueue<SharedObject> sharedObjectsRefQueue = new ReferenceQueue<>();
+
+    // The number of phantom references drained from the reference queue by reaper threads, but not processed yet.
+    private final AtomicInteger reaperBacklog = new AtomicInteger();
+
+    // For each reaper thread, the time in nanoseconds when it has started processing the current batch of phantom
+    // references, or IDLE if it is waiting for phantom references.
+    private final AtomicLongArray reaperBatchStart;
+
+    // Threads processing phantom references on shared objects claimed by the GC, or null if not started yet.
+    // @GuardedBy(lifecycleMonitor)
+    private Thread[] reapers;
+
+    // The executor for sweeping expired leases of shared objects, or null if not started yet.
+    // @GuardedBy(lifecycleMonitor)
+    private ScheduledThreadPoolExecutor leaseSweeper;
+
+    // The executor service for running disposals, or null if not started yet.
+    // @GuardedBy(lifecycleMonitor)
+    private ScheduledThreadPoolExecutor disposeExecutor;
+
+    // Timing wheels for scheduling disposals of idle pooled objects on the dispose executor, by the tick
+    // in milliseconds.
+    // @GuardedBy(lifecycleMonitor)
+    private final Map<Long, TimingWheel> disposeWheels = new HashMap<>();
+
+    // Is this runtime already disposed of?
+    // @GuardedBy(lifecycleMonitor)
+    private boolean disposed;
+
+    // The synchronization lock for lifecycle events (starting threads / shutdown).
+    private final Object lifecycleMonitor = new Object();
+
+
+    SharedObjectPoolRuntime(String name, int reaperThreads, int disposeThreads) {
+        this.name = (name != null ? name : this.getClass().getSimpleName() + '-' + NAME_COUNTER.getAndIncrement());
+        this.reaperThreads = reaperThreads;
+        this.disposeThreads = disposeThreads;
+
+        this.reaperBatchStart = new AtomicLongArray(reaperThreads);
+        for (int i = 0; i < reaperThreads; ++i) {
+            this.reaperBatchStart.set(i, IDLE);
+        }
+    }
+
+
+    public String getName() {
+        return this.name;
+    }
+
+
+    public int getReaperThreads() {
+        return this.reaperThreads;
+    }
+
+
+    public int getDisposeThreads() {
+        return this.disposeThreads;
+    }
+
+
+    /**
+     * Returns the number of phantom references on abandoned shared objects which reaper threads have drained from
+     * the reference queue, but not processed yet. Phantom references still waiting in the reference queue are not
+     * counted, since the queue does not report its size.
+     *
+     * @return the number of phantom references drained, but not processed yet.
+     */
+    public int getReaperBacklog() {
+        return this.reaperBacklog.get();
+    }
+
+
+    /**
+     * Returns for how long reaper threads have been processing their current batches of phantom references on
+     * abandoned shared objects, that is the maximum over all reaper threads. A value which keeps growing indicates
+     * that the reaper threads can not keep pace with the rate at which shared objects are abandoned.
+     *
+     * @return the time in nanoseconds the longest running reaper thread has been processing its current batch,
+     * or 0 if all reaper threads are waiting for phantom references.
+     */
+    public long getReaperLagNanos() {
+        long now = System.nanoTime();
+        long lag = 0;
+        for (int i = 0; i < this.reaperBatchStart.length(); ++i) {
+            long start = this.reaperBatchStart.get(i);
+            if (start != IDLE) {
+                lag = Math.max(lag, now - start);
+            }
+        }
+        return lag;
+    }
+
+
+    /**
+     * Stops all background threads of this runtime. Disposals which are scheduled but not run yet are never run.
+     * Disposing of a runtime which is still used by pools does not dispose of the pools, but they stop detecting
+     * abandoned shared objects and disposing of idle pooled objects.
+     */
+    public void dispose() {
+        synchronized (this.lifecycleMonitor) {
+            if (this.disposed) {
+                return;
+            }
+            this.disposed = true;
+
+            if (this.reapers != null) {
+                for (Thread reaper : this.reapers) {
+                    reaper.interrupt();
+                }
+                this.reapers = null;
+            }
+
+            if (this.leaseSweeper != null) {
+                this.leaseSweeper.shutdownNow();
+                this.leaseSweeper = null;
+            }
+
+            for (TimingWheel disposeWheel : this.disposeWheels.values()) {
+                disposeWheel.stop();
+            }
+            this.disposeWheels.clear();
+
+            if (this.disposeExecutor != null) {
+                this.disposeExecutor.shutdownNow();
+                this.disposeExecutor = null;
+            }
+        }
+    }
+
+
+    // Returns the queue for phantom references on shared objects, starting reaper threads processing the queue
+    // on the first call.
+    ReferenceQueue<SharedObject> startReapers() {
+        synchronized (this.lifecycleMonitor) {
+            this.ensureNotDisposed();
+
+            if (this.reapers == null) {
+                Thread[] threads = new Thread[this.reaperThreads];
+                for (int i = 0; i < threads.length; ++i) {
+                    int index = i;
+                    threads[i] = new Thread(() -> this.reapSharedObjects(index),
+                            this.name + (threads.length == 1 ? "-reaper" : "-reaper-" + i));
+                    threads[i].setDaemon(true);
+                    threads[i].start();
+                }
+                this.reapers = threads;
+            }
+            return this.sharedObjectsRefQueue;
+        }
+    }
+
+
+    // Schedules the sweep of expired leases of a pool with the specified period, starting the lease sweeper thread
+    // on the first call. The pool shall cancel the returned future when disposed of.
+    ScheduledFuture<?> scheduleLeaseSweep(Runnable sweep, long periodMillis) {
+        synchronized (this.lifecycleMonitor) {
+            this.ensureNotDisposed();
+
+            if (this.leaseSweeper == null) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                    Thread thread = new Thread(r, this.name + "-lease-sweeper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.setRemoveOnCancelPolicy(true);
+                this.leaseSweeper = executor;
+            }
+
+            // An exception thrown by a periodic task suppresses its subsequent executions, so it is logged instead.
+            Runnable loggingSweep = () -> {
+                try {
+                    sweep.run();
+                } catch (Exception ex) {
+                    logger.error("Exception when sweeping expired leases", ex);
+                }
+            };
+            return this.leaseSweeper.scheduleWithFixedDelay(loggingSweep, periodMillis, periodMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    // Returns the executor for running disposals, creating it on the first call. The executor starts threads when
+    // the first task is submitted.
+    ScheduledExecutorService startDisposeExecutor() {
+        synchronized (this.lifecycleMonitor) {
+            this.ensureNotDisposed();
+
+            if (this.disposeExecutor == null) {
+                ThreadFactory threadFactory = new DisposeExecutorThreadFactory(this.name);
+                ScheduledThreadPoolExecutor executor =
+                        new ScheduledThreadPoolExecutor(this.disposeThreads, threadFactory);
+                executor.setRemoveOnCancelPolicy(true);
+                this.disposeExecutor = executor;
+            }
+            return this.disposeExecutor;
+        }
+    }
+
+
+    // Returns the timing wheel with the specified tick for scheduling disposals on the dispose executor, creating
+    // the wheel on the first call.
+    TimingWheel startDisposeWheel(long tickMillis) {
+        synchronized (this.lifecycleMonitor) {
+            TimingWheel disposeWheel = this.disposeWheels.get(tickMillis);
+            if (disposeWheel == null) {
+                disposeWheel = new TimingWheel(tickMillis, TimeUnit.MILLISECONDS, this.startDisposeExecutor());
+                this.disposeWheels.put(tickMillis, disposeWheel);
+            }
+            return disposeWheel;
+        }
+    }
+
+
+    private void ensureNotDisposed() {
+        assert (Thread.holdsLock(this.lifecycleMonitor));
+
+        if (this.disposed) {
+            throw new IllegalStateException("The runtime " + this.name + " is already disposed of");
+        }
+    }
+
+
+    // Process phantom references in batches: wait for the first phantom reference, then drain all phantom references
+    // which are already in the queue, up to the maximum size of a batch. Phantom references of a batch are grouped
+    // by their reap group (usually the pool entry which has provided the shared object), so that each group processes
+    // all its phantom references of the batch at once.
+    private void reapSharedObjects(int index) {
+        try {
+            while (true) {
+                SharedObjectPhantomReference<?> first =
+                        (SharedObjectPhantomReference<?>) this.sharedObjectsRefQueue.remove();
+                this.reaperBatchStart.set(index, System.nanoTime());
+
+                Map<SharedObjectPhantomReference.ReapGroup, List<SharedObjectPhantomReference<?>>> batch =
+                        new IdentityHashMap<>();
+                int batchSize = 0;
+                for (SharedObjectPhantomReference<?> ref = first; ref != null;
+                        ref = (batchSize < MAX_REAP_BATCH
+                                ? (SharedObjectPhantomReference<?>) this.sharedObjectsRefQueue.poll() : null)) {
+                    batch.computeIfAbsent(ref.getReapGroup(), group -> new ArrayList<>()).add(ref);
+                    batchSize++;
+                }
+                this.reaperBacklog.addAndGet(batchSize);
+
+                for (Map.Entry<SharedObjectPhantomReference.ReapGroup, List<SharedObjectPhantomReference<?>>> entry
+                        : batch.entrySet()) {
+                    List<SharedObjectPhantomReference<?>> refs = entry.getValue();
+                    try {
+                        entry.getKey().reap(refs);
+                    } catch (Exception ex) {
+                        logger.error("Exception when disposing of {} shared object(s), first {}", refs.size(),
+                                refs.get(0).getSharedObjectId(), ex);
+                    } finally {
+                        this.reaperBacklog.addAndGet(-refs.size());
+                    }
+                }
+
+                this.reaperBatchStart.set(index, IDLE);
+            }
+        } catch (InterruptedException ex) {
+            // The reaper thread has been interrupted. Propagate the interruption status to the caller.
+            this.reaperBatchStart.set(index, IDLE);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static final class DisposeExecutorThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+
+        public DisposeExecutorThreadFactory(String name) {
+            this.name = Objects.requireNonNull(name);
+        }
+
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, this.name + "-disposer-" + counter.getAndIncrement());
+        }
+
+    }
+
+
+    public static class Builder {
+
+        // An optional name of the runtime. The name is used in names of background threads.
+        private String name;
+
+        // The number of threads processing phantom references on shared objects claimed by the GC.
+        // By default 1.
+        private int reaperThreads = 1;
+
+        // The number of threads running disposals of pooled objects, including the ticks of dispose timing wheels
+        // and batches of pools with a BatchPooledObjectFactory.
+        // By default 1.
+        private int disposeThreads = 1;
+
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+
+        public Builder setReaperThreads(int reaperThreads) {
+            this.reaperThreads = reaperThreads;
+            return this;
+        }
+
+
+        public Builder setDisposeThreads(int disposeThreads) {
+            this.disposeThreads = disposeThreads;
+            return this;
+        }
+
+
+        public SharedObjectPoolRuntime build() {
+            // The name is optional.
+            if (this.reaperThreads <= 0) {
+                throw new IllegalStateException("reaperThreads (" + this.reaperThreads + ") <= 0");
+            }
+            if (this.disposeThreads <= 0) {
+                throw new IllegalStateException("disposeThreads (" + this.disposeThreads + ") <= 0");
+            }
+
+            return new SharedObjectPoolRuntime(this.name, this.reaperThreads, this.disposeThreads);
+        }
+    }
+}
@@ -32,6 +32,92 @@ public interface SharedObjectPoolStats {
     int getSharedObjectsCount();
 
 
+    /**
+     * Returns the number of times a key has been rejected because it has been recently found to be invalid, without
+     * attempting to create a pooled object for it. Returns 0 if the pool does not remember invalid keys.
+     *
+     * @return the number of times a recently seen invalid key has been rejected.
+     */
+    long getInvalidKeyCacheHitCount();
+
+
+    /**
+     * Returns the number of times a pool has looked up a key in recently seen invalid keys before attempting to create
+     * a pooled object for the key, but has not found it. Returns 0 if the pool does not remember invalid keys.
+     *
+     * @return the number of times a key has not been found in recently seen invalid keys.
+     */
+    long getInvalidKeyCacheMissCount();
+
+
+    /**
+     * Returns the number of keys for which the circuit is open, because initializing pooled objects for them
+     * repeatedly failed. Returns 0 if the pool does not use a circuit breaker.
+     *
+     * @return the number of keys for which the circuit is open.
+     */
+    int getOpenCircuitsCount();
+
+
+    /**
+     * Returns the number of times an attempt to get a shared object failed fast, because the circuit for the key
+     * was open. Returns 0 if the pool does not use a circuit breaker.
+     *
+     * @return the number of attempts rejected because the circuit was open.
+     */
+    long getOpenCircuitRejectedCount();
+
+
+    /**
+     * Returns the current phase of shutting down this pool.
+     *
+     * @return the current phase of shutting down this pool.
+     */
+    ShutdownPhase getShutdownPhase();
+
+
+    /**
+     * Returns the number of pooled objects abandoned without being disposed of, because they could not be disposed of
+     * before the shutdown deadline. Returns 0 if the pool is not shut down, or if the shutdown has no deadline.
+     *
+     * @return the number of pooled objects abandoned when shutting down this pool.
+     */
+    long getAbandonedOnShutdownCount();
+
+
+    /**
+     * Returns the estimated number of shared objects abandoned by clients without being disposed of, as detected when
+     * abandoned shared objects are claimed by the GC. If only a sample of shared objects is tracked, each detected
+     * shared object counts with the sample rate, see {@link AbandonedTrackingMode#SAMPLED}. Returns 0 if the pool
+     * does not track abandoned shared objects.
+     *
+     * @return the estimated number of abandoned shared objects.
+     */
+    long getAbandonedSharedObjectsCount();
+
+
+    /**
+     * Returns the number of phantom references on abandoned shared objects drained from the reference queue by reaper
+     * threads, but not processed yet. If the pool shares its runtime with other pools, the backlog of the runtime
+     * is returned, that is including phantom references of other pools. Returns 0 if the pool does not track
+     * abandoned shared objects.
+     *
+     * @return the number of phantom references drained by reaper threads, but not processed yet.
+     */
+    int getReaperBacklog();
+
+
+    /**
+     * Returns for how long reaper threads have been processing their current batches of phantom references
+     * on abandoned shared objects. If the pool shares its runtime with other pools, the lag of the runtime is returned.
+     * Returns 0 if reaper threads are waiting for phantom references, or if the pool does not track abandoned shared
+     * objects.
+     *
+     * @return the time in milliseconds the longest running reaper thread has been processing its current batch.
+     */
+    long getReaperLagMillis();
+
+
     /**
      * Adds a listener to be notified on events related to performance of a pool.
      *
@@ -43,4 +43,45 @@ public interface SharedObjectPoolStatsListener extends EventListener {
      * to dispose of a pooled object throws an exception.
      */
     void onPooledObjectDisposed(long durationNanos, boolean success);
+
+
+    /**
+     * Invoked when the circuit for a key opens, because initializing pooled objects for the key repeatedly failed.
+     * While the circuit is open, attempts to get a shared object for the key fail fast. This method is invoked both
+     * when the circuit opens first time, and when it opens again because a probe failed.
+     *
+     * @param key the key for which the circuit opened.
+     * @param backoffNanos duration in nanoseconds until the next probe is let through.
+     */
+    default void onInitializationCircuitOpened(Object key, long backoffNanos) {
+    }
+
+
+    /**
+     * Invoked when the circuit for a key closes, because a probe successfully initialized a pooled object.
+     *
+     * @param key the key for which the circuit closed.
+     */
+    default void onInitializationCircuitClosed(Object key) {
+    }
+
+
+    /**
+     * Invoked when shutting down a pool enters the next phase.
+     *
+     * @param phase the phase entered.
+     * @param pooledObjectsCount the number of pooled objects remaining in the pool when the phase is entered.
+     */
+    default void onShutdownPhase(ShutdownPhase phase, int pooledObjectsCount) {
+    }
+
+
+    /**
+     * Invoked when a pooled object is abandoned without being disposed of, because it could not be disposed of before
+     * the shutdown deadline.
+     *
+     * @param key the key of the abandoned pooled object.
+     */
+    default void onPooledObjectAbandoned(Object key) {
+    }
 }
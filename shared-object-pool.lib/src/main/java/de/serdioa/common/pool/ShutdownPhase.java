@@ -0,0 +1,30 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * Phases of shutting down a {@link SharedObjectPool}. A pool moves through phases in the declaration order, but may
+ * skip phases which are not configured.
+ */
+public enum ShutdownPhase {
+    /**
+     * The pool is not shut down yet.
+     */
+    NOT_STARTED,
+
+    /**
+     * The pool does not provide new shared objects anymore, and waits for clients to dispose of shared objects they
+     * still hold.
+     */
+    DRAINING,
+
+    /**
+     * The pool disposes of remaining pooled objects.
+     */
+    DISPOSING,
+
+    /**
+     * The pool is shut down. Pooled objects which could not be disposed of before the shutdown deadline have been
+     * abandoned.
+     */
+    TERMINATED
+}
@@ -5,6 +5,10 @@ package de.serdioa.common.pool;
  * A stack trace indicating a place where a shared object has been allocated. A {@link SharedObjectPool} may track where
  * shared objects were allocated to provide better warning messages when a shared object is abandoned by a client
  * without being properly disposed of.
+ * <p>
+ * Subclasses may capture the call stack in a raw form and resolve it into stack trace elements lazily, on the first call
+ * of {@link #getElements()} or {@link #toString()}, which happens only if a warning about an abandoned shared object
+ * is actually reported.
  */
 public class StackTrace {
 
@@ -22,22 +26,44 @@ public class StackTrace {
     }
 
 
+    /**
+     * Constructor for subclasses which resolve stack trace elements lazily by overriding {@link #resolveElements()}.
+     */
+    protected StackTrace() {
+        this.elements = null;
+    }
+
+
     public StackTraceElement[] getElements() {
         // Return a defensive copy.
-        return this.elements.clone();
+        return this.resolveElements().clone();
+    }
+
+
+    /**
+     * Returns stack trace elements of this stack trace. Subclasses capturing the call stack in a raw form override this
+     * method to resolve stack trace elements on demand. The returned array is not copied, so implementations shall
+     * not return an array which may be modified afterwards.
+     *
+     * @return stack trace elements of this stack trace, never {@code null}.
+     */
+    protected StackTraceElement[] resolveElements() {
+        return this.elements;
     }
 
 
     @Override
     public String toString() {
+        StackTraceElement[] resolved = this.resolveElements();
+
         // Fast-track if stack trace is not available.
-        if (this.elements.length == 0) {
+        if (resolved.length == 0) {
             return "\tallocation position is unavailable\n";
         }
 
         StringBuilder sb = new StringBuilder();
 
-        for (StackTraceElement element : this.elements) {
+        for (StackTraceElement element : resolved) {
             sb.append("\tat ").append(element).append("\n");
         }
 
@@ -0,0 +1,115 @@
+package de.serdioa.common.pool;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * An implementation of the {@link StackTraceProvider} which captures a bounded number of raw frames of the current call
+ * stack, and resolves them into stack trace elements only when the stack trace is actually reported. Stack traces from
+ * this provider contain class names, method names and, if the code was compiled with the required information, line
+ * numbers, just like stack traces from the {@link ThrowableStackTraceProvider}, but they are much cheaper to capture.
+ * <p>
+ * On Java 9 and later this provider uses a {@link java.lang.StackWalker} to capture only the required frames. This is
+ * the fallback implementation for Java 8, which captures the raw call stack with a {@link Throwable}, but does not build
+ * stack trace elements until the stack trace is reported.
+ * <p>
+ * Optionally this provider interns captured stack traces, so that all stack traces captured at the same call site are
+ * represented by a single {@link StackTrace} instance. On Java 9 and later call sites are identified by a hash
+ * of captured frames, and the frames are resolved into stack trace elements only once per call site. This fallback
+ * implementation has to resolve each captured stack trace to identify the call site, so interning makes capturing
+ * a stack trace slower, but still reduces the memory retained by stack traces.
+ */
+public class StackWalkerStackTraceProvider implements StackTraceProvider {
+
+    /**
+     * The default maximal number of frames in a captured stack trace.
+     */
+    public static final int DEFAULT_MAX_FRAMES = 16;
+
+    // The maximal number of frames in a captured stack trace.
+    private final int maxFrames;
+
+    // Interned call sites, or null if call sites are not interned.
+    private final CallSiteTable<List<StackTraceElement>> callSites;
+
+
+    public StackWalkerStackTraceProvider() {
+        this(DEFAULT_MAX_FRAMES);
+    }
+
+
+    public StackWalkerStackTraceProvider(int maxFrames) {
+        this(maxFrames, false);
+    }
+
+
+    public StackWalkerStackTraceProvider(int maxFrames, boolean internCallSites) {
+        if (maxFrames <= 0) {
+            throw new IllegalArgumentException("maxFrames (" + maxFrames + ") <= 0");
+        }
+        this.maxFrames = maxFrames;
+        this.callSites = (internCallSites ? new CallSiteTable<>() : null);
+    }
+
+
+    public int getMaxFrames() {
+        return this.maxFrames;
+    }
+
+
+    @Override
+    public StackTrace provide() {
+        // Skip the top element of the call stack, which is this method, so that the caller gets only call stack
+        // up to him.
+        return this.stackTrace(new ThrowableStackTrace(new Throwable(), 1, this.maxFrames));
+    }
+
+
+    @Override
+    public StackTrace provide(int skipFrames) {
+        return this.stackTrace(new ThrowableStackTrace(new Throwable(), 1 + skipFrames, this.maxFrames));
+    }
+
+
+    private StackTrace stackTrace(ThrowableStackTrace stackTrace) {
+        if (this.callSites == null) {
+            return stackTrace;
+        }
+        return this.callSites.intern(Arrays.asList(stackTrace.resolveElements()), callSite -> stackTrace);
+    }
+
+
+    // A stack trace keeping the throwable which captured the call stack, and resolving stack trace elements on demand.
+    private static class ThrowableStackTrace extends StackTrace {
+
+        private final Throwable throwable;
+        private final int skipFrames;
+        private final int maxFrames;
+
+        // Resolved stack trace elements, or null if not resolved yet. Concurrent threads may resolve elements more than
+        // once, but the result is the same.
+        private volatile StackTraceElement[] elements;
+
+
+        ThrowableStackTrace(Throwable throwable, int skipFrames, int maxFrames) {
+            this.throwable = throwable;
+            this.skipFrames = skipFrames;
+            this.maxFrames = maxFrames;
+        }
+
+
+        @Override
+        protected StackTraceElement[] resolveElements() {
+            StackTraceElement[] resolved = this.elements;
+            if (resolved == null) {
+                StackTraceElement[] all = this.throwable.getStackTrace();
+                int from = Math.min(this.skipFrames, all.length);
+                int to = (int) Math.min((long) from + this.maxFrames, all.length);
+                resolved = Arrays.copyOfRange(all, from, to);
+                this.elements = resolved;
+            }
+            return resolved;
+        }
+    }
+}
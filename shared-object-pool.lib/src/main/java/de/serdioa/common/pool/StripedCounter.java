@@ -0,0 +1,142 @@
+package de.serdioa.common.pool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A counter spreading updates across multiple stripes to reduce contention when updated concurrently from many
+ * threads, similar to {@link java.util.concurrent.atomic.LongAdder}.
+ * <p>
+ * Contrary to a {@code LongAdder}, the stripe to update is explicitly selected by the caller. This allows to decrement
+ * exactly the same stripe which has been incremented before, even if the decrement is executed in another thread,
+ * so that each stripe counts a number of currently outstanding increments and never becomes negative.
+ * <p>
+ * Each stripe is padded to occupy its own cache line, so that threads updating different stripes do not interfere
+ * with each other. Reading the total value with {@link #sum()} is not atomic: if the counter is updated concurrently,
+ * the returned value may be not exact.
+ */
+class StripedCounter {
+
+    // The number of array elements between stripes. 16 longs are 128 bytes, that is two cache lines on most modern
+    // processors, which also prevents false sharing due to the adjacent cache line prefetch.
+    private static final int PADDING = 16;
+
+    // The maximum default number of stripes.
+    private static final int MAX_DEFAULT_STRIPES = 64;
+
+    // Stripes. Only every PADDING-th element of the array is used. The first and the last PADDING elements
+    // are not used, to separate stripes from the array header and from other objects on the heap.
+    private final AtomicLongArray stripes;
+
+    // The mask to select a stripe for a thread. The number of stripes is always a power of 2.
+    private final int mask;
+
+
+    /**
+     * Creates a new counter with the specified number of stripes. If the specified number of stripes is not a power
+     * of 2, it is rounded up to the next power of 2.
+     *
+     * @param stripes the number of stripes.
+     */
+    StripedCounter(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes (" + stripes + ") <= 0");
+        }
+
+        int stripesPowerOf2 = (stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1);
+        this.stripes = new AtomicLongArray((stripesPowerOf2 + 2) * PADDING);
+        this.mask = stripesPowerOf2 - 1;
+    }
+
+
+    /**
+     * Returns the default number of stripes, which is the number of available processors, but not more than 64.
+     *
+     * @return the default number of stripes.
+     */
+    static int defaultStripes() {
+        return Math.min(MAX_DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Returns the number of stripes, which is always a power of 2.
+     *
+     * @return the number of stripes.
+     */
+    int stripes() {
+        return this.mask + 1;
+    }
+
+
+    /**
+     * Returns the stripe for the current thread. The same thread always gets the same stripe.
+     *
+     * @return the stripe for the current thread.
+     */
+    int currentStripe() {
+        // Thread IDs are assigned sequentially, so a simple hash function is sufficient to spread them. The multiplier
+        // is the golden ratio used by Fibonacci hashing.
+        long threadId = Thread.currentThread().getId();
+        int hash = (int) (threadId * 0x9E3779B97F4A7C15L >>> 32);
+        return hash & this.mask;
+    }
+
+
+    /**
+     * Increments the specified stripe.
+     *
+     * @param stripe the stripe to increment.
+     *
+     * @return the updated value of the stripe.
+     */
+    long increment(int stripe) {
+        return this.stripes.incrementAndGet(index(stripe));
+    }
+
+
+    /**
+     * Decrements the specified stripe.
+     *
+     * @param stripe the stripe to decrement.
+     *
+     * @return the updated value of the stripe.
+     */
+    long decrement(int stripe) {
+        return this.stripes.decrementAndGet(index(stripe));
+    }
+
+
+    /**
+     * Adds the specified delta to the specified stripe.
+     *
+     * @param stripe the stripe to update.
+     * @param delta the value to add, may be negative.
+     *
+     * @return the updated value of the stripe.
+     */
+    long add(int stripe, long delta) {
+        return this.stripes.addAndGet(index(stripe), delta);
+    }
+
+
+    /**
+     * Returns the sum of all stripes. If the counter is updated concurrently, the returned value may be not exact.
+     * If the caller knows that stripes may be only decremented concurrently (or incremented and decremented back),
+     * the returned value is not less than the actual value after this method returns.
+     *
+     * @return the sum of all stripes.
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i <= this.mask; ++i) {
+            sum += this.stripes.get(index(i));
+        }
+        return sum;
+    }
+
+
+    private int index(int stripe) {
+        return (stripe + 1) * PADDING;
+    }
+}
@@ -23,6 +23,7 @@ public class SynchronizedSharedObject implements InvocationHandler {
 
     private static final String DISPOSE_METHOD_NAME = "dispose";
     private static final String IS_DISPOSED_METHOD_NAME = "isDisposed";
+    private static final String RENEW_LEASE_METHOD_NAME = "renewLease";
 
     // The pooled object backing this shared object.
     // A null pooled object indicates that this shared object has been disposed of.
@@ -32,6 +33,10 @@ public class SynchronizedSharedObject implements InvocationHandler {
     // The callback to be invoked when a client disposes of this shared object.
     private final Runnable disposeCallback;
 
+    // The lease of this shared object renewed on each method call, or null if the pool does not track shared objects
+    // with leases.
+    private final SharedObjectLease lease;
+
     // We do not really require the shared object (a proxy based on this invocation handler), but we keep a reference
     // on it to prevent it from being garbage collected before the dispose callback is executed.
     //
@@ -52,12 +57,17 @@ public class SynchronizedSharedObject implements InvocationHandler {
         synchronized (this.mutex) {
             this.pooledObject = Objects.requireNonNull(pooledObject);
             this.disposeCallback = Objects.requireNonNull(disposeCallback);
+            this.lease = (disposeCallback instanceof SharedObjectLease ? (SharedObjectLease) disposeCallback : null);
         }
     }
 
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        // Using the shared object renews its lease. If the lease has already expired, the pool has released this shared
+        // object, and the pooled object may be already disposed of.
+        boolean leaseExpired = (this.lease != null && !this.lease.renew());
+
         // Special methods.
         if (args == null || args.length == 0) {
             String methodName = method.getName();
@@ -65,10 +75,21 @@ public class SynchronizedSharedObject implements InvocationHandler {
                 this.dispose();
                 return null;
             } else if (IS_DISPOSED_METHOD_NAME.equals(methodName)) {
-                return this.isDisposed();
+                return (leaseExpired || this.isDisposed());
+            } else if (RENEW_LEASE_METHOD_NAME.equals(methodName)) {
+                // The lease is already renewed above.
+                if (leaseExpired) {
+                    throw new IllegalStateException("Method renewLease() called on dynamic shared object with expired "
+                            + "lease");
+                }
+                return null;
             }
         }
 
+        if (leaseExpired) {
+            throw new IllegalStateException("Method called on dynamic shared object with expired lease: " + method);
+        }
+
         // All other methods are forwarded to the pooled object.
         return invokePooled(method, args);
     }
@@ -4,8 +4,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,19 +38,59 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
     // Synchronization monitor.
     private final Object lock = new Object();
 
+    // The executor for initializing pooled objects on behalf of threads waiting for them with a timeout.
+    private final Executor initializeExecutor;
+
 
     private SynchronizedSharedObjectPool(String name,
             PooledObjectFactory<K, P> pooledObjectFactory,
             SharedObjectFactory<P, S> sharedObjectFactory,
             boolean disposeUnused,
             long idleDisposeTimeMillis,
-            int disposeThreads) {
-        super(name, pooledObjectFactory, sharedObjectFactory, disposeUnused, idleDisposeTimeMillis, disposeThreads);
+            int disposeThreads,
+            SharedObjectPoolRuntime runtime,
+            int invalidKeyCacheSize,
+            long invalidKeyCacheTtlMillis,
+            int circuitBreakerFailureThreshold,
+            long circuitBreakerBackoffMillis,
+            long circuitBreakerMaxBackoffMillis,
+            Executor initializeExecutor) {
+        super(name, pooledObjectFactory, sharedObjectFactory, disposeUnused, idleDisposeTimeMillis, disposeThreads,
+                false, runtime, invalidKeyCacheSize, invalidKeyCacheTtlMillis, circuitBreakerFailureThreshold,
+                circuitBreakerBackoffMillis, circuitBreakerMaxBackoffMillis);
+        this.initializeExecutor = Objects.requireNonNull(initializeExecutor);
     }
 
 
     @Override
     public S get(K key) throws InvalidKeyException, InitializationException {
+        try {
+            return this.get(key, false, 0L);
+        } catch (TimeoutException | InterruptedException ex) {
+            // Should never happen: waiting without a timeout is not interruptible.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the pooled object for the specified key is not available yet, this implementation initializes it in the
+     * initialization executor of this pool, by default a cached executor shared by all pools. Concurrent
+     * callers for the same key share the same initialization.
+     * If all callers waiting for the initialization give up, the thread initializing the pooled object
+     * is interrupted.
+     */
+    @Override
+    public S get(K key, long timeout, TimeUnit unit)
+            throws InvalidKeyException, InitializationException, TimeoutException, InterruptedException {
+        return this.get(key, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+
+    private S get(K key, boolean timed, long deadlineNanos)
+            throws InvalidKeyException, InitializationException, TimeoutException, InterruptedException {
         long startGetTimestamp = System.nanoTime();
         boolean poolHit = false;
 
@@ -57,93 +99,94 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
                 // Should we remove entry from the cache after the synchronized block?
                 boolean removeEntryFromCache;
 
-                // Exception thrown when attempting to initialize the entry.
-                Exception exceptionOnInit = null;
+                // Should we initialize the entry after the synchronized block?
+                boolean initializeEntry = false;
 
                 Entry entry = getEntry(key);
 
-                // Duration statistics collected if we actually initialize a new pooled object.
-                boolean attemptedInitialize = false;
-                long startInitializeTimestamp = Long.MIN_VALUE;
-                long endInitializeTimestamp = Long.MIN_VALUE;
-                boolean initializeSuccess = false;
-
-                try {
-                    synchronized (entry) {
-                        int entrySharedCount = entry.getSharedCount();
-                        if (entrySharedCount >= 0) {
-                            // The entry is already initialized. Just return a shared object.
-                            poolHit = true;
+                synchronized (entry) {
+                    int entrySharedCount = entry.getSharedCount();
+                    if (entrySharedCount >= 0) {
+                        // The entry is already initialized. Just return a shared object.
+                        poolHit = true;
+                        return entry.createSharedObject();
+                    } else if (entrySharedCount == Entry.NEW) {
+                        // The entry was just added to the pool either by this thread or by another thread.
+                        // Since this thread synchronized on the entry first, we have to initialize it. The pooled
+                        // object is initialized after releasing the synchronization lock on entry, so that other
+                        // threads may wait for the initialization with a timeout.
+                        entry.startInitialize(!timed);
+                        initializeEntry = true;
+                        removeEntryFromCache = false;
+                    } else if (entrySharedCount == Entry.INITIALIZING) {
+                        // Another thread is initializing the entry. Wait until it is finished. Waiting releases
+                        // the synchronization lock on entry, and obtains it again before returning.
+                        entry.awaitInitialize(timed, deadlineNanos);
+
+                        if (entry.getSharedCount() >= 0) {
                             return entry.createSharedObject();
-                        } else if (entrySharedCount == Entry.NEW) {
-                            // The entry was just added to the pool either by this thread or by another thread.
-                            // Since this thread synchronized on the entry first, we have to initialize it.
-                            poolHit = false;
-                            attemptedInitialize = true;
-                            startInitializeTimestamp = System.nanoTime();
-                            try {
-                                entry.initialize();
-                                endInitializeTimestamp = System.nanoTime();
-                                initializeSuccess = true;
-
-                                return entry.createSharedObject();
-                            } catch (Exception ex) {
-                                // An attempt to initialize this entry failed. Process this case after releasing
-                                // the synchronization lock on entry.
-                                exceptionOnInit = ex;
-                                removeEntryFromCache = true;
-                            }
-                        } else {
-                            // The entry is already disposed of. This could happens, for example, in the following
-                            // scenario:
-                            // * This thread (A) got an entry from the cache. Currently entry supports 1 shared object.
-                            // * Before this thread synchronizes on the entry, another thread (B) synchronizes on the
-                            // entry and disposes of the shared object.
-                            // * Since the entry does not support any shared object anymore, it is eligible for
-                            // disposal.
-                            // * The entry is disposed and removed from the cache, but this thread (A) already holds
-                            // the entry.
-                            // * Another thread (B) releases the synchronization lock on the entry.
-                            // * This thread (A) synchronizes on the entry, but the entry is already disposed of.
-                            //
-                            // Examples above is just one of several possible scenarios. Either way, we should expect
-                            // the case when the entry is already disposed of. In such case we will remove the disposed
-                            // entry from the cache, and try once more.
-                            removeEntryFromCache = true;
-
-                            // In principle, this case is a miss event: we have not found the object in this pool.
-                            // But since we will try again anyway, we will decide about hit / miss during the next
-                            // iteration.
                         }
-                    } // Releasing synchronization lock on entry.
-                } finally {
-                    if (attemptedInitialize) {
-                        // We have attempted to initialize a new pooled object. Were we successfull? If not, take the
-                        // end timestamp.
-                        if (!initializeSuccess) {
-                            endInitializeTimestamp = System.nanoTime();
+
+                        // The initialization failed. If it has been cancelled, all threads which were waiting before
+                        // gave up, so we just try once more. Otherwise, we will not attempt to create and initialize
+                        // an entry again, because it could cause an infinite loop. Instead, we are re-throwing
+                        // the exception.
+                        RuntimeException initializeException = entry.getInitializeException();
+                        if (initializeException != null) {
+                            throw initializeException;
                         }
-                        this.firePooledObjectInitialized(endInitializeTimestamp - startInitializeTimestamp,
-                                initializeSuccess);
+                        removeEntryFromCache = true;
+                    } else {
+                        // The entry is already disposed of. This could happens, for example, in the following
+                        // scenario:
+                        // * This thread (A) got an entry from the cache. Currently entry supports 1 shared object.
+                        // * Before this thread synchronizes on the entry, another thread (B) synchronizes on the
+                        // entry and disposes of the shared object.
+                        // * Since the entry does not support any shared object anymore, it is eligible for
+                        // disposal.
+                        // * The entry is disposed and removed from the cache, but this thread (A) already holds
+                        // the entry.
+                        // * Another thread (B) releases the synchronization lock on the entry.
+                        // * This thread (A) synchronizes on the entry, but the entry is already disposed of.
+                        //
+                        // Examples above is just one of several possible scenarios. Either way, we should expect
+                        // the case when the entry is already disposed of. In such case we will remove the disposed
+                        // entry from the cache, and try once more.
+                        removeEntryFromCache = true;
+
+                        // In principle, this case is a miss event: we have not found the object in this pool.
+                        // But since we will try again anyway, we will decide about hit / miss during the next
+                        // iteration.
+                    }
+                } // Releasing synchronization lock on entry.
+
+                if (initializeEntry) {
+                    if (!timed) {
+                        // Initialize the entry in this thread. The shared object is created atomically with
+                        // the initialization, so that the entry can not be disposed of in between.
+                        return this.initialize(entry, true);
+                    }
+
+                    // Initialize the entry in another thread, so that this thread may give up waiting. In the next
+                    // iteration this thread waits for the initialization as any other thread.
+                    try {
+                        this.initializeExecutor.execute(() -> this.initializeAsync(entry));
+                    } catch (RejectedExecutionException ex) {
+                        // Allow the next caller to try again.
+                        entry.abortInitialize();
+                        throw ex;
                     }
                 }
 
                 if (removeEntryFromCache) {
-                    // Either the entry is already disposed of, or an attempt to initialize the entry failed.
-                    // Remove the entry from the cache. When removing, make sure that we are removing the right
-                    // entry to prevent case when another thread had already removed the "bad" entry and inserted
-                    // into the cache another, "good" one.
+                    // Either the entry is already disposed of, or an attempt to initialize the entry has been
+                    // cancelled. Remove the entry from the cache. When removing, make sure that we are removing
+                    // the right entry to prevent case when another thread had already removed the "bad" entry and
+                    // inserted into the cache another, "good" one.
                     synchronized (this.lock) {
                         this.entries.remove(key, entry);
                     }
                 }
-
-                if (exceptionOnInit != null) {
-                    // If an attempt to initialize an entry caused an exception, we will not attempt to create
-                    // and initialize an entry again, because it could cause an infinite loop. Instead, we are
-                    // re-throwing the exception.
-                    throw InitializationException.wrap(key, exceptionOnInit);
-                }
             }
         } finally {
             long endGetTimestamp = System.nanoTime();
@@ -152,6 +195,52 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
     }
 
 
+    // Initialize the provided entry, which is marked as being initialized by this thread. If the parameter waiting is
+    // true, the calling thread has been counted as waiting for the initialization, and a shared object is created
+    // and returned atomically with the initialization. Otherwise null is returned.
+    private S initialize(Entry entry, boolean waiting) throws InitializationException {
+        long startInitializeTimestamp = System.nanoTime();
+        boolean initializeSuccess = false;
+        try {
+            S sharedObject = entry.initialize(waiting);
+            initializeSuccess = true;
+            return sharedObject;
+        } catch (RuntimeException | Error ex) {
+            // An attempt to initialize this entry failed. Remove the entry from the cache, threads waiting for
+            // the initialization will get the exception.
+            synchronized (this.lock) {
+                this.entries.remove(entry.getKey(), entry);
+            }
+            if (!entry.isInitializeCancelled()) {
+                this.initializationFailed(entry.getKey(), ex);
+            }
+            throw ex;
+        } finally {
+            long endInitializeTimestamp = System.nanoTime();
+            this.firePooledObjectInitialized(endInitializeTimestamp - startInitializeTimestamp, initializeSuccess);
+            if (initializeSuccess) {
+                this.initializationSucceeded(entry.getKey());
+            }
+        }
+    }
+
+
+    // Initialize the provided entry on behalf of threads waiting for it with a timeout.
+    private void initializeAsync(Entry entry) {
+        try {
+            this.initialize(entry, false);
+        } catch (Exception ex) {
+            // The exception is re-thrown by waiting threads.
+            return;
+        }
+
+        // If all threads waiting for the initialization gave up, nobody will acquire a shared object from the entry.
+        if (entry.isAbandoned()) {
+            this.offerDispose(entry);
+        }
+    }
+
+
     private Entry getEntry(K key) throws InvalidKeyException {
         // Duration statistics collected if we actually create a new pooled object.
         boolean attemptedCreate = false;
@@ -168,6 +257,10 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
 
                 Entry entry = this.entries.get(key);
                 if (entry == null) {
+                    // Reject a recently seen invalid key without attempting to create a new entry.
+                    this.rejectInvalidKey(key);
+                    this.rejectOpenCircuit(key);
+
                     attemptedCreate = true;
                     startCreateTimestamp = System.nanoTime();
                     entry = createEntry(key);
@@ -233,7 +326,7 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
                 // * Another thread (B) obtain the synchronization lock and disposes of the entry.
                 // * This thread (A) obtains the synchronization lock, but the entry is already disposed of.
                 return;
-            } else if (entrySharedCount == Entry.NEW) {
+            } else if (entrySharedCount == Entry.NEW || entrySharedCount == Entry.INITIALIZING) {
                 throw new IllegalStateException("Entry offered for disposal, but the status is new: " + entry.getKey());
             }
 
@@ -248,7 +341,7 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
 
                 if (delayBeforeDispose > 0) {
                     // Instead of disposing of the entry immediately, schedule to try again later.
-                    ScheduledFuture<?> disposeTask = this.scheduleDisposeTask(() -> this.offerDispose(entry),
+                    TimingWheel.Timeout disposeTask = this.scheduleDisposeTask(() -> this.offerDispose(entry),
                             delayBeforeDispose, TimeUnit.MILLISECONDS);
                     entry.setDisposeTask(disposeTask);
 
@@ -370,6 +463,7 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
             this.disposed = true;
         }
 
+        this.enterShutdownPhase(ShutdownPhase.DISPOSING);
         this.disposeEntriesOnShutdown();
 
         super.dispose();
@@ -430,6 +524,9 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
         // This entry is already disposed of.
         public static final int DISPOSED = -2;
 
+        // The pooled object of this entry is being initialized.
+        public static final int INITIALIZING = -3;
+
         private final K key;
         private final P pooledObject;
 
@@ -438,19 +535,36 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
         // @GuardedBy(this)
         private int sharedCount = NEW;
 
+        // The number of threads waiting for the initialization of this entry. If the last waiting thread gives up,
+        // the initialization is cancelled.
+        // @GuardedBy(this)
+        private int initializeWaiters;
+
+        // The thread currently initializing the pooled object, or null.
+        // @GuardedBy(this)
+        private Thread initializeThread;
+
+        // Has the initialization of this entry been cancelled because all waiting threads gave up?
+        // @GuardedBy(this)
+        private boolean initializeCancelled;
+
+        // The exception thrown when initializing this entry, re-thrown by all threads waiting for the initialization.
+        // @GuardedBy(this)
+        private RuntimeException initializeException;
+
         // Last time the last shared object from this entry was returned. The time makes sense only if this entry
         // currently does not provide any shared objects, that is if sharedCount == 0, because the time is NOT reset
         // when new shared objects are created.
         // @GuardedBy(this)
         private long lastReturnTime = 0;
 
-        // The ScheduledFuture for asynchronously disposing of this entry, if any.
-        // A ScheduledFuture is set when this entry is scheduled for an asynchronous disposal.
-        // If this entry provides a new shared object before being disposed, it may cancel the ScheduledFuture.
-        // Even if the ScheduledFuture is not cancellled, it will not dispose of this entry when executed, if the
+        // The task on the dispose timing wheel for asynchronously disposing of this entry, if any.
+        // A task is set when this entry is scheduled for an asynchronous disposal.
+        // If this entry provides a new shared object before being disposed, it may cancel the task.
+        // Even if the task is not cancellled, it will not dispose of this entry when executed, if the
         // entry provides a shared object.
         // @GuardedBy(this)
-        private ScheduledFuture<?> disposeTask;
+        private TimingWheel.Timeout disposeTask;
 
 
         Entry(K key, P pooledObject) {
@@ -469,20 +583,168 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
         }
 
 
-        synchronized void initialize() throws InitializationException {
+        // Mark this new entry as being initialized by the calling thread. If the parameter waiting is true,
+        // the calling thread counts as waiting for the initialization, so that the initialization is not cancelled
+        // if all other waiting threads give up.
+        synchronized void startInitialize(boolean waiting) {
             ensureNew();
 
+            this.sharedCount = INITIALIZING;
+            if (waiting) {
+                this.initializeWaiters++;
+            }
+        }
+
+
+        // Revert this entry to new, if the initialization could not be started.
+        synchronized void abortInitialize() {
+            if (this.sharedCount == INITIALIZING) {
+                this.sharedCount = NEW;
+                this.notifyAll();
+            }
+        }
+
+
+        // Initialize this entry, which has been marked as being initialized by the calling thread. The pooled object
+        // is initialized without holding the synchronization lock on this entry, so that other threads may wait for
+        // the initialization with a timeout. If the parameter waiting is true, the calling thread has been counted
+        // as waiting for the initialization: a shared object is created atomically with the initialization and
+        // returned. Otherwise null is returned.
+        S initialize(boolean waiting) throws InitializationException {
+            synchronized (this) {
+                if (this.initializeCancelled) {
+                    // All waiting threads gave up before the initialization has been even started.
+                    this.sharedCount = DISPOSED;
+                    this.notifyAll();
+                    throw new InitializationException(this.key, "The initialization has been cancelled");
+                }
+                this.initializeThread = Thread.currentThread();
+            }
+
+            RuntimeException exception = null;
             try {
                 SynchronizedSharedObjectPool.this.initializePooledObject(this.pooledObject);
-                this.sharedCount = 0;
             } catch (Exception ex) {
-                // An attempt to initialize this entry failed. Mark the entry as disposed and re-throw the exception.
-                this.sharedCount = DISPOSED;
-                throw InitializationException.wrap(this.key, ex);
+                exception = InitializationException.wrap(this.key, ex);
+            }
+
+            boolean disposeOnShutdown = false;
+            synchronized (this) {
+                this.initializeThread = null;
+                if (waiting) {
+                    this.initializeWaiters--;
+                }
+                if (this.initializeCancelled) {
+                    // Clear the interruption caused by cancelling, the thread may be re-used by an executor.
+                    Thread.interrupted();
+                }
+                this.notifyAll();
+
+                if (this.sharedCount == DISPOSED) {
+                    // The pool has been shut down while the pooled object has been initialized. The shutdown skipped
+                    // the pooled object because it was not initialized yet, so we have to dispose of it ourselves.
+                    disposeOnShutdown = (exception == null);
+                    exception = new IllegalStateException("The pool is already disposed of");
+                } else if (exception != null) {
+                    // An attempt to initialize this entry failed. Mark the entry as disposed. Waiting threads re-throw
+                    // the exception, unless the initialization has been cancelled because they all gave up.
+                    this.sharedCount = DISPOSED;
+                    if (!this.initializeCancelled) {
+                        this.initializeException = exception;
+                    }
+                } else {
+                    this.sharedCount = 0;
+                    this.lastReturnTime = System.currentTimeMillis();
+                    if (waiting) {
+                        return this.createSharedObject();
+                    } else {
+                        return null;
+                    }
+                }
+            }
+
+            if (disposeOnShutdown) {
+                try {
+                    SynchronizedSharedObjectPool.this.disposePooledObject(this.pooledObject);
+                } catch (Exception ex) {
+                    logger.error("Exception when disposing of entry {}", this.key, ex);
+                }
+            }
+            throw exception;
+        }
+
+
+        // Wait until another thread finishes initializing this entry. Must be called when holding the synchronization
+        // lock on this entry. If the parameter timed is false, waits without a timeout and ignores interruptions.
+        // If this thread gives up waiting, and no other thread waits for the initialization, the initialization
+        // is cancelled.
+        void awaitInitialize(boolean timed, long deadlineNanos) throws TimeoutException, InterruptedException {
+            assert (Thread.holdsLock(this));
+
+            this.initializeWaiters++;
+            boolean gaveUp = true;
+            boolean interrupted = false;
+            try {
+                while (this.sharedCount == INITIALIZING) {
+                    if (timed) {
+                        long remainingNanos = deadlineNanos - System.nanoTime();
+                        if (remainingNanos <= 0) {
+                            throw new TimeoutException("Timeout waiting for initialization of " + this.key);
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                    } else {
+                        try {
+                            this.wait();
+                        } catch (InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
+                }
+                gaveUp = false;
+            } finally {
+                this.initializeWaiters--;
+                if (gaveUp && this.initializeWaiters == 0) {
+                    this.cancelInitialize();
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
 
 
+        // Cancel the initialization of this entry, if it is not finished yet. If the pooled object is being
+        // initialized, the initializing thread is interrupted. It depends on the pooled object factory if the
+        // initialization actually fails, or if it finishes successfully anyway, in which case the entry will be
+        // disposed of as unused.
+        private void cancelInitialize() {
+            assert (Thread.holdsLock(this));
+
+            if (this.sharedCount == INITIALIZING && !this.initializeCancelled) {
+                this.initializeCancelled = true;
+                if (this.initializeThread != null) {
+                    this.initializeThread.interrupt();
+                }
+            }
+        }
+
+
+        synchronized RuntimeException getInitializeException() {
+            return this.initializeException;
+        }
+
+
+        synchronized boolean isInitializeCancelled() {
+            return this.initializeCancelled;
+        }
+
+
+        // Is this entry active, but nobody uses it nor waits for it?
+        synchronized boolean isAbandoned() {
+            return (this.sharedCount == 0 && this.initializeWaiters == 0);
+        }
+
+
         // Dispose of this entry, that is dispose of the underlying pooled object and mark this entry as disposed.
         // If the parameter onShutdown is true, it indicates this method is called when shutting down the whole pool.
         // When this method is called with onShutdown = false, it ensures that the lifecycle stage is respected,
@@ -493,7 +755,7 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
                 // This is an attempt to dispose of this entry in a normal case, that is in a running pool.
                 // Check that the entry may be disposed of, that is the entry is active, but does not provide any shared
                 // objects.
-                if (this.sharedCount == NEW) {
+                if (this.sharedCount == NEW || this.sharedCount == INITIALIZING) {
                     throw new IllegalStateException("Entry is not initialized yet");
                 } else if (this.sharedCount == DISPOSED) {
                     throw new IllegalStateException("Entry is already disposed of");
@@ -508,6 +770,9 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
                 SynchronizedSharedObjectPool.this.disposePooledObject(this.pooledObject);
             }
             this.sharedCount = DISPOSED;
+
+            // Wake up threads waiting for the initialization, if the pool is shut down while initializing.
+            this.notifyAll();
         }
 
 
@@ -521,7 +786,7 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
         }
 
 
-        synchronized void setDisposeTask(ScheduledFuture<?> disposeTask) {
+        synchronized void setDisposeTask(TimingWheel.Timeout disposeTask) {
             this.disposeTask = disposeTask;
         }
 
@@ -538,7 +803,7 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
             // of this entry if it provides any shared objects), but canelling the task reduces unnecessary load
             // on the disposal executor.
             if (this.disposeTask != null) {
-                this.disposeTask.cancel(true);
+                this.disposeTask.cancel();
                 this.disposeTask = null;
             }
 
@@ -589,7 +854,7 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
         private void ensureActive() {
             assert (Thread.holdsLock(this));
 
-            if (this.sharedCount == NEW) {
+            if (this.sharedCount == NEW || this.sharedCount == INITIALIZING) {
                 throw new IllegalStateException("Entry is not initialized yet");
             }
             if (this.sharedCount == DISPOSED) {
@@ -601,11 +866,36 @@ public class SynchronizedSharedObjectPool<K, S extends SharedObject, P> extends
 
     public static class Builder<K, S extends SharedObject, P> extends AbstractSharedObjectPool.Builder<K, S, P, Builder<K, S, P>> {
 
+        // The executor for initializing pooled objects on behalf of threads getting shared objects with a timeout.
+        // Initializing pooled objects may block for a long time, for example on remote calls, so the common ForkJoinPool
+        // shall not be used.
+        // By default a cached executor with daemon threads shared by all pools, see DefaultInitializeExecutor.
+        private Executor initializeExecutor = DefaultInitializeExecutor.get();
+
+
+        public Builder<K, S, P> setInitializeExecutor(Executor initializeExecutor) {
+            this.initializeExecutor = initializeExecutor;
+            return this;
+        }
+
+
+        @Override
+        protected void validate() {
+            super.validate();
+
+            if (this.initializeExecutor == null) {
+                throw new IllegalStateException("initializeExecutor is required");
+            }
+        }
+
+
         public SynchronizedSharedObjectPool<K, S, P> build() {
             this.validate();
 
             return new SynchronizedSharedObjectPool<>(this.name, this.pooledObjectFactory, this.sharedObjectFactory,
-                    this.disposeUnused, this.idleDisposeTimeMillis, this.disposeThreads);
+                    this.disposeUnused, this.idleDisposeTimeMillis, this.disposeThreads, this.runtime,
+                    this.invalidKeyCacheSize, this.invalidKeyCacheTtlMillis, this.circuitBreakerFailureThreshold,
+                    this.circuitBreakerBackoffMillis, this.circuitBreakerMaxBackoffMillis, this.initializeExecutor);
         }
     }
 }
@@ -1,15 +1,34 @@
 package de.serdioa.common.pool;
 
 import java.util.Arrays;
+import java.util.List;
 
 
 /**
  * An implementation of the {@link StackTraceProvider} which uses a {@link Throwable} to obtain the current call stack.
  * This implementation is the slowest, but the most detailed. It may provide even line numbers, if the code was compiled
  * with the required information.
+ * <p>
+ * Optionally this provider interns captured stack traces, so that all stack traces captured at the same call site are
+ * represented by a single {@link StackTrace} instance. Interning does not make capturing a stack trace faster, but
+ * substantially reduces the memory retained by stack traces of shared objects which are not disposed of yet.
  */
 public class ThrowableStackTraceProvider implements StackTraceProvider {
 
+    // Interned call sites, or null if call sites are not interned.
+    private final CallSiteTable<List<StackTraceElement>> callSites;
+
+
+    public ThrowableStackTraceProvider() {
+        this(false);
+    }
+
+
+    public ThrowableStackTraceProvider(boolean internCallSites) {
+        this.callSites = (internCallSites ? new CallSiteTable<>() : null);
+    }
+
+
     @Override
     public StackTrace provide() {
         // Create an instance of Throwable and get the call stack.
@@ -18,7 +37,7 @@ public class ThrowableStackTraceProvider implements StackTraceProvider {
 
         // Remove the top element of the call stack, which is this method, so that the caller gets only call stack
         // up to him.
-        return new StackTrace(Arrays.copyOfRange(elements, 1, elements.length));
+        return this.stackTrace(Arrays.copyOfRange(elements, 1, elements.length));
     }
 
 
@@ -34,6 +53,14 @@ public class ThrowableStackTraceProvider implements StackTraceProvider {
 
         // Remove the top element of the call stack, which is this method, so that the caller gets only call stack
         // up to him.
-        return new StackTrace(Arrays.copyOfRange(elements, 1 + skipFrames, elements.length));
+        return this.stackTrace(Arrays.copyOfRange(elements, 1 + skipFrames, elements.length));
+    }
+
+
+    private StackTrace stackTrace(StackTraceElement[] elements) {
+        if (this.callSites == null) {
+            return new StackTrace(elements);
+        }
+        return this.callSites.intern(Arrays.asList(elements), callSite -> new StackTrace(elements));
     }
 }
@@ -0,0 +1,315 @@
+package de.serdioa.common.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A hierarchical timing wheel for scheduling a large number of tasks which are frequently cancelled before they are
+ * due, such as disposing of idle pooled objects.
+ * <p>
+ * Scheduling a task links it into a bucket of the wheel, and cancelling a task unlinks it from the bucket. Both are
+ * O(1) operations holding the lock of the wheel only for a few memory writes, and a cancelled task is immediately
+ * eligible for the garbage collection. A single periodic tick task running on the provided executor collects expired
+ * tasks under the lock, and submits them to the executor without holding the lock, so that expired tasks run
+ * in parallel on all threads of the executor, and a slow task does not delay the ticks. Compare with
+ * a {@link java.util.concurrent.ScheduledThreadPoolExecutor}, where scheduling a task is an O(log n) insertion into
+ * a heap, and cancelling a task with the remove-on-cancel policy is an O(log n) removal from the heap, both under
+ * the global lock of the executor.
+ * <p>
+ * The wheel consists of 4 levels with 64 buckets each. Each bucket on the level 0 covers one tick, each bucket
+ * on the level 1 covers 64 ticks, and so on. A task is placed on the lowest level which covers its deadline.
+ * When the wheel reaches a bucket on a higher level, tasks from the bucket are moved to lower levels. Tasks with
+ * deadlines beyond the range of the wheel are kept in the last bucket of the highest level, and are placed again
+ * when the wheel reaches the bucket.
+ * <p>
+ * Tasks are never run before their deadline, but may run up to one tick late, or later if the executor is busy.
+ */
+class TimingWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    // The number of levels, and the number of buckets on each level.
+    private static final int LEVELS = 4;
+    private static final int BUCKET_BITS = 6;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+
+    // The number of ticks covered by the wheel.
+    private static final long MAX_TICKS = 1L << (LEVELS * BUCKET_BITS);
+
+    // The duration of a tick in nanoseconds.
+    private final long tickNanos;
+
+    // System.nanoTime() when the wheel has been started, corresponding to the tick 0.
+    private final long startNanos;
+
+    // Buckets of all levels.
+    // @GuardedBy(lock)
+    private final Bucket[][] buckets;
+
+    // The last processed tick.
+    // @GuardedBy(lock)
+    private long currentTick;
+
+    // The lock protecting the wheel and positions of all tasks in buckets.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // The executor running the periodic tick task and all expired tasks.
+    private final ScheduledExecutorService executor;
+
+    // The periodic tick task.
+    private final ScheduledFuture<?> tickTask;
+
+
+    /**
+     * Constructs a new timing wheel, and starts the periodic tick task on the provided executor. The wheel is stopped
+     * when the executor is shut down.
+     *
+     * @param tickDuration the duration of a tick.
+     * @param unit the time unit of the tick duration.
+     * @param executor the executor running the periodic tick task and all expired tasks.
+     */
+    TimingWheel(long tickDuration, TimeUnit unit, ScheduledExecutorService executor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration (" + tickDuration + ") <= 0");
+        }
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.executor = executor;
+        this.startNanos = System.nanoTime();
+
+        this.buckets = new Bucket[LEVELS][BUCKETS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int index = 0; index < BUCKETS; index++) {
+                this.buckets[level][index] = new Bucket();
+            }
+        }
+
+        this.tickTask = this.executor.scheduleAtFixedRate(this::tick, this.tickNanos, this.tickNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Schedules the specified task to run after the specified delay.
+     *
+     * @param task the task to run.
+     * @param delay the delay before running the task.
+     * @param unit the time unit of the delay.
+     * @return the handle to cancel the task.
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task);
+
+        // Round the deadline up, so that a task never runs before its deadline.
+        long deadlineNanos = System.nanoTime() + unit.toNanos(delay);
+        long deadlineTick = (deadlineNanos - this.startNanos + this.tickNanos - 1) / this.tickNanos;
+
+        this.lock.lock();
+        try {
+            // A task with a deadline in the past runs on the next tick.
+            timeout.deadlineTick = Math.max(deadlineTick, this.currentTick + 1);
+            this.place(timeout);
+        } finally {
+            this.lock.unlock();
+        }
+        return timeout;
+    }
+
+
+    /**
+     * Stops this wheel. Tasks which are not run yet are never run.
+     */
+    void stop() {
+        this.tickTask.cancel(false);
+    }
+
+
+    // Advance the wheel to the current time, and submit all expired tasks to the executor.
+    private void tick() {
+        try {
+            long nowTick = (System.nanoTime() - this.startNanos) / this.tickNanos;
+
+            List<Timeout> expired = new ArrayList<>();
+            this.lock.lock();
+            try {
+                while (this.currentTick < nowTick) {
+                    this.currentTick++;
+                    this.cascade();
+                    this.buckets[0][(int) (this.currentTick & BUCKET_MASK)].drainTo(expired);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            for (Timeout timeout : expired) {
+                this.executor.execute(timeout::run);
+            }
+        } catch (RuntimeException | Error ex) {
+            // An exception thrown from a periodic task stops further executions.
+            logger.error("Exception when advancing timing wheel", ex);
+        }
+    }
+
+
+    // Place the task into the lowest level which covers its deadline.
+    private void place(Timeout timeout) {
+        long delta = timeout.deadlineTick - this.currentTick;
+        long placementTick = (delta < MAX_TICKS ? timeout.deadlineTick : this.currentTick + MAX_TICKS - 1);
+        delta = placementTick - this.currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << ((level + 1) * BUCKET_BITS))) {
+            level++;
+        }
+        int index = (int) ((placementTick >>> (level * BUCKET_BITS)) & BUCKET_MASK);
+        this.buckets[level][index].add(timeout);
+    }
+
+
+    // When the current tick crosses a boundary of a bucket on a higher level, move tasks from the bucket to lower
+    // levels.
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * BUCKET_BITS;
+            if ((this.currentTick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+
+            List<Timeout> timeouts = new ArrayList<>();
+            this.buckets[level][(int) ((this.currentTick >>> shift) & BUCKET_MASK)].drainTo(timeouts);
+            for (Timeout timeout : timeouts) {
+                this.place(timeout);
+            }
+        }
+    }
+
+
+    /**
+     * A handle of a task scheduled on a {@link TimingWheel}.
+     */
+    static final class Timeout {
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+
+        // The deadline in ticks, and the position in a bucket. This task is pending while it is in a bucket.
+        // @GuardedBy(wheel.lock)
+        private long deadlineTick;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        private boolean cancelled;
+
+
+        private Timeout(TimingWheel wheel, Runnable task) {
+            this.wheel = wheel;
+            this.task = Objects.requireNonNull(task);
+        }
+
+
+        /**
+         * Cancels this task, if it has not run yet.
+         *
+         * @return {@code true} if this task has been cancelled, {@code false} if it has already run or has already
+         * been cancelled.
+         */
+        boolean cancel() {
+            ReentrantLock wheelLock = this.wheel.lock;
+            wheelLock.lock();
+            try {
+                if (this.bucket == null) {
+                    return false;
+                }
+                this.bucket.remove(this);
+                this.cancelled = true;
+                return true;
+            } finally {
+                wheelLock.unlock();
+            }
+        }
+
+
+        boolean isCancelled() {
+            ReentrantLock wheelLock = this.wheel.lock;
+            wheelLock.lock();
+            try {
+                return this.cancelled;
+            } finally {
+                wheelLock.unlock();
+            }
+        }
+
+
+        private void run() {
+            try {
+                this.task.run();
+            } catch (RuntimeException | Error ex) {
+                logger.error("Exception when running expired task", ex);
+            }
+        }
+    }
+
+
+    // A bucket of tasks, organized as an intrusive doubly-linked list.
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = this.tail;
+            timeout.next = null;
+            if (this.tail == null) {
+                this.head = timeout;
+            } else {
+                this.tail.next = timeout;
+            }
+            this.tail = timeout;
+        }
+
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                this.head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                this.tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+
+        // Remove all tasks from this bucket, and add them to the provided list.
+        void drainTo(List<Timeout> timeouts) {
+            Timeout timeout = this.head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.bucket = null;
+                timeout.prev = null;
+                timeout.next = null;
+                timeouts.add(timeout);
+                timeout = next;
+            }
+            this.head = null;
+            this.tail = null;
+        }
+    }
+}
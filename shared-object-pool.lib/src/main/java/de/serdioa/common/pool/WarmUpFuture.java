@@ -0,0 +1,96 @@
+package de.serdioa.common.pool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * A future tracking the progress of warming up a shared object pool, that is initializing pooled objects for a number
+ * of keys in advance, see {@link ConcurrentSharedObjectPool#warmUp(java.util.Collection, int)}.
+ * <p>
+ * The future is completed when all keys have been processed. If initializing any of pooled objects failed, the future
+ * is completed exceptionally with the first failure, further failures are added as suppressed exceptions. Pooled objects
+ * which were initialized successfully remain in the pool in any case. Cancelling the future stops warming up keys which
+ * are not processed yet.
+ */
+public class WarmUpFuture extends CompletableFuture<Void> {
+
+    // The total number of keys to warm up.
+    private final int keysCount;
+
+    // The number of keys processed so far, either successfully or not.
+    private final AtomicInteger processedCount = new AtomicInteger();
+
+    // The number of keys for which warming up failed.
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    // The first failure, if any.
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+
+    WarmUpFuture(int keysCount) {
+        this.keysCount = keysCount;
+        if (keysCount == 0) {
+            this.complete(null);
+        }
+    }
+
+
+    /**
+     * Returns the total number of keys to warm up.
+     *
+     * @return the total number of keys to warm up.
+     */
+    public int getKeysCount() {
+        return this.keysCount;
+    }
+
+
+    /**
+     * Returns the number of keys processed so far, either successfully or not.
+     *
+     * @return the number of keys processed so far.
+     */
+    public int getProcessedCount() {
+        return this.processedCount.get();
+    }
+
+
+    /**
+     * Returns the number of keys for which warming up failed so far.
+     *
+     * @return the number of keys for which warming up failed so far.
+     */
+    public int getFailedCount() {
+        return this.failedCount.get();
+    }
+
+
+    void keyWarmedUp() {
+        this.keyProcessed();
+    }
+
+
+    void keyFailed(Throwable ex) {
+        // The failure has to be recorded before the key is counted as processed, so that it is visible
+        // to the thread completing this future.
+        if (!this.failure.compareAndSet(null, ex) && this.failure.get() != ex) {
+            this.failure.get().addSuppressed(ex);
+        }
+        this.failedCount.incrementAndGet();
+        this.keyProcessed();
+    }
+
+
+    private void keyProcessed() {
+        if (this.processedCount.incrementAndGet() == this.keysCount) {
+            Throwable ex = this.failure.get();
+            if (ex == null) {
+                this.complete(null);
+            } else {
+                this.completeExceptionally(ex);
+            }
+        }
+    }
+}
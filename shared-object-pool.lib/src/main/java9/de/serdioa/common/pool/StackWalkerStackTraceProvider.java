@@ -0,0 +1,170 @@
+package de.serdioa.common.pool;
+
+
+/**
+ * An implementation of the {@link StackTraceProvider} which captures a bounded number of raw frames of the current call
+ * stack, and resolves them into stack trace elements only when the stack trace is actually reported. Stack traces from
+ * this provider contain class names, method names and, if the code was compiled with the required information, line
+ * numbers, just like stack traces from the {@link ThrowableStackTraceProvider}, but they are much cheaper to capture.
+ * <p>
+ * This implementation for Java 9 and later uses a {@link StackWalker}, which walks only the frames to be captured
+ * instead of the whole call stack. The cost of capturing a stack trace grows with the number of captured frames, but
+ * does not depend on the depth of the call stack.
+ * <p>
+ * Optionally this provider interns captured stack traces, so that all stack traces captured at the same call site are
+ * represented by a single {@link StackTrace} instance. Call sites are identified by class names, method names and
+ * bytecode indices of captured frames, so identifying a call site does not resolve stack trace elements, and frames
+ * are resolved at most once per call site. Nevertheless, getting method names of frames is relatively expensive, so
+ * interning makes capturing a stack trace slower, trading time for the memory retained by stack traces.
+ */
+public class StackWalkerStackTraceProvider implements StackTraceProvider {
+
+    /**
+     * The default maximal number of frames in a captured stack trace.
+     */
+    public static final int DEFAULT_MAX_FRAMES = 16;
+
+    // The stack walker does not retain class references, so that captured stack traces do not keep classes reachable.
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    // The maximal number of frames in a captured stack trace.
+    private final int maxFrames;
+
+    // Interned call sites, or null if call sites are not interned.
+    private final CallSiteTable<CallSite> callSites;
+
+
+    public StackWalkerStackTraceProvider() {
+        this(DEFAULT_MAX_FRAMES);
+    }
+
+
+    public StackWalkerStackTraceProvider(int maxFrames) {
+        this(maxFrames, false);
+    }
+
+
+    public StackWalkerStackTraceProvider(int maxFrames, boolean internCallSites) {
+        if (maxFrames <= 0) {
+            throw new IllegalArgumentException("maxFrames (" + maxFrames + ") <= 0");
+        }
+        this.maxFrames = maxFrames;
+        this.callSites = (internCallSites ? new CallSiteTable<>() : null);
+    }
+
+
+    public int getMaxFrames() {
+        return this.maxFrames;
+    }
+
+
+    @Override
+    public StackTrace provide() {
+        // Skip the top element of the call stack, which is this method, so that the caller gets only call stack
+        // up to him.
+        int limit = this.maxFrames;
+        return this.stackTrace(WALKER.walk(s -> s.skip(1).limit(limit).toArray(StackWalker.StackFrame[]::new)));
+    }
+
+
+    @Override
+    public StackTrace provide(int skipFrames) {
+        int limit = this.maxFrames;
+        return this.stackTrace(
+                WALKER.walk(s -> s.skip(1L + skipFrames).limit(limit).toArray(StackWalker.StackFrame[]::new)));
+    }
+
+
+    private StackTrace stackTrace(StackWalker.StackFrame[] frames) {
+        if (frames.length == 0) {
+            return StackTrace.empty();
+        }
+        if (this.callSites == null) {
+            return new StackFrameStackTrace(frames);
+        }
+        return this.callSites.intern(new CallSite(frames), callSite -> new StackFrameStackTrace(callSite.frames));
+    }
+
+
+    // Identifies a call site by class names, method names and bytecode indices of captured frames. The hash code
+    // is calculated only from class names and bytecode indices, which are cheap to get.
+    private static class CallSite {
+
+        private final StackWalker.StackFrame[] frames;
+        private final int hash;
+
+
+        CallSite(StackWalker.StackFrame[] frames) {
+            this.frames = frames;
+
+            int h = 1;
+            for (StackWalker.StackFrame frame : frames) {
+                h = 31 * h + frame.getClassName().hashCode();
+                h = 31 * h + frame.getByteCodeIndex();
+            }
+            this.hash = h;
+        }
+
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CallSite)) {
+                return false;
+            }
+
+            CallSite other = (CallSite) obj;
+            if (this.hash != other.hash || this.frames.length != other.frames.length) {
+                return false;
+            }
+            for (int i = 0; i < this.frames.length; ++i) {
+                StackWalker.StackFrame frame = this.frames[i];
+                StackWalker.StackFrame otherFrame = other.frames[i];
+                if (frame.getByteCodeIndex() != otherFrame.getByteCodeIndex()
+                        || !frame.getMethodName().equals(otherFrame.getMethodName())
+                        || !frame.getClassName().equals(otherFrame.getClassName())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+
+    // A stack trace keeping raw stack frames, and resolving stack trace elements on demand.
+    private static class StackFrameStackTrace extends StackTrace {
+
+        private final StackWalker.StackFrame[] frames;
+
+        // Resolved stack trace elements, or null if not resolved yet. Concurrent threads may resolve elements more than
+        // once, but the result is the same.
+        private volatile StackTraceElement[] elements;
+
+
+        StackFrameStackTrace(StackWalker.StackFrame[] frames) {
+            this.frames = frames;
+        }
+
+
+        @Override
+        protected StackTraceElement[] resolveElements() {
+            StackTraceElement[] resolved = this.elements;
+            if (resolved == null) {
+                resolved = new StackTraceElement[this.frames.length];
+                for (int i = 0; i < resolved.length; ++i) {
+                    resolved[i] = this.frames[i].toStackTraceElement();
+                }
+                this.elements = resolved;
+            }
+            return resolved;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Base class for unit tests of the per-key circuit breaker in various implementations of an
+ * {@link AbstractSharedObjectPool}.
+ */
+public abstract class AbstractSharedObjectPoolCircuitBreakerTest {
+
+    // The circuit opens after so many consecutive failures.
+    protected static final int FAILURE_THRESHOLD = 2;
+
+    // The circuit is open for so many milliseconds first time.
+    protected static final long BACKOFF_MILLIS = 50;
+
+    protected AbstractSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    // Should initializing pooled objects fail?
+    private volatile boolean failing;
+
+    // The number of attempts to initialize pooled objects.
+    private AtomicInteger initializeCount;
+
+    // Events reported by the stats listener.
+    private List<String> events;
+
+
+    protected abstract AbstractSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(
+            PooledObjectFactory<String, PooledCounter> pooledObjectFactory);
+
+
+    @Before
+    public void setUp() {
+        this.failing = true;
+        this.initializeCount = new AtomicInteger();
+        this.events = new CopyOnWriteArrayList<>();
+
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(PooledCounter::new)
+                .setInitializer(pooledObject -> {
+                    this.initializeCount.incrementAndGet();
+                    if (this.failing) {
+                        throw new InitializationException(pooledObject.getKey());
+                    }
+                    pooledObject.initialize();
+                })
+                .setDisposer(PooledCounter::dispose)
+                .build();
+        this.pool = this.buildPool(pof);
+        this.pool.addSharedObjectPoolStatsListener(new SharedObjectPoolStatsListener() {
+            @Override
+            public void onSharedObjectGet(long durationNanos, boolean hit) {
+            }
+
+
+            @Override
+            public void onPooledObjectCreated(long durationNanos, boolean success) {
+            }
+
+
+            @Override
+            public void onPooledObjectInitialized(long durationNanos, boolean success) {
+            }
+
+
+            @Override
+            public void onPooledObjectDisposed(long durationNanos, boolean success) {
+            }
+
+
+            @Override
+            public void onInitializationCircuitOpened(Object key, long backoffNanos) {
+                events.add("opened " + key);
+            }
+
+
+            @Override
+            public void onInitializationCircuitClosed(Object key) {
+                events.add("closed " + key);
+            }
+        });
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+    }
+
+
+    private InitializationException getFailed(String key) {
+        try {
+            this.pool.get(key);
+            fail("InitializationException expected");
+            return null;
+        } catch (InitializationException ex) {
+            return ex;
+        }
+    }
+
+
+    @Test
+    public void testCircuitOpens() {
+        getFailed("AAA");
+        assertEquals(0, this.pool.getOpenCircuitsCount());
+        getFailed("AAA");
+        assertEquals(1, this.pool.getOpenCircuitsCount());
+        assertEquals(2, this.initializeCount.get());
+
+        // While the circuit is open, callers fail fast with the same exception, without initializing pooled objects.
+        InitializationException first = getFailed("AAA");
+        InitializationException second = getFailed("AAA");
+        assertSame(first, second);
+        assertEquals(2, this.initializeCount.get());
+        assertEquals(0, this.pool.getPooledObjectsCount());
+        assertEquals(2, this.pool.getOpenCircuitRejectedCount());
+
+        // Other keys are not affected.
+        this.failing = false;
+        SharedCounter cnt = this.pool.get("BBB");
+        cnt.dispose();
+        assertEquals(3, this.initializeCount.get());
+
+        assertEquals(1, this.events.size());
+        assertEquals("opened AAA", this.events.get(0));
+    }
+
+
+    @Test
+    public void testProbeSucceeds() throws Exception {
+        getFailed("AAA");
+        getFailed("AAA");
+        this.failing = false;
+
+        Thread.sleep(2 * BACKOFF_MILLIS);
+
+        // After the backoff time, a probe is let through. A successful probe closes the circuit.
+        SharedCounter cnt = this.pool.get("AAA");
+        cnt.dispose();
+        assertEquals(3, this.initializeCount.get());
+        assertEquals(0, this.pool.getOpenCircuitsCount());
+        assertEquals("closed AAA", this.events.get(this.events.size() - 1));
+    }
+
+
+    @Test
+    public void testProbeFails() throws Exception {
+        getFailed("AAA");
+        getFailed("AAA");
+        InitializationException openException = getFailed("AAA");
+
+        Thread.sleep(2 * BACKOFF_MILLIS);
+
+        // The probe fails, and the circuit opens again.
+        InitializationException probeException = getFailed("AAA");
+        assertEquals(3, this.initializeCount.get());
+        assertTrue(probeException.getMessage().startsWith("Can't initialize pooled object AAA"));
+
+        InitializationException reopenException = getFailed("AAA");
+        assertNotSame(openException, reopenException);
+        assertEquals(3, this.initializeCount.get());
+        assertEquals(1, this.pool.getOpenCircuitsCount());
+        assertEquals(2, this.events.size());
+
+        // The backoff time has been doubled, so the circuit is still open after the initial backoff time.
+        Thread.sleep(BACKOFF_MILLIS + BACKOFF_MILLIS / 2);
+        getFailed("AAA");
+        assertEquals(3, this.initializeCount.get());
+    }
+}
@@ -0,0 +1,163 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Base class for unit tests of getting shared objects with a timeout from various implementations of an
+ * {@link AbstractSharedObjectPool}.
+ */
+public abstract class AbstractSharedObjectPoolTimeoutTest {
+
+    protected AbstractSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    private ExecutorService executor;
+
+    // Initializing pooled objects blocks until this latch is released.
+    private CountDownLatch initializeLatch;
+
+    // The number of initializations interrupted while blocked.
+    private AtomicInteger interruptedCount;
+
+
+    protected abstract AbstractSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(
+            PooledObjectFactory<String, PooledCounter> pooledObjectFactory);
+
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newSingleThreadExecutor();
+        this.initializeLatch = new CountDownLatch(1);
+        this.interruptedCount = new AtomicInteger();
+
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(PooledCounter::new)
+                .setInitializer(pooledObject -> {
+                    try {
+                        this.initializeLatch.await();
+                    } catch (InterruptedException ex) {
+                        this.interruptedCount.incrementAndGet();
+                        throw new InitializationException(pooledObject.getKey(), ex);
+                    }
+                    if (pooledObject.getKey().equals("FAIL")) {
+                        throw new InitializationException(pooledObject.getKey());
+                    }
+                    pooledObject.initialize();
+                })
+                .setDisposer(PooledCounter::dispose)
+                .build();
+        this.pool = this.buildPool(pof);
+    }
+
+
+    @After
+    public void tearDown() {
+        this.initializeLatch.countDown();
+
+        this.pool.dispose();
+        this.pool = null;
+
+        this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+
+    // Wait until the pool does not contain any pooled objects.
+    private void awaitEmptyPool() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (this.pool.getPooledObjectsCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetWithTimeout() throws Exception {
+        this.initializeLatch.countDown();
+
+        SharedCounter first = this.pool.get("AAA", 1, TimeUnit.SECONDS);
+        SharedCounter second = this.pool.get("AAA", 1, TimeUnit.SECONDS);
+        assertEquals(1, first.increment());
+        assertEquals(2, second.increment());
+
+        first.dispose();
+        second.dispose();
+
+        // The pooled object may be initialized in another thread, which releases the shared object acquired
+        // on behalf of waiting threads only after they got their own shared objects.
+        awaitEmptyPool();
+    }
+
+
+    @Test
+    public void testGetWithTimeoutCancelsInitialization() throws Exception {
+        try {
+            this.pool.get("AAA", 50, TimeUnit.MILLISECONDS);
+            fail("TimeoutException expected");
+        } catch (TimeoutException ex) {
+            // Expected.
+        }
+
+        // Nobody waits for the initialization anymore, so it has been interrupted.
+        awaitEmptyPool();
+        assertEquals(1, this.interruptedCount.get());
+    }
+
+
+    @Test
+    public void testGetWithTimeoutDoesNotCancelOtherWaiters() throws Exception {
+        // Another thread initializes the pooled object without a timeout.
+        Future<SharedCounter> other = this.executor.submit(() -> this.pool.get("AAA"));
+        while (this.pool.getPooledObjectsCount() == 0) {
+            Thread.sleep(1);
+        }
+
+        // This thread does not wait on a lock held by the initializing thread, so it is able to give up.
+        try {
+            this.pool.get("AAA", 50, TimeUnit.MILLISECONDS);
+            fail("TimeoutException expected");
+        } catch (TimeoutException ex) {
+            // Expected.
+        }
+
+        // The initialization has not been interrupted, because another thread still waits for it.
+        this.initializeLatch.countDown();
+        SharedCounter cnt = other.get(1, TimeUnit.SECONDS);
+        assertEquals(0, this.interruptedCount.get());
+        assertEquals(1, cnt.increment());
+
+        cnt.dispose();
+        awaitEmptyPool();
+    }
+
+
+    @Test
+    public void testGetWithTimeoutInitializationFailed() throws Exception {
+        this.initializeLatch.countDown();
+
+        try {
+            this.pool.get("FAIL", 1, TimeUnit.SECONDS);
+            fail("InitializationException expected");
+        } catch (InitializationException ex) {
+            // Expected.
+        }
+        awaitEmptyPool();
+    }
+}
@@ -0,0 +1,110 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class AdaptiveIdlePolicyTest {
+
+    // Keeping an idle pooled object for 1 millisecond costs 1 microsecond.
+    private static final long KEEP_ALIVE_COST = 1_000_000;
+
+    private static final long MAX_IDLE_TIME = 10_000;
+
+
+    private final AdaptiveIdlePolicy<String> policy = new AdaptiveIdlePolicy<>(KEEP_ALIVE_COST, MAX_IDLE_TIME, 100);
+
+
+    private AdaptiveIdlePolicy.KeyStats stats(long createNanos, long... gaps) {
+        AdaptiveIdlePolicy.KeyStats stats = new AdaptiveIdlePolicy.KeyStats();
+        stats.recordCreate(createNanos);
+        for (long gap : gaps) {
+            stats.recordGap(gap);
+        }
+        return stats;
+    }
+
+
+    @Test
+    public void testNoHistory() {
+        // Without any reuse gaps the idle time is the break-even time.
+        assertEquals(1_000, this.policy.idleTimeMillis(this.stats(1_000_000)));
+
+        // The idle time does not exceed the maximum.
+        assertEquals(MAX_IDLE_TIME, this.policy.idleTimeMillis(this.stats(1_000_000_000)));
+    }
+
+
+    @Test
+    public void testExpensiveRecreate() {
+        // Keeping the pooled object for 100 ms costs 100 microseconds, re-creating it costs 10 ms.
+        assertEquals(101, this.policy.idleTimeMillis(this.stats(10_000_000, 100, 100, 100)));
+    }
+
+
+    @Test
+    public void testCheapRecreate() {
+        // Keeping the pooled object for 100 ms costs 100 microseconds, re-creating it costs 10 microseconds.
+        assertEquals(0, this.policy.idleTimeMillis(this.stats(10_000, 100, 100, 100)));
+    }
+
+
+    @Test
+    public void testGapsAboveMaximum() {
+        assertEquals(0, this.policy.idleTimeMillis(this.stats(1_000_000_000, 20_000, 20_000)));
+    }
+
+
+    @Test
+    public void testMixedGaps() {
+        // Short gaps are covered, the rare long gap is cheaper to pay with re-creating the pooled object.
+        assertEquals(51, this.policy.idleTimeMillis(this.stats(1_000_000, 50, 50, 50, 50, 5_000)));
+    }
+
+
+    @Test
+    public void testRecreateCost() {
+        AdaptiveIdlePolicy.KeyStats stats = this.stats(10_000, 100, 100);
+        assertEquals(0, this.policy.idleTimeMillis(stats));
+
+        // Initializing and disposing of the pooled object is part of the re-creation cost.
+        stats.recordInitialize(5_000_000);
+        stats.recordDispose(5_000_000);
+        assertEquals(101, this.policy.idleTimeMillis(stats));
+    }
+
+
+    @Test
+    public void testAttachDetach() {
+        AdaptiveIdlePolicy.KeyStats stats = this.policy.attach("AAA");
+        stats.recordCreate(10_000_000);
+        this.policy.detach("AAA", stats, System.currentTimeMillis() - 500);
+
+        // Statistics are restored, and the gap since the pooled object became idle is recorded.
+        assertSame(stats, this.policy.attach("AAA"));
+        long idleTime = this.policy.idleTimeMillis(stats);
+        assertTrue(idleTime > 500);
+        assertTrue(idleTime < 1_000);
+
+        // Statistics are restored only once.
+        assertNotSame(stats, this.policy.attach("AAA"));
+    }
+
+
+    @Test
+    public void testHistorySize() {
+        AdaptiveIdlePolicy<String> smallPolicy = new AdaptiveIdlePolicy<>(KEEP_ALIVE_COST, MAX_IDLE_TIME, 1);
+        AdaptiveIdlePolicy.KeyStats statsA = smallPolicy.attach("AAA");
+        AdaptiveIdlePolicy.KeyStats statsB = smallPolicy.attach("BBB");
+        smallPolicy.detach("AAA", statsA, System.currentTimeMillis());
+        smallPolicy.detach("BBB", statsB, System.currentTimeMillis());
+
+        // Statistics of the key disposed of first have been discarded.
+        assertNotSame(statsA, smallPolicy.attach("AAA"));
+        assertSame(statsB, smallPolicy.attach("BBB"));
+    }
+}
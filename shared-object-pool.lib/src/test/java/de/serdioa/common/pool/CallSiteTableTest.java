@@ -0,0 +1,45 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+
+public class CallSiteTableTest {
+
+    @Test
+    public void testIntern() {
+        CallSiteTable<String> table = new CallSiteTable<>();
+
+        StackTrace first = table.intern("AAA", callSite -> new StackTrace(null));
+        StackTrace second = table.intern("AAA", callSite -> new StackTrace(null));
+        StackTrace other = table.intern("BBB", callSite -> new StackTrace(null));
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, table.size());
+    }
+
+
+    @Test
+    public void testMaxCallSites() {
+        CallSiteTable<String> table = new CallSiteTable<>(1);
+
+        StackTrace interned = table.intern("AAA", callSite -> new StackTrace(null));
+        assertSame(interned, table.intern("AAA", callSite -> new StackTrace(null)));
+
+        // The table is full, new call sites are not interned.
+        StackTrace first = table.intern("BBB", callSite -> new StackTrace(null));
+        StackTrace second = table.intern("BBB", callSite -> new StackTrace(null));
+        assertNotSame(first, second);
+        assertEquals(1, table.size());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxCallSites() {
+        new CallSiteTable<String>(0);
+    }
+}
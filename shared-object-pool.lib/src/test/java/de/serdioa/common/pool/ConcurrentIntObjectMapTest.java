@@ -0,0 +1,193 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class ConcurrentIntObjectMapTest {
+
+    @Test
+    public void testComputeIfAbsent() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        String first = map.computeIfAbsent(1, key -> "V" + key + "-" + calls.incrementAndGet());
+        String second = map.computeIfAbsent(1, key -> "V" + key + "-" + calls.incrementAndGet());
+        assertEquals("V1-1", first);
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+        assertEquals(1, map.size());
+
+        // The function returning null does not add an entry.
+        assertNull(map.computeIfAbsent(2, key -> null));
+        assertEquals(1, map.size());
+        assertFalse(map.containsKey(2));
+    }
+
+
+    @Test
+    public void testSlowComputeIfAbsent() throws Exception {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+        map.put(3, "C");
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> map.computeIfAbsent(1, key -> {
+            creating.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "A";
+        }));
+        assertTrue(creating.await(1, TimeUnit.SECONDS));
+
+        // While the value for the key 1 is being created, other keys may be created and removed. Keys 1 and 2 fall
+        // into different stripes.
+        assertEquals("B", map.computeIfAbsent(2, key -> "B"));
+        assertEquals("C", map.remove(3));
+        assertNull(map.get(1));
+
+        release.countDown();
+        assertEquals("A", slow.get(1, TimeUnit.SECONDS));
+        assertEquals("A", map.get(1));
+        assertEquals(2, map.size());
+    }
+
+
+    @Test
+    public void testBoxedAccess() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+        assertEquals("A", map.computeIfAbsent(Integer.valueOf(-5), key -> "A"));
+        assertEquals("A", map.get(-5));
+        assertEquals("A", map.get(Integer.valueOf(-5)));
+        assertNull(map.get("-5"));
+        assertTrue(map.containsKey(Integer.valueOf(-5)));
+
+        assertNull(map.putIfAbsent(7, "B"));
+        assertEquals("B", map.putIfAbsent(7, "C"));
+        assertEquals("B", map.put(7, "D"));
+        assertEquals("D", map.get(7));
+        assertFalse(map.replace(7, "B", "E"));
+        assertTrue(map.replace(7, "D", "E"));
+        assertEquals("E", map.get(7));
+    }
+
+
+    @Test
+    public void testRemove() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+        map.put(1, "A");
+        map.put(2, "B");
+
+        // Remove only if mapped to the expected value.
+        assertFalse(map.remove(Integer.valueOf(1), "B"));
+        assertTrue(map.remove(Integer.valueOf(1), "A"));
+        assertNull(map.get(1));
+        assertEquals("B", map.remove(2));
+        assertTrue(map.isEmpty());
+
+        // A removed key may be added again.
+        map.put(1, "C");
+        assertEquals("C", map.get(1));
+        assertEquals(1, map.size());
+    }
+
+
+    @Test
+    public void testGrowAndReuseRemovedSlots() {
+        ConcurrentIntObjectMap<Integer> map = new ConcurrentIntObjectMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i);
+        }
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(Integer.valueOf(i), map.get(i));
+        }
+
+        // Repeatedly adding and removing keys rebuilds the table instead of filling it with removed slots.
+        for (int i = 0; i < 10_000; i++) {
+            map.remove(i);
+            map.put(-i - 1, i);
+            map.remove(-i - 1);
+        }
+        assertTrue(map.isEmpty());
+        assertTrue(map.values().isEmpty());
+        assertNull(map.get(0));
+    }
+
+
+    @Test
+    public void testSnapshots() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+        map.put(1, "A");
+        map.put(2, "B");
+        map.put(3, "C");
+        map.remove(2);
+
+        assertEquals(new HashSet<>(List.of("A", "C")), new HashSet<>(map.values()));
+        Set<Integer> keys = new HashSet<>(map.keySet());
+        assertEquals(Set.of(1, 3), keys);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        ConcurrentIntObjectMap<Integer> map = new ConcurrentIntObjectMap<>();
+        map.put(-1, -1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failures = new AtomicInteger();
+
+        // Readers always find the key which is never removed, while a writer adds and removes other keys, growing
+        // and rebuilding the table.
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                while (running.get()) {
+                    if (!Integer.valueOf(-1).equals(map.get(-1))) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        for (int i = 0; i < 100_000; i++) {
+            map.put(i, i);
+            if (i % 3 != 0) {
+                map.remove(i);
+            }
+        }
+
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(0, failures.get());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i % 3 == 0 ? Integer.valueOf(i) : null, map.get(i));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.PooledCounterFactory;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolAbandonedTrackingTest {
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.dispose();
+            this.pool = null;
+        }
+    }
+
+
+    private void buildPool(AbandonedTrackingMode mode, int sampleRate) {
+        this.pool = new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(new PooledCounterFactory())
+                .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class))
+                .setAbandonedTrackingMode(mode)
+                .setAbandonedTrackingSampleRate(sampleRate)
+                .build();
+    }
+
+
+    private void forceGc() {
+        Object obj = new Object();
+        WeakReference<Object> ref = new WeakReference<>(obj);
+        obj = null;
+
+        while (ref.get() != null) {
+            System.gc();
+        }
+    }
+
+
+    // Get the specified number of shared objects for the key, and "forget" to dispose of them.
+    private void abandon(String key, int count) throws InterruptedException {
+        List<SharedCounter> counters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            counters.add(this.pool.get(key));
+        }
+        assertEquals(count, this.pool.getSharedObjectsCount(key));
+
+        // Give JVM some time to dispose of tracked objects via phantom references.
+        counters = null;
+        forceGc();
+        Thread.sleep(500);
+    }
+
+
+    @Test
+    public void testOffDisposeDirect() {
+        this.buildPool(AbandonedTrackingMode.OFF, 1);
+
+        SharedCounter first = this.pool.get("AAA");
+        SharedCounter second = this.pool.get("AAA");
+        assertEquals(1, first.increment());
+        assertEquals(2, second.increment());
+        assertEquals(2, this.pool.getSharedObjectsCount("AAA"));
+
+        first.dispose();
+        second.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testOffAbandoned() throws InterruptedException {
+        this.buildPool(AbandonedTrackingMode.OFF, 1);
+
+        // Abandoned shared objects are not detected, so the pooled object is never disposed of.
+        this.abandon("AAA", 4);
+        assertEquals(4, this.pool.getSharedObjectsCount("AAA"));
+        assertEquals(1, this.pool.getPooledObjectsCount());
+        assertEquals(0, this.pool.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test
+    public void testSampledAbandoned() throws InterruptedException {
+        this.buildPool(AbandonedTrackingMode.SAMPLED, 2);
+
+        // One in two shared objects is tracked and released when abandoned. Each of them counts for two shared objects.
+        this.abandon("AAA", 4);
+        assertEquals(2, this.pool.getSharedObjectsCount("AAA"));
+        assertEquals(4, this.pool.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test
+    public void testFullAbandoned() throws InterruptedException {
+        this.buildPool(AbandonedTrackingMode.FULL, 2);
+
+        this.abandon("AAA", 4);
+        assertEquals(0, this.pool.getPooledObjectsCount());
+        assertEquals(4, this.pool.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidSampleRate() {
+        this.buildPool(AbandonedTrackingMode.SAMPLED, 0);
+    }
+}
@@ -0,0 +1,105 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolAdaptiveIdleTest {
+
+    private static final long IDLE_DISPOSE_TIME = 10_000;
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.dispose();
+            this.pool = null;
+        }
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(long createMillis,
+            long keepAliveCostNanosPerSecond) {
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(key -> {
+                    sleep(createMillis);
+                    return new PooledCounter(key);
+                })
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(PooledCounter::dispose)
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .setDisposeThreads(1)
+                .setIdleDisposeTimeMillis(IDLE_DISPOSE_TIME)
+                .setKeepAliveCostNanosPerSecond(keepAliveCostNanosPerSecond)
+                .build();
+    }
+
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    @Test
+    public void testCheapPooledObjectDisposedImmediately() {
+        // Keeping an idle pooled object for 1 millisecond is as expensive as re-creating it for 1 second. Even if
+        // the first pooled object is slow to create because classes are loaded, it is not kept.
+        this.pool = this.buildPool(0, 1_000_000_000_000L);
+
+        SharedCounter cnt = this.pool.get("AAA");
+        cnt.dispose();
+        assertFalse(this.pool.containsPooledObject("AAA"));
+    }
+
+
+    @Test
+    public void testIdleTimeAdaptsToReuseGaps() {
+        // Keeping an idle pooled object is cheap compared with creating it.
+        this.pool = this.buildPool(20, 1_000);
+
+        // Without any history, the pooled object is kept for the maximal idle time.
+        SharedCounter cnt = this.pool.get("AAA");
+        assertEquals(IDLE_DISPOSE_TIME, this.pool.getIdleDisposeTimeMillis("AAA"));
+        cnt.dispose();
+        assertTrue(this.pool.containsPooledObject("AAA"));
+
+        // The pooled object is reused immediately, so the idle time shrinks.
+        cnt = this.pool.get("AAA");
+        long idleTime = this.pool.getIdleDisposeTimeMillis("AAA");
+        assertTrue(idleTime < 100);
+        cnt.dispose();
+
+        sleep(idleTime + 500);
+        assertFalse(this.pool.containsPooledObject("AAA"));
+
+        // The pooled object has been disposed of too early. The reuse gap is recorded when re-creating it,
+        // so that the idle time grows.
+        cnt = this.pool.get("AAA");
+        assertTrue(this.pool.getIdleDisposeTimeMillis("AAA") > idleTime + 500);
+        cnt.dispose();
+    }
+
+
+    @Test
+    public void testStaticIdleTime() {
+        this.pool = this.buildPool(0, 0);
+        assertEquals(IDLE_DISPOSE_TIME, this.pool.getIdleDisposeTimeMillis("AAA"));
+    }
+}
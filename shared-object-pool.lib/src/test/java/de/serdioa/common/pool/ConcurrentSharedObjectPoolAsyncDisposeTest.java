@@ -0,0 +1,149 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolAsyncDisposeTest {
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    // Disposing of pooled objects blocks until this latch is released.
+    private CountDownLatch disposeLatch;
+
+    // The number of disposed pooled objects.
+    private AtomicInteger disposeCount;
+
+
+    @Before
+    public void setUp() {
+        this.disposeLatch = new CountDownLatch(1);
+        this.disposeCount = new AtomicInteger();
+
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(PooledCounter::new)
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(pooledObject -> {
+                    try {
+                        this.disposeLatch.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    this.disposeCount.incrementAndGet();
+                    pooledObject.dispose();
+                })
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        this.pool = new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .setDisposeThreads(1)
+                .setAsyncDispose(true)
+                .build();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.disposeLatch.countDown();
+
+        this.pool.dispose();
+        this.pool = null;
+    }
+
+
+    // Wait until the pool does not contain any pooled objects.
+    private void awaitEmptyPool() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (this.pool.getPooledObjectsCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testDisposeReturnsImmediately() throws Exception {
+        // Disposing of the pooled object blocks, but disposing of the shared object does not wait for it.
+        SharedCounter counter = this.pool.get("AAA");
+        counter.dispose();
+        assertEquals(0, this.disposeCount.get());
+
+        this.disposeLatch.countDown();
+        awaitEmptyPool();
+        assertEquals(1, this.disposeCount.get());
+    }
+
+
+    @Test
+    public void testGetRevivesEnqueuedEntry() throws Exception {
+        // Occupy the dispose thread, so that the next entry remains enqueued.
+        SharedCounter blocker = this.pool.get("BLOCKER");
+        blocker.dispose();
+
+        SharedCounter first = this.pool.get("AAA");
+        assertEquals(1, first.increment());
+        first.dispose();
+
+        // The enqueued pooled object is re-used.
+        SharedCounter second = this.pool.get("AAA");
+        assertEquals(2, second.increment());
+
+        this.disposeLatch.countDown();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (this.pool.containsPooledObject("BLOCKER") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // The pooled object provides a shared object, so it has not been disposed of.
+        assertFalse(this.pool.containsPooledObject("BLOCKER"));
+        assertTrue(this.pool.containsPooledObject("AAA"));
+        assertEquals(1, this.disposeCount.get());
+
+        second.dispose();
+        awaitEmptyPool();
+        assertEquals(2, this.disposeCount.get());
+    }
+
+
+    @Test
+    public void testGetDoesNotWaitForOtherDisposals() throws Exception {
+        // Occupy the dispose thread.
+        SharedCounter blocker = this.pool.get("BLOCKER");
+        blocker.dispose();
+
+        // Getting and disposing of shared objects for other keys is not blocked by the pending disposal.
+        for (int i = 0; i < 10; i++) {
+            SharedCounter counter = this.pool.get("AAA");
+            counter.dispose();
+        }
+        assertTrue(this.pool.containsPooledObject("AAA"));
+
+        this.disposeLatch.countDown();
+        awaitEmptyPool();
+        assertEquals(2, this.disposeCount.get());
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testAsyncDisposeRequiresDisposeThreads() {
+        new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                        .setCreator(PooledCounter::new)
+                        .build())
+                .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class))
+                .setAsyncDispose(true)
+                .build();
+    }
+}
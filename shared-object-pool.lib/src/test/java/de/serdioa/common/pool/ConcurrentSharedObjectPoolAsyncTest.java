@@ -0,0 +1,214 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolAsyncTest {
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    private ExecutorService executor;
+
+    // Initializing pooled objects blocks until this latch is released.
+    private CountDownLatch initializeLatch;
+
+    // The number of initialized pooled objects.
+    private AtomicInteger initializeCount;
+
+    // The name of the thread which has initialized the last pooled object.
+    private volatile String initializeThread;
+
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(2);
+        this.initializeLatch = new CountDownLatch(1);
+        this.initializeCount = new AtomicInteger();
+        this.pool = this.buildPool();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+
+        this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool() {
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(key -> {
+                    if (key.isEmpty()) {
+                        throw new InvalidKeyException(key);
+                    }
+                    return new PooledCounter(key);
+                })
+                .setInitializer(pooledObject -> {
+                    try {
+                        this.initializeLatch.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InitializationException(pooledObject.getKey(), ex);
+                    }
+                    if (pooledObject.getKey().equals("FAIL")) {
+                        throw new InitializationException(pooledObject.getKey());
+                    }
+                    this.initializeCount.incrementAndGet();
+                    this.initializeThread = Thread.currentThread().getName();
+                    pooledObject.initialize();
+                })
+                .setDisposer(PooledCounter::dispose)
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .build();
+    }
+
+
+    // Wait until all tasks in the executor are finished. The initializing task holds a shared object on behalf
+    // of waiting callers, and releases it only after all callers are completed.
+    private void awaitExecutor() throws InterruptedException {
+        this.executor.shutdown();
+        assertTrue(this.executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testGetAsyncSharesInitialization() throws Exception {
+        List<CompletableFuture<SharedCounter>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            futures.add(this.pool.getAsync("AAA", this.executor));
+        }
+
+        // The initialization is blocked, so no future could be completed yet.
+        for (CompletableFuture<SharedCounter> future : futures) {
+            assertFalse(future.isDone());
+        }
+
+        this.initializeLatch.countDown();
+
+        for (CompletableFuture<SharedCounter> future : futures) {
+            SharedCounter cnt = future.get(1, TimeUnit.SECONDS);
+            cnt.increment();
+        }
+        awaitExecutor();
+
+        // All callers shared the same initialization.
+        assertEquals(1, this.initializeCount.get());
+        assertEquals(5, this.pool.getSharedObjectsCount("AAA"));
+
+        for (CompletableFuture<SharedCounter> future : futures) {
+            future.get().dispose();
+        }
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetAsyncDefaultExecutor() throws Exception {
+        CompletableFuture<SharedCounter> future = this.pool.getAsync("AAA");
+        this.initializeLatch.countDown();
+
+        // The pooled object is initialized by a thread of the default initialization executor, not by a thread
+        // of the common ForkJoinPool.
+        SharedCounter cnt = future.get(1, TimeUnit.SECONDS);
+        assertTrue(this.initializeThread, this.initializeThread.startsWith("shared-object-pool-initializer-"));
+        cnt.dispose();
+    }
+
+
+    @Test
+    public void testGetAsyncHitCompletesImmediately() throws Exception {
+        this.initializeLatch.countDown();
+        SharedCounter first = this.pool.get("AAA");
+
+        // The pooled object is already available, so the future is completed in the calling thread.
+        CompletableFuture<SharedCounter> future = this.pool.getAsync("AAA", this.executor);
+        assertTrue(future.isDone());
+
+        SharedCounter second = future.get();
+        assertEquals(1, first.increment());
+        assertEquals(2, second.increment());
+
+        first.dispose();
+        second.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetAsyncCancelled() throws Exception {
+        CompletableFuture<SharedCounter> cancelled = this.pool.getAsync("AAA", this.executor);
+        CompletableFuture<SharedCounter> future = this.pool.getAsync("AAA", this.executor);
+        cancelled.cancel(false);
+
+        this.initializeLatch.countDown();
+
+        // The cancelled caller does not keep the pooled object.
+        SharedCounter cnt = future.get(1, TimeUnit.SECONDS);
+        awaitExecutor();
+        assertEquals(1, this.pool.getSharedObjectsCount("AAA"));
+
+        cnt.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetAsyncInitializationFailed() throws Exception {
+        CompletableFuture<SharedCounter> first = this.pool.getAsync("FAIL", this.executor);
+        CompletableFuture<SharedCounter> second = this.pool.getAsync("FAIL", this.executor);
+
+        this.initializeLatch.countDown();
+
+        for (CompletableFuture<SharedCounter> future : Arrays.asList(first, second)) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                fail("InitializationException expected");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof InitializationException);
+            }
+        }
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetAsyncInvalidKey() throws Exception {
+        CompletableFuture<SharedCounter> future = this.pool.getAsync("", this.executor);
+        assertTrue(future.isCompletedExceptionally());
+
+        try {
+            future.get();
+            fail("InvalidKeyException expected");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof InvalidKeyException);
+        }
+    }
+}
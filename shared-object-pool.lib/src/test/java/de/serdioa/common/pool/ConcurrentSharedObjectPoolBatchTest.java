@@ -0,0 +1,256 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolBatchTest {
+
+    private static final long TICK = 100;
+    private static final long TOCK = 125;
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    private ExecutorService executor;
+
+    // Calls of the batch factory, such as "initializeAll [AAA, BBB]".
+    private List<String> batches;
+
+    // Names of threads which have disposed of batches.
+    private List<String> disposeBatchThreads;
+
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(4);
+        this.batches = Collections.synchronizedList(new ArrayList<>());
+        this.disposeBatchThreads = Collections.synchronizedList(new ArrayList<>());
+        this.pool = this.buildPool(null);
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+
+        this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(
+            SharedObjectPoolRuntime runtime) {
+        PooledObjectFactory<String, PooledCounter> pof = new BatchPooledObjectFactory<String, PooledCounter>() {
+            @Override
+            public PooledCounter create(String key) {
+                return new PooledCounter(key);
+            }
+
+
+            @Override
+            public void initialize(PooledCounter pooledObject) {
+                pooledObject.initialize();
+            }
+
+
+            @Override
+            public void dispose(PooledCounter pooledObject) {
+                pooledObject.dispose();
+            }
+
+
+            @Override
+            public void initializeAll(List<PooledCounter> pooledObjects) {
+                if (pooledObjects.stream().anyMatch(p -> p.getKey().equals("FAIL"))) {
+                    throw new InitializationException("FAIL");
+                }
+                batches.add("initializeAll " + keys(pooledObjects));
+                BatchPooledObjectFactory.super.initializeAll(pooledObjects);
+            }
+
+
+            @Override
+            public void disposeAll(List<PooledCounter> pooledObjects) {
+                batches.add("disposeAll " + keys(pooledObjects));
+                disposeBatchThreads.add(Thread.currentThread().getName());
+                BatchPooledObjectFactory.super.disposeAll(pooledObjects);
+            }
+        };
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter> builder =
+                new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                        .setPooledObjectFactory(pof)
+                        .setSharedObjectFactory(sof)
+                        .setInitializeExecutor(this.executor)
+                        .setInitializeParallelism(4)
+                        .setBatchWindowMillis(TICK)
+                        .setMaxBatchSize(4);
+        if (runtime != null) {
+            builder.setRuntime(runtime);
+        } else {
+            builder.setDisposeThreads(1);
+        }
+        return builder.build();
+    }
+
+
+    private static List<String> keys(List<PooledCounter> pooledObjects) {
+        List<String> keys = new ArrayList<>();
+        for (PooledCounter pooledObject : pooledObjects) {
+            keys.add(pooledObject.getKey());
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+
+    @Test
+    public void testInitializeAndDisposeInBatches() throws InterruptedException {
+        Map<String, SharedCounter> sharedObjects = this.pool.getAll(Arrays.asList("AAA", "BBB", "CCC"));
+        assertEquals(Arrays.asList("initializeAll [AAA, BBB, CCC]"), this.batches);
+
+        for (SharedCounter sharedObject : sharedObjects.values()) {
+            sharedObject.dispose();
+        }
+
+        // Pooled objects remain in the pool until the batch is processed.
+        assertEquals(3, this.pool.getPooledObjectsCount());
+        Thread.sleep(TOCK);
+
+        assertEquals(0, this.pool.getPooledObjectsCount());
+        assertEquals(Arrays.asList("initializeAll [AAA, BBB, CCC]", "disposeAll [AAA, BBB, CCC]"), this.batches);
+    }
+
+
+    @Test
+    public void testFullBatchProcessedImmediately() {
+        long start = System.currentTimeMillis();
+        Map<String, SharedCounter> sharedObjects = this.pool.getAll(Arrays.asList("AAA", "BBB", "CCC", "DDD"));
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(Arrays.asList("initializeAll [AAA, BBB, CCC, DDD]"), this.batches);
+        if (duration >= TICK) {
+            fail("Full batch shall not wait for the batch window, but waited " + duration + " ms");
+        }
+
+        for (SharedCounter sharedObject : sharedObjects.values()) {
+            sharedObject.dispose();
+        }
+    }
+
+
+    @Test
+    public void testGetWaitsForPendingDispose() {
+        SharedCounter first = this.pool.get("AAA");
+        first.dispose();
+
+        // The old pooled object is still waiting in the dispose batch. Getting a new shared object waits until
+        // the old pooled object is disposed of.
+        SharedCounter second = this.pool.get("AAA");
+        assertEquals(1, second.increment());
+        assertEquals(Arrays.asList("initializeAll [AAA]", "disposeAll [AAA]", "initializeAll [AAA]"), this.batches);
+
+        second.dispose();
+    }
+
+
+    @Test
+    public void testInitializeBatchFailed() {
+        try {
+            this.pool.getAll(Arrays.asList("AAA", "FAIL"));
+            fail("InitializationException expected");
+        } catch (InitializationException ex) {
+            // Expected.
+        }
+
+        // The whole batch failed.
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testBatchesOnSharedRuntime() throws InterruptedException {
+        SharedObjectPoolRuntime runtime = new SharedObjectPoolRuntime.Builder().setName("shared").build();
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> first = this.buildPool(runtime);
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> second = this.buildPool(runtime);
+        try {
+            first.get("AAA").dispose();
+            second.get("BBB").dispose();
+            Thread.sleep(TOCK);
+
+            // Batches of both pools are processed on the dispose thread of the shared runtime.
+            assertEquals(Arrays.asList("shared-disposer-0", "shared-disposer-0"), this.disposeBatchThreads);
+        } finally {
+            first.dispose();
+            second.dispose();
+            runtime.dispose();
+        }
+    }
+
+
+    @Test
+    public void testPendingBatchProcessedOnDispose() {
+        this.pool.get("AAA").dispose();
+
+        // The pooled object is waiting in the dispose batch when the pool is disposed of.
+        this.pool.dispose();
+        assertEquals(Arrays.asList("initializeAll [AAA]", "disposeAll [AAA]"), this.batches);
+    }
+
+
+    @Test
+    public void testDefaultInitializeAllDisposesOnFailure() {
+        List<String> calls = new ArrayList<>();
+        BatchPooledObjectFactory<String, PooledCounter> pof = new BatchPooledObjectFactory<String, PooledCounter>() {
+            @Override
+            public PooledCounter create(String key) {
+                return new PooledCounter(key);
+            }
+
+
+            @Override
+            public void initialize(PooledCounter pooledObject) {
+                if (pooledObject.getKey().equals("FAIL")) {
+                    throw new InitializationException("FAIL");
+                }
+                calls.add("initialize " + pooledObject.getKey());
+                pooledObject.initialize();
+            }
+
+
+            @Override
+            public void dispose(PooledCounter pooledObject) {
+                calls.add("dispose " + pooledObject.getKey());
+                pooledObject.dispose();
+            }
+        };
+
+        List<PooledCounter> pooledObjects = Arrays.asList(pof.create("AAA"), pof.create("BBB"), pof.create("FAIL"),
+                pof.create("CCC"));
+        try {
+            pof.initializeAll(pooledObjects);
+            fail("InitializationException expected");
+        } catch (InitializationException ex) {
+            // Expected.
+        }
+
+        // Pooled objects initialized before the failure are disposed of, pooled objects after it are not touched.
+        assertEquals(Arrays.asList("initialize AAA", "initialize BBB", "dispose AAA", "dispose BBB"), calls);
+    }
+}
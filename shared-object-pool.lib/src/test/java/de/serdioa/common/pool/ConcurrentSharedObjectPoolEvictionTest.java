@@ -0,0 +1,171 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolEvictionTest {
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    // The number of disposed pooled objects.
+    private AtomicInteger disposeCount;
+
+
+    @Before
+    public void setUp() {
+        this.disposeCount = new AtomicInteger();
+    }
+
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.dispose();
+            this.pool = null;
+        }
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(long maximumWeight,
+            PooledObjectWeigher<String, PooledCounter> weigher) {
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(PooledCounter::new)
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(pooledObject -> {
+                    this.disposeCount.incrementAndGet();
+                    pooledObject.dispose();
+                })
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .setDisposeUnused(false)
+                .setMaximumWeight(maximumWeight)
+                .setWeigher(weigher)
+                .build();
+    }
+
+
+    private void touch(String key) {
+        this.pool.get(key).dispose();
+    }
+
+
+    @Test
+    public void testEvictIdle() {
+        this.pool = buildPool(2, (key, pooledObject) -> 1);
+
+        touch("AAA");
+        touch("BBB");
+        assertEquals(2, this.pool.getPooledObjectsCount());
+        assertEquals(2, this.pool.getTotalWeight());
+
+        // Unused pooled objects are kept, but the maximal weight is respected.
+        touch("CCC");
+        assertEquals(2, this.pool.getPooledObjectsCount());
+        assertEquals(2, this.pool.getTotalWeight());
+        assertEquals(1, this.pool.getEvictedCount());
+        assertEquals(1, this.disposeCount.get());
+    }
+
+
+    @Test
+    public void testActiveNotEvicted() {
+        this.pool = buildPool(2, (key, pooledObject) -> 1);
+
+        SharedCounter aaa = this.pool.get("AAA");
+        SharedCounter bbb = this.pool.get("BBB");
+        SharedCounter ccc = this.pool.get("CCC");
+
+        // Pooled objects which provide shared objects are never evicted, even if the total weight exceeds the maximum.
+        assertEquals(3, this.pool.getPooledObjectsCount());
+        assertEquals(3, this.pool.getTotalWeight());
+        assertEquals(0, this.pool.getEvictedCount());
+
+        // As soon as a pooled object becomes idle, it is evicted.
+        bbb.dispose();
+        assertEquals(2, this.pool.getPooledObjectsCount());
+        assertFalse(this.pool.containsPooledObject("BBB"));
+        assertEquals(1, this.pool.getEvictedCount());
+
+        aaa.dispose();
+        ccc.dispose();
+        assertEquals(2, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testFrequentKeysSurvive() {
+        this.pool = buildPool(2, (key, pooledObject) -> 1);
+
+        for (int i = 0; i < 5; i++) {
+            touch("AAA");
+        }
+        touch("BBB");
+
+        // The key BBB has been accessed less frequently than AAA, although more recently.
+        touch("CCC");
+        assertTrue(this.pool.containsPooledObject("AAA"));
+        assertFalse(this.pool.containsPooledObject("BBB"));
+        assertTrue(this.pool.containsPooledObject("CCC"));
+    }
+
+
+    @Test
+    public void testWeigher() {
+        this.pool = buildPool(10, (key, pooledObject) -> key.length());
+
+        touch("AAAA");
+        touch("BBBB");
+        assertEquals(8, this.pool.getTotalWeight());
+
+        touch("CCCC");
+        assertEquals(2, this.pool.getPooledObjectsCount());
+        assertEquals(8, this.pool.getTotalWeight());
+
+        touch("D");
+        assertEquals(3, this.pool.getPooledObjectsCount());
+        assertEquals(9, this.pool.getTotalWeight());
+    }
+
+
+    @Test
+    public void testPinnedNotEvicted() {
+        this.pool = buildPool(1, (key, pooledObject) -> 1);
+        this.pool.pin("AAA");
+
+        touch("AAA");
+        touch("BBB");
+        touch("CCC");
+        // The pinned pooled object alone reaches the maximal weight, so all other idle pooled objects are evicted.
+        assertTrue(this.pool.containsPooledObject("AAA"));
+        assertEquals(1, this.pool.getPooledObjectsCount());
+        assertEquals(2, this.pool.getEvictedCount());
+    }
+
+
+    @Test
+    public void testDisposeResetsWeight() {
+        this.pool = buildPool(10, (key, pooledObject) -> 3);
+
+        touch("AAA");
+        touch("BBB");
+        assertEquals(6, this.pool.getTotalWeight());
+
+        this.pool.dispose();
+        assertEquals(0, this.pool.getTotalWeight());
+        this.pool = null;
+    }
+}
@@ -0,0 +1,139 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolGetAllTest {
+
+    private static final int PARALLELISM = 4;
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    private ExecutorService executor;
+
+    // If not null, initializing pooled objects waits on this barrier.
+    private volatile CyclicBarrier initializeBarrier;
+
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(PARALLELISM);
+        this.pool = this.buildPool();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+
+        this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool() {
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(PooledCounter::new)
+                .setInitializer(pooledObject -> {
+                    if (pooledObject.getKey().equals("FAIL")) {
+                        throw new InitializationException(pooledObject.getKey());
+                    }
+                    CyclicBarrier barrier = this.initializeBarrier;
+                    if (barrier != null) {
+                        try {
+                            barrier.await(1, TimeUnit.SECONDS);
+                        } catch (Exception ex) {
+                            throw new InitializationException(pooledObject.getKey(), ex);
+                        }
+                    }
+                    pooledObject.initialize();
+                })
+                .setDisposer(PooledCounter::dispose)
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .setInitializeExecutor(this.executor)
+                .setInitializeParallelism(PARALLELISM)
+                .build();
+    }
+
+
+    @Test
+    public void testGetAllHitsAndMisses() {
+        SharedCounter hit = this.pool.get("BBB");
+
+        Map<String, SharedCounter> sharedObjects = this.pool.getAll(Arrays.asList("AAA", "BBB", "CCC", "AAA"));
+        assertEquals(Arrays.asList("AAA", "BBB", "CCC"), new ArrayList<>(sharedObjects.keySet()));
+        assertEquals(3, this.pool.getPooledObjectsCount());
+        assertEquals(1, this.pool.getSharedObjectsCount("AAA"));
+        assertEquals(2, this.pool.getSharedObjectsCount("BBB"));
+        assertEquals(1, this.pool.getSharedObjectsCount("CCC"));
+
+        assertEquals(1, hit.increment());
+        assertEquals(2, sharedObjects.get("BBB").increment());
+
+        hit.dispose();
+        for (SharedCounter sharedObject : sharedObjects.values()) {
+            sharedObject.dispose();
+        }
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetAllInitializesInParallel() {
+        // Each initialization waits until all of them are running, so it succeeds only if misses are initialized
+        // in parallel.
+        this.initializeBarrier = new CyclicBarrier(PARALLELISM);
+
+        List<String> keys = Arrays.asList("AAA", "BBB", "CCC", "DDD");
+        Map<String, SharedCounter> sharedObjects = this.pool.getAll(keys);
+        assertEquals(keys, new ArrayList<>(sharedObjects.keySet()));
+        assertEquals(PARALLELISM, this.pool.getPooledObjectsCount());
+
+        for (SharedCounter sharedObject : sharedObjects.values()) {
+            sharedObject.dispose();
+        }
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetAllFailureReleasesAll() {
+        SharedCounter hit = this.pool.get("BBB");
+
+        try {
+            this.pool.getAll(Arrays.asList("AAA", "BBB", "FAIL", "CCC", "DDD"));
+            fail("InitializationException expected");
+        } catch (InitializationException ex) {
+            // Expected.
+        }
+
+        // Only the shared object we are holding remains.
+        assertEquals(1, this.pool.getPooledObjectsCount());
+        assertEquals(1, this.pool.getSharedObjectsCount("BBB"));
+
+        hit.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+}
@@ -0,0 +1,26 @@
+package de.serdioa.common.pool;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.PooledCounterFactory;
+import de.serdioa.common.pool.sample.SharedCounter;
+
+
+/**
+ * Runs all tests for {@link ConcurrentSharedObjectPool} with all keys configured as hot keys, that is with entries
+ * keeping the number of shared objects in a striped counter.
+ */
+public class ConcurrentSharedObjectPoolHotKeyTest extends ConcurrentSharedObjectPoolTest {
+
+    @Override
+    protected ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool() {
+        PooledObjectFactory<String, PooledCounter> pof = new PooledCounterFactory();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .setHotKeys(key -> true)
+                .setHotKeyStripes(4)
+                .build();
+    }
+}
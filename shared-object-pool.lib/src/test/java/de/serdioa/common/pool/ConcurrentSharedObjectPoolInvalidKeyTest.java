@@ -0,0 +1,101 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolInvalidKeyTest {
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    // The number of attempts to create pooled objects.
+    private AtomicInteger createCount;
+
+
+    @Before
+    public void setUp() {
+        this.createCount = new AtomicInteger();
+        this.pool = this.buildPool();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool() {
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(key -> {
+                    this.createCount.incrementAndGet();
+                    if (key.startsWith("?")) {
+                        throw new InvalidKeyException(key);
+                    }
+                    return new PooledCounter(key);
+                })
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(PooledCounter::dispose)
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .setInvalidKeyCacheSize(10)
+                .build();
+    }
+
+
+    private InvalidKeyException getInvalid(String key) {
+        try {
+            this.pool.get(key);
+            fail("InvalidKeyException expected");
+            return null;
+        } catch (InvalidKeyException ex) {
+            return ex;
+        }
+    }
+
+
+    @Test
+    public void testInvalidKeyRejectedFromCache() {
+        InvalidKeyException first = getInvalid("?AAA");
+        InvalidKeyException second = getInvalid("?AAA");
+
+        // The second attempt is rejected with the cached exception, without calling the factory.
+        assertSame(first, second);
+        assertEquals(1, this.createCount.get());
+        assertEquals(0, this.pool.getPooledObjectsCount());
+
+        assertEquals(1, this.pool.getInvalidKeyCacheHitCount());
+        assertEquals(1, this.pool.getInvalidKeyCacheMissCount());
+    }
+
+
+    @Test
+    public void testValidKeyNotAffected() {
+        getInvalid("?AAA");
+
+        SharedCounter first = this.pool.get("BBB");
+        SharedCounter second = this.pool.get("BBB");
+        assertEquals(2, this.createCount.get());
+
+        // The cache is consulted only when creating a new pooled object.
+        assertEquals(0, this.pool.getInvalidKeyCacheHitCount());
+        assertEquals(2, this.pool.getInvalidKeyCacheMissCount());
+
+        first.dispose();
+        second.dispose();
+    }
+}
@@ -0,0 +1,192 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.serdioa.common.pool.sample.GeneratedSharedCounter;
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.PooledCounterFactory;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolLeaseTest {
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.dispose();
+            this.pool = null;
+        }
+    }
+
+
+    private void buildPool(long leaseTimeMillis) {
+        this.buildPool(leaseTimeMillis, LockingSharedObject.factory(SharedCounter.class));
+    }
+
+
+    private void buildPool(long leaseTimeMillis, SharedObjectFactory<PooledCounter, SharedCounter> sharedObjectFactory) {
+        this.pool = new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(new PooledCounterFactory())
+                .setSharedObjectFactory(sharedObjectFactory)
+                .setAbandonedTrackingMode(AbandonedTrackingMode.LEASE)
+                .setLeaseTimeMillis(leaseTimeMillis)
+                .build();
+    }
+
+
+    @Test
+    public void testDisposeDirect() throws InterruptedException {
+        this.buildPool(100);
+
+        SharedCounter first = this.pool.get("AAA");
+        SharedCounter second = this.pool.get("AAA");
+        assertEquals(2, this.pool.getSharedObjectsCount("AAA"));
+
+        first.dispose();
+        second.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+
+        // Leases of disposed shared objects do not expire.
+        Thread.sleep(300);
+        assertEquals(0, this.pool.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test
+    public void testExpired() throws InterruptedException {
+        this.buildPool(100);
+
+        // The shared objects are still reachable, but not used, so their leases expire independently of the GC.
+        List<SharedCounter> counters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            counters.add(this.pool.get("AAA"));
+        }
+        assertEquals(4, this.pool.getSharedObjectsCount("AAA"));
+
+        Thread.sleep(400);
+        assertEquals(0, this.pool.getPooledObjectsCount());
+        assertEquals(4, this.pool.getAbandonedSharedObjectsCount());
+
+        // Disposing of a shared object with an expired lease does not release it again.
+        counters.get(0).dispose();
+        assertEquals(0, this.pool.getSharedObjectsCount("AAA"));
+        assertEquals(4, this.pool.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test
+    public void testUseAfterExpiredLocking() throws InterruptedException {
+        this.buildPool(100, LockingSharedObject.factory(SharedCounter.class));
+        this.checkUseAfterExpired();
+    }
+
+
+    @Test
+    public void testUseAfterExpiredSynchronized() throws InterruptedException {
+        this.buildPool(100, SynchronizedSharedObject.factory(SharedCounter.class));
+        this.checkUseAfterExpired();
+    }
+
+
+    @Test
+    public void testUseAfterExpiredGenerated() throws InterruptedException {
+        this.buildPool(100, GeneratedSharedCounter.factory());
+        this.checkUseAfterExpired();
+    }
+
+
+    private void checkUseAfterExpired() throws InterruptedException {
+        SharedCounter counter = this.pool.get("AAA");
+        assertEquals(1, counter.increment());
+        assertFalse(counter.isDisposed());
+
+        // The lease expires, and the pooled object is disposed of.
+        Thread.sleep(400);
+        assertEquals(0, this.pool.getPooledObjectsCount());
+        assertEquals(1, this.pool.getAbandonedSharedObjectsCount());
+
+        // The shared object is released, so it is reported as disposed of, and rejects calls.
+        assertTrue(counter.isDisposed());
+        try {
+            counter.increment();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+        try {
+            counter.renewLease();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+
+        // Disposing of the shared object is still allowed, it just logs a warning.
+        counter.dispose();
+        assertEquals(1, this.pool.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test
+    public void testRenewedByUse() throws InterruptedException {
+        this.buildPool(100);
+
+        SharedCounter counter = this.pool.get("AAA");
+        for (int i = 0; i < 8; i++) {
+            Thread.sleep(50);
+            counter.increment();
+        }
+        assertEquals(1, this.pool.getSharedObjectsCount("AAA"));
+        assertEquals(0, this.pool.getAbandonedSharedObjectsCount());
+
+        counter.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testRenewLease() throws InterruptedException {
+        this.buildPool(100);
+
+        SharedCounter counter = this.pool.get("AAA");
+        for (int i = 0; i < 8; i++) {
+            Thread.sleep(50);
+            counter.renewLease();
+        }
+        assertEquals(1, this.pool.getSharedObjectsCount("AAA"));
+        assertEquals(0, this.pool.getAbandonedSharedObjectsCount());
+
+        counter.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testDisposePoolWithLeases() {
+        this.buildPool(100);
+
+        SharedCounter counter = this.pool.get("AAA");
+        this.pool.dispose();
+        assertEquals(0, this.pool.getPooledObjectsCount());
+
+        // Disposing of a shared object after the pool has been disposed of is allowed.
+        counter.dispose();
+        assertEquals(0, this.pool.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidLeaseTime() {
+        this.buildPool(0);
+    }
+}
@@ -0,0 +1,250 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolShutdownTest {
+
+    private static final int KEYS = 8;
+
+    private static final long DISPOSE_MILLIS = 100;
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    private ExecutorService shutdownExecutor;
+
+    // Disposing of pooled objects blocks until this latch is released.
+    private CountDownLatch disposeLatch;
+
+    // The number of disposed pooled objects.
+    private AtomicInteger disposeCount;
+
+    // Names of threads which have disposed of pooled objects.
+    private List<String> disposeThreads;
+
+    // Shutdown phases and abandoned keys reported to the statistics listener.
+    private List<ShutdownPhase> phases;
+    private List<Object> abandonedKeys;
+
+
+    @Before
+    public void setUp() {
+        this.shutdownExecutor = Executors.newFixedThreadPool(KEYS);
+        this.disposeLatch = new CountDownLatch(0);
+        this.disposeCount = new AtomicInteger();
+        this.disposeThreads = new CopyOnWriteArrayList<>();
+        this.phases = new CopyOnWriteArrayList<>();
+        this.abandonedKeys = new CopyOnWriteArrayList<>();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.disposeLatch.countDown();
+        if (this.pool != null) {
+            this.pool.dispose();
+            this.pool = null;
+        }
+
+        this.shutdownExecutor.shutdownNow();
+        this.shutdownExecutor = null;
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(int shutdownParallelism,
+            long shutdownDrainMillis, long shutdownTimeoutMillis) {
+        return this.buildPool(this.shutdownExecutor, shutdownParallelism, shutdownDrainMillis, shutdownTimeoutMillis);
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(Executor shutdownExecutor,
+            int shutdownParallelism, long shutdownDrainMillis, long shutdownTimeoutMillis) {
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(PooledCounter::new)
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(pooledObject -> {
+                    try {
+                        this.disposeLatch.await();
+                        Thread.sleep(DISPOSE_MILLIS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    this.disposeCount.incrementAndGet();
+                    this.disposeThreads.add(Thread.currentThread().getName());
+                    pooledObject.dispose();
+                })
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> newPool =
+                new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                        .setPooledObjectFactory(pof)
+                        .setSharedObjectFactory(sof)
+                        .setDisposeUnused(false)
+                        .setShutdownExecutor(shutdownExecutor)
+                        .setShutdownParallelism(shutdownParallelism)
+                        .setShutdownDrainMillis(shutdownDrainMillis)
+                        .setShutdownTimeoutMillis(shutdownTimeoutMillis)
+                        .build();
+        newPool.addSharedObjectPoolStatsListener(new ShutdownListener());
+        return newPool;
+    }
+
+
+    private void fill() {
+        for (int i = 0; i < KEYS; i++) {
+            this.pool.get("KEY-" + i).dispose();
+        }
+        assertEquals(KEYS, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testParallelDispose() {
+        this.pool = this.buildPool(KEYS, 0, 0);
+        this.fill();
+
+        long start = System.currentTimeMillis();
+        this.pool.dispose();
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(KEYS, this.disposeCount.get());
+        assertEquals(0, this.pool.getPooledObjectsCount());
+        assertTrue("Shutdown took " + duration + " ms", duration < KEYS * DISPOSE_MILLIS / 2);
+        assertEquals(Arrays.asList(ShutdownPhase.DISPOSING, ShutdownPhase.TERMINATED), this.phases);
+        assertEquals(ShutdownPhase.TERMINATED, this.pool.getShutdownPhase());
+        assertEquals(0, this.pool.getAbandonedOnShutdownCount());
+    }
+
+
+    @Test
+    public void testParallelDisposeOnOwnThreads() {
+        this.pool = this.buildPool(null, KEYS, 0, 0);
+        this.fill();
+
+        long start = System.currentTimeMillis();
+        this.pool.dispose();
+        long duration = System.currentTimeMillis() - start;
+
+        // The calling thread is one of workers, other workers run on threads started by the shutdown.
+        assertEquals(KEYS, this.disposeCount.get());
+        assertTrue("Shutdown took " + duration + " ms", duration < KEYS * DISPOSE_MILLIS / 2);
+        String threadPrefix = this.pool.getName() + "-shutdown-";
+        assertTrue(this.disposeThreads.stream().anyMatch(name -> name.startsWith(threadPrefix)));
+        assertTrue(this.disposeThreads.stream().noneMatch(name -> name.startsWith("ForkJoinPool")));
+    }
+
+
+    @Test
+    public void testDrain() throws Exception {
+        this.pool = this.buildPool(1, 5000, 0);
+        SharedCounter counter = this.pool.get("AAA");
+
+        Thread shutdownThread = new Thread(this.pool::dispose);
+        shutdownThread.start();
+        while (this.pool.getShutdownPhase() != ShutdownPhase.DRAINING) {
+            Thread.sleep(1);
+        }
+
+        // New shared objects are not provided while draining.
+        try {
+            this.pool.get("BBB");
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+
+        // The shutdown continues as soon as the client disposed of the shared object.
+        long start = System.currentTimeMillis();
+        counter.dispose();
+        shutdownThread.join(2000);
+        long duration = System.currentTimeMillis() - start;
+
+        assertTrue("Shutdown took " + duration + " ms after draining", duration < 1000);
+        assertEquals(1, this.disposeCount.get());
+        assertEquals(Arrays.asList(ShutdownPhase.DRAINING, ShutdownPhase.DISPOSING, ShutdownPhase.TERMINATED),
+                this.phases);
+    }
+
+
+    @Test
+    public void testDrainDeadline() {
+        this.pool = this.buildPool(1, 100, 0);
+        this.pool.get("AAA");
+
+        // The client never disposes of the shared object, the pooled object is disposed of after the drain deadline.
+        this.pool.dispose();
+        assertEquals(1, this.disposeCount.get());
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testShutdownDeadline() {
+        this.disposeLatch = new CountDownLatch(1);
+        this.pool = this.buildPool(2, 0, 200);
+        this.fill();
+
+        long start = System.currentTimeMillis();
+        this.pool.dispose();
+        long duration = System.currentTimeMillis() - start;
+
+        assertTrue("Shutdown took " + duration + " ms", duration < 1000);
+        assertEquals(0, this.pool.getPooledObjectsCount());
+        assertEquals(KEYS, this.pool.getAbandonedOnShutdownCount());
+        assertEquals(KEYS, this.abandonedKeys.size());
+        assertEquals(ShutdownPhase.TERMINATED, this.pool.getShutdownPhase());
+    }
+
+
+    private class ShutdownListener implements SharedObjectPoolStatsListener {
+
+        @Override
+        public void onSharedObjectGet(long durationNanos, boolean hit) {
+        }
+
+
+        @Override
+        public void onPooledObjectCreated(long durationNanos, boolean success) {
+        }
+
+
+        @Override
+        public void onPooledObjectInitialized(long durationNanos, boolean success) {
+        }
+
+
+        @Override
+        public void onPooledObjectDisposed(long durationNanos, boolean success) {
+        }
+
+
+        @Override
+        public void onShutdownPhase(ShutdownPhase phase, int pooledObjectsCount) {
+            ConcurrentSharedObjectPoolShutdownTest.this.phases.add(phase);
+        }
+
+
+        @Override
+        public void onPooledObjectAbandoned(Object key) {
+            ConcurrentSharedObjectPoolShutdownTest.this.abandonedKeys.add(key);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package de.serdioa.common.pool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import de.serdioa.common.pool.sample.PooledCounter;
 import de.serdioa.common.pool.sample.PooledCounterFactory;
@@ -128,4 +133,44 @@ public class ConcurrentSharedObjectPoolTest extends AbstractSharedObjectPoolTest
         assertEquals(0, this.pool.getSharedObjectsCount("BBB"));
         assertEquals(0, this.pool.getPooledObjectsCount());
     }
+
+
+    // Concurrently get and dispose of shared objects with the same key from multiple threads, so that the entry
+    // is permanently disposed of and re-created while other threads acquire shared objects from it.
+    // A shared object shall never be backed by a pooled object which is already disposed of.
+    @Test
+    public void testConcurrentGetAndDispose() throws InterruptedException {
+        final int threadCount = 8;
+        final int iterations = 10_000;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; ++i) {
+            Thread thread = new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int j = 0; j < iterations; ++j) {
+                        SharedCounter cnt = this.pool.get("AAA");
+                        // Throws an exception if the pooled object is already disposed of.
+                        cnt.increment();
+                        cnt.dispose();
+                    }
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(0, this.pool.getSharedObjectsCount("AAA"));
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
 }
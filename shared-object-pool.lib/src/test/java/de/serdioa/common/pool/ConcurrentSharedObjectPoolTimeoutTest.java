@@ -0,0 +1,19 @@
+package de.serdioa.common.pool;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+
+
+public class ConcurrentSharedObjectPoolTimeoutTest extends AbstractSharedObjectPoolTimeoutTest {
+
+    @Override
+    protected ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(
+            PooledObjectFactory<String, PooledCounter> pooledObjectFactory) {
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pooledObjectFactory)
+                .setSharedObjectFactory(sof)
+                .build();
+    }
+}
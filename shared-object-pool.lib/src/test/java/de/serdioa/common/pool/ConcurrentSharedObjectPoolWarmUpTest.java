@@ -0,0 +1,149 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentSharedObjectPoolWarmUpTest {
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool;
+
+    private ExecutorService executor;
+
+    // The number of initialized pooled objects.
+    private AtomicInteger initializeCount;
+
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(2);
+        this.initializeCount = new AtomicInteger();
+        this.pool = this.buildPool();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+
+        this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool() {
+        PooledObjectFactory<String, PooledCounter> pof = new DefaultPooledObjectFactory.Builder<String, PooledCounter>()
+                .setCreator(PooledCounter::new)
+                .setInitializer(pooledObject -> {
+                    if (pooledObject.getKey().equals("FAIL")) {
+                        throw new InitializationException(pooledObject.getKey());
+                    }
+                    this.initializeCount.incrementAndGet();
+                    pooledObject.initialize();
+                })
+                .setDisposer(PooledCounter::dispose)
+                .build();
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pof)
+                .setSharedObjectFactory(sof)
+                .setInitializeExecutor(this.executor)
+                .build();
+    }
+
+
+    @Test
+    public void testWarmUpPinned() throws Exception {
+        for (String key : Arrays.asList("AAA", "BBB", "CCC")) {
+            this.pool.pin(key);
+        }
+
+        WarmUpFuture progress = this.pool.warmUp(Arrays.asList("AAA", "BBB", "CCC", "AAA"), 2);
+        progress.get(1, TimeUnit.SECONDS);
+        assertEquals(3, progress.getKeysCount());
+        assertEquals(3, progress.getProcessedCount());
+        assertEquals(0, progress.getFailedCount());
+
+        // Pinned pooled objects are kept although they do not provide any shared objects.
+        assertEquals(3, this.pool.getPooledObjectsCount());
+        assertEquals(3, this.pool.getUnusedPooledObjectsCount());
+
+        // Getting a shared object does not initialize the pooled object again.
+        SharedCounter cnt = this.pool.get("AAA");
+        cnt.dispose();
+        assertEquals(3, this.initializeCount.get());
+        assertEquals(3, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testWarmUpNotPinned() throws Exception {
+        this.pool.warmUp(Arrays.asList("AAA", "BBB")).get(1, TimeUnit.SECONDS);
+
+        // Pooled objects which are not pinned are disposed of as usual.
+        assertEquals(2, this.initializeCount.get());
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testWarmUpFailed() throws Exception {
+        this.pool.pin("AAA");
+        this.pool.pin("FAIL");
+
+        WarmUpFuture progress = this.pool.warmUp(Arrays.asList("AAA", "FAIL"), 2);
+        try {
+            progress.get(1, TimeUnit.SECONDS);
+            fail("InitializationException expected");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof InitializationException);
+        }
+        assertEquals(2, progress.getProcessedCount());
+        assertEquals(1, progress.getFailedCount());
+
+        // Pooled objects initialized successfully remain in the pool.
+        assertTrue(this.pool.containsPooledObject("AAA"));
+        assertFalse(this.pool.containsPooledObject("FAIL"));
+    }
+
+
+    @Test
+    public void testWarmUpEmpty() {
+        WarmUpFuture progress = this.pool.warmUp(Arrays.asList(), 2);
+        assertTrue(progress.isDone());
+        assertFalse(progress.isCompletedExceptionally());
+    }
+
+
+    @Test
+    public void testPinUnpin() {
+        this.pool.pin("AAA");
+        assertTrue(this.pool.isPinned("AAA"));
+
+        SharedCounter cnt = this.pool.get("AAA");
+        cnt.dispose();
+        assertEquals(1, this.pool.getPooledObjectsCount());
+
+        // Unpinning disposes of the unused pooled object.
+        this.pool.unpin("AAA");
+        assertFalse(this.pool.isPinned("AAA"));
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+}
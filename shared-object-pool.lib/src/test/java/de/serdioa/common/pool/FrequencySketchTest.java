@@ -0,0 +1,48 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class FrequencySketchTest {
+
+    @Test
+    public void testIncrement() {
+        FrequencySketch<String> sketch = new FrequencySketch<>(100);
+        assertEquals(0, sketch.frequency("AAA"));
+
+        sketch.increment("AAA");
+        sketch.increment("AAA");
+        sketch.increment("BBB");
+        assertEquals(2, sketch.frequency("AAA"));
+        assertEquals(1, sketch.frequency("BBB"));
+    }
+
+
+    @Test
+    public void testMaxFrequency() {
+        FrequencySketch<String> sketch = new FrequencySketch<>(100);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("AAA");
+        }
+        assertEquals(15, sketch.frequency("AAA"));
+    }
+
+
+    @Test
+    public void testAging() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(16);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(-1);
+        }
+        int before = sketch.frequency(-1);
+
+        // Many increments of other keys halve all counters.
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment(i);
+        }
+        assertTrue(sketch.frequency(-1) < before);
+    }
+}
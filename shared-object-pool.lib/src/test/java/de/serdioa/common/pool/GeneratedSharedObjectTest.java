@@ -0,0 +1,17 @@
+package de.serdioa.common.pool;
+
+import de.serdioa.common.pool.sample.GeneratedSharedCounter;
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+
+
+/**
+ * Unit tests for a {@link SharedCounter} generated at compile time, see {@link GenerateSharedObject}.
+ */
+public class GeneratedSharedObjectTest extends AbstractSharedObjectTest {
+
+    @Override
+    protected SharedObjectFactory<PooledCounter, SharedCounter> sharedObjectFactory() {
+        return GeneratedSharedCounter.factory();
+    }
+}
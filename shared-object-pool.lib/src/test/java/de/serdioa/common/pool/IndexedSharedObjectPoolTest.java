@@ -0,0 +1,218 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Test;
+
+
+public class IndexedSharedObjectPoolTest {
+
+    private enum Currency {
+        EUR, USD, CHF
+    }
+
+    private IndexedSharedObjectPool<?, SharedCounter, PooledCounter> pool;
+
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.dispose();
+            this.pool = null;
+        }
+    }
+
+
+    private <K> IndexedSharedObjectPool<K, SharedCounter, PooledCounter> buildPool(
+            IndexedSharedObjectPool.Builder<K, SharedCounter, PooledCounter> builder, long idleDisposeTimeMillis) {
+        builder.setPooledObjectFactory(new DefaultPooledObjectFactory.Builder<K, PooledCounter>()
+                .setCreator(key -> new PooledCounter(String.valueOf(key)))
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(PooledCounter::dispose)
+                .build())
+                .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class))
+                .setIdleDisposeTimeMillis(idleDisposeTimeMillis)
+                .setDisposeThreads(1);
+
+        IndexedSharedObjectPool<K, SharedCounter, PooledCounter> newPool = builder.build();
+        this.pool = newPool;
+        return newPool;
+    }
+
+
+    @Test
+    public void testGetEnum() {
+        IndexedSharedObjectPool<Currency, SharedCounter, PooledCounter> enumPool =
+                this.buildPool(IndexedSharedObjectPool.Builder.forEnum(Currency.class), 0);
+        assertEquals(3, enumPool.getKeyCount());
+
+        SharedCounter first = enumPool.get(Currency.USD);
+        SharedCounter second = enumPool.get(Currency.USD);
+        assertEquals(1, first.increment());
+        assertEquals(2, second.increment());
+        assertTrue(enumPool.containsPooledObject(Currency.USD));
+        assertFalse(enumPool.containsPooledObject(Currency.EUR));
+        assertEquals(1, enumPool.getPooledObjectsCount());
+
+        first.dispose();
+        second.dispose();
+        assertFalse(enumPool.containsPooledObject(Currency.USD));
+        assertEquals(0, enumPool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testSlowCreate() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IndexedSharedObjectPool.Builder<Currency, SharedCounter, PooledCounter> builder =
+                IndexedSharedObjectPool.Builder.forEnum(Currency.class);
+        builder.setPooledObjectFactory(new DefaultPooledObjectFactory.Builder<Currency, PooledCounter>()
+                .setCreator(key -> {
+                    if (key == Currency.EUR) {
+                        creating.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return new PooledCounter(key.name());
+                })
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(PooledCounter::dispose)
+                .build())
+                .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class));
+        IndexedSharedObjectPool<Currency, SharedCounter, PooledCounter> enumPool = builder.build();
+        this.pool = enumPool;
+
+        CompletableFuture<SharedCounter> slow = CompletableFuture.supplyAsync(() -> enumPool.get(Currency.EUR));
+        assertTrue(creating.await(1, TimeUnit.SECONDS));
+
+        // While the pooled object for EUR is being created, pooled objects for other keys are created and disposed of.
+        SharedCounter usd = enumPool.get(Currency.USD);
+        assertEquals(1, usd.increment());
+        usd.dispose();
+        assertFalse(enumPool.containsPooledObject(Currency.USD));
+
+        release.countDown();
+        SharedCounter eur = slow.get(1, TimeUnit.SECONDS);
+        assertEquals(1, eur.increment());
+        eur.dispose();
+    }
+
+
+    @Test
+    public void testConcurrentCreate() throws Exception {
+        int threads = 8;
+        AtomicInteger createCount = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        IndexedSharedObjectPool.Builder<Currency, SharedCounter, PooledCounter> builder =
+                IndexedSharedObjectPool.Builder.forEnum(Currency.class);
+        builder.setPooledObjectFactory(new DefaultPooledObjectFactory.Builder<Currency, PooledCounter>()
+                .setCreator(key -> {
+                    createCount.incrementAndGet();
+                    try {
+                        // Keep the creation slow, so that all threads race for the absent key.
+                        Thread.sleep(50);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new PooledCounter(key.name());
+                })
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(PooledCounter::dispose)
+                .build())
+                .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class));
+        IndexedSharedObjectPool<Currency, SharedCounter, PooledCounter> enumPool = builder.build();
+        this.pool = enumPool;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SharedCounter>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return enumPool.get(Currency.EUR);
+                }));
+            }
+            start.countDown();
+
+            List<SharedCounter> counters = new ArrayList<>();
+            for (Future<SharedCounter> future : futures) {
+                counters.add(future.get(1, TimeUnit.SECONDS));
+            }
+
+            // The pooled object is created once, and is shared by all threads.
+            assertEquals(1, createCount.get());
+            for (int i = 0; i < threads; i++) {
+                assertEquals(i + 1, counters.get(i).increment());
+                counters.get(i).dispose();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testGetIndexOutOfRange() {
+        List<String> symbols = List.of("EURUSD", "USDCHF");
+        IndexedSharedObjectPool<String, SharedCounter, PooledCounter> symbolPool = this.buildPool(
+                new IndexedSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                        .setKeyIndex(symbols::indexOf)
+                        .setKeyCount(symbols.size()), 0);
+
+        SharedCounter counter = symbolPool.get("USDCHF");
+        assertEquals(1, counter.increment());
+        counter.dispose();
+
+        try {
+            symbolPool.get("GBPUSD");
+            fail("InvalidKeyException expected");
+        } catch (InvalidKeyException ex) {
+            // Expected.
+        }
+        assertFalse(symbolPool.containsPooledObject("GBPUSD"));
+    }
+
+
+    @Test
+    public void testIdleDispose() throws Exception {
+        IndexedSharedObjectPool<Currency, SharedCounter, PooledCounter> enumPool =
+                this.buildPool(IndexedSharedObjectPool.Builder.forEnum(Currency.class), 100);
+
+        SharedCounter first = enumPool.get(Currency.CHF);
+        assertEquals(1, first.increment());
+        first.dispose();
+
+        // The idle pooled object is re-used before the idle time expires.
+        SharedCounter second = enumPool.get(Currency.CHF);
+        assertEquals(2, second.increment());
+        second.dispose();
+        assertTrue(enumPool.containsPooledObject(Currency.CHF));
+
+        // The idle pooled object is disposed of after the idle time expires.
+        long deadline = System.currentTimeMillis() + 2000;
+        while (enumPool.containsPooledObject(Currency.CHF) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(enumPool.containsPooledObject(Currency.CHF));
+    }
+}
@@ -0,0 +1,119 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class IntSharedObjectPoolTest {
+
+    private IntSharedObjectPool<SharedCounter, PooledCounter> pool;
+
+    // The number of hits reported to the statistics listener.
+    private int hits;
+
+
+    @Before
+    public void setUp() {
+        IntSharedObjectPool.Builder<SharedCounter, PooledCounter> builder = new IntSharedObjectPool.Builder<>();
+        builder.setPooledObjectFactory(new DefaultPooledObjectFactory.Builder<Integer, PooledCounter>()
+                .setCreator(key -> new PooledCounter(String.valueOf(key)))
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(PooledCounter::dispose)
+                .build())
+                .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class));
+        this.pool = builder.build();
+        this.pool.addSharedObjectPoolStatsListener(new HitListener());
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+    }
+
+
+    @Test
+    public void testGet() {
+        // The first call creates the pooled object.
+        SharedCounter first = this.pool.get(1);
+        assertEquals(1, first.increment());
+        assertTrue(this.pool.containsPooledObject(1));
+        assertEquals(0, this.hits);
+
+        // The second call finds the active pooled object.
+        SharedCounter second = this.pool.get(1);
+        assertEquals(2, second.increment());
+        assertEquals(1, this.hits);
+        assertEquals(2, this.pool.getSharedObjectsCount(1));
+
+        // Primitive and boxed keys access the same pooled object.
+        SharedCounter third = this.pool.get(Integer.valueOf(1));
+        assertEquals(3, third.increment());
+        assertEquals(1, this.pool.getPooledObjectsCount());
+
+        first.dispose();
+        second.dispose();
+        third.dispose();
+        assertFalse(this.pool.containsPooledObject(1));
+        assertEquals(0, this.pool.getPooledObjectsCount());
+    }
+
+
+    @Test
+    public void testGetAfterDispose() {
+        // A pooled object which has been disposed of is created again.
+        SharedCounter first = this.pool.get(-7);
+        assertEquals(1, first.increment());
+        first.dispose();
+
+        SharedCounter second = this.pool.get(-7);
+        assertEquals(1, second.increment());
+        second.dispose();
+    }
+
+
+    @Test
+    public void testManyKeys() {
+        for (int i = 0; i < 1000; i++) {
+            this.pool.get(i);
+        }
+        assertEquals(1000, this.pool.getPooledObjectsCount());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1, this.pool.getSharedObjectsCount(i));
+        }
+    }
+
+
+    private class HitListener implements SharedObjectPoolStatsListener {
+
+        @Override
+        public void onSharedObjectGet(long durationNanos, boolean hit) {
+            if (hit) {
+                IntSharedObjectPoolTest.this.hits++;
+            }
+        }
+
+
+        @Override
+        public void onPooledObjectCreated(long durationNanos, boolean success) {
+        }
+
+
+        @Override
+        public void onPooledObjectInitialized(long durationNanos, boolean success) {
+        }
+
+
+        @Override
+        public void onPooledObjectDisposed(long durationNanos, boolean success) {
+        }
+    }
+}
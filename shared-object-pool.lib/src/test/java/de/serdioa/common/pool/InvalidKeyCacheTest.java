@@ -0,0 +1,55 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+public class InvalidKeyCacheTest {
+
+    @Test
+    public void testGetPut() {
+        InvalidKeyCache<String> cache = new InvalidKeyCache<>(10, 1, TimeUnit.MINUTES);
+        InvalidKeyException ex = new InvalidKeyException("AAA");
+
+        assertNull(cache.get("AAA"));
+        cache.put("AAA", ex);
+        assertSame(ex, cache.get("AAA"));
+        assertNull(cache.get("BBB"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+
+    @Test
+    public void testEvictOldest() {
+        InvalidKeyCache<String> cache = new InvalidKeyCache<>(2, 1, TimeUnit.MINUTES);
+        cache.put("AAA", new InvalidKeyException("AAA"));
+        cache.put("BBB", new InvalidKeyException("BBB"));
+        cache.put("CCC", new InvalidKeyException("CCC"));
+
+        assertNull(cache.get("AAA"));
+        assertEquals("Invalid key BBB", cache.get("BBB").getMessage());
+        assertEquals("Invalid key CCC", cache.get("CCC").getMessage());
+    }
+
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        InvalidKeyCache<String> cache = new InvalidKeyCache<>(10, 20, TimeUnit.MILLISECONDS);
+        cache.put("AAA", new InvalidKeyException("AAA"));
+
+        Thread.sleep(50);
+        assertNull(cache.get("AAA"));
+
+        // The key found to be invalid again is remembered again.
+        InvalidKeyException ex = new InvalidKeyException("AAA");
+        cache.put("AAA", ex);
+        assertSame(ex, cache.get("AAA"));
+    }
+}
@@ -0,0 +1,21 @@
+package de.serdioa.common.pool;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+
+
+public class LockingSharedObjectPoolCircuitBreakerTest extends AbstractSharedObjectPoolCircuitBreakerTest {
+
+    @Override
+    protected LockingSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(
+            PooledObjectFactory<String, PooledCounter> pooledObjectFactory) {
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = LockingSharedObject.factory(SharedCounter.class);
+
+        return new LockingSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pooledObjectFactory)
+                .setSharedObjectFactory(sof)
+                .setCircuitBreakerFailureThreshold(FAILURE_THRESHOLD)
+                .setCircuitBreakerBackoffMillis(BACKOFF_MILLIS)
+                .build();
+    }
+}
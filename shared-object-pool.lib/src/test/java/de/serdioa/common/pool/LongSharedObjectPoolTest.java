@@ -0,0 +1,59 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class LongSharedObjectPoolTest {
+
+    private LongSharedObjectPool<SharedCounter, PooledCounter> pool;
+
+
+    @Before
+    public void setUp() {
+        LongSharedObjectPool.Builder<SharedCounter, PooledCounter> builder = new LongSharedObjectPool.Builder<>();
+        builder.setPooledObjectFactory(new DefaultPooledObjectFactory.Builder<Long, PooledCounter>()
+                .setCreator(key -> new PooledCounter(String.valueOf(key)))
+                .setInitializer(PooledCounter::initialize)
+                .setDisposer(PooledCounter::dispose)
+                .build())
+                .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class));
+        this.pool = builder.build();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.pool.dispose();
+        this.pool = null;
+    }
+
+
+    @Test
+    public void testGet() {
+        long key = Long.MAX_VALUE - 1;
+
+        SharedCounter first = this.pool.get(key);
+        assertEquals(1, first.increment());
+
+        // Primitive and boxed keys access the same pooled object.
+        SharedCounter second = this.pool.get(key);
+        SharedCounter third = this.pool.get(Long.valueOf(key));
+        assertEquals(2, second.increment());
+        assertEquals(3, third.increment());
+        assertTrue(this.pool.containsPooledObject(key));
+        assertEquals(1, this.pool.getPooledObjectsCount());
+
+        first.dispose();
+        second.dispose();
+        third.dispose();
+        assertFalse(this.pool.containsPooledObject(key));
+    }
+}
@@ -1,6 +1,8 @@
 package de.serdioa.common.pool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -65,4 +67,34 @@ public class SecurityManagerStackTraceProviderTest extends AbstractStackTracePro
         }
         assertEquals(this.getClass().getName(), elements[3].getClassName());
     }
+
+
+    @Test
+    public void testCallSitesNotInterned() {
+        StackTrace[] stackTraces = new StackTrace[2];
+        for (int i = 0; i < stackTraces.length; ++i) {
+            stackTraces[i] = this.test_1(0);
+        }
+
+        assertNotSame(stackTraces[0], stackTraces[1]);
+    }
+
+
+    @Test
+    public void testCallSitesInterned() {
+        this.stackTraceProvider = new SecurityManagerStackTraceProvider(true);
+
+        // Stack traces captured at the same call site are the same instance.
+        StackTrace[] stackTraces = new StackTrace[2];
+        for (int i = 0; i < stackTraces.length; ++i) {
+            stackTraces[i] = this.test_1(0);
+        }
+        assertSame(stackTraces[0], stackTraces[1]);
+
+        // Stack traces captured at different call sites are different. Method names are not available from this stack
+        // trace provider, so call sites differ only if classes in the call stack differ.
+        StackTrace other = this.test_2(0);
+        assertNotSame(stackTraces[0], other);
+        assertEquals(this.getClass().getSuperclass().getName(), other.getElements()[1].getClassName());
+    }
 }
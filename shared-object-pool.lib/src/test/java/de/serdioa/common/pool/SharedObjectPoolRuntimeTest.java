@@ -0,0 +1,225 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.PooledCounterFactory;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class SharedObjectPoolRuntimeTest {
+
+    // Each test uses a runtime with a unique name, so that threads of runtimes from previous tests which are still
+    // stopping are not counted.
+    private static final AtomicInteger NAME_COUNTER = new AtomicInteger();
+
+    private String name;
+    private SharedObjectPoolRuntime runtime;
+    private final List<ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter>> pools = new ArrayList<>();
+
+
+    @Before
+    public void setUp() {
+        this.name = "SharedObjectPoolRuntimeTest" + NAME_COUNTER.getAndIncrement();
+        this.runtime = new SharedObjectPoolRuntime.Builder()
+                .setName(this.name)
+                .setReaperThreads(2)
+                .build();
+    }
+
+
+    @After
+    public void tearDown() {
+        for (ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool : this.pools) {
+            pool.dispose();
+        }
+        this.pools.clear();
+        this.runtime.dispose();
+    }
+
+
+    private ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(AbandonedTrackingMode mode,
+            long idleDisposeTimeMillis) {
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool =
+                new ConcurrentSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                        .setPooledObjectFactory(new PooledCounterFactory())
+                        .setSharedObjectFactory(LockingSharedObject.factory(SharedCounter.class))
+                        .setAbandonedTrackingMode(mode)
+                        .setIdleDisposeTimeMillis(idleDisposeTimeMillis)
+                        .setRuntime(this.runtime)
+                        .build();
+        this.pools.add(pool);
+        return pool;
+    }
+
+
+    private int countThreads(String suffix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(this.name + suffix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    private void forceGc() {
+        Object obj = new Object();
+        WeakReference<Object> ref = new WeakReference<>(obj);
+        obj = null;
+
+        while (ref.get() != null) {
+            System.gc();
+        }
+    }
+
+
+    @Test
+    public void testLazyStart() {
+        assertEquals(0, this.countThreads("-"));
+
+        // A pool which neither tracks abandoned shared objects, nor disposes of idle pooled objects asynchronously,
+        // does not require any threads.
+        this.buildPool(AbandonedTrackingMode.OFF, 0);
+        assertEquals(0, this.countThreads("-"));
+
+        this.buildPool(AbandonedTrackingMode.FULL, 0);
+        assertEquals(2, this.countThreads("-reaper-"));
+        assertEquals(0, this.countThreads("-disposer-"));
+
+        // Pools share reaper threads.
+        this.buildPool(AbandonedTrackingMode.FULL, 0);
+        assertEquals(2, this.countThreads("-reaper-"));
+    }
+
+
+    @Test
+    public void testSharedReapers() throws InterruptedException {
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> first =
+                this.buildPool(AbandonedTrackingMode.FULL, 0);
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> second =
+                this.buildPool(AbandonedTrackingMode.FULL, 0);
+
+        // Get shared objects from both pools, and "forget" to dispose of them.
+        List<SharedCounter> counters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            counters.add(first.get("AAA"));
+            counters.add(second.get("BBB"));
+        }
+        assertEquals(4, first.getSharedObjectsCount("AAA"));
+        assertEquals(4, second.getSharedObjectsCount("BBB"));
+
+        // Give JVM some time to dispose of tracked objects via phantom references.
+        counters = null;
+        forceGc();
+        Thread.sleep(500);
+
+        assertEquals(0, first.getPooledObjectsCount());
+        assertEquals(4, first.getAbandonedSharedObjectsCount());
+        assertEquals(0, second.getPooledObjectsCount());
+        assertEquals(4, second.getAbandonedSharedObjectsCount());
+    }
+
+
+    @Test
+    public void testSharedDisposeScheduler() throws InterruptedException {
+        // Pools sharing a runtime do not require own dispose threads.
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> first =
+                this.buildPool(AbandonedTrackingMode.OFF, 100);
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> second =
+                this.buildPool(AbandonedTrackingMode.OFF, 100);
+
+        first.get("AAA").dispose();
+        second.get("BBB").dispose();
+        assertEquals(1, first.getPooledObjectsCount());
+        assertEquals(1, second.getPooledObjectsCount());
+
+        Thread.sleep(500);
+        assertEquals(0, first.getPooledObjectsCount());
+        assertEquals(0, second.getPooledObjectsCount());
+        assertEquals(1, this.countThreads("-disposer-"));
+    }
+
+
+    @Test
+    public void testDisposePoolKeepsRuntime() throws InterruptedException {
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> first =
+                this.buildPool(AbandonedTrackingMode.FULL, 100);
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> second =
+                this.buildPool(AbandonedTrackingMode.FULL, 100);
+
+        first.get("AAA").dispose();
+        first.dispose();
+
+        // The runtime still disposes of idle pooled objects of other pools.
+        second.get("BBB").dispose();
+        assertEquals(1, second.getPooledObjectsCount());
+        Thread.sleep(500);
+        assertEquals(0, second.getPooledObjectsCount());
+        assertEquals(2, this.countThreads("-reaper-"));
+    }
+
+
+    @Test
+    public void testReapBatch() throws InterruptedException {
+        ConcurrentSharedObjectPool<String, SharedCounter, PooledCounter> pool =
+                this.buildPool(AbandonedTrackingMode.FULL, 0);
+
+        // Abandon many shared objects of few pooled objects at once, so that reaper threads drain them in batches.
+        List<SharedCounter> counters = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            counters.add(pool.get("K" + (i % 4)));
+        }
+        assertEquals(4, pool.getPooledObjectsCount());
+        assertEquals(10_000, pool.getSharedObjectsCount());
+
+        // Give JVM some time to dispose of tracked objects via phantom references.
+        counters = null;
+        forceGc();
+        Thread.sleep(500);
+
+        assertEquals(0, pool.getPooledObjectsCount());
+        assertEquals(10_000, pool.getAbandonedSharedObjectsCount());
+        assertEquals(0, pool.getReaperBacklog());
+        assertEquals(0, pool.getReaperLagMillis());
+    }
+
+
+    @Test
+    public void testDisposeRuntime() throws InterruptedException {
+        this.buildPool(AbandonedTrackingMode.FULL, 100);
+        this.runtime.dispose();
+
+        // Give threads some time to stop.
+        Thread.sleep(100);
+        assertEquals(0, this.countThreads("-"));
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildPoolOnDisposedRuntime() {
+        this.runtime.dispose();
+        this.buildPool(AbandonedTrackingMode.FULL, 0);
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidReaperThreads() {
+        new SharedObjectPoolRuntime.Builder().setReaperThreads(0).build();
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidDisposeThreads() {
+        new SharedObjectPoolRuntime.Builder().setDisposeThreads(0).build();
+    }
+}
@@ -0,0 +1,129 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class StackWalkerStackTraceProviderTest extends AbstractStackTraceProviderTest {
+
+    @Override
+    protected StackTraceProvider buildStackTraceProvider() {
+        return new StackWalkerStackTraceProvider();
+    }
+
+
+    @Test
+    public void testProvide() {
+        StackTrace stackTrace = this.stackTraceProvider.provide();
+        StackTraceElement[] elements = stackTrace.getElements();
+
+        assertTrue(elements.length > 0);
+        assertEquals(this.getClass().getName(), elements[0].getClassName());
+        assertEquals("testProvide", elements[0].getMethodName());
+    }
+
+
+    @Test
+    public void testProvideDeep() {
+        StackTrace stackTrace = this.test_5(0);
+        StackTraceElement[] elements = stackTrace.getElements();
+
+        // Expected:
+        // * AbstractStackTraceProviderTest.test_1()
+        // * AbstractStackTraceProviderTest.test_2()
+        // * AbstractStackTraceProviderTest.test_3()
+        // * AbstractStackTraceProviderTest.test_4()
+        // * AbstractStackTraceProviderTest.test_5()
+        // * this method,
+        // * the rest depends on JUnit framework and is not tested.
+        assertTrue(elements.length > 5);
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(this.getClass().getSuperclass().getName(), elements[i].getClassName());
+            assertEquals("test_" + (i + 1), elements[i].getMethodName());
+        }
+        assertEquals(this.getClass().getName(), elements[5].getClassName());
+        assertEquals("testProvideDeep", elements[5].getMethodName());
+    }
+
+
+    @Test
+    public void testProvideDeepSkip() {
+        StackTrace stackTrace = this.test_5(2);
+        StackTraceElement[] elements = stackTrace.getElements();
+
+        // Expected:
+        // * AbstractStackTraceProviderTest.test_1() - skipped due to argument skipFrames = 2
+        // * AbstractStackTraceProviderTest.test_2() - skipped due to argument skipFrames = 2
+        // * AbstractStackTraceProviderTest.test_3()
+        // * AbstractStackTraceProviderTest.test_4()
+        // * AbstractStackTraceProviderTest.test_5()
+        // * this method,
+        // * the rest depends on JUnit framework and is not tested.
+        assertTrue(elements.length > 3);
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(this.getClass().getSuperclass().getName(), elements[i].getClassName());
+            assertEquals("test_" + (i + 3), elements[i].getMethodName());
+        }
+        assertEquals(this.getClass().getName(), elements[3].getClassName());
+        assertEquals("testProvideDeepSkip", elements[3].getMethodName());
+    }
+
+
+    @Test
+    public void testMaxFrames() {
+        this.stackTraceProvider = new StackWalkerStackTraceProvider(2);
+        StackTrace stackTrace = this.test_5(1);
+        StackTraceElement[] elements = stackTrace.getElements();
+
+        // Only 2 frames are captured, the frame of AbstractStackTraceProviderTest.test_1() is skipped.
+        assertEquals(2, elements.length);
+        assertEquals("test_2", elements[0].getMethodName());
+        assertEquals("test_3", elements[1].getMethodName());
+
+        // The string representation is built from the same frames.
+        String str = stackTrace.toString();
+        assertTrue(str.contains("test_2"));
+        assertTrue(str.contains("test_3"));
+        assertTrue(!str.contains("test_4"));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxFrames() {
+        new StackWalkerStackTraceProvider(0);
+    }
+
+
+    @Test
+    public void testCallSitesNotInterned() {
+        StackTrace[] stackTraces = new StackTrace[2];
+        for (int i = 0; i < stackTraces.length; ++i) {
+            stackTraces[i] = this.test_1(0);
+        }
+
+        assertNotSame(stackTraces[0], stackTraces[1]);
+    }
+
+
+    @Test
+    public void testCallSitesInterned() {
+        this.stackTraceProvider = new StackWalkerStackTraceProvider(StackWalkerStackTraceProvider.DEFAULT_MAX_FRAMES, true);
+
+        // Stack traces captured at the same call site are the same instance.
+        StackTrace[] stackTraces = new StackTrace[2];
+        for (int i = 0; i < stackTraces.length; ++i) {
+            stackTraces[i] = this.test_1(0);
+        }
+        assertSame(stackTraces[0], stackTraces[1]);
+
+        // Stack traces captured at different call sites are different.
+        StackTrace other = this.test_2(0);
+        assertNotSame(stackTraces[0], other);
+        assertEquals("test_1", other.getElements()[0].getMethodName());
+        assertEquals("test_2", other.getElements()[1].getMethodName());
+    }
+}
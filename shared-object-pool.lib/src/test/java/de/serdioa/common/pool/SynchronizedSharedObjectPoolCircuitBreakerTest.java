@@ -0,0 +1,21 @@
+package de.serdioa.common.pool;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.SharedCounter;
+
+
+public class SynchronizedSharedObjectPoolCircuitBreakerTest extends AbstractSharedObjectPoolCircuitBreakerTest {
+
+    @Override
+    protected SynchronizedSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(
+            PooledObjectFactory<String, PooledCounter> pooledObjectFactory) {
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = SynchronizedSharedObject.factory(SharedCounter.class);
+
+        return new SynchronizedSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pooledObjectFactory)
+                .setSharedObjectFactory(sof)
+                .setCircuitBreakerFailureThreshold(FAILURE_THRESHOLD)
+                .setCircuitBreakerBackoffMillis(BACKOFF_MILLIS)
+                .build();
+    }
+}
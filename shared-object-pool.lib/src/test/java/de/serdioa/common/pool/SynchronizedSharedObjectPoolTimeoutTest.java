@@ -0,0 +1,74 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.serdioa.common.pool.sample.PooledCounter;
+import de.serdioa.common.pool.sample.PooledCounterFactory;
+import de.serdioa.common.pool.sample.SharedCounter;
+import org.junit.After;
+import org.junit.Test;
+
+
+public class SynchronizedSharedObjectPoolTimeoutTest extends AbstractSharedObjectPoolTimeoutTest {
+
+    // The dedicated executor for initializing pooled objects.
+    private ExecutorService initializeExecutor;
+
+    // The number of tasks submitted to the initialization executor.
+    private final AtomicInteger initializeTasks = new AtomicInteger();
+
+
+    @Override
+    protected SynchronizedSharedObjectPool<String, SharedCounter, PooledCounter> buildPool(
+            PooledObjectFactory<String, PooledCounter> pooledObjectFactory) {
+        SharedObjectFactory<PooledCounter, SharedCounter> sof = SynchronizedSharedObject.factory(SharedCounter.class);
+        this.initializeExecutor = Executors.newCachedThreadPool();
+
+        return new SynchronizedSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(pooledObjectFactory)
+                .setSharedObjectFactory(sof)
+                .setInitializeExecutor(task -> {
+                    this.initializeTasks.incrementAndGet();
+                    this.initializeExecutor.execute(task);
+                })
+                .build();
+    }
+
+
+    @After
+    public void shutdownInitializeExecutor() {
+        this.initializeExecutor.shutdownNow();
+        this.initializeExecutor = null;
+    }
+
+
+    @Test
+    public void testGetWithTimeoutUsesInitializeExecutor() throws Exception {
+        // The initialization blocks, so the pooled object is being initialized in the configured executor when
+        // the timeout expires.
+        try {
+            this.pool.get("AAA", 50, TimeUnit.MILLISECONDS);
+            fail("TimeoutException expected");
+        } catch (TimeoutException ex) {
+            // Expected.
+        }
+        assertEquals(1, this.initializeTasks.get());
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidInitializeExecutor() {
+        new SynchronizedSharedObjectPool.Builder<String, SharedCounter, PooledCounter>()
+                .setPooledObjectFactory(new PooledCounterFactory())
+                .setSharedObjectFactory(SynchronizedSharedObject.factory(SharedCounter.class))
+                .setInitializeExecutor(null)
+                .build();
+    }
+}
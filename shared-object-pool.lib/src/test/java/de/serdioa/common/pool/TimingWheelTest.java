@@ -0,0 +1,150 @@
+package de.serdioa.common.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TimingWheelTest {
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private TimingWheel wheel;
+
+
+    @Before
+    public void setUp() {
+        this.executor = new ScheduledThreadPoolExecutor(1);
+        this.wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, this.executor);
+    }
+
+
+    @After
+    public void tearDown() {
+        this.wheel.stop();
+        this.executor.shutdownNow();
+    }
+
+
+    @Test
+    public void testRunNotBeforeDeadline() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] runAt = new long[1];
+
+        this.wheel.schedule(() -> {
+            runAt[0] = System.nanoTime();
+            latch.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(runAt[0] - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+
+    @Test
+    public void testRunInOrder() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+
+        // The delay of 200 ms is beyond the first level of the wheel with 64 ticks.
+        this.wheel.schedule(() -> {
+            order.add(200);
+            latch.countDown();
+        }, 200, TimeUnit.MILLISECONDS);
+        this.wheel.schedule(() -> {
+            order.add(10);
+            latch.countDown();
+        }, 10, TimeUnit.MILLISECONDS);
+        this.wheel.schedule(() -> {
+            order.add(100);
+            latch.countDown();
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(10, (int) order.get(0));
+        assertEquals(100, (int) order.get(1));
+        assertEquals(200, (int) order.get(2));
+    }
+
+
+    @Test
+    public void testCancel() throws Exception {
+        AtomicInteger runCount = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        TimingWheel.Timeout cancelled = this.wheel.schedule(runCount::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        this.wheel.schedule(latch::countDown, 40, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(cancelled.cancel());
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(0, runCount.get());
+    }
+
+
+    @Test
+    public void testCancelAfterRun() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = this.wheel.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+    }
+
+
+    @Test
+    public void testExceptionDoesNotStopWheel() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        this.wheel.schedule(() -> {
+            throw new IllegalStateException("Test");
+        }, 5, TimeUnit.MILLISECONDS);
+        this.wheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testBlockingTaskDoesNotDelayOtherTasks() throws Exception {
+        ScheduledThreadPoolExecutor parallelExecutor = new ScheduledThreadPoolExecutor(2);
+        TimingWheel parallelWheel = new TimingWheel(1, TimeUnit.MILLISECONDS, parallelExecutor);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try {
+            parallelWheel.schedule(() -> {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 5, TimeUnit.MILLISECONDS);
+            assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+            // The first task blocks one thread of the executor, but the wheel keeps ticking, and the second task
+            // runs on the other thread.
+            parallelWheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(1, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            parallelWheel.stop();
+            parallelExecutor.shutdownNow();
+        }
+    }
+}
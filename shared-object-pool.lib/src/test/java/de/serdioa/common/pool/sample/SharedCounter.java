@@ -1,8 +1,10 @@
 package de.serdioa.common.pool.sample;
 
+import de.serdioa.common.pool.GenerateSharedObject;
 import de.serdioa.common.pool.SharedObject;
 
 
+@GenerateSharedObject
 public interface SharedCounter extends Counter, SharedObject {
     // No methods.
 }
@@ -0,0 +1,453 @@
+package de.serdioa.common.pool.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+
+/**
+ * An annotation processor generating shared objects for interfaces annotated with
+ * {@code de.serdioa.common.pool.GenerateSharedObject}. For an annotated interface {@code SharedFxRate} the processor
+ * generates in the same package the class {@code GeneratedSharedFxRate} with the static method {@code factory()}
+ * returning a {@code SharedObjectFactory}.
+ * <p>
+ * The generated class is generic in the type of the pooled object, bounded by all business interfaces extended
+ * by the annotated interface, and delegates each method of the business interfaces directly to the pooled object.
+ * The lifecycle follows {@code LockingSharedObject} or {@code SynchronizedSharedObject}, depending on the configured
+ * synchronization: calling a method on a disposed shared object throws an {@link IllegalStateException}, as does
+ * disposing of a shared object twice, the dispose callback is invoked outside of the lock, and each method call renews
+ * the lease of the shared object, if the pool tracks shared objects with leases. Once the lease has expired, the shared
+ * object is reported as disposed of, and calling a method of the business interfaces throws
+ * an {@link IllegalStateException}.
+ * <p>
+ * The processor refers to classes of the library only by name, so that it does not depend on the library.
+ */
+@SupportedAnnotationTypes(SharedObjectProcessor.GENERATE_SHARED_OBJECT)
+public class SharedObjectProcessor extends AbstractProcessor {
+
+    static final String GENERATE_SHARED_OBJECT = "de.serdioa.common.pool.GenerateSharedObject";
+
+    private static final String SHARED_OBJECT = "de.serdioa.common.pool.SharedObject";
+    private static final String SHARED_OBJECT_FACTORY = "de.serdioa.common.pool.SharedObjectFactory";
+    private static final String SHARED_OBJECT_LEASE = "de.serdioa.common.pool.SharedObjectLease";
+
+    // The prefix of names of generated classes.
+    private static final String GENERATED_PREFIX = "Generated";
+
+    // The name of the enum constant for synchronization with plain Java synchronization.
+    private static final String SYNCHRONIZED = "SYNCHRONIZED";
+
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                try {
+                    this.generate(element);
+                } catch (IOException ex) {
+                    this.error(element, "Can not write the generated shared object: " + ex);
+                }
+            }
+        }
+        return true;
+    }
+
+
+    private void generate(Element element) throws IOException {
+        if (element.getKind() != ElementKind.INTERFACE) {
+            this.error(element, "@GenerateSharedObject may be applied only to interfaces");
+            return;
+        }
+        TypeElement sharedType = (TypeElement) element;
+        if (!sharedType.getTypeParameters().isEmpty()) {
+            this.error(element, "@GenerateSharedObject does not support generic interfaces");
+            return;
+        }
+
+        TypeElement sharedObjectType = this.processingEnv.getElementUtils().getTypeElement(SHARED_OBJECT);
+        if (sharedObjectType == null) {
+            this.error(element, "The class " + SHARED_OBJECT + " is not found");
+            return;
+        }
+        if (!this.processingEnv.getTypeUtils().isSubtype(sharedType.asType(), sharedObjectType.asType())) {
+            this.error(element, "The interface annotated with @GenerateSharedObject shall extend " + SHARED_OBJECT);
+            return;
+        }
+
+        // Business interfaces implemented by the pooled object are all interfaces extended by the annotated interface,
+        // except of SharedObject.
+        List<TypeMirror> businessTypes = new ArrayList<>();
+        for (TypeMirror superType : sharedType.getInterfaces()) {
+            if (!this.isSameType(superType, sharedObjectType)) {
+                businessTypes.add(superType);
+            }
+        }
+        if (businessTypes.isEmpty()) {
+            this.error(element, "The interface annotated with @GenerateSharedObject shall extend a business "
+                    + "interface implemented by the pooled object");
+            return;
+        }
+
+        // The annotated interface may not declare abstract methods, because the pooled object does not implement them.
+        for (ExecutableElement method : ElementFilter.methodsIn(sharedType.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.ABSTRACT)) {
+                this.error(method, "The interface annotated with @GenerateSharedObject shall not declare abstract "
+                        + "methods, only methods of business interfaces are delegated to the pooled object");
+                return;
+            }
+        }
+
+        List<ExecutableElement> methods = this.delegatedMethods(sharedType, sharedObjectType);
+        boolean synchronizedMode = SYNCHRONIZED.equals(this.synchronization(sharedType));
+
+        String packageName = this.processingEnv.getElementUtils().getPackageOf(sharedType).getQualifiedName()
+                .toString();
+        String className = GENERATED_PREFIX + this.flatName(sharedType);
+        String qualifiedClassName = (packageName.isEmpty() ? className : packageName + '.' + className);
+
+        try (PrintWriter out = new PrintWriter(this.processingEnv.getFiler()
+                .createSourceFile(qualifiedClassName, sharedType).openWriter())) {
+            this.writeClass(out, packageName, className, sharedType, businessTypes, methods, synchronizedMode);
+        }
+    }
+
+
+    // Returns methods of business interfaces to be delegated to the pooled object: abstract and default methods which
+    // are not declared by Object, by SharedObject or by the annotated interface itself. Methods with the same
+    // signature inherited from multiple interfaces are delegated once.
+    private List<ExecutableElement> delegatedMethods(TypeElement sharedType, TypeElement sharedObjectType) {
+        TypeElement objectType = this.processingEnv.getElementUtils().getTypeElement(Object.class.getName());
+
+        Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(
+                this.processingEnv.getElementUtils().getAllMembers(sharedType))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.STATIC)
+                    || !(modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.DEFAULT))) {
+                continue;
+            }
+
+            Element owner = method.getEnclosingElement();
+            if (owner.equals(sharedType) || owner.equals(sharedObjectType) || owner.equals(objectType)) {
+                continue;
+            }
+
+            ExecutableType methodType = this.methodType(sharedType, method);
+            StringBuilder signature = new StringBuilder(method.getSimpleName());
+            for (TypeMirror parameterType : methodType.getParameterTypes()) {
+                signature.append(',').append(this.processingEnv.getTypeUtils().erasure(parameterType));
+            }
+            methods.putIfAbsent(signature.toString(), method);
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+
+    // Returns the name of the configured synchronization, or null if the default shall be used.
+    private String synchronization(TypeElement sharedType) {
+        for (AnnotationMirror annotation : sharedType.getAnnotationMirrors()) {
+            if (!GENERATE_SHARED_OBJECT.equals(annotation.getAnnotationType().toString())) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                    : annotation.getElementValues().entrySet()) {
+                if ("synchronization".contentEquals(value.getKey().getSimpleName())) {
+                    return ((Element) value.getValue().getValue()).getSimpleName().toString();
+                }
+            }
+        }
+        return null;
+    }
+
+
+    // Returns the simple name of the type, prefixed with names of enclosing types for nested types.
+    private String flatName(TypeElement type) {
+        Element enclosing = type.getEnclosingElement();
+        if (enclosing instanceof PackageElement) {
+            return type.getSimpleName().toString();
+        } else {
+            return this.flatName((TypeElement) enclosing) + '_' + type.getSimpleName();
+        }
+    }
+
+
+    private void writeClass(PrintWriter out, String packageName, String className, TypeElement sharedType,
+            List<TypeMirror> businessTypes, List<ExecutableElement> methods, boolean synchronizedMode) {
+        String sharedTypeName = sharedType.getQualifiedName().toString();
+        String simpleName = sharedType.getSimpleName().toString();
+        String pooledBounds = this.join(businessTypes, " & ");
+
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+            out.println();
+        }
+        out.println("/**");
+        out.println(" * Shared object for {@link " + sharedTypeName + "} generated by {@code "
+                + SharedObjectProcessor.class.getSimpleName() + "}.");
+        out.println(" *");
+        out.println(" * @param <P> the type of the pooled object.");
+        out.println(" */");
+        out.println("public final class " + className + "<P extends " + pooledBounds + "> implements "
+                + sharedTypeName + " {");
+        out.println();
+        out.println("    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger("
+                + className + ".class);");
+        out.println();
+        out.println("    // The pooled object backing this shared object.");
+        out.println("    // A null pooled object indicates that this shared object has been disposed of.");
+        out.println("    // @GuardedBy(" + (synchronizedMode ? "mutex" : "lock") + ")");
+        out.println("    private P pooledObject;");
+        out.println();
+        out.println("    // The callback to be invoked when a client disposes of this shared object. Cleared after the callback");
+        out.println("    // has been invoked, which keeps this shared object reachable until the callback is finished.");
+        out.println("    private Runnable disposeCallback;");
+        out.println();
+        out.println("    // The lease of this shared object renewed on each method call, or null if the pool does not track");
+        out.println("    // shared objects with leases.");
+        out.println("    private final " + SHARED_OBJECT_LEASE + " lease;");
+        out.println();
+        if (synchronizedMode) {
+            out.println("    private final Object mutex = new Object();");
+        } else {
+            out.println("    private final java.util.concurrent.locks.ReadWriteLock lock =");
+            out.println("            new java.util.concurrent.locks.ReentrantReadWriteLock();");
+            out.println("    private final java.util.concurrent.locks.Lock readLock = this.lock.readLock();");
+            out.println("    private final java.util.concurrent.locks.Lock writeLock = this.lock.writeLock();");
+        }
+        out.println();
+        out.println();
+
+        // Constructor.
+        out.println("    public " + className + "(P pooledObject, Runnable disposeCallback) {");
+        out.println("        this.lease = (disposeCallback instanceof " + SHARED_OBJECT_LEASE + " ? ("
+                + SHARED_OBJECT_LEASE + ") disposeCallback : null);");
+        this.writeLocked(out, synchronizedMode, true, new String[] {
+            "this.pooledObject = java.util.Objects.requireNonNull(pooledObject);",
+            "this.disposeCallback = java.util.Objects.requireNonNull(disposeCallback);"
+        });
+        out.println("    }");
+
+        // Delegated methods.
+        for (ExecutableElement method : methods) {
+            out.println();
+            out.println();
+            this.writeMethod(out, sharedType, simpleName, method, synchronizedMode);
+        }
+
+        // dispose()
+        out.println();
+        out.println();
+        out.println("    @Override");
+        out.println("    public void dispose() {");
+        out.println("        Runnable callback;");
+        this.writeLocked(out, synchronizedMode, true, new String[] {
+            "if (this.pooledObject == null) {",
+            "    throw new IllegalStateException(\"Method dispose() called on already disposed shared object "
+                    + simpleName + "\");",
+            "}",
+            "this.pooledObject = null;",
+            "callback = this.disposeCallback;"
+        });
+        out.println();
+        out.println("        // Invoke the pool callback outside of the locked block to prevent a deadlock when the pool and the client");
+        out.println("        // attempt to dispose of the same shared object simultaneously.");
+        out.println("        try {");
+        out.println("            callback.run();");
+        out.println("        } catch (Exception ex) {");
+        out.println("            logger.error(\"Exception when calling dispose() on generated shared object "
+                + simpleName + "\", ex);");
+        out.println("        }");
+        out.println("        this.disposeCallback = null;");
+        out.println("    }");
+
+        // isDisposed()
+        out.println();
+        out.println();
+        out.println("    @Override");
+        out.println("    public boolean isDisposed() {");
+        out.println("        if (this.lease != null && !this.lease.renew()) {");
+        out.println("            return true;");
+        out.println("        }");
+        out.println();
+        this.writeLocked(out, synchronizedMode, false, new String[] {
+            "return (this.pooledObject == null);"
+        });
+        out.println("    }");
+
+        // renewLease()
+        out.println();
+        out.println();
+        out.println("    @Override");
+        out.println("    public void renewLease() {");
+        out.println("        if (this.lease != null && !this.lease.renew()) {");
+        out.println("            throw new IllegalStateException(\"Method renewLease() called on shared object " + simpleName
+                + " with expired lease\");");
+        out.println("        }");
+        out.println("    }");
+
+        // factory()
+        out.println();
+        out.println();
+        out.println("    /**");
+        out.println("     * Returns a factory for creating generated shared objects {@link " + sharedTypeName + "}.");
+        out.println("     *");
+        out.println("     * @param <P> the type of pooled objects required by the returned factory.");
+        out.println("     *");
+        out.println("     * @return a factory for creating generated shared objects.");
+        out.println("     */");
+        out.println("    public static <P extends " + pooledBounds + "> " + SHARED_OBJECT_FACTORY + "<P, "
+                + sharedTypeName + "> factory() {");
+        out.println("        return " + className + "<P>::new;");
+        out.println("    }");
+        out.println("}");
+    }
+
+
+    private void writeMethod(PrintWriter out, TypeElement sharedType, String simpleName, ExecutableElement method,
+            boolean synchronizedMode) {
+        ExecutableType methodType = this.methodType(sharedType, method);
+        String methodName = method.getSimpleName().toString();
+
+        StringBuilder declaration = new StringBuilder("    public ");
+        if (!method.getTypeParameters().isEmpty()) {
+            declaration.append('<');
+            for (int i = 0; i < method.getTypeParameters().size(); ++i) {
+                TypeParameterElement typeParameter = method.getTypeParameters().get(i);
+                declaration.append(i == 0 ? "" : ", ").append(typeParameter.getSimpleName());
+                List<? extends TypeMirror> bounds = typeParameter.getBounds();
+                if (!(bounds.size() == 1 && Object.class.getName().equals(bounds.get(0).toString()))) {
+                    declaration.append(" extends ").append(this.join(bounds, " & "));
+                }
+            }
+            declaration.append("> ");
+        }
+        declaration.append(methodType.getReturnType()).append(' ').append(methodName).append('(');
+
+        StringBuilder arguments = new StringBuilder();
+        List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+        for (int i = 0; i < parameterTypes.size(); ++i) {
+            String parameterName = method.getParameters().get(i).getSimpleName().toString();
+            TypeMirror parameterType = parameterTypes.get(i);
+            if (i > 0) {
+                declaration.append(", ");
+                arguments.append(", ");
+            }
+            if (method.isVarArgs() && i == parameterTypes.size() - 1) {
+                declaration.append(((ArrayType) parameterType).getComponentType()).append("...");
+            } else {
+                declaration.append(parameterType);
+            }
+            declaration.append(' ').append(parameterName);
+            arguments.append(parameterName);
+        }
+        declaration.append(')');
+        if (!methodType.getThrownTypes().isEmpty()) {
+            declaration.append(" throws ").append(this.join(methodType.getThrownTypes(), ", "));
+        }
+        declaration.append(" {");
+
+        boolean returnsValue = (methodType.getReturnType().getKind() != TypeKind.VOID);
+
+        out.println("    @Override");
+        out.println(declaration);
+        out.println("        if (this.lease != null && !this.lease.renew()) {");
+        out.println("            throw new IllegalStateException(\"Method " + methodName + "() called on shared object "
+                + simpleName + " with expired lease\");");
+        out.println("        }");
+        out.println();
+        this.writeLocked(out, synchronizedMode, false, new String[] {
+            "if (this.pooledObject == null) {",
+            "    throw new IllegalStateException(\"Method " + methodName + "() called on disposed shared object "
+                    + simpleName + "\");",
+            "}",
+            (returnsValue ? "return " : "") + "this.pooledObject." + methodName + "(" + arguments + ");"
+        });
+        out.println("    }");
+    }
+
+
+    // Write the statements guarded by the lock: the read lock, or the write lock if exclusive, when locking, otherwise
+    // the mutex.
+    private void writeLocked(PrintWriter out, boolean synchronizedMode, boolean exclusive, String[] statements) {
+        if (synchronizedMode) {
+            out.println("        synchronized (this.mutex) {");
+            for (String statement : statements) {
+                out.println("            " + statement);
+            }
+            out.println("        }");
+        } else {
+            String lock = (exclusive ? "this.writeLock" : "this.readLock");
+            out.println("        " + lock + ".lock();");
+            out.println("        try {");
+            for (String statement : statements) {
+                out.println("            " + statement);
+            }
+            out.println("        } finally {");
+            out.println("            " + lock + ".unlock();");
+            out.println("        }");
+        }
+    }
+
+
+    // Returns the type of the method as a member of the annotated interface, that is with type arguments of generic
+    // business interfaces substituted.
+    private ExecutableType methodType(TypeElement sharedType, ExecutableElement method) {
+        return (ExecutableType) this.processingEnv.getTypeUtils().asMemberOf((DeclaredType) sharedType.asType(),
+                method);
+    }
+
+
+    private boolean isSameType(TypeMirror type, TypeElement element) {
+        return this.processingEnv.getTypeUtils().isSameType(this.processingEnv.getTypeUtils().erasure(type),
+                this.processingEnv.getTypeUtils().erasure(element.asType()));
+    }
+
+
+    private String join(List<? extends TypeMirror> types, String separator) {
+        StringBuilder b = new StringBuilder();
+        for (TypeMirror type : types) {
+            if (b.length() > 0) {
+                b.append(separator);
+            }
+            b.append(type);
+        }
+        return b.toString();
+    }
+
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}